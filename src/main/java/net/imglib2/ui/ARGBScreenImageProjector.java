@@ -0,0 +1,811 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.ui;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.imglib2.Interval;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessible;
+import net.imglib2.converter.Converter;
+import net.imglib2.display.screenimage.awt.ARGBScreenImage;
+import net.imglib2.type.numeric.ARGBType;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.ui.converter.LookupTableConverter;
+import net.imglib2.ui.sampler.ScanlineClipping;
+import net.imglib2.ui.sampler.ScanlineViews;
+
+/**
+ * A {@link SimpleInterruptibleProjector} that renders into an
+ * {@link ARGBScreenImage}. Instead of going through a target
+ * {@link RandomAccess}, converted pixels are written directly into the
+ * <code>int[]</code> array backing the screen image. If the converter is a
+ * {@link LookupTableConverter}, its lookup table is used directly.
+ * <p>
+ * The target image is divided into square tiles of {@link #TILE_SIZE} pixels.
+ * Rendering threads take tiles from a shared queue, in the specified
+ * {@link #setTileOrder(TileOrder, double, double) order}. Completed tiles are
+ * remembered, such that {@link #map()} after {@link #cancel()} only renders the
+ * remaining tiles. Pixels in a {@link #setValidInterval(Interval) valid
+ * interval} (e.g., copied from a previous frame) are not rendered at all. If a
+ * {@link #setDeadline(long) deadline} is set, rendering threads stop taking
+ * tiles once it has passed. Tiles for which the source returned
+ * {@link Placeholders placeholders} are rendered, but not marked as completed.
+ * If a {@link #setClipping(ScanlineClipping, int) clipping} is set, only the
+ * span of each row that maps into the source is sampled, and the rest of the
+ * row is filled with a background colour.
+ * <p>
+ * Within a tile, pixels are traversed row by row. For
+ * {@link TileOrder#isLayoutAware() layout-aware} tile orders, the tile is
+ * traversed column by column instead if
+ * {@link #setColumnsPreferred(boolean) columns are preferred}, e.g., because
+ * the contiguous source axis is closer to the screen Y axis than to the X axis.
+ * <p>
+ * An {@link #setInterleavedPass(int, boolean) interleaved pass} samples only
+ * every <em>step</em>-th pixel in X and Y (and replicates it into a block),
+ * such that a sequence of passes renders every pixel exactly once.
+ * <p>
+ * If a {@link #setRawSampleBuffer(RawSampleBuffer) raw sample buffer} is set,
+ * the (unconverted) values of {@link RealType} source pixels are stored in it
+ * as well, such that a changed converter can be applied without resampling
+ * the source. Interleaved passes do not fill the buffer.
+ *
+ * @param <A>
+ *            pixel type of the source {@link RandomAccessible}.
+ */
+public class ARGBScreenImageProjector< A > extends SimpleInterruptibleProjector< A, ARGBType > implements ResumableProjector, InterleavedProjector
+{
+	/**
+	 * Width and height of tiles.
+	 */
+	public static final int TILE_SIZE = 64;
+
+	/**
+	 * The data array of the target {@link ARGBScreenImage}.
+	 */
+	final protected int[] data;
+
+	/**
+	 * Width of the target {@link ARGBScreenImage}, i.e., the offset between
+	 * rows in {@link #data}.
+	 */
+	final protected int stride;
+
+	/**
+	 * Number of tiles in X.
+	 */
+	final protected int numTilesX;
+
+	/**
+	 * Number of tiles in Y.
+	 */
+	final protected int numTilesY;
+
+	/**
+	 * Which tiles have been completed. Written by the rendering threads, only
+	 * read after they have finished.
+	 */
+	final protected boolean[] tileDone;
+
+	/**
+	 * Pixels of the target image in the rectangle from
+	 * <em>(validMinX, validMinY)</em> (inclusive) to
+	 * <em>(validMaxX, validMaxY)</em> (exclusive) are already valid and not
+	 * rendered.
+	 */
+	protected int validMinX, validMinY, validMaxX, validMaxY;
+
+	/**
+	 * Accumulated rendering time of all {@link #map()} calls, in nano-seconds.
+	 */
+	protected long accumulatedRenderNanoTime;
+
+	/**
+	 * Order in which tiles are rendered.
+	 */
+	protected TileOrder tileOrder;
+
+	/**
+	 * Focus point for the {@link #tileOrder}, in target image coordinates.
+	 */
+	protected double focusX, focusY;
+
+	/**
+	 * Whether a {@link #deadline} is set.
+	 */
+	protected boolean hasDeadline;
+
+	/**
+	 * No new tiles are started after this {@link System#nanoTime()}.
+	 */
+	protected long deadline;
+
+	/**
+	 * Whether the last {@link #map()} stopped because the {@link #deadline}
+	 * was reached.
+	 */
+	protected volatile boolean deadlineReached;
+
+	/**
+	 * Index of the next tile to take from the queue of the last
+	 * {@link #createTasks()}.
+	 */
+	private AtomicInteger nextTile;
+
+	/**
+	 * Number of tiles in the queue of the last {@link #createTasks()}.
+	 */
+	private int numQueuedTiles;
+
+	/**
+	 * Determines which pixels of each row are sampled, or <code>null</code>
+	 * if all pixels are sampled.
+	 */
+	protected ScanlineClipping clipping;
+
+	/**
+	 * ARGB value of pixels outside the {@link #clipping} span.
+	 */
+	protected int background;
+
+	/**
+	 * Whether traversing the target column by column accesses source memory
+	 * with smaller strides than traversing it row by row.
+	 */
+	protected boolean columnsPreferred;
+
+	/**
+	 * Whether tiles are currently traversed column by column. This is the case
+	 * if {@link #columnsPreferred} and the {@link #tileOrder} is
+	 * {@link TileOrder#isLayoutAware() layout-aware}.
+	 */
+	protected boolean columnMajor;
+
+	/**
+	 * Distance between sampled pixels of the current
+	 * {@link #setInterleavedPass(int, boolean) interleaved pass}.
+	 */
+	protected int interleavedStep;
+
+	/**
+	 * Whether the pixels sampled by the pass with twice the
+	 * {@link #interleavedStep} are skipped.
+	 */
+	protected boolean skipCoarserSamples;
+
+	/**
+	 * Receives the raw values of rendered pixels, or <code>null</code>.
+	 */
+	protected RawSampleBuffer rawSampleBuffer;
+
+	/**
+	 * Raw value of pixels outside the {@link #clipping} span.
+	 */
+	protected float rawBackground;
+
+	/**
+	 * Create new projector with the given source and a converter from source to
+	 * {@link ARGBType}.
+	 *
+	 * @param source
+	 *            source pixels.
+	 * @param converter
+	 *            converts from the source pixel type to {@link ARGBType}.
+	 * @param target
+	 *            the screen image that this projector maps to
+	 * @param numThreads
+	 *            how many threads to use for rendering.
+	 * @param executorService
+	 *            {@link ExecutorService} to run the rendering tasks. If
+	 *            <code>null</code>, a new {@link ExecutorService} is created
+	 *            (and shut down) in every {@link #map()}.
+	 */
+	public ARGBScreenImageProjector(
+			final RandomAccessible< A > source,
+			final Converter< ? super A, ARGBType > converter,
+			final ARGBScreenImage target,
+			final int numThreads,
+			final ExecutorService executorService )
+	{
+		super( source, converter, target, numThreads, executorService );
+		this.data = target.getData();
+		this.stride = ( int ) target.dimension( 0 );
+		numTilesX = ( int ) ( ( target.dimension( 0 ) + TILE_SIZE - 1 ) / TILE_SIZE );
+		numTilesY = ( int ) ( ( target.dimension( 1 ) + TILE_SIZE - 1 ) / TILE_SIZE );
+		tileDone = new boolean[ numTilesX * numTilesY ];
+		accumulatedRenderNanoTime = 0;
+		validMinX = validMinY = validMaxX = validMaxY = 0;
+		hasDeadline = false;
+		deadlineReached = false;
+		tileOrder = TileOrder.ROW_MAJOR;
+		interleavedStep = 1;
+		skipCoarserSamples = false;
+		rawSampleBuffer = null;
+		rawBackground = Float.NaN;
+	}
+
+	/**
+	 * Render the tiles of the target image that have not been completed yet.
+	 *
+	 * @return true if rendering was completed (all target pixels written).
+	 *         false if rendering was interrupted or the deadline was reached.
+	 */
+	@Override
+	public boolean map()
+	{
+		final boolean completed = super.map();
+		finishTasks();
+		final boolean success = completed && !deadlineReached;
+		accumulatedRenderNanoTime += lastFrameRenderNanoTime;
+		lastFrameRenderNanoTime = accumulatedRenderNanoTime;
+		return success;
+	}
+
+	/**
+	 * Create one task per rendering thread. The tasks take tiles that are not
+	 * yet done from a shared queue and render them via
+	 * {@link #mapTile(long, long, int, int)}.
+	 */
+	@Override
+	protected ArrayList< Callable< Void > > createTasks()
+	{
+		interrupted.set( false );
+		deadlineReached = false;
+
+		min[ 0 ] = target.min( 0 );
+		min[ 1 ] = target.min( 1 );
+		max[ 0 ] = target.max( 0 );
+		max[ 1 ] = target.max( 1 );
+
+		final int[] tiles = new int[ tileDone.length ];
+		int numTiles = 0;
+		for ( final int t : tileOrder.getOrder( numTilesX, numTilesY, focusX / TILE_SIZE, focusY / TILE_SIZE ) )
+			if ( !tileDone[ t ] )
+				tiles[ numTiles++ ] = t;
+
+		final int n = numTiles;
+		numQueuedTiles = n;
+		final AtomicInteger nextTile = new AtomicInteger();
+		this.nextTile = nextTile;
+		final int numTasks = Math.min( Math.max( numThreads, 1 ), n );
+		final ArrayList< Callable< Void > > tasks = new ArrayList<>( numTasks );
+		for ( int taskNum = 0; taskNum < numTasks; ++taskNum )
+		{
+			tasks.add( new Callable< Void >()
+			{
+				@Override
+				public Void call()
+				{
+					while ( !interrupted.get() )
+					{
+						if ( hasDeadline && System.nanoTime() - deadline >= 0 )
+						{
+							deadlineReached = true;
+							break;
+						}
+						final int i = nextTile.getAndIncrement();
+						if ( i >= n )
+							break;
+						final int t = tiles[ i ];
+						boolean done = true;
+						Placeholders.clear();
+						for ( final int[] r : getInvalidRects( t ) )
+							done &= mapTile( min[ 0 ] + r[ 0 ], min[ 1 ] + r[ 1 ], r[ 2 ], r[ 3 ] );
+						if ( done && !Placeholders.isUsed() )
+							tileDone[ t ] = true;
+					}
+					return null;
+				}
+			} );
+		}
+		return tasks;
+	}
+
+	/**
+	 * Must be called after the tasks of {@link #createTasks()} have finished.
+	 * Resets {@link #deadlineReached} if rendering was cancelled, or if all
+	 * tiles were taken (by other threads) although the deadline had passed.
+	 */
+	protected void finishTasks()
+	{
+		if ( deadlineReached && ( interrupted.get() || nextTile.get() >= numQueuedTiles ) )
+			deadlineReached = false;
+	}
+
+	@Override
+	public void setValidInterval( final Interval interval )
+	{
+		validMinX = ( int ) Math.max( interval.min( 0 ) - target.min( 0 ), 0 );
+		validMinY = ( int ) Math.max( interval.min( 1 ) - target.min( 1 ), 0 );
+		validMaxX = ( int ) Math.min( interval.max( 0 ) - target.min( 0 ) + 1, target.dimension( 0 ) );
+		validMaxY = ( int ) Math.min( interval.max( 1 ) - target.min( 1 ) + 1, target.dimension( 1 ) );
+		for ( int t = 0; t < tileDone.length; ++t )
+			if ( getInvalidRects( t ).isEmpty() )
+				tileDone[ t ] = true;
+	}
+
+	/**
+	 * Sample only pixels in the span of each row given by
+	 * <code>clipping</code>, and set the other pixels to
+	 * <code>background</code>. This must only be used if the source has the
+	 * constant (converted) value <code>background</code> outside the span.
+	 *
+	 * @param clipping
+	 *            the clipping, or <code>null</code> to sample all pixels.
+	 * @param background
+	 *            ARGB value of pixels outside the span.
+	 */
+	public void setClipping( final ScanlineClipping clipping, final int background )
+	{
+		this.clipping = clipping;
+		this.background = background;
+	}
+
+	/**
+	 * Store the raw values of rendered pixels in <code>buffer</code>, which
+	 * must have the same size as the target image. Values are only stored if
+	 * the source pixels are {@link RealType}s that the buffer
+	 * {@link RawSampleBuffer#isSupported(RealType) supports}.
+	 *
+	 * @param buffer
+	 *            the buffer, or <code>null</code> to not store raw values.
+	 */
+	public void setRawSampleBuffer( final RawSampleBuffer buffer )
+	{
+		if ( buffer != null && ( buffer.getWidth() != target.dimension( 0 ) || buffer.getHeight() != target.dimension( 1 ) ) )
+			throw new IllegalArgumentException( "raw sample buffer must have the size of the target image" );
+		rawSampleBuffer = buffer;
+	}
+
+	/**
+	 * Set the raw value of the source outside the
+	 * {@link #setClipping(ScanlineClipping, int) clipping} span. It is stored
+	 * in the {@link #setRawSampleBuffer(RawSampleBuffer) raw sample buffer}
+	 * for pixels that are not sampled.
+	 */
+	public void setRawBackground( final float rawBackground )
+	{
+		this.rawBackground = rawBackground;
+	}
+
+	/**
+	 * Store the raw value of <code>sample</code> at index <code>i</code> of
+	 * the {@link #rawSampleBuffer}.
+	 */
+	protected void storeRawSample( final float[] raw, final int i, final A sample )
+	{
+		if ( sample instanceof RealType )
+		{
+			final RealType< ? > value = ( RealType< ? > ) sample;
+			if ( rawSampleBuffer.getType() == null )
+				rawSampleBuffer.setType( value );
+			raw[ i ] = value.getRealFloat();
+		}
+	}
+
+	/**
+	 * Get the span of pixels to sample in the row starting at target offset
+	 * <code>o</code>, and fill the pixels left and right of it with the
+	 * {@link #background}.
+	 *
+	 * @param span
+	 *            receives the span as offsets <em>[start, end)</em> relative
+	 *            to <code>minX</code>.
+	 */
+	protected void clipRow( final long y, final long minX, final int width, final int o, final int[] span )
+	{
+		if ( clipping == null )
+		{
+			span[ 0 ] = 0;
+			span[ 1 ] = width;
+			return;
+		}
+		clipping.clip( y, minX, width, span );
+		Arrays.fill( data, o, o + span[ 0 ], background );
+		Arrays.fill( data, o + span[ 1 ], o + width, background );
+		if ( rawSampleBuffer != null )
+		{
+			final float[] raw = rawSampleBuffer.getData();
+			Arrays.fill( raw, o, o + span[ 0 ], rawBackground );
+			Arrays.fill( raw, o + span[ 1 ], o + width, rawBackground );
+		}
+	}
+
+	/**
+	 * Set whether traversing the target column by column accesses source
+	 * memory with smaller strides than traversing it row by row. This is only
+	 * used with {@link TileOrder#isLayoutAware() layout-aware} tile orders.
+	 *
+	 * @see ScanlineViews#isColumnTraversalPreferred(net.imglib2.realtransform.AffineGet)
+	 */
+	public void setColumnsPreferred( final boolean columnsPreferred )
+	{
+		this.columnsPreferred = columnsPreferred;
+		columnMajor = columnsPreferred && tileOrder.isLayoutAware();
+	}
+
+	/**
+	 * {@link #clipRow(long, long, int, int, int[]) Clip} all rows of the
+	 * rectangle <em>(minX, minY, width, height)</em>, for traversing it column
+	 * by column.
+	 *
+	 * @return the spans of all rows, as offsets <em>[start, end)</em> relative
+	 *         to <code>minX</code>, at indices <em>2y</em> and <em>2y+1</em>.
+	 */
+	protected int[] clipTile( final long minX, final long minY, final int width, final int height )
+	{
+		final int[] spans = new int[ 2 * height ];
+		final int[] span = new int[ 2 ];
+		for ( int y = 0; y < height; ++y )
+		{
+			final int o = ( int ) ( ( minY + y - target.min( 1 ) ) * stride + minX - target.min( 0 ) );
+			clipRow( minY + y, minX, width, o, span );
+			spans[ 2 * y ] = span[ 0 ];
+			spans[ 2 * y + 1 ] = span[ 1 ];
+		}
+		return spans;
+	}
+
+	/**
+	 * Set the interleaved pass rendered by the next {@link #map()}. Because
+	 * sampled pixels are replicated into blocks, the step must be a power of
+	 * two not larger than {@link #TILE_SIZE}, such that blocks do not cross
+	 * tiles.
+	 */
+	@Override
+	public void setInterleavedPass( final int step, final boolean skipCoarserSamples )
+	{
+		if ( step < 1 || step > TILE_SIZE || Integer.bitCount( step ) != 1 )
+			throw new IllegalArgumentException( "step must be a power of two <= " + TILE_SIZE );
+		interleavedStep = step;
+		this.skipCoarserSamples = skipCoarserSamples;
+	}
+
+	@Override
+	public void setTileOrder( final TileOrder order, final double focusX, final double focusY )
+	{
+		tileOrder = order;
+		this.focusX = focusX;
+		this.focusY = focusY;
+		columnMajor = columnsPreferred && order.isLayoutAware();
+	}
+
+	@Override
+	public void setDeadline( final long deadlineNanos )
+	{
+		deadline = deadlineNanos;
+		hasDeadline = true;
+	}
+
+	@Override
+	public void clearDeadline()
+	{
+		hasDeadline = false;
+	}
+
+	@Override
+	public boolean isDeadlineReached()
+	{
+		return deadlineReached;
+	}
+
+	/**
+	 * Get the bounds of tile <code>t</code> in target image coordinates
+	 * (relative to the target min).
+	 *
+	 * @return <em>(x, y, width, height)</em> of the tile.
+	 */
+	protected int[] getTileRect( final int t )
+	{
+		final int tx = ( t % numTilesX ) * TILE_SIZE;
+		final int ty = ( t / numTilesX ) * TILE_SIZE;
+		final int tw = Math.min( TILE_SIZE, stride - tx );
+		final int th = Math.min( TILE_SIZE, ( int ) target.dimension( 1 ) - ty );
+		return new int[] { tx, ty, tw, th };
+	}
+
+	/**
+	 * Get the parts of tile <code>t</code> that are outside the
+	 * {@link #setValidInterval(Interval) valid interval}.
+	 *
+	 * @return list of <em>(x, y, width, height)</em> rectangles, relative to the
+	 *         target min.
+	 */
+	protected ArrayList< int[] > getInvalidRects( final int t )
+	{
+		final int[] r = getTileRect( t );
+		return getInvalidRects( r[ 0 ], r[ 1 ], r[ 2 ], r[ 3 ] );
+	}
+
+	/**
+	 * Get the parts of the rectangle <em>(x, y, width, height)</em> that are
+	 * outside the {@link #setValidInterval(Interval) valid interval}. These
+	 * are (up to) four rectangles: above, below, left, and right of the valid
+	 * interval.
+	 *
+	 * @return list of <em>(x, y, width, height)</em> rectangles, relative to the
+	 *         target min.
+	 */
+	protected ArrayList< int[] > getInvalidRects( final int x, final int y, final int width, final int height )
+	{
+		final ArrayList< int[] > rects = new ArrayList< >( 4 );
+		final int x1 = x + width;
+		final int y1 = y + height;
+		final int vx0 = Math.max( x, validMinX );
+		final int vy0 = Math.max( y, validMinY );
+		final int vx1 = Math.min( x1, validMaxX );
+		final int vy1 = Math.min( y1, validMaxY );
+		if ( vx0 >= vx1 || vy0 >= vy1 )
+		{
+			rects.add( new int[] { x, y, width, height } );
+			return rects;
+		}
+		if ( vy0 > y )
+			rects.add( new int[] { x, y, width, vy0 - y } );
+		if ( y1 > vy1 )
+			rects.add( new int[] { x, vy1, width, y1 - vy1 } );
+		if ( vx0 > x )
+			rects.add( new int[] { x, vy0, vx0 - x, vy1 - vy0 } );
+		if ( x1 > vx1 )
+			rects.add( new int[] { vx1, vy0, x1 - vx1, vy1 - vy0 } );
+		return rects;
+	}
+
+	@Override
+	public int getNumTiles()
+	{
+		return tileDone.length;
+	}
+
+	@Override
+	public int getNumTilesDone()
+	{
+		int n = 0;
+		for ( final boolean done : tileDone )
+			if ( done )
+				++n;
+		return n;
+	}
+
+	/**
+	 * Whether the specified tile has been completely rendered.
+	 *
+	 * @param tile
+	 *            tile index (tiles are numbered in row-major order).
+	 */
+	public boolean isTileDone( final int tile )
+	{
+		return tileDone[ tile ];
+	}
+
+	@Override
+	public void fillMissingTiles( final ARGBScreenImage fallback )
+	{
+		final ARGBScreenImage screenImage = ( ARGBScreenImage ) target;
+		for ( int t = 0; t < tileDone.length; ++t )
+			if ( !tileDone[ t ] )
+				fillTile( t, fallback, screenImage );
+	}
+
+	/**
+	 * Fill tile <code>t</code> of <code>screenImage</code> (which has the same
+	 * size as the target image of this projector) with nearest-neighbor
+	 * upsampled pixels of <code>fallback</code>. Pixels in the
+	 * {@link #setValidInterval(Interval) valid interval} are not touched.
+	 */
+	protected void fillTile( final int t, final ARGBScreenImage fallback, final ARGBScreenImage screenImage )
+	{
+		final int[] dst = screenImage.getData();
+		final int[] src = fallback.getData();
+		final int fw = ( int ) fallback.dimension( 0 );
+		final int fh = ( int ) fallback.dimension( 1 );
+		final double sx = ( double ) fw / stride;
+		final double sy = ( double ) fh / screenImage.dimension( 1 );
+
+		for ( final int[] r : getInvalidRects( t ) )
+		{
+			for ( int y = r[ 1 ]; y < r[ 1 ] + r[ 3 ]; ++y )
+			{
+				final int fy = Math.min( ( int ) ( ( y + 0.5 ) * sy ), fh - 1 );
+				int o = y * stride + r[ 0 ];
+				for ( int x = r[ 0 ]; x < r[ 0 ] + r[ 2 ]; ++x )
+				{
+					final int fx = Math.min( ( int ) ( ( x + 0.5 ) * sx ), fw - 1 );
+					dst[ o++ ] = src[ fy * fw + fx ];
+				}
+			}
+		}
+	}
+
+	/**
+	 * Converts source pixels to packed ARGB values.
+	 *
+	 * @param <A>
+	 *            pixel type of the source.
+	 */
+	protected static interface SampleConverter< A >
+	{
+		int convert( A sample );
+	}
+
+	/**
+	 * Create a {@link SampleConverter} for one rendering thread. If the
+	 * converter is a {@link LookupTableConverter}, the ARGB values are taken
+	 * from its lookup table (as it is when this method is called). Otherwise,
+	 * the converter writes to a temporary {@link ARGBType}.
+	 */
+	@SuppressWarnings( "unchecked" )
+	protected SampleConverter< A > createSampleConverter()
+	{
+		if ( converter instanceof LookupTableConverter )
+		{
+			final LookupTableConverter< ? super A > lutConverter = ( LookupTableConverter< ? super A > ) converter;
+			final int[] lut = lutConverter.getLut();
+			return new SampleConverter< A >()
+			{
+				@Override
+				public int convert( final A sample )
+				{
+					return lut[ lutConverter.index( sample ) ];
+				}
+			};
+		}
+
+		final ARGBType argb = new ARGBType();
+		return new SampleConverter< A >()
+		{
+			@Override
+			public int convert( final A sample )
+			{
+				converter.convert( sample, argb );
+				return argb.get();
+			}
+		};
+	}
+
+	@Override
+	protected boolean mapTile( final long minX, final long minY, final int width, final int height )
+	{
+		if ( interleavedStep > 1 || skipCoarserSamples )
+			return mapTileInterleaved( minX, minY, width, height );
+
+		final RandomAccess< A > sourceRandomAccess = source.randomAccess( this );
+		final SampleConverter< A > toArgb = createSampleConverter();
+		final int[] span = new int[ 2 ];
+		final float[] raw = rawSampleBuffer == null || rawSampleBuffer.isUnsupported() ? null : rawSampleBuffer.getData();
+
+		sourceRandomAccess.setPosition( min );
+		if ( columnMajor )
+		{
+			final int[] spans = clipTile( minX, minY, width, height );
+			for ( int x = 0; x < width; ++x )
+			{
+				if ( interrupted.get() )
+					return false;
+				sourceRandomAccess.setPosition( minX + x, 0 );
+				sourceRandomAccess.setPosition( minY, 1 );
+				for ( int y = 0, i = ( int ) ( ( minY - target.min( 1 ) ) * stride + minX + x - target.min( 0 ) ); y < height; ++y, i += stride )
+				{
+					if ( x >= spans[ 2 * y ] && x < spans[ 2 * y + 1 ] )
+					{
+						final A sample = sourceRandomAccess.get();
+						data[ i ] = toArgb.convert( sample );
+						if ( raw != null )
+							storeRawSample( raw, i, sample );
+					}
+					sourceRandomAccess.fwd( 1 );
+				}
+			}
+			return true;
+		}
+
+		for ( int y = 0; y < height; ++y )
+		{
+			if ( interrupted.get() )
+				return false;
+			final int o = ( int ) ( ( minY + y - target.min( 1 ) ) * stride + minX - target.min( 0 ) );
+			clipRow( minY + y, minX, width, o, span );
+			sourceRandomAccess.setPosition( minX + span[ 0 ], 0 );
+			sourceRandomAccess.setPosition( minY + y, 1 );
+			for ( int x = span[ 0 ], i = o + span[ 0 ]; x < span[ 1 ]; ++x, ++i )
+			{
+				final A sample = sourceRandomAccess.get();
+				data[ i ] = toArgb.convert( sample );
+				if ( raw != null )
+					storeRawSample( raw, i, sample );
+				sourceRandomAccess.fwd( 0 );
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Render the current {@link #setInterleavedPass(int, boolean) interleaved
+	 * pass} in the rectangle <em>(minX, minY, width, height)</em>. Sampled
+	 * pixels are those whose offsets from the target min are multiples of
+	 * {@link #interleavedStep}. Each sampled value is written to the block of
+	 * <em>step &times; step</em> pixels starting at the sampled pixel.
+	 */
+	protected boolean mapTileInterleaved( final long minX, final long minY, final int width, final int height )
+	{
+		final int step = interleavedStep;
+		final RandomAccess< A > sourceRandomAccess = source.randomAccess( this );
+		final SampleConverter< A > toArgb = createSampleConverter();
+		final int[] span = new int[ 2 ];
+
+		final long targetMinX = target.min( 0 );
+		final long targetMinY = target.min( 1 );
+		final long maxX = minX + width;
+		final long maxY = minY + height;
+		final long startX = targetMinX + ( minX - targetMinX + step - 1 ) / step * step;
+		final long startY = targetMinY + ( minY - targetMinY + step - 1 ) / step * step;
+
+		sourceRandomAccess.setPosition( min );
+		for ( long y = startY; y < maxY; y += step )
+		{
+			if ( interrupted.get() )
+				return false;
+			final boolean coarserRow = skipCoarserSamples && ( y - targetMinY ) % ( 2 * step ) == 0;
+			final int blockHeight = ( int ) Math.min( step, maxY - y );
+			if ( clipping == null )
+			{
+				span[ 0 ] = 0;
+				span[ 1 ] = width;
+			}
+			else
+				clipping.clip( y, minX, width, span );
+			sourceRandomAccess.setPosition( startX, 0 );
+			sourceRandomAccess.setPosition( y, 1 );
+			for ( long x = startX; x < maxX; x += step, sourceRandomAccess.move( step, 0 ) )
+			{
+				if ( coarserRow && ( x - targetMinX ) % ( 2 * step ) == 0 )
+					continue;
+				final int value;
+				if ( x - minX < span[ 0 ] || x - minX >= span[ 1 ] )
+					value = background;
+				else
+					value = toArgb.convert( sourceRandomAccess.get() );
+				final int blockWidth = ( int ) Math.min( step, maxX - x );
+				int o = ( int ) ( ( y - targetMinY ) * stride + x - targetMinX );
+				for ( int by = 0; by < blockHeight; ++by, o += stride )
+					Arrays.fill( data, o, o + blockWidth, value );
+			}
+		}
+		return true;
+	}
+}
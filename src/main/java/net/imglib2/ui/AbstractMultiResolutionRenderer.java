@@ -33,17 +33,26 @@
  */
 package net.imglib2.ui;
 
+import java.awt.Point;
 import java.awt.image.BufferedImage;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
+import net.imglib2.FinalInterval;
 import net.imglib2.concatenate.Concatenable;
 import net.imglib2.display.screenimage.awt.ARGBScreenImage;
 import net.imglib2.realtransform.AffineGet;
 import net.imglib2.realtransform.AffineSet;
 import net.imglib2.ui.util.GuiUtil;
+import net.imglib2.ui.util.RenderingThreads;
 
 /**
  * A {@link Renderer} that uses a coarse-to-fine rendering scheme. First, a
@@ -72,7 +81,15 @@ import net.imglib2.ui.util.GuiUtil;
  * display remains interactive.
  * <p>
  * The renderer tries to maintain a per-frame rendering time close to a desired
- * number of <code>targetRenderNanos</code> nanoseconds. If the rendering time
+ * number of <code>targetRenderNanos</code> nanoseconds. If a
+ * {@link RenderCostModel} is set and the derived class provides a
+ * {@link #getRenderCostKey() key} for what is rendered, the first image of a
+ * frame is rendered at an arbitrary screen scale, for which the rendering time
+ * predicted by the model matches the target. The screen images for this
+ * <em>adaptive</em> screen scale are resized as required. Rendering then
+ * proceeds with the next finer of the predefined screen scales.
+ * <p>
+ * Otherwise (or while nothing has been measured yet), if the rendering time
  * (in nanoseconds) for the (currently) highest scaled screen image is above
  * this threshold, a coarser screen scale is chosen as the highest screen scale
  * to use. Similarly, if the rendering time for the (currently) second-highest
@@ -80,7 +97,9 @@ import net.imglib2.ui.util.GuiUtil;
  * as the highest screen scale to use.
  * <p>
  * The renderer uses multiple threads (if desired) and double-buffering (if
- * desired).
+ * desired). Rendering threads are taken from an {@link ExecutorService} that
+ * lives as long as the renderer. It is either provided in the constructor or
+ * created by the renderer, in which case it is shut down by {@link #kill()}.
  * <p>
  * Double buffering means that three {@link BufferedImage BufferedImages} are
  * created for every screen scale. After rendering the first one of them and
@@ -91,6 +110,77 @@ import net.imglib2.ui.util.GuiUtil;
  * {@link RenderTarget} will release one of the previously set images to be
  * rendered again. Thus, rendering will not interfere with painting the
  * {@link BufferedImage} to the canvas.
+ * <p>
+ * If rendering is cancelled by a {@link #requestRepaint() repaint request},
+ * the partially rendered image is kept if the projector is a
+ * {@link ResumableProjector}. The same is done for a completed image in which
+ * some tiles were rendered with {@link Placeholders placeholders} (e.g.,
+ * because data is still loading). Rendering nevertheless proceeds with the
+ * next finer screen scale. Requesting a repaint when the data has arrived
+ * (e.g., from a block listener) renders only the placeholder tiles of the
+ * last such image again. If the next {@link #paint(AffineSet)} has the
+ * same viewer transform and the same {@link #getSourceState() source state},
+ * the missing tiles of the partially rendered image are filled from the last
+ * displayed (coarser) image. This composite is displayed immediately and
+ * rendering resumes with the missing tiles only. If source data is modified
+ * in a way that is not reflected in the {@link SourceState}, call
+ * {@link #invalidate()} before requesting a repaint. If the source state is
+ * unknown (<code>null</code>), nothing is reused.
+ * <p>
+ * If the viewer transform differs from the last completed full-resolution
+ * frame only by an integer translation in screen pixels (e.g., while panning),
+ * and the source state is unchanged, the previous image is copied with the
+ * corresponding shift and only the newly exposed pixels are rendered, at full
+ * resolution.
+ * <p>
+ * Optionally (see {@link #setPreviewEnabled(boolean)}), when rendering of a
+ * new viewer transform starts, a preview is displayed before the coarsest
+ * screen scale is rendered. The preview is obtained by warping the last
+ * complete full resolution image with the 2D transform between the old and
+ * new view (this requires double buffering). In 3D, this is only done if the
+ * new view lies in the plane of the old one.
+ * <p>
+ * Optionally (see {@link #setDeadlineRenderingEnabled(boolean)}), rendering
+ * of a finer screen scale is limited to the
+ * {@link #setIntermediatePresentationInterval(long) intermediate presentation
+ * interval} if a coarser image of the same view is displayed already. When
+ * the deadline is reached, the completed tiles are displayed over the coarser
+ * image, and rendering of the remaining tiles continues in the next
+ * {@link #paint(AffineSet)}. Thus, the display is updated regularly even if
+ * some parts of the source are very slow to render (e.g., because data is
+ * loaded lazily). Tiles are rendered in the specified
+ * {@link #setTileOrder(TileOrder) order}, by default starting from the
+ * {@link #setFocusPoint(Point) focus point} (e.g., the mouse position), such
+ * that the region the user is looking at is completed first.
+ * <p>
+ * Optionally (see {@link #setInterleavedRenderingEnabled(boolean)}), the
+ * screen scales are rendered as {@link InterleavedProjector interleaved}
+ * passes into the full resolution image: a screen scale of <em>1/s</em> is
+ * rendered by sampling every <em>s</em>-th pixel in X and Y and replicating
+ * it into <em>s&times;s</em> blocks. Each pass copies the previous (coarser)
+ * pass of the same view and samples only the pixels that it did not sample,
+ * such that the total sampling work of a frame equals that of a single full
+ * resolution image.
+ * <p>
+ * Optionally (see {@link #setRawSampleCacheEnabled(boolean)}), the raw
+ * (pre-conversion) source values of the last complete full resolution image
+ * are kept in a {@link RawSampleBuffer}. If only the converters change (that
+ * is, the {@link #getSamplingState() sampling state} and the viewer transform
+ * are unchanged), the next frame is computed by converting the buffer, which
+ * is much faster than resampling the sources.
+ * <p>
+ * Optionally (see {@link #setFrameCache(FrameCache)}), complete full
+ * resolution frames are put into a {@link FrameCache}. When rendering of a
+ * view starts that is in the cache, the cached frame is displayed immediately
+ * and nothing is rendered.
+ * <p>
+ * With a {@link FrameCache}, the renderer can also speculatively render
+ * neighbouring slices (see {@link #setNumSpeculativeSlices(int)}). If two
+ * consecutive full resolution frames differ only by the Z translation of the
+ * viewer transform (e.g., when browsing through a 3D stack), the next few
+ * slices in that direction are rendered in the background (using the
+ * otherwise idle rendering threads) and put into the cache. Speculative
+ * rendering is cancelled whenever a new frame is painted.
  * 
  * @param <A>
  *            transform type
@@ -125,7 +215,8 @@ abstract public class AbstractMultiResolutionRenderer< A extends AffineSet & Aff
 	/**
 	 * Used to render the image for display. Two images per screen resolution if
 	 * double buffering is enabled. First index is screen scale, second index is
-	 * double-buffer.
+	 * double-buffer. The last screen scale index ({@link #screenScales}
+	 * <code>.length</code>) holds the images of the adaptive screen scale.
 	 */
 	protected ARGBScreenImage[][] screenImages;
 
@@ -148,10 +239,31 @@ abstract public class AbstractMultiResolutionRenderer< A extends AffineSet & Aff
 	/**
 	 * The scale transformation from viewer to {@link #screenImages screen
 	 * image}. Each transformations corresponds to a {@link #screenScales screen
-	 * scale}.
+	 * scale}, the last one to the {@link #adaptiveScreenScale}.
 	 */
 	protected final ArrayList< A > screenScaleTransforms;
 
+	/**
+	 * Screen scale of the images at index {@link #screenScales}
+	 * <code>.length</code> of {@link #screenImages}. 0 if these images have
+	 * not been created yet.
+	 */
+	protected double adaptiveScreenScale;
+
+	/**
+	 * {@link BufferedImage}s of previous {@link #adaptiveScreenScale adaptive
+	 * screen scales}, that may still be held by the {@link #display}. They are
+	 * removed from {@link #bufferedImageToRenderId} when the display releases
+	 * their double-buffer index.
+	 */
+	private final ArrayList< BufferedImage > retiredBufferedImages;
+
+	/**
+	 * Predicts rendering times for choosing the {@link #adaptiveScreenScale}.
+	 * <code>null</code> disables adaptive screen scales.
+	 */
+	protected RenderCostModel renderCostModel;
+
 	/**
 	 * Try to maintain a per-frame rendering time at around
 	 * <code>targetRenderNanos</code> nanoseconds.
@@ -193,6 +305,210 @@ abstract public class AbstractMultiResolutionRenderer< A extends AffineSet & Aff
 	final protected int numRenderingThreads;
 
 	/**
+	 * {@link ExecutorService} used for rendering. All projectors created by
+	 * this renderer share it.
+	 */
+	final protected ExecutorService renderingExecutorService;
+
+	/**
+	 * Whether {@link #renderingExecutorService} was created by this renderer
+	 * (and should therefore be shut down by {@link #kill()}).
+	 */
+	final private boolean ownsRenderingExecutorService;
+
+	/**
+	 * Projector that was cancelled (or completed with placeholders) in the last
+	 * {@link #paint(AffineSet)}, and whose completed tiles may be reused.
+	 * <code>null</code> if there is nothing to resume.
+	 */
+	private ResumeState resumeState;
+
+	/**
+	 * Whether to limit rendering time of finer screen scales to
+	 * {@link #intermediatePresentationNanos} (see
+	 * {@link #setDeadlineRenderingEnabled(boolean)}).
+	 */
+	protected volatile boolean deadlineRenderingEnabled;
+
+	/**
+	 * How long to render finer screen scales before presenting intermediate
+	 * results, if {@link #deadlineRenderingEnabled}.
+	 */
+	protected volatile long intermediatePresentationNanos;
+
+	/**
+	 * Order in which tiles are rendered by {@link ResumableProjector}s.
+	 */
+	protected volatile TileOrder tileOrder;
+
+	/**
+	 * Focus point for the {@link #tileOrder} in canvas coordinates, or
+	 * <code>null</code> to use the canvas center.
+	 */
+	protected volatile Point focusPoint;
+
+	/**
+	 * Incremented by {@link #invalidate()}.
+	 */
+	protected long invalidateCount;
+
+	/**
+	 * The last {@link ARGBScreenImage} that was given to the {@link #display}.
+	 */
+	protected ARGBScreenImage lastPresentedScreenImage;
+
+	/**
+	 * Viewer transform (row-packed) of {@link #lastPresentedScreenImage}.
+	 */
+	protected double[] lastPresentedViewerTransform;
+
+	/**
+	 * {@link SourceState} of {@link #lastPresentedScreenImage}.
+	 */
+	protected SourceState lastPresentedSourceState;
+
+	/**
+	 * Screen scale index of {@link #lastPresentedScreenImage}.
+	 */
+	protected int lastPresentedScreenScaleIndex;
+
+	/**
+	 * {@link #invalidateCount} when {@link #lastPresentedScreenImage} was
+	 * rendered.
+	 */
+	protected long lastPresentedInvalidateCount;
+
+	/**
+	 * Whether {@link #lastPresentedScreenImage} was completely rendered (as
+	 * opposed to a partial image with missing tiles filled in).
+	 */
+	protected boolean lastPresentedComplete;
+
+	/**
+	 * {@link InterleavedProjector#setInterleavedPass(int, boolean) Interleaved
+	 * step} of {@link #lastPresentedScreenImage}, or 0 if it is not a
+	 * (complete) interleaved pass.
+	 */
+	protected int lastPresentedInterleavedStep;
+
+	/**
+	 * Whether to render screen scales as interleaved passes into the full
+	 * resolution image.
+	 */
+	protected volatile boolean interleavedRenderingEnabled;
+
+	/**
+	 * Whether to keep the raw source values of complete full resolution images
+	 * in {@link #rawSamples}.
+	 */
+	protected volatile boolean rawSampleCacheEnabled;
+
+	/**
+	 * Raw source values of a full resolution image, or <code>null</code>.
+	 */
+	protected RawSampleBuffer rawSamples;
+
+	/**
+	 * Whether {@link #rawSamples} holds the complete image for
+	 * {@link #rawSamplesViewerTransform} and {@link #rawSamplesSamplingState}.
+	 */
+	protected boolean rawSamplesValid;
+
+	/**
+	 * Viewer transform (row-packed) of {@link #rawSamples}.
+	 */
+	protected double[] rawSamplesViewerTransform;
+
+	/**
+	 * {@link #getSamplingState() Sampling state} of {@link #rawSamples}.
+	 */
+	protected SourceState rawSamplesSamplingState;
+
+	/**
+	 * {@link #invalidateCount} when {@link #rawSamples} were rendered.
+	 */
+	protected long rawSamplesInvalidateCount;
+
+	/**
+	 * The projector that is filling {@link #rawSamples}, or <code>null</code>.
+	 */
+	protected InterruptibleProjector rawSamplesProjector;
+
+	/**
+	 * Incremented by {@link #requestRepaint(int)}.
+	 */
+	protected long repaintRequestCount;
+
+	/**
+	 * How many images have been given to the display so far.
+	 */
+	protected long numPresentedImages;
+
+	/**
+	 * Whether to display a preview warped from the last full resolution image
+	 * before rendering the coarsest screen scale.
+	 */
+	protected volatile boolean previewEnabled;
+
+	/**
+	 * Copy of the last complete full resolution image, for warping previews.
+	 * <code>null</code> if there is none.
+	 */
+	protected ARGBScreenImage previewSourceImage;
+
+	/**
+	 * Viewer transform (row-packed) of {@link #previewSourceImage}.
+	 */
+	protected double[] previewSourceTransform;
+
+	/**
+	 * {@link SourceState} of {@link #previewSourceImage}.
+	 */
+	protected SourceState previewSourceState;
+
+	/**
+	 * {@link #invalidateCount} when {@link #previewSourceImage} was rendered.
+	 */
+	protected long previewSourceInvalidateCount;
+
+	/**
+	 * Cache of complete full resolution frames, or <code>null</code>.
+	 */
+	protected FrameCache frameCache;
+
+	/**
+	 * How many slices to render speculatively in the direction of Z browsing.
+	 * 0 disables speculative rendering.
+	 */
+	protected int numSpeculativeSlices;
+
+	/**
+	 * Viewer transform (row-packed) of the last complete full resolution
+	 * frame, used to detect Z browsing.
+	 */
+	protected double[] previousFullResolutionTransform;
+
+	/**
+	 * Runs speculative rendering jobs (one at a time). The actual rendering is
+	 * done on the {@link #renderingExecutorService}.
+	 */
+	final private ExecutorService speculationExecutorService;
+
+	/**
+	 * Incremented to cancel the current speculative rendering job.
+	 */
+	private long speculationGeneration;
+
+	/**
+	 * Projector of the current speculative rendering job, or
+	 * <code>null</code>.
+	 */
+	private InterruptibleProjector speculativeProjector;
+
+	/**
+	 * Create a renderer with its own {@link ExecutorService} with
+	 * <code>numRenderingThreads</code> threads.
+	 *
 	 * @param transformType
 	 * @param display
 	 *            The canvas that will display the images we render.
@@ -223,19 +539,84 @@ abstract public class AbstractMultiResolutionRenderer< A extends AffineSet & Aff
 			final long targetRenderNanos,
 			final boolean doubleBuffered,
 			final int numRenderingThreads )
+	{
+		this( transformType, display, painterThread, screenScales, targetRenderNanos, doubleBuffered, numRenderingThreads, null );
+	}
+
+	/**
+	 * @param transformType
+	 * @param display
+	 *            The canvas that will display the images we render.
+	 * @param painterThread
+	 *            Thread that triggers repainting of the display. Requests for
+	 *            repainting are send there.
+	 * @param screenScales
+	 *            Scale factors from the viewer canvas to screen images of
+	 *            different resolutions. A scale factor of 1 means 1 pixel in
+	 *            the screen image is displayed as 1 pixel on the canvas, a
+	 *            scale factor of 0.5 means 1 pixel in the screen image is
+	 *            displayed as 2 pixel on the canvas, etc. The screen scales are
+	 *            assumed to be ordered finer-to-coarse, with index 0
+	 *            corresponding to the full resolution usually.
+	 * @param targetRenderNanos
+	 *            Target rendering time in nanoseconds. The rendering time for
+	 *            the coarsest rendered scale should be below this threshold.
+	 * @param doubleBuffered
+	 *            Whether to use double buffered rendering.
+	 * @param numRenderingThreads
+	 *            How many threads to use for rendering.
+	 * @param renderingExecutorService
+	 *            {@link ExecutorService} to use for rendering. If
+	 *            <code>null</code>, a new one with
+	 *            <code>numRenderingThreads</code> threads is created, which is
+	 *            shut down by {@link #kill()}.
+	 */
+	public AbstractMultiResolutionRenderer(
+			final AffineTransformType< A > transformType,
+			final RenderTarget display,
+			final PainterThread painterThread,
+			final double[] screenScales,
+			final long targetRenderNanos,
+			final boolean doubleBuffered,
+			final int numRenderingThreads,
+			final ExecutorService renderingExecutorService )
 	{
 		super( transformType, display, painterThread );
 		this.screenScales = screenScales.clone();
 		this.doubleBuffered = doubleBuffered;
 		this.numRenderingThreads = numRenderingThreads;
+		ownsRenderingExecutorService = ( renderingExecutorService == null );
+		this.renderingExecutorService = ownsRenderingExecutorService ?
+				RenderingThreads.newFixedThreadPool( numRenderingThreads ) :
+				renderingExecutorService;
 		renderIdQueue = new ArrayDeque< >();
 		bufferedImageToRenderId = new HashMap< >();
-		screenImages = new ARGBScreenImage[ screenScales.length ][ 3 ];
-		bufferedImages = new BufferedImage[ screenScales.length ][ 3 ];
+		screenImages = new ARGBScreenImage[ screenScales.length + 1 ][ 3 ];
+		bufferedImages = new BufferedImage[ screenScales.length + 1 ][ 3 ];
 		screenScaleTransforms = new ArrayList< >();
-		for ( int i = 0; i < screenScales.length; ++i )
+		for ( int i = 0; i <= screenScales.length; ++i )
 			screenScaleTransforms.add( transformType.createTransform() );
+		adaptiveScreenScale = 0;
+		retiredBufferedImages = new ArrayList< >();
+		renderCostModel = new RenderCostModel();
 		projector = null;
+		resumeState = null;
+		lastPresentedScreenImage = null;
+		invalidateCount = 0;
+		previewEnabled = false;
+		previewSourceImage = null;
+		deadlineRenderingEnabled = false;
+		intermediatePresentationNanos = targetRenderNanos;
+		tileOrder = TileOrder.DISTANCE_FROM_FOCUS;
+		focusPoint = null;
+		interleavedRenderingEnabled = false;
+		rawSampleCacheEnabled = false;
+		rawSamples = null;
+		rawSamplesValid = false;
+		frameCache = null;
+		numSpeculativeSlices = 0;
+		speculationExecutorService = Executors.newSingleThreadExecutor( RenderingThreads.threadFactory( "speculative-rendering-" ) );
+		speculationGeneration = 0;
 
 		this.targetRenderNanos = targetRenderNanos;
 		maxScreenScaleIndex = screenScales.length - 1;
@@ -262,128 +643,744 @@ abstract public class AbstractMultiResolutionRenderer< A extends AffineSet & Aff
 		if ( renderingMayBeCancelled && projector != null )
 			projector.cancel();
 		requestedScreenScaleIndex = screenScaleIndex;
+		++repaintRequestCount;
 		painterThread.requestRepaint();
 	}
 
 	/**
-	 * Check whether the size of the display component was changed and recreate
-	 * {@link #screenImages} and {@link #screenScaleTransforms} accordingly.
-	 * 
-	 * @return whether the size was changed.
+	 * Set whether to display a preview, warped from the last full resolution
+	 * image, before rendering the coarsest screen scale of a new view. This
+	 * only has an effect if double buffering is used.
 	 */
-	protected synchronized boolean checkResize()
+	public synchronized void setPreviewEnabled( final boolean enabled )
 	{
-		final int componentW = display.getWidth();
-		final int componentH = display.getHeight();
-		if ( screenImages[ 0 ][ 0 ] == null || screenImages[ 0 ][ 0 ].dimension( 0 ) * screenScales[ 0 ] != componentW || screenImages[ 0 ][ 0 ].dimension( 1 ) * screenScales[ 0 ] != componentH )
-		{
-			renderIdQueue.clear();
-			renderIdQueue.addAll( Arrays.asList( 0, 1, 2 ) );
-			bufferedImageToRenderId.clear();
-			for ( int i = 0; i < screenScales.length; ++i )
-			{
-				final double screenToViewerScale = screenScales[ i ];
-				final int w = ( int ) ( screenToViewerScale * componentW );
-				final int h = ( int ) ( screenToViewerScale * componentH );
-				if ( doubleBuffered )
-				{
-					for ( int b = 0; b < ( doubleBuffered ? 3 : 1 ); ++b )
-					{
-						// reuse storage arrays of level 0 (highest resolution)
-						screenImages[ i ][ b ] = ( i == 0 ) ?
-								new ARGBScreenImage( w, h ) :
-								new ARGBScreenImage( w, h, screenImages[ 0 ][ b ].getData() );
-						final BufferedImage bi = GuiUtil.getBufferedImage( screenImages[ i ][ b ] );
-						bufferedImages[ i ][ b ] = bi;
-						bufferedImageToRenderId.put( bi, b );
-					}
-				}
-				else
-				{
-					screenImages[ i ][ 0 ] = new ARGBScreenImage( w, h );
-					bufferedImages[ i ][ 0 ] = GuiUtil.getBufferedImage( screenImages[ i ][ 0 ] );
-				}
-				final A scale = screenScaleTransforms.get( i );
-				final double xScale = ( double ) w / componentW;
-				final double yScale = ( double ) h / componentH;
-				scale.set( xScale, 0, 0 );
-				scale.set( yScale, 1, 1 );
-				scale.set( 0.5 * xScale - 0.5, 0, scale.numDimensions() );
-				scale.set( 0.5 * yScale - 0.5, 1, scale.numDimensions() );
-			}
-			return true;
-		}
-		return false;
+		previewEnabled = enabled;
+		if ( !enabled )
+			previewSourceImage = null;
+	}
+
+	public boolean isPreviewEnabled()
+	{
+		return previewEnabled;
 	}
 
 	/**
-	 * Create a {@link InterruptibleProjector} that renders to the specified
-	 * target image, applying the specified transformations to some source (that
-	 * is specific to the derived class).
-	 * 
-	 * @param viewerTransform
-	 *            transforms global to screen coordinates
-	 * @param screenScaleTransform
-	 *            transforms screen coordinates to coordinates in specified
-	 *            target image For example, if the target image has half the
-	 *            screen resolution, then this will be a scaling by 0.5 in X, Y.
-	 * @param target
-	 *            target image
-	 * @return projector that renders to the specified target image.
+	 * Set whether rendering of finer screen scales should stop after
+	 * <code>targetRenderNanos</code>, to display the completed tiles over the
+	 * coarser image of the same view. Rendering of the remaining tiles
+	 * continues afterwards. This only has an effect if the projectors created
+	 * by the derived class are {@link ResumableProjector}s.
 	 */
-	abstract protected InterruptibleProjector createProjector( final A viewerTransform, final A screenScaleTransform, final ARGBScreenImage target );
+	public void setDeadlineRenderingEnabled( final boolean enabled )
+	{
+		deadlineRenderingEnabled = enabled;
+	}
+
+	public boolean isDeadlineRenderingEnabled()
+	{
+		return deadlineRenderingEnabled;
+	}
 
 	/**
-	 * This is called by {@link #paint(AffineSet)} to determine whether another
-	 * repaint is required after the current {@link #requestedScreenScaleIndex}
-	 * has been successfully rendered. If {@link #isComplete()} returns false,
-	 * painting proceeds with the next finer screen scale.
-	 * <p>
-	 * The default implementation checks whether the full canvas resolution has
-	 * been reached. Derived classes may override this to implement different
-	 * checks.
+	 * Set how long finer screen scales are rendered before intermediate
+	 * results are displayed, if
+	 * {@link #setDeadlineRenderingEnabled(boolean) deadline rendering} is
+	 * enabled. The default is <code>targetRenderNanos</code>.
 	 * 
-	 * @return true, if another repaint is required.
+	 * @param nanos
+	 *            interval in nanoseconds.
 	 */
-	protected boolean isComplete()
+	public void setIntermediatePresentationInterval( final long nanos )
 	{
-		return requestedScreenScaleIndex == 0;
+		intermediatePresentationNanos = nanos;
 	}
 
-	@Override
-	public boolean paint( final A viewerTransform )
+	public long getIntermediatePresentationInterval()
 	{
-		if ( display.getWidth() <= 0 || display.getHeight() <= 0 )
-			return false;
+		return intermediatePresentationNanos;
+	}
 
-		checkResize();
+	/**
+	 * Set whether screen scales are rendered as {@link InterleavedProjector
+	 * interleaved} passes into the full resolution image, such that each pass
+	 * only samples the pixels not sampled by the coarser passes. This only has
+	 * an effect if the derived class
+	 * {@link #isInterleavedRenderingSupported() supports} it, and only for
+	 * screen scales that are a power-of-two fraction (up to
+	 * 1/{@link ARGBScreenImageProjector#TILE_SIZE}) of the finest screen
+	 * scale. Adaptive screen scales are not used in this mode.
+	 */
+	public void setInterleavedRenderingEnabled( final boolean enabled )
+	{
+		interleavedRenderingEnabled = enabled;
+	}
 
-		// the screen scale at which we will be rendering
-		final int currentScreenScaleIndex;
+	public boolean isInterleavedRenderingEnabled()
+	{
+		return interleavedRenderingEnabled;
+	}
 
-		// the corresponding screen scale transform
-		final A currentScreenScaleTransform;
+	/**
+	 * Whether the projectors created by
+	 * {@link #createProjector(AffineSet, AffineSet, ARGBScreenImage)} are
+	 * {@link InterleavedProjector}s, which render full resolution target
+	 * images in interleaved passes.
+	 * <p>
+	 * The default implementation returns <code>false</code>.
+	 */
+	protected boolean isInterleavedRenderingSupported()
+	{
+		return false;
+	}
 
-		// the corresponding BufferedImage (to paint to the canvas)
-		final BufferedImage bufferedImage;
+	/**
+	 * Get the step of the {@link InterleavedProjector interleaved} pass that
+	 * corresponds to screen scale index <code>screenScaleIndex</code>.
+	 *
+	 * @return the step, or 0 if the screen scale is not a power-of-two
+	 *         fraction of the finest screen scale.
+	 */
+	protected int getInterleavedStep( final int screenScaleIndex )
+	{
+		if ( screenScaleIndex >= screenScales.length )
+			return 0;
+		final double s = screenScales[ 0 ] / screenScales[ screenScaleIndex ];
+		final int step = ( int ) Math.round( s );
+		if ( Math.abs( s - step ) > 1e-6 || step < 1 || step > ARGBScreenImageProjector.TILE_SIZE || Integer.bitCount( step ) != 1 )
+			return 0;
+		return step;
+	}
 
-		// the projector that paints to the screenImage.
-		final InterruptibleProjector p;
+	/**
+	 * Check whether the {@link #lastPresentedScreenImage} is the complete
+	 * interleaved pass with twice the given <code>step</code> of the given
+	 * viewer transform and source state, such that the pass with
+	 * <code>step</code> only needs to sample the remaining pixels.
+	 */
+	protected synchronized boolean canRefineInterleaved( final A viewerTransform, final SourceState sourceState, final int step )
+	{
+		return lastPresentedInterleavedStep == 2 * step
+				&& lastPresentedComplete
+				&& sourceState != null
+				&& hasFallback( viewerTransform, sourceState )
+				&& lastPresentedScreenImage.dimension( 0 ) == screenImages[ 0 ][ 0 ].dimension( 0 )
+				&& lastPresentedScreenImage.dimension( 1 ) == screenImages[ 0 ][ 0 ].dimension( 1 );
+	}
 
-		synchronized ( this )
+	/**
+	 * Set whether to keep the raw (pre-conversion) source values of complete
+	 * full resolution images, such that a change of only the converters can be
+	 * displayed without resampling the sources. This only has an effect if the
+	 * derived class provides a {@link #getSamplingState() sampling state} and
+	 * {@link #captureRawSamples(InterruptibleProjector, RawSampleBuffer)
+	 * supports} raw samples, and if the source pixels are
+	 * {@link net.imglib2.type.numeric.RealType RealType}s whose values are
+	 * represented exactly by a <code>float</code> (8- and 16-bit integer types
+	 * and {@link net.imglib2.type.numeric.real.FloatType FloatType}, see
+	 * {@link RawSampleBuffer#isSupported(net.imglib2.type.numeric.RealType)}).
+	 * For other types, such as 32-bit integers or <code>double</code>s,
+	 * converting the buffer would not reproduce the rendered image, and
+	 * nothing is kept. It requires a <code>float</code> buffer of the full
+	 * resolution screen size. Full
+	 * resolution images that refine an
+	 * {@link #setInterleavedRenderingEnabled(boolean) interleaved} pass do not
+	 * sample every pixel and are therefore not kept.
+	 */
+	public synchronized void setRawSampleCacheEnabled( final boolean enabled )
+	{
+		rawSampleCacheEnabled = enabled;
+		if ( !enabled )
 		{
-			renderingMayBeCancelled = ( requestedScreenScaleIndex < maxScreenScaleIndex );
-			currentScreenScaleIndex = requestedScreenScaleIndex;
-			currentScreenScaleTransform = screenScaleTransforms.get( currentScreenScaleIndex );
-
-			final int renderId = renderIdQueue.peek();
-			bufferedImage = bufferedImages[ currentScreenScaleIndex ][ renderId ];
-			final ARGBScreenImage screenImage = screenImages[ currentScreenScaleIndex ][ renderId ];
-			p = createProjector( viewerTransform, currentScreenScaleTransform, screenImage );
-			projector = p;
+			rawSamples = null;
+			rawSamplesValid = false;
+			rawSamplesProjector = null;
 		}
+	}
 
-		// try rendering
+	public boolean isRawSampleCacheEnabled()
+	{
+		return rawSampleCacheEnabled;
+	}
+
+	/**
+	 * Get a snapshot of everything that determines the raw (pre-conversion)
+	 * values of the rendered image besides the viewer transform. That is, the
+	 * {@link #getSourceState() source state} without the converters. A
+	 * {@link RawSampleBuffer} is only reused if the sampling state is
+	 * unchanged.
+	 * <p>
+	 * The default implementation returns <code>null</code>, meaning that raw
+	 * samples are never reused.
+	 *
+	 * @return current sampling state, or <code>null</code>.
+	 */
+	protected SourceState getSamplingState()
+	{
+		return null;
+	}
+
+	/**
+	 * Make the projector <code>p</code> (created by
+	 * {@link #createProjector(AffineSet, AffineSet, ARGBScreenImage)} for a
+	 * full resolution image) store the raw source values of rendered pixels
+	 * in <code>buffer</code>.
+	 * <p>
+	 * The default implementation returns <code>false</code>.
+	 *
+	 * @return whether raw values will be stored.
+	 */
+	protected boolean captureRawSamples( final InterruptibleProjector p, final RawSampleBuffer buffer )
+	{
+		return false;
+	}
+
+	/**
+	 * Convert rows <em>[minY, maxY)</em> of raw samples stored by a projector
+	 * (see {@link #captureRawSamples(InterruptibleProjector, RawSampleBuffer)})
+	 * with the current converters. This is called concurrently for disjoint
+	 * rows, without holding the renderer lock.
+	 * <p>
+	 * The default implementation returns <code>false</code>.
+	 *
+	 * @return whether the rows were converted.
+	 */
+	protected boolean convertRawSamples( final RawSampleBuffer buffer, final int[] target, final int minY, final int maxY )
+	{
+		return false;
+	}
+
+	/**
+	 * Set the order in which tiles are rendered. This only has an effect if
+	 * the projectors created by the derived class are
+	 * {@link ResumableProjector}s.
+	 */
+	public void setTileOrder( final TileOrder order )
+	{
+		tileOrder = order;
+	}
+
+	public TileOrder getTileOrder()
+	{
+		return tileOrder;
+	}
+
+	/**
+	 * Set the point around which tiles should be rendered first (if the
+	 * {@link #setTileOrder(TileOrder) tile order} uses a focus point).
+	 * 
+	 * @param point
+	 *            focus point in canvas coordinates, or <code>null</code> to
+	 *            use the center of the canvas.
+	 */
+	public void setFocusPoint( final Point point )
+	{
+		focusPoint = point == null ? null : new Point( point );
+	}
+
+	/**
+	 * Set a {@link FrameCache} for complete full resolution frames.
+	 * 
+	 * @param frameCache
+	 *            the cache to use, or <code>null</code> to disable caching.
+	 */
+	public synchronized void setFrameCache( final FrameCache frameCache )
+	{
+		this.frameCache = frameCache;
+	}
+
+	public synchronized FrameCache getFrameCache()
+	{
+		return frameCache;
+	}
+
+	/**
+	 * Set the {@link RenderCostModel} used to choose the screen scale of the
+	 * first image of a frame.
+	 * 
+	 * @param renderCostModel
+	 *            the model to use, or <code>null</code> to use only the
+	 *            predefined screen scales.
+	 */
+	public synchronized void setRenderCostModel( final RenderCostModel renderCostModel )
+	{
+		this.renderCostModel = renderCostModel;
+	}
+
+	public synchronized RenderCostModel getRenderCostModel()
+	{
+		return renderCostModel;
+	}
+
+	/**
+	 * Set how many slices to render speculatively (into the
+	 * {@link #setFrameCache(FrameCache) frame cache}) when browsing along Z.
+	 * 
+	 * @param numSlices
+	 *            number of slices to render ahead. 0 disables speculative
+	 *            rendering.
+	 */
+	public synchronized void setNumSpeculativeSlices( final int numSlices )
+	{
+		numSpeculativeSlices = numSlices;
+		if ( numSlices <= 0 )
+			cancelSpeculation();
+	}
+
+	public synchronized int getNumSpeculativeSlices()
+	{
+		return numSpeculativeSlices;
+	}
+
+	/**
+	 * Discard partially rendered work, such that the next repaint renders
+	 * everything from scratch. This must be called if source data was modified
+	 * in a way that is not reflected in the {@link #getSourceState() source
+	 * state}.
+	 */
+	public synchronized void invalidate()
+	{
+		++invalidateCount;
+		resumeState = null;
+		rawSamplesValid = false;
+		rawSamplesProjector = null;
+		cancelSpeculation();
+		if ( frameCache != null )
+			frameCache.clear();
+	}
+
+	/**
+	 * Cancel the current rendering operation and shut down the rendering
+	 * {@link ExecutorService} (if it was created by this renderer).
+	 */
+	@Override
+	public synchronized void kill()
+	{
+		if ( projector != null )
+			projector.cancel();
+		cancelSpeculation();
+		speculationExecutorService.shutdown();
+		if ( ownsRenderingExecutorService )
+			renderingExecutorService.shutdown();
+	}
+
+	/**
+	 * Check whether the size of the display component was changed and recreate
+	 * {@link #screenImages} and {@link #screenScaleTransforms} accordingly.
+	 * 
+	 * @return whether the size was changed.
+	 */
+	protected synchronized boolean checkResize()
+	{
+		final int componentW = display.getWidth();
+		final int componentH = display.getHeight();
+		if ( screenImages[ 0 ][ 0 ] == null || screenImages[ 0 ][ 0 ].dimension( 0 ) * screenScales[ 0 ] != componentW || screenImages[ 0 ][ 0 ].dimension( 1 ) * screenScales[ 0 ] != componentH )
+		{
+			renderIdQueue.clear();
+			renderIdQueue.addAll( Arrays.asList( 0, 1, 2 ) );
+			bufferedImageToRenderId.clear();
+			retiredBufferedImages.clear();
+			for ( int i = 0; i < screenScales.length; ++i )
+				createScreenImages( i, screenScales[ i ], componentW, componentH );
+			adaptiveScreenScale = 0;
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Create the {@link #screenImages} and {@link #bufferedImages} at screen
+	 * scale index <code>i</code>, and set the corresponding
+	 * {@link #screenScaleTransforms screen scale transform}. If double
+	 * buffering is used, images at index <code>i &gt; 0</code> reuse the
+	 * storage of index 0, which must therefore exist already.
+	 */
+	protected void createScreenImages( final int i, final double screenToViewerScale, final int componentW, final int componentH )
+	{
+		final int w = Math.max( 1, ( int ) ( screenToViewerScale * componentW ) );
+		final int h = Math.max( 1, ( int ) ( screenToViewerScale * componentH ) );
+		if ( doubleBuffered )
+		{
+			for ( int b = 0; b < ( doubleBuffered ? 3 : 1 ); ++b )
+			{
+				// reuse storage arrays of level 0 (highest resolution)
+				screenImages[ i ][ b ] = ( i == 0 ) ?
+						new ARGBScreenImage( w, h ) :
+						new ARGBScreenImage( w, h, screenImages[ 0 ][ b ].getData() );
+				final BufferedImage bi = GuiUtil.getBufferedImage( screenImages[ i ][ b ] );
+				bufferedImages[ i ][ b ] = bi;
+				bufferedImageToRenderId.put( bi, b );
+			}
+		}
+		else
+		{
+			screenImages[ i ][ 0 ] = new ARGBScreenImage( w, h );
+			bufferedImages[ i ][ 0 ] = GuiUtil.getBufferedImage( screenImages[ i ][ 0 ] );
+		}
+		final A scale = screenScaleTransforms.get( i );
+		final double xScale = ( double ) w / componentW;
+		final double yScale = ( double ) h / componentH;
+		scale.set( xScale, 0, 0 );
+		scale.set( yScale, 1, 1 );
+		scale.set( 0.5 * xScale - 0.5, 0, scale.numDimensions() );
+		scale.set( 0.5 * yScale - 0.5, 1, scale.numDimensions() );
+	}
+
+	/**
+	 * Make sure that the images of the adaptive screen scale (at index
+	 * {@link #screenScales}<code>.length</code>) have approximately the
+	 * specified screen scale. They are only recreated if the scale differs by
+	 * more than 10%.
+	 * 
+	 * @return the screen scale index of the adaptive images.
+	 */
+	protected int setAdaptiveScreenScale( final double screenToViewerScale )
+	{
+		final int i = screenScales.length;
+		if ( Math.abs( screenToViewerScale - adaptiveScreenScale ) > 0.1 * screenToViewerScale )
+		{
+			if ( doubleBuffered && adaptiveScreenScale > 0 )
+			{
+				for ( int b = 0; b < 3; ++b )
+				{
+					if ( renderIdQueue.contains( b ) )
+						bufferedImageToRenderId.remove( bufferedImages[ i ][ b ] );
+					else
+						// possibly held by the display
+						retiredBufferedImages.add( bufferedImages[ i ][ b ] );
+				}
+			}
+			createScreenImages( i, screenToViewerScale, display.getWidth(), display.getHeight() );
+			adaptiveScreenScale = screenToViewerScale;
+		}
+		return i;
+	}
+
+	/**
+	 * Get the key under which rendering costs are recorded in the
+	 * {@link RenderCostModel}. Rendering costs should be similar for equal
+	 * keys, e.g., use the (interpolated) sources that are rendered.
+	 * <p>
+	 * The default implementation returns <code>null</code>, which disables
+	 * adaptive screen scales.
+	 * 
+	 * @return key for the current sources, or <code>null</code>.
+	 */
+	protected Object getRenderCostKey()
+	{
+		return null;
+	}
+
+	/**
+	 * Choose the screen scale index with which to start rendering a new frame,
+	 * using the {@link #renderCostModel}.
+	 * 
+	 * @return screen scale index, or -1 if there is no estimate for the
+	 *         rendering cost.
+	 */
+	protected int chooseScreenScaleIndex( final Object costKey )
+	{
+		if ( renderCostModel == null || costKey == null )
+			return -1;
+		final long numPixels = ( long ) display.getWidth() * display.getHeight();
+		final double s = renderCostModel.getScreenScale( costKey, targetRenderNanos, numPixels );
+		if ( Double.isNaN( s ) )
+			return -1;
+		final double coarsest = screenScales[ screenScales.length - 1 ];
+		final double scale = Math.max( coarsest, Math.min( screenScales[ 0 ], s ) );
+		for ( int i = 0; i < screenScales.length; ++i )
+			if ( Math.abs( screenScales[ i ] - scale ) <= 0.1 * scale )
+				return i;
+		return setAdaptiveScreenScale( scale );
+	}
+
+	/**
+	 * Get the index of the coarsest of the predefined {@link #screenScales}
+	 * that is finer than the screen scale at index
+	 * <code>screenScaleIndex</code>.
+	 */
+	protected int getNextFinerScreenScaleIndex( final int screenScaleIndex )
+	{
+		if ( screenScaleIndex < screenScales.length )
+			return screenScaleIndex > 0 ? screenScaleIndex - 1 : 0;
+		for ( int i = screenScales.length - 1; i > 0; --i )
+			if ( screenScales[ i ] > adaptiveScreenScale )
+				return i;
+		return 0;
+	}
+
+	/**
+	 * Create a {@link InterruptibleProjector} that renders to the specified
+	 * target image, applying the specified transformations to some source (that
+	 * is specific to the derived class).
+	 * 
+	 * @param viewerTransform
+	 *            transforms global to screen coordinates
+	 * @param screenScaleTransform
+	 *            transforms screen coordinates to coordinates in specified
+	 *            target image For example, if the target image has half the
+	 *            screen resolution, then this will be a scaling by 0.5 in X, Y.
+	 * @param target
+	 *            target image
+	 * @return projector that renders to the specified target image.
+	 */
+	abstract protected InterruptibleProjector createProjector( final A viewerTransform, final A screenScaleTransform, final ARGBScreenImage target );
+
+	/**
+	 * Get a snapshot of the sources, converters, etc. that determine the
+	 * rendered image (besides the viewer transform). Partially rendered images
+	 * are only reused if the {@link SourceState} is unchanged.
+	 * <p>
+	 * The default implementation returns <code>null</code>, meaning that the
+	 * state is unknown and partially rendered images are never reused.
+	 * 
+	 * @return current source state, or <code>null</code>.
+	 */
+	protected SourceState getSourceState()
+	{
+		return null;
+	}
+
+	/**
+	 * Give <code>bufferedImage</code> to the {@link #display} and update the
+	 * double-buffer queue.
+	 * 
+	 * @param bufferedImage
+	 *            image to display.
+	 * @param screenImage
+	 *            the {@link ARGBScreenImage} wrapped by
+	 *            <code>bufferedImage</code>.
+	 * @param alreadyPresented
+	 *            whether <code>bufferedImage</code> has already been given to
+	 *            the display (and removed from the queue) before.
+	 */
+	protected synchronized void present( final BufferedImage bufferedImage, final ARGBScreenImage screenImage, final boolean alreadyPresented )
+	{
+		final BufferedImage bi = display.setBufferedImage( bufferedImage );
+		if ( doubleBuffered )
+		{
+			final Integer renderId = bufferedImageToRenderId.get( bufferedImage );
+			if ( !alreadyPresented )
+				renderIdQueue.pop();
+			final Integer id = bufferedImageToRenderId.get( bi );
+			if ( id != null && !( alreadyPresented && id.equals( renderId ) ) )
+				renderIdQueue.add( id );
+			if ( id != null && !retiredBufferedImages.isEmpty() )
+			{
+				// retired images with the same id are no longer held by the display
+				for ( final Iterator< BufferedImage > it = retiredBufferedImages.iterator(); it.hasNext(); )
+				{
+					final BufferedImage retired = it.next();
+					if ( retired != bufferedImage && id.equals( bufferedImageToRenderId.get( retired ) ) )
+					{
+						bufferedImageToRenderId.remove( retired );
+						it.remove();
+					}
+				}
+			}
+		}
+		lastPresentedScreenImage = screenImage;
+		++numPresentedImages;
+	}
+
+	/**
+	 * Get how many images (of any screen scale, including partially rendered
+	 * ones) have been given to the display so far, e.g., to measure the
+	 * achieved frame rate.
+	 */
+	public synchronized long getNumPresentedImages()
+	{
+		return numPresentedImages;
+	}
+
+	/**
+	 * This is called by {@link #paint(AffineSet)} to determine whether another
+	 * repaint is required after the current {@link #requestedScreenScaleIndex}
+	 * has been successfully rendered. If {@link #isComplete()} returns false,
+	 * painting proceeds with the next finer screen scale.
+	 * <p>
+	 * The default implementation checks whether the full canvas resolution has
+	 * been reached. Derived classes may override this to implement different
+	 * checks.
+	 * 
+	 * @return true, if another repaint is required.
+	 */
+	protected boolean isComplete()
+	{
+		return requestedScreenScaleIndex == 0;
+	}
+
+	@Override
+	public boolean paint( final A viewerTransform )
+	{
+		if ( display.getWidth() <= 0 || display.getHeight() <= 0 )
+			return false;
+
+		final boolean resized = checkResize();
+
+		// stop speculative rendering before taking the source state, which may determine what projectors render (e.g., a time point)
+		synchronized ( this )
+		{
+			cancelSpeculation();
+		}
+		final SourceState sourceState = getSourceState();
+
+		// the screen scale at which we will be rendering
+		final int currentScreenScaleIndex;
+
+		// the corresponding BufferedImage (to paint to the canvas)
+		final BufferedImage bufferedImage;
+
+		// the ARGBScreenImage wrapped by bufferedImage
+		final ARGBScreenImage screenImage;
+
+		// the projector that paints to the screenImage.
+		final InterruptibleProjector p;
+
+		// whether bufferedImage has already been given to the display
+		boolean presented = false;
+
+		// invalidateCount when rendering started
+		final long currentInvalidateCount;
+
+		// key for recording the rendering cost, or null if not rendered from scratch
+		Object costKey = null;
+
+		// whether this is the first image of a new frame
+		boolean startOfFrame = false;
+
+		// coarser image of the same view, to fill in tiles that are not completed by the deadline
+		ARGBScreenImage fallbackImage = null;
+
+		// step of the interleaved pass, or 0 if not rendering an interleaved pass
+		int interleavedStep = 0;
+
+		// whether the interleaved pass skips the samples of the previous pass (which is already in the screenImage)
+		boolean interleavedRefine = false;
+
+		// state for resuming p in a later paint, or null if p is not resumable
+		ResumeState resume = null;
+
+		// preview or converted raw samples, computed outside the lock such that repaint requests are not blocked meanwhile
+		PendingImage pending = null;
+
+		synchronized ( this )
+		{
+			if ( !resized && requestedScreenScaleIndex == maxScreenScaleIndex && presentCachedFrame( viewerTransform, sourceState ) )
+				return true;
+
+			if ( !resized && requestedScreenScaleIndex == maxScreenScaleIndex )
+				pending = prepareConvertedRawSamples( viewerTransform, sourceState );
+
+			if ( pending == null && !resized && previewEnabled && requestedScreenScaleIndex == maxScreenScaleIndex && requestedScreenScaleIndex > 0
+					&& !canResume( viewerTransform, sourceState )
+					&& getIntegerScreenShift( viewerTransform, sourceState ) == null )
+				pending = preparePreview( viewerTransform, sourceState );
+		}
+
+		if ( pending != null && computePendingImage( pending ) && presentPendingImage( pending ) && pending.complete )
+			return true;
+
+		synchronized ( this )
+		{
+			if ( !resized && canResume( viewerTransform, sourceState ) )
+			{
+				resume = resumeState;
+				currentScreenScaleIndex = resume.screenScaleIndex;
+				requestedScreenScaleIndex = currentScreenScaleIndex;
+				bufferedImage = resume.bufferedImage;
+				screenImage = resume.screenImage;
+				p = resume.projector;
+				presented = resume.presented;
+				interleavedStep = resume.interleavedStep;
+				interleavedRefine = resume.interleavedRefine;
+				if ( !presented && lastPresentedScreenImage != null && lastPresentedScreenImage != screenImage
+						&& Arrays.equals( lastPresentedViewerTransform, resume.viewerTransform ) )
+				{
+					// show completed tiles over the last displayed image (a refining interleaved pass already contains the previous pass)
+					if ( !interleavedRefine )
+						resume.projector.fillMissingTiles( lastPresentedScreenImage );
+					present( bufferedImage, screenImage, false );
+					setLastPresented( resume.viewerTransform, sourceState, currentScreenScaleIndex, invalidateCount, false );
+					presented = true;
+				}
+			}
+			else
+			{
+				final int[] shift = resized ? null : getIntegerScreenShift( viewerTransform, sourceState );
+				final int renderId = renderIdQueue.peek();
+				final InterruptibleProjector shiftProjector = shift == null ? null : createProjector( viewerTransform, screenScaleTransforms.get( 0 ), screenImages[ 0 ][ renderId ] );
+				if ( shiftProjector instanceof ResumableProjector )
+				{
+					// pan: copy the last image and render only the newly exposed pixels, at full resolution
+					currentScreenScaleIndex = 0;
+					requestedScreenScaleIndex = 0;
+					bufferedImage = bufferedImages[ 0 ][ renderId ];
+					screenImage = screenImages[ 0 ][ renderId ];
+					p = shiftProjector;
+					( ( ResumableProjector ) p ).setValidInterval( copyShifted( lastPresentedScreenImage, screenImage, shift[ 0 ], shift[ 1 ] ) );
+				}
+				else
+				{
+					final boolean interleaved = interleavedRenderingEnabled && isInterleavedRenderingSupported();
+					// rendering costs of interleaved passes are not proportional to the image size
+					costKey = interleaved ? null : getRenderCostKey();
+					startOfFrame = requestedScreenScaleIndex == maxScreenScaleIndex;
+					if ( startOfFrame && !resized )
+					{
+						final int i = chooseScreenScaleIndex( costKey );
+						if ( i >= 0 )
+							requestedScreenScaleIndex = i;
+					}
+					currentScreenScaleIndex = requestedScreenScaleIndex;
+					interleavedStep = interleaved ? getInterleavedStep( currentScreenScaleIndex ) : 0;
+					if ( interleavedStep > 0 )
+					{
+						// interleaved pass: render into the full resolution image, starting from the previous pass if possible
+						bufferedImage = bufferedImages[ 0 ][ renderId ];
+						screenImage = screenImages[ 0 ][ renderId ];
+						p = createProjector( viewerTransform, screenScaleTransforms.get( 0 ), screenImage );
+						interleavedRefine = canRefineInterleaved( viewerTransform, sourceState, interleavedStep );
+						if ( interleavedRefine && lastPresentedScreenImage.getData() != screenImage.getData() )
+							System.arraycopy( lastPresentedScreenImage.getData(), 0, screenImage.getData(), 0, ( int ) ( screenImage.dimension( 0 ) * screenImage.dimension( 1 ) ) );
+						( ( InterleavedProjector ) p ).setInterleavedPass( interleavedStep, interleavedRefine );
+					}
+					else
+					{
+						final A currentScreenScaleTransform = screenScaleTransforms.get( currentScreenScaleIndex );
+						bufferedImage = bufferedImages[ currentScreenScaleIndex ][ renderId ];
+						screenImage = screenImages[ currentScreenScaleIndex ][ renderId ];
+						p = createProjector( viewerTransform, currentScreenScaleTransform, screenImage );
+					}
+					if ( currentScreenScaleIndex == 0 && !interleavedRefine && rawSampleCacheEnabled )
+						startRawSampleCapture( p, screenImage );
+				}
+			}
+			if ( p instanceof ResumableProjector )
+			{
+				final ResumableProjector rp = ( ResumableProjector ) p;
+				if ( resume == null )
+					resume = new ResumeState( rp, viewerTransform.getRowPackedCopy(), sourceState, currentScreenScaleIndex, screenImage, bufferedImage, invalidateCount, interleavedStep, interleavedRefine );
+				final A scale = screenScaleTransforms.get( currentScreenScaleIndex );
+				final int n = scale.numDimensions();
+				final Point focus = focusPoint;
+				final double fx = focus == null ? 0.5 * display.getWidth() : focus.x;
+				final double fy = focus == null ? 0.5 * display.getHeight() : focus.y;
+				rp.setTileOrder( tileOrder, scale.get( 0, 0 ) * fx + scale.get( 0, n ), scale.get( 1, 1 ) * fy + scale.get( 1, n ) );
+				if ( deadlineRenderingEnabled && !startOfFrame && hasFallback( viewerTransform, sourceState ) )
+				{
+					fallbackImage = lastPresentedScreenImage;
+					rp.setDeadline( System.nanoTime() + intermediatePresentationNanos );
+				}
+				else
+					rp.clearDeadline();
+			}
+			renderingMayBeCancelled = !startOfFrame && ( currentScreenScaleIndex < maxScreenScaleIndex );
+			resumeState = null;
+			currentInvalidateCount = invalidateCount;
+			projector = p;
+		}
+
+		// try rendering
 		final boolean success = p.map();
 
 		synchronized ( this )
@@ -391,17 +1388,31 @@ abstract public class AbstractMultiResolutionRenderer< A extends AffineSet & Aff
 			// if rendering was not cancelled...
 			if ( success )
 			{
-				final BufferedImage bi = display.setBufferedImage( bufferedImage );
-				if ( doubleBuffered )
+				// whether no placeholders were rendered
+				final boolean complete = isComplete( p );
+				present( bufferedImage, screenImage, presented );
+				setLastPresented( viewerTransform.getRowPackedCopy(), sourceState, currentScreenScaleIndex, currentInvalidateCount, complete );
+				lastPresentedInterleavedStep = interleavedStep;
+				if ( previewEnabled && doubleBuffered && currentScreenScaleIndex == 0 && complete )
+					setPreviewSource( screenImage, lastPresentedViewerTransform, sourceState, currentInvalidateCount );
+				if ( p == rawSamplesProjector && complete )
+					finishRawSampleCapture( lastPresentedViewerTransform, currentInvalidateCount );
+				// the source may have been modified (e.g., another time point selected) while rendering
+				if ( frameCache != null && sourceState != null && currentScreenScaleIndex == 0 && complete && currentInvalidateCount == invalidateCount && sourceState.equals( getSourceState() ) )
 				{
-					renderIdQueue.pop();
-					final Integer id = bufferedImageToRenderId.get( bi );
-					if ( id != null )
-						renderIdQueue.add( id );
+					frameCache.put( lastPresentedViewerTransform, sourceState, ( int ) screenImage.dimension( 0 ), ( int ) screenImage.dimension( 1 ), screenImage.getData() );
+					speculate( lastPresentedViewerTransform, sourceState );
 				}
 
 				final long rendertime = p.getLastFrameRenderNanoTime();
-				if ( currentScreenScaleIndex == maxScreenScaleIndex )
+				if ( costKey != null && renderCostModel != null )
+					renderCostModel.update( costKey, rendertime, screenImage.dimension( 0 ) * screenImage.dimension( 1 ) );
+				if ( currentScreenScaleIndex >= screenScales.length )
+				{
+					// adaptive screen scale: keep the ladder in sync for when there is no estimate
+					maxScreenScaleIndex = Math.min( getNextFinerScreenScaleIndex( currentScreenScaleIndex ) + 1, screenScales.length - 1 );
+				}
+				else if ( currentScreenScaleIndex == maxScreenScaleIndex )
 				{
 					if ( rendertime > targetRenderNanos && maxScreenScaleIndex < screenScales.length - 1 )
 						maxScreenScaleIndex++;
@@ -416,10 +1427,723 @@ abstract public class AbstractMultiResolutionRenderer< A extends AffineSet & Aff
 //				System.out.println( "maxScreenScaleIndex = " + maxScreenScaleIndex + "  (" + screenImages[ maxScreenScaleIndex ][ 0 ].dimension( 0 ) + " x " + screenImages[ maxScreenScaleIndex ][ 0 ].dimension( 1 ) + ")" );
 
 				if ( !isComplete() )
-					requestRepaint( currentScreenScaleIndex > 0 ? currentScreenScaleIndex - 1 : 0 );
+					requestRepaint( getNextFinerScreenScaleIndex( currentScreenScaleIndex ) );
+
+				// remember image with placeholders, to render these tiles again on a later repaint request (e.g., when data arrived)
+				if ( !complete && resume != null && sourceState != null && currentInvalidateCount == invalidateCount )
+					remember( resume, true, false, true );
+			}
+			else if ( fallbackImage != null && ( ( ResumableProjector ) p ).isDeadlineReached() && currentInvalidateCount == invalidateCount )
+			{
+				// deadline reached: show completed tiles over the coarser image, and continue with the remaining tiles
+				if ( !interleavedRefine )
+					resume.projector.fillMissingTiles( fallbackImage );
+				present( bufferedImage, screenImage, presented );
+				setLastPresented( viewerTransform.getRowPackedCopy(), sourceState, currentScreenScaleIndex, currentInvalidateCount, false );
+				remember( resume, true, true, false );
+				requestRepaint( currentScreenScaleIndex );
+			}
+			else if ( resume != null && sourceState != null && currentInvalidateCount == invalidateCount && resume.projector.getNumTilesDone() > 0 )
+			{
+				// remember partially rendered image for resuming
+				remember( resume, presented, false, false );
 			}
 		}
 
 		return success;
 	}
+
+	/**
+	 * Remember <code>resume</code> to continue its projector in a later
+	 * {@link #paint(AffineSet)}.
+	 * 
+	 * @param presented
+	 *            whether the image was already given to the {@link #display}.
+	 * @param byDeadline
+	 *            whether the projector stopped because its deadline was
+	 *            reached.
+	 * @param byPlaceholders
+	 *            whether the projector completed, but rendered some tiles
+	 *            with {@link Placeholders placeholders}.
+	 */
+	private void remember( final ResumeState resume, final boolean presented, final boolean byDeadline, final boolean byPlaceholders )
+	{
+		resume.presented = presented;
+		resume.byDeadline = byDeadline;
+		resume.byPlaceholders = byPlaceholders;
+		resume.repaintRequestCount = repaintRequestCount;
+		resumeState = resume;
+	}
+
+	private void setLastPresented( final double[] viewerTransform, final SourceState sourceState, final int screenScaleIndex, final long invalidateCount, final boolean complete )
+	{
+		lastPresentedViewerTransform = viewerTransform;
+		lastPresentedSourceState = sourceState;
+		lastPresentedScreenScaleIndex = screenScaleIndex;
+		lastPresentedInvalidateCount = invalidateCount;
+		lastPresentedComplete = complete;
+		lastPresentedInterleavedStep = 0;
+	}
+
+	/**
+	 * If the full resolution frame for <code>viewerTransform</code> and
+	 * <code>sourceState</code> is in the {@link #frameCache}, copy it to the
+	 * next full resolution screen image and display it.
+	 * 
+	 * @return whether a cached frame was displayed.
+	 */
+	protected synchronized boolean presentCachedFrame( final A viewerTransform, final SourceState sourceState )
+	{
+		if ( frameCache == null || sourceState == null )
+			return false;
+
+		final int renderId = renderIdQueue.peek();
+		final ARGBScreenImage screenImage = screenImages[ 0 ][ renderId ];
+		final int w = ( int ) screenImage.dimension( 0 );
+		final int h = ( int ) screenImage.dimension( 1 );
+		final double[] transform = viewerTransform.getRowPackedCopy();
+		final int[] data = frameCache.get( transform, sourceState, w, h );
+		if ( data == null )
+			return false;
+
+		System.arraycopy( data, 0, screenImage.getData(), 0, w * h );
+		resumeState = null;
+		requestedScreenScaleIndex = 0;
+		present( bufferedImages[ 0 ][ renderId ], screenImage, false );
+		setLastPresented( transform, sourceState, 0, invalidateCount, true );
+		if ( previewEnabled && doubleBuffered )
+			setPreviewSource( screenImage, transform, sourceState, invalidateCount );
+		speculate( transform, sourceState );
+		return true;
+	}
+
+	/**
+	 * Make <code>p</code>, which renders the full resolution
+	 * <code>screenImage</code> from scratch, store raw samples in
+	 * {@link #rawSamples}.
+	 */
+	private void startRawSampleCapture( final InterruptibleProjector p, final ARGBScreenImage screenImage )
+	{
+		final int w = ( int ) screenImage.dimension( 0 );
+		final int h = ( int ) screenImage.dimension( 1 );
+		if ( rawSamples == null || rawSamples.getWidth() != w || rawSamples.getHeight() != h )
+			rawSamples = new RawSampleBuffer( w, h );
+		else
+			rawSamples.reset();
+		rawSamplesValid = false;
+		rawSamplesSamplingState = getSamplingState();
+		rawSamplesProjector = rawSamplesSamplingState != null && captureRawSamples( p, rawSamples ) ? p : null;
+	}
+
+	/**
+	 * Called when the {@link #rawSamplesProjector} completed its image.
+	 * {@link #rawSamples} become valid if the sampling state did not change
+	 * while rendering.
+	 */
+	private void finishRawSampleCapture( final double[] viewerTransform, final long currentInvalidateCount )
+	{
+		rawSamplesProjector = null;
+		rawSamplesValid = currentInvalidateCount == invalidateCount
+				&& rawSamples.getType() != null
+				&& rawSamplesSamplingState.equals( getSamplingState() );
+		rawSamplesViewerTransform = viewerTransform;
+		rawSamplesInvalidateCount = currentInvalidateCount;
+	}
+
+	/**
+	 * If {@link #rawSamples} were rendered for <code>viewerTransform</code>
+	 * and the current {@link #getSamplingState() sampling state}, prepare
+	 * converting them to the next full resolution screen image with the
+	 * current converters. Rows are distributed over the
+	 * {@link #renderingExecutorService}.
+	 * 
+	 * @return the complete image to compute and display, or
+	 *         <code>null</code>.
+	 */
+	private synchronized PendingImage prepareConvertedRawSamples( final A viewerTransform, final SourceState sourceState )
+	{
+		if ( !rawSampleCacheEnabled || !rawSamplesValid || rawSamplesInvalidateCount != invalidateCount )
+			return null;
+
+		final int renderId = renderIdQueue.peek();
+		final ARGBScreenImage screenImage = screenImages[ 0 ][ renderId ];
+		final int w = ( int ) screenImage.dimension( 0 );
+		final int h = ( int ) screenImage.dimension( 1 );
+		final double[] transform = viewerTransform.getRowPackedCopy();
+		if ( rawSamples.getWidth() != w
+				|| rawSamples.getHeight() != h
+				|| !Arrays.equals( transform, rawSamplesViewerTransform )
+				|| !rawSamplesSamplingState.equals( getSamplingState() ) )
+			return null;
+
+		// rawSamples are only refilled by paint(), so they can be read outside the lock
+		final RawSampleBuffer buffer = rawSamples;
+		final int[] data = screenImage.getData();
+		final int numTasks = Math.max( 1, Math.min( numRenderingThreads, h ) );
+		final ArrayList< Callable< Boolean > > tasks = new ArrayList< >( numTasks );
+		for ( int taskNum = 0; taskNum < numTasks; ++taskNum )
+		{
+			final int myMinY = ( int ) ( ( long ) taskNum * h / numTasks );
+			final int myMaxY = ( int ) ( ( long ) ( taskNum + 1 ) * h / numTasks );
+			tasks.add( new Callable< Boolean >()
+			{
+				@Override
+				public Boolean call()
+				{
+					return convertRawSamples( buffer, data, myMinY, myMaxY );
+				}
+			} );
+		}
+		return new PendingImage( renderId, screenImage, transform, sourceState, invalidateCount, repaintRequestCount, true, tasks );
+	}
+
+	/**
+	 * Create a {@link InterruptibleProjector} for speculative rendering. This
+	 * is called from a background thread while foreground rendering may be
+	 * running, so the projector must not share buffers with projectors created
+	 * by {@link #createProjector(AffineSet, AffineSet, ARGBScreenImage)}.
+	 * <p>
+	 * The default implementation calls
+	 * {@link #createProjector(AffineSet, AffineSet, ARGBScreenImage)}.
+	 * Derived classes whose projectors use additional buffers must override
+	 * this.
+	 */
+	protected InterruptibleProjector createSpeculativeProjector( final A viewerTransform, final A screenScaleTransform, final ARGBScreenImage target )
+	{
+		return createProjector( viewerTransform, screenScaleTransform, target );
+	}
+
+	/**
+	 * Cancel the current speculative rendering job (if any).
+	 */
+	protected synchronized void cancelSpeculation()
+	{
+		++speculationGeneration;
+		if ( speculativeProjector != null )
+		{
+			speculativeProjector.cancel();
+			speculativeProjector = null;
+		}
+	}
+
+	/**
+	 * Called when a complete full resolution frame for
+	 * <code>transform</code> was presented. If the previous full resolution
+	 * frame differs only by Z translation, start speculatively rendering the
+	 * next {@link #numSpeculativeSlices} slices in that direction.
+	 */
+	private void speculate( final double[] transform, final SourceState sourceState )
+	{
+		final double[] previous = previousFullResolutionTransform;
+		previousFullResolutionTransform = transform;
+		if ( numSpeculativeSlices <= 0 || frameCache == null || sourceState == null || previous == null )
+			return;
+
+		final double step = getZStep( previous, transform );
+		if ( step == 0 )
+			return;
+
+		final FrameCache cache = frameCache;
+		final int numSlices = numSpeculativeSlices;
+		final long generation = speculationGeneration;
+		final A screenScaleTransform = transformType.createTransform();
+		transformType.set( screenScaleTransform, screenScaleTransforms.get( 0 ) );
+		final int w = ( int ) screenImages[ 0 ][ 0 ].dimension( 0 );
+		final int h = ( int ) screenImages[ 0 ][ 0 ].dimension( 1 );
+		final int n = ( int ) Math.round( ( Math.sqrt( 1 + 4 * transform.length ) - 1 ) / 2 );
+		final int tz = 2 * ( n + 1 ) + n;
+
+		speculationExecutorService.submit( new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				final ARGBScreenImage target = new ARGBScreenImage( w, h );
+				for ( int i = 1; i <= numSlices; ++i )
+				{
+					final double[] t = transform.clone();
+					t[ tz ] += i * step;
+					if ( cache.contains( t, sourceState, w, h ) )
+						continue;
+
+					final InterruptibleProjector p;
+					synchronized ( AbstractMultiResolutionRenderer.this )
+					{
+						if ( generation != speculationGeneration )
+							return;
+						final A viewerTransform = transformType.createTransform();
+						viewerTransform.set( t );
+						p = createSpeculativeProjector( viewerTransform, screenScaleTransform, target );
+						speculativeProjector = p;
+					}
+
+					if ( !p.map() || !isComplete( p ) )
+						return;
+
+					synchronized ( AbstractMultiResolutionRenderer.this )
+					{
+						if ( generation != speculationGeneration )
+							return;
+						cache.put( t, sourceState, w, h, target.getData() );
+					}
+				}
+			}
+		} );
+	}
+
+	/**
+	 * If <code>current</code> differs from <code>previous</code> only in the Z
+	 * translation, return the difference. Otherwise return 0.
+	 */
+	private static double getZStep( final double[] previous, final double[] current )
+	{
+		if ( previous.length != current.length || current.length < 12 )
+			return 0;
+		final int n = ( int ) Math.round( ( Math.sqrt( 1 + 4 * current.length ) - 1 ) / 2 );
+		final int tz = 2 * ( n + 1 ) + n;
+		for ( int i = 0; i < current.length; ++i )
+			if ( i != tz && Math.abs( current[ i ] - previous[ i ] ) > 1e-9 )
+				return 0;
+		return current[ tz ] - previous[ tz ];
+	}
+
+	/**
+	 * Keep a copy of a complete full resolution image for warping previews.
+	 */
+	private void setPreviewSource( final ARGBScreenImage screenImage, final double[] viewerTransform, final SourceState sourceState, final long invalidateCount )
+	{
+		final int w = ( int ) screenImage.dimension( 0 );
+		final int h = ( int ) screenImage.dimension( 1 );
+		if ( previewSourceImage == null || previewSourceImage.dimension( 0 ) != w || previewSourceImage.dimension( 1 ) != h )
+			previewSourceImage = new ARGBScreenImage( w, h );
+		System.arraycopy( screenImage.getData(), 0, previewSourceImage.getData(), 0, w * h );
+		previewSourceTransform = viewerTransform;
+		previewSourceState = sourceState;
+		previewSourceInvalidateCount = invalidateCount;
+	}
+
+	/**
+	 * A {@link ResumableProjector} with the screen image it renders to, and
+	 * the view and source state it renders, such that it can be continued by
+	 * a later {@link #paint(AffineSet)} (see {@link #resumeState}).
+	 */
+	private static final class ResumeState
+	{
+		final ResumableProjector projector;
+
+		/**
+		 * Viewer transform (row-packed).
+		 */
+		final double[] viewerTransform;
+
+		final SourceState sourceState;
+
+		final int screenScaleIndex;
+
+		final ARGBScreenImage screenImage;
+
+		/**
+		 * {@link BufferedImage} wrapping {@link #screenImage}.
+		 */
+		final BufferedImage bufferedImage;
+
+		/**
+		 * {@link AbstractMultiResolutionRenderer#invalidateCount} when the
+		 * projector was started.
+		 */
+		final long invalidateCount;
+
+		/**
+		 * {@link InterleavedProjector#setInterleavedPass(int, boolean)
+		 * Interleaved step}, or 0 if the projector does not render an
+		 * interleaved pass.
+		 */
+		final int interleavedStep;
+
+		/**
+		 * Whether the projector renders an interleaved pass that skips the
+		 * samples of the previous pass. Its target image then contains the
+		 * previous pass where it is not rendered yet.
+		 */
+		final boolean interleavedRefine;
+
+		/**
+		 * Whether {@link #bufferedImage} was already given to the
+		 * {@link AbstractMultiResolutionRenderer#display} (as a composite with
+		 * missing tiles filled in).
+		 */
+		boolean presented;
+
+		/**
+		 * Whether the projector stopped because its deadline was reached (as
+		 * opposed to being cancelled). In this case, it may be resumed even if
+		 * the source state is unknown.
+		 */
+		boolean byDeadline;
+
+		/**
+		 * Whether the projector completed, but rendered some tiles with
+		 * {@link Placeholders placeholders}. It is only resumed if a repaint
+		 * was requested after it was completed (see
+		 * {@link #repaintRequestCount}), i.e., not by
+		 * {@link AbstractMultiResolutionRenderer#paint(AffineSet)} proceeding
+		 * to the next finer screen scale.
+		 */
+		boolean byPlaceholders;
+
+		/**
+		 * {@link AbstractMultiResolutionRenderer#repaintRequestCount} when the
+		 * state was remembered.
+		 */
+		long repaintRequestCount;
+
+		ResumeState( final ResumableProjector projector, final double[] viewerTransform, final SourceState sourceState, final int screenScaleIndex, final ARGBScreenImage screenImage, final BufferedImage bufferedImage, final long invalidateCount, final int interleavedStep, final boolean interleavedRefine )
+		{
+			this.projector = projector;
+			this.viewerTransform = viewerTransform;
+			this.sourceState = sourceState;
+			this.screenScaleIndex = screenScaleIndex;
+			this.screenImage = screenImage;
+			this.bufferedImage = bufferedImage;
+			this.invalidateCount = invalidateCount;
+			this.interleavedStep = interleavedStep;
+			this.interleavedRefine = interleavedRefine;
+		}
+	}
+
+	/**
+	 * An image for the next full resolution screen image that is computed by
+	 * {@link #tasks} outside the renderer lock, and then given to the
+	 * {@link #display} by {@link #presentPendingImage(PendingImage)}.
+	 */
+	private static final class PendingImage
+	{
+		final int renderId;
+
+		final ARGBScreenImage screenImage;
+
+		final double[] viewerTransform;
+
+		final SourceState sourceState;
+
+		final long invalidateCount;
+
+		/**
+		 * {@link AbstractMultiResolutionRenderer#repaintRequestCount} when
+		 * the image was prepared.
+		 */
+		final long repaintRequestCount;
+
+		/**
+		 * Whether this is a complete full resolution frame (as opposed to a
+		 * preview).
+		 */
+		final boolean complete;
+
+		final ArrayList< Callable< Boolean > > tasks;
+
+		PendingImage( final int renderId, final ARGBScreenImage screenImage, final double[] viewerTransform, final SourceState sourceState, final long invalidateCount, final long repaintRequestCount, final boolean complete, final ArrayList< Callable< Boolean > > tasks )
+		{
+			this.renderId = renderId;
+			this.screenImage = screenImage;
+			this.viewerTransform = viewerTransform;
+			this.sourceState = sourceState;
+			this.invalidateCount = invalidateCount;
+			this.repaintRequestCount = repaintRequestCount;
+			this.complete = complete;
+			this.tasks = tasks;
+		}
+	}
+
+	/**
+	 * Run the tasks of <code>pending</code> on the
+	 * {@link #renderingExecutorService}. This must be called without holding
+	 * the renderer lock.
+	 *
+	 * @return whether the image was computed (by all tasks).
+	 */
+	private boolean computePendingImage( final PendingImage pending )
+	{
+		try
+		{
+			for ( final Future< Boolean > f : renderingExecutorService.invokeAll( pending.tasks ) )
+				if ( !f.get() )
+					return false;
+			return true;
+		}
+		catch ( final InterruptedException e )
+		{
+			Thread.currentThread().interrupt();
+			return false;
+		}
+		catch ( final ExecutionException e )
+		{
+			// render normally instead
+			return false;
+		}
+	}
+
+	/**
+	 * Give the computed <code>pending</code> image to the {@link #display},
+	 * unless the renderer was {@link #invalidate() invalidated} or the screen
+	 * images were changed meanwhile.
+	 *
+	 * @return whether the image was displayed.
+	 */
+	private synchronized boolean presentPendingImage( final PendingImage pending )
+	{
+		if ( pending.invalidateCount != invalidateCount
+				|| renderIdQueue.isEmpty()
+				|| renderIdQueue.peek() != pending.renderId
+				|| screenImages[ 0 ][ pending.renderId ] != pending.screenImage )
+			return false;
+
+		present( bufferedImages[ 0 ][ pending.renderId ], pending.screenImage, false );
+		setLastPresented( pending.viewerTransform, pending.sourceState, 0, pending.invalidateCount, pending.complete );
+		if ( pending.complete )
+		{
+			resumeState = null;
+			// unless a new frame was requested meanwhile, the current one is done
+			if ( pending.repaintRequestCount == repaintRequestCount )
+				requestedScreenScaleIndex = 0;
+			if ( previewEnabled && doubleBuffered )
+				setPreviewSource( pending.screenImage, pending.viewerTransform, pending.sourceState, pending.invalidateCount );
+			// the converters may have been modified while converting
+			final SourceState sourceState = pending.sourceState;
+			if ( frameCache != null && sourceState != null && sourceState.equals( getSourceState() ) )
+				frameCache.put( pending.viewerTransform, sourceState, ( int ) pending.screenImage.dimension( 0 ), ( int ) pending.screenImage.dimension( 1 ), pending.screenImage.getData() );
+		}
+		return true;
+	}
+
+	/**
+	 * Prepare warping the {@link #previewSourceImage} to
+	 * <code>viewerTransform</code>. This is only done if the source state is
+	 * unchanged, the viewer transform changed, and (in 3D) the new view lies
+	 * in the plane of the preview source image.
+	 * 
+	 * @return the preview to compute and display, or <code>null</code>.
+	 */
+	private synchronized PendingImage preparePreview( final A viewerTransform, final SourceState sourceState )
+	{
+		if ( !doubleBuffered
+				|| previewSourceImage == null
+				|| previewSourceInvalidateCount != invalidateCount
+				|| sourceState == null
+				|| !sourceState.equals( previewSourceState ) )
+			return null;
+
+		final int renderId = renderIdQueue.peek();
+		final ARGBScreenImage target = screenImages[ 0 ][ renderId ];
+		final int w = ( int ) target.dimension( 0 );
+		final int h = ( int ) target.dimension( 1 );
+		if ( previewSourceImage.dimension( 0 ) != w || previewSourceImage.dimension( 1 ) != h )
+			return null;
+
+		final double[] current = viewerTransform.getRowPackedCopy();
+		if ( Arrays.equals( current, previewSourceTransform ) )
+			return null;
+
+		// transform from target image coordinates to preview source image coordinates
+		final A previous = transformType.createTransform();
+		previous.set( previewSourceTransform );
+		final A screenScale = screenScaleTransforms.get( 0 );
+		final A delta = transformType.createTransform();
+		transformType.set( delta, screenScale );
+		delta.concatenate( previous );
+		delta.concatenate( viewerTransform.inverse() );
+		delta.concatenate( screenScale.inverse() );
+
+		// in 3D, the target plane must map to the source plane
+		final int n = delta.numDimensions();
+		for ( int d = 2; d < n; ++d )
+		{
+			final double maxOffPlane = Math.abs( delta.get( d, 0 ) ) * w + Math.abs( delta.get( d, 1 ) ) * h + Math.abs( delta.get( d, n ) );
+			if ( maxOffPlane > 0.5 )
+				return null;
+		}
+
+		// previewSourceImage is only replaced by paint(), so it can be read outside the lock
+		final ArrayList< Callable< Boolean > > tasks = createWarpTasks( previewSourceImage, target, delta.get( 0, 0 ), delta.get( 0, 1 ), delta.get( 0, n ), delta.get( 1, 0 ), delta.get( 1, 1 ), delta.get( 1, n ) );
+		return new PendingImage( renderId, target, current, sourceState, invalidateCount, repaintRequestCount, false, tasks );
+	}
+
+	/**
+	 * Create tasks for nearest-neighbor resampling of <code>source</code> into
+	 * <code>target</code>. Target pixel <em>(x, y)</em> is taken from source
+	 * pixel <em>(m00 x + m01 y + m02, m10 x + m11 y + m12)</em>. Pixels that
+	 * map outside of <code>source</code> are set to 0. Each task resamples a
+	 * range of rows.
+	 */
+	protected ArrayList< Callable< Boolean > > createWarpTasks(
+			final ARGBScreenImage source,
+			final ARGBScreenImage target,
+			final double m00, final double m01, final double m02,
+			final double m10, final double m11, final double m12 )
+	{
+		final int[] src = source.getData();
+		final int[] dst = target.getData();
+		final int sw = ( int ) source.dimension( 0 );
+		final int sh = ( int ) source.dimension( 1 );
+		final int w = ( int ) target.dimension( 0 );
+		final int h = ( int ) target.dimension( 1 );
+
+		final int numTasks = Math.max( 1, Math.min( numRenderingThreads, h ) );
+		final ArrayList< Callable< Boolean > > tasks = new ArrayList< >( numTasks );
+		for ( int taskNum = 0; taskNum < numTasks; ++taskNum )
+		{
+			final int myMinY = ( int ) ( ( long ) taskNum * h / numTasks );
+			final int myMaxY = ( int ) ( ( long ) ( taskNum + 1 ) * h / numTasks );
+			tasks.add( new Callable< Boolean >()
+			{
+				@Override
+				public Boolean call()
+				{
+					for ( int y = myMinY; y < myMaxY; ++y )
+					{
+						// add 0.5 to round to nearest source pixel
+						double sx = m01 * y + m02 + 0.5;
+						double sy = m11 * y + m12 + 0.5;
+						int o = y * w;
+						for ( int x = 0; x < w; ++x )
+						{
+							final int ix = ( int ) Math.floor( sx );
+							final int iy = ( int ) Math.floor( sy );
+							dst[ o++ ] = ( ix >= 0 && ix < sw && iy >= 0 && iy < sh ) ? src[ iy * sw + ix ] : 0;
+							sx += m00;
+							sy += m10;
+						}
+					}
+					return true;
+				}
+			} );
+		}
+		return tasks;
+	}
+
+	/**
+	 * Check whether <code>viewerTransform</code> differs from the viewer
+	 * transform of the last presented image only by an integer translation in
+	 * (full resolution) screen pixels, and whether the last presented image is
+	 * a complete full resolution image with the same source state. In that
+	 * case, return the translation.
+	 * 
+	 * @return the integer translation <em>(dx, dy)</em> in screen pixels, or
+	 *         <code>null</code>.
+	 */
+	protected synchronized int[] getIntegerScreenShift( final A viewerTransform, final SourceState sourceState )
+	{
+		if ( lastPresentedScreenImage == null
+				|| !lastPresentedComplete
+				|| lastPresentedScreenScaleIndex != 0
+				|| lastPresentedInvalidateCount != invalidateCount
+				|| sourceState == null
+				|| !sourceState.equals( lastPresentedSourceState ) )
+			return null;
+
+		final int n = viewerTransform.numDimensions();
+		final double[] current = viewerTransform.getRowPackedCopy();
+		final double[] last = lastPresentedViewerTransform;
+		if ( last.length != current.length )
+			return null;
+		for ( int r = 0; r < n; ++r )
+			for ( int c = 0; c <= n; ++c )
+			{
+				// translation in X and Y may differ, everything else must be the same
+				if ( c == n && r < 2 )
+					continue;
+				final int i = r * ( n + 1 ) + c;
+				if ( Math.abs( current[ i ] - last[ i ] ) > 1e-9 )
+					return null;
+			}
+
+		final A scale = screenScaleTransforms.get( 0 );
+		final double dx = ( current[ n ] - last[ n ] ) * scale.get( 0, 0 );
+		final double dy = ( current[ 2 * n + 1 ] - last[ 2 * n + 1 ] ) * scale.get( 1, 1 );
+		final long sx = Math.round( dx );
+		final long sy = Math.round( dy );
+		if ( Math.abs( dx - sx ) > 1e-6 || Math.abs( dy - sy ) > 1e-6 )
+			return null;
+		if ( Math.abs( sx ) >= lastPresentedScreenImage.dimension( 0 ) || Math.abs( sy ) >= lastPresentedScreenImage.dimension( 1 ) )
+			return null;
+
+		return new int[] { ( int ) sx, ( int ) sy };
+	}
+
+	/**
+	 * Copy <code>source</code> into <code>target</code> (which have the same
+	 * size, and may be the same image), shifted by <em>(dx, dy)</em>. That is,
+	 * target pixel <em>(x, y)</em> is set to source pixel
+	 * <em>(x - dx, y - dy)</em>, where that exists.
+	 * 
+	 * @return the interval of <code>target</code> that was written.
+	 */
+	protected static FinalInterval copyShifted( final ARGBScreenImage source, final ARGBScreenImage target, final int dx, final int dy )
+	{
+		final int w = ( int ) target.dimension( 0 );
+		final int h = ( int ) target.dimension( 1 );
+		final int x0 = Math.max( 0, dx );
+		final int x1 = Math.min( w, w + dx );
+		final int y0 = Math.max( 0, dy );
+		final int y1 = Math.min( h, h + dy );
+		final int[] src = source.getData();
+		final int[] dst = target.getData();
+		final int length = x1 - x0;
+
+		// if source and target are the same, copy rows in an order that does
+		// not overwrite rows before they are copied
+		if ( dy > 0 )
+			for ( int y = y1 - 1; y >= y0; --y )
+				System.arraycopy( src, ( y - dy ) * w + x0 - dx, dst, y * w + x0, length );
+		else
+			for ( int y = y0; y < y1; ++y )
+				System.arraycopy( src, ( y - dy ) * w + x0 - dx, dst, y * w + x0, length );
+
+		return new FinalInterval( new long[] { x0, y0 }, new long[] { x1 - 1, y1 - 1 } );
+	}
+
+	/**
+	 * Check whether the (successful) projector <code>p</code> rendered all
+	 * tiles without {@link Placeholders placeholders}.
+	 */
+	protected static boolean isComplete( final InterruptibleProjector p )
+	{
+		if ( !( p instanceof ResumableProjector ) )
+			return true;
+		final ResumableProjector rp = ( ResumableProjector ) p;
+		return rp.getNumTilesDone() == rp.getNumTiles();
+	}
+
+	/**
+	 * Check whether the {@link #resumeState} can be resumed for the given
+	 * viewer transform and source state. An image with
+	 * {@link Placeholders placeholders} is only resumed if a repaint was
+	 * requested since it was completed.
+	 */
+	protected synchronized boolean canResume( final A viewerTransform, final SourceState sourceState )
+	{
+		final ResumeState resume = resumeState;
+		return resume != null
+				&& resume.invalidateCount == invalidateCount
+				&& ( !resume.byPlaceholders || repaintRequestCount != resume.repaintRequestCount )
+				&& ( sourceState != null
+						? sourceState.equals( resume.sourceState )
+						: resume.byDeadline && resume.sourceState == null )
+				&& Arrays.equals( resume.viewerTransform, viewerTransform.getRowPackedCopy() );
+	}
+
+	/**
+	 * Check whether the {@link #lastPresentedScreenImage} shows the given
+	 * viewer transform and source state, such that it can be used to fill in
+	 * tiles that are not completed by the deadline.
+	 */
+	protected synchronized boolean hasFallback( final A viewerTransform, final SourceState sourceState )
+	{
+		return lastPresentedScreenImage != null
+				&& lastPresentedInvalidateCount == invalidateCount
+				&& ( sourceState != null
+						? sourceState.equals( lastPresentedSourceState )
+						: lastPresentedSourceState == null )
+				&& Arrays.equals( lastPresentedViewerTransform, viewerTransform.getRowPackedCopy() );
+	}
 }
@@ -34,11 +34,13 @@
 package net.imglib2.ui;
 
 import java.awt.image.BufferedImage;
+import java.util.concurrent.ExecutorService;
 
 import net.imglib2.concatenate.Concatenable;
 import net.imglib2.display.screenimage.awt.ARGBScreenImage;
 import net.imglib2.realtransform.AffineGet;
 import net.imglib2.ui.util.GuiUtil;
+import net.imglib2.ui.util.RenderingThreads;
 
 /**
  * A {@link Renderer} that uses multiple threads (if desired) and
@@ -49,6 +51,10 @@ import net.imglib2.ui.util.GuiUtil;
  * {@link RenderTarget}, next time, rendering goes to the second one. Thus, the
  * {@link RenderTarget} will always have a complete image. Rendering will not
  * interfere with painting the {@link BufferedImage} to the canvas.
+ * <p>
+ * Rendering threads are taken from an {@link ExecutorService} that lives as
+ * long as the renderer. It is either provided in the constructor or created by
+ * the renderer, in which case it is shut down by {@link #kill()}.
  * 
  * @param <A>
  *            transform type
@@ -86,6 +92,21 @@ public abstract class AbstractSimpleRenderer< A extends AffineGet & Concatenable
 	final protected int numRenderingThreads;
 
 	/**
+	 * {@link ExecutorService} used for rendering. All projectors created by
+	 * this renderer share it.
+	 */
+	final protected ExecutorService renderingExecutorService;
+
+	/**
+	 * Whether {@link #renderingExecutorService} was created by this renderer
+	 * (and should therefore be shut down by {@link #kill()}).
+	 */
+	final private boolean ownsRenderingExecutorService;
+
+	/**
+	 * Create a renderer with its own {@link ExecutorService} with
+	 * <code>numRenderingThreads</code> threads.
+	 *
 	 * @param transformType
 	 *            which transformation type (e.g. {@link AffineTransformType2D
 	 *            affine 2d} or {@link AffineTransformType3D affine 3d}) is used
@@ -106,15 +127,63 @@ public abstract class AbstractSimpleRenderer< A extends AffineGet & Concatenable
 			final PainterThread painterThread,
 			final boolean doubleBuffered,
 			final int numRenderingThreads )
+	{
+		this( transformType, display, painterThread, doubleBuffered, numRenderingThreads, null );
+	}
+
+	/**
+	 * @param transformType
+	 *            which transformation type (e.g. {@link AffineTransformType2D
+	 *            affine 2d} or {@link AffineTransformType3D affine 3d}) is used
+	 *            for the source and viewer transforms.
+	 * @param display
+	 *            The canvas that will display the images we render.
+	 * @param painterThread
+	 *            Thread that triggers repainting of the display. Requests for
+	 *            repainting are send there.
+	 * @param doubleBuffered
+	 *            Whether to use double buffered rendering.
+	 * @param numRenderingThreads
+	 *            How many threads to use for rendering.
+	 * @param renderingExecutorService
+	 *            {@link ExecutorService} to use for rendering. If
+	 *            <code>null</code>, a new one with
+	 *            <code>numRenderingThreads</code> threads is created, which is
+	 *            shut down by {@link #kill()}.
+	 */
+	public AbstractSimpleRenderer(
+			final AffineTransformType< A > transformType,
+			final RenderTarget display,
+			final PainterThread painterThread,
+			final boolean doubleBuffered,
+			final int numRenderingThreads,
+			final ExecutorService renderingExecutorService )
 	{
 		super( transformType, display, painterThread );
 		this.doubleBuffered = doubleBuffered;
 		this.numRenderingThreads = numRenderingThreads;
+		ownsRenderingExecutorService = ( renderingExecutorService == null );
+		this.renderingExecutorService = ownsRenderingExecutorService ?
+				RenderingThreads.newFixedThreadPool( numRenderingThreads ) :
+				renderingExecutorService;
 		screenImages = new ARGBScreenImage[ 2 ];
 		bufferedImages = new BufferedImage[ 2 ];
 		projector = null;
 	}
 
+	/**
+	 * Cancel the current rendering operation and shut down the rendering
+	 * {@link ExecutorService} (if it was created by this renderer).
+	 */
+	@Override
+	public synchronized void kill()
+	{
+		if ( projector != null )
+			projector.cancel();
+		if ( ownsRenderingExecutorService )
+			renderingExecutorService.shutdown();
+	}
+
 	/**
 	 * Check whether the size of the display component was changed and recreate
 	 * {@link #screenImages} and screen scale transforms accordingly.
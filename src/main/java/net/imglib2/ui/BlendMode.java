@@ -0,0 +1,106 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.ui;
+
+import net.imglib2.type.numeric.ARGBType;
+
+/**
+ * How the ARGB images rendered for several sources are combined by a
+ * {@link CompositingProjector}. Sources are blended in order, starting from
+ * transparent black.
+ */
+public enum BlendMode
+{
+	/**
+	 * Add all channels (including alpha), saturating at 255.
+	 */
+	ADD
+	{
+		@Override
+		public int blend( final int dst, final int src )
+		{
+			final int a = Math.min( ARGBType.alpha( dst ) + ARGBType.alpha( src ), 255 );
+			final int r = Math.min( ARGBType.red( dst ) + ARGBType.red( src ), 255 );
+			final int g = Math.min( ARGBType.green( dst ) + ARGBType.green( src ), 255 );
+			final int b = Math.min( ARGBType.blue( dst ) + ARGBType.blue( src ), 255 );
+			return ARGBType.rgba( r, g, b, a );
+		}
+	},
+
+	/**
+	 * Porter-Duff "source over destination". Colors are assumed to be
+	 * premultiplied by alpha (as produced by
+	 * {@link net.imglib2.ui.converter.LookupTableConverter}).
+	 */
+	ALPHA_OVER
+	{
+		@Override
+		public int blend( final int dst, final int src )
+		{
+			final int t = 255 - ARGBType.alpha( src );
+			final int a = ARGBType.alpha( src ) + ( ARGBType.alpha( dst ) * t + 127 ) / 255;
+			final int r = ARGBType.red( src ) + ( ARGBType.red( dst ) * t + 127 ) / 255;
+			final int g = ARGBType.green( src ) + ( ARGBType.green( dst ) * t + 127 ) / 255;
+			final int b = ARGBType.blue( src ) + ( ARGBType.blue( dst ) * t + 127 ) / 255;
+			return ARGBType.rgba( Math.min( r, 255 ), Math.min( g, 255 ), Math.min( b, 255 ), Math.min( a, 255 ) );
+		}
+	},
+
+	/**
+	 * Take the maximum of each channel (including alpha).
+	 */
+	MAX
+	{
+		@Override
+		public int blend( final int dst, final int src )
+		{
+			final int a = Math.max( ARGBType.alpha( dst ), ARGBType.alpha( src ) );
+			final int r = Math.max( ARGBType.red( dst ), ARGBType.red( src ) );
+			final int g = Math.max( ARGBType.green( dst ), ARGBType.green( src ) );
+			final int b = Math.max( ARGBType.blue( dst ), ARGBType.blue( src ) );
+			return ARGBType.rgba( r, g, b, a );
+		}
+	};
+
+	/**
+	 * Blend <code>src</code> onto <code>dst</code>.
+	 * 
+	 * @param dst
+	 *            packed ARGB value accumulated so far.
+	 * @param src
+	 *            packed ARGB value of the next source.
+	 * @return packed ARGB blending result.
+	 */
+	public abstract int blend( final int dst, final int src );
+}
@@ -0,0 +1,393 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.ui;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.imglib2.Interval;
+import net.imglib2.display.screenimage.awt.ARGBScreenImage;
+import net.imglib2.ui.util.StopWatch;
+
+/**
+ * An {@link InterruptibleProjector} that renders several sources, each with
+ * its own {@link ARGBScreenImageProjector} into its own
+ * {@link ARGBScreenImage}, and then blends these images into a target
+ * {@link ARGBScreenImage} using a {@link BlendMode}.
+ * <p>
+ * The rendering tasks of all source projectors are submitted to the
+ * {@link ExecutorService} as a single batch, such that all sources are
+ * rendered in parallel. Blending is done in a second (also parallel) pass.
+ * <p>
+ * The rendering time of each source (summed over all rendering threads) is
+ * recorded and can be queried via
+ * {@link #getLastFrameSourceRenderNanoTimes()}.
+ * <p>
+ * Tiles are completed when they are completed for every source. After
+ * {@link #cancel()}, {@link #map()} renders only the remaining tiles of each
+ * source. Pixels in a {@link #setValidInterval(Interval) valid interval} are
+ * neither rendered nor blended. If the {@link #setDeadline(long) deadline} is
+ * reached, nothing is blended until {@link #fillMissingTiles(ARGBScreenImage)}
+ * is called.
+ */
+public class CompositingProjector implements ResumableProjector
+{
+	final protected List< ARGBScreenImageProjector< ? > > sourceProjectors;
+
+	final protected ARGBScreenImage target;
+
+	final protected BlendMode blendMode;
+
+	/**
+	 * Number of threads to use for rendering
+	 */
+	final protected int numThreads;
+
+	final protected ExecutorService executorService;
+
+	final protected AtomicBoolean interrupted = new AtomicBoolean();
+
+	/**
+	 * Whether the last {@link #map()} stopped because the deadline was
+	 * reached.
+	 */
+	protected boolean deadlineReached;
+
+	/**
+	 * Time needed for rendering the last frame, in nano-seconds. This is
+	 * accumulated over all {@link #map()} calls.
+	 */
+	protected long lastFrameRenderNanoTime;
+
+	/**
+	 * Accumulated rendering time of each source, in nano-seconds.
+	 */
+	final protected AtomicLong[] sourceNanos;
+
+	/**
+	 * Time needed for rendering each source in the last frame, in
+	 * nano-seconds.
+	 */
+	protected long[] lastFrameSourceRenderNanoTimes;
+
+	/**
+	 * @param sourceProjectors
+	 *            projectors for each source. They must render into
+	 *            {@link ARGBScreenImage}s of the same size as
+	 *            <code>target</code>.
+	 * @param target
+	 *            the screen image into which the blended result is written.
+	 * @param blendMode
+	 *            how to combine the sources.
+	 * @param numThreads
+	 *            how many threads to use for rendering.
+	 * @param executorService
+	 *            {@link ExecutorService} to run the rendering tasks. If
+	 *            <code>null</code>, a new {@link ExecutorService} is created
+	 *            (and shut down) in every {@link #map()}.
+	 */
+	public CompositingProjector(
+			final List< ARGBScreenImageProjector< ? > > sourceProjectors,
+			final ARGBScreenImage target,
+			final BlendMode blendMode,
+			final int numThreads,
+			final ExecutorService executorService )
+	{
+		this.sourceProjectors = new ArrayList< >( sourceProjectors );
+		this.target = target;
+		this.blendMode = blendMode;
+		this.numThreads = numThreads;
+		this.executorService = executorService;
+		lastFrameRenderNanoTime = 0;
+		lastFrameSourceRenderNanoTimes = new long[ sourceProjectors.size() ];
+		sourceNanos = new AtomicLong[ sourceProjectors.size() ];
+		for ( int s = 0; s < sourceNanos.length; ++s )
+			sourceNanos[ s ] = new AtomicLong();
+	}
+
+	@Override
+	public boolean map()
+	{
+		interrupted.set( false );
+		deadlineReached = false;
+
+		final StopWatch stopWatch = new StopWatch();
+		stopWatch.start();
+
+		final int numSources = sourceProjectors.size();
+		final ArrayList< ArrayList< Callable< Void > > > sourceTasks = new ArrayList< >( numSources );
+		int maxNumTasks = 0;
+		for ( int s = 0; s < numSources; ++s )
+		{
+			final ArrayList< Callable< Void > > tasks = sourceProjectors.get( s ).createTasks();
+			sourceTasks.add( tasks );
+			maxNumTasks = Math.max( maxNumTasks, tasks.size() );
+		}
+		if ( interrupted.get() )
+			cancel();
+
+		// interleave tasks of different sources, such that all sources progress evenly
+		final ArrayList< Callable< Void > > tasks = new ArrayList< >();
+		for ( int t = 0; t < maxNumTasks; ++t )
+			for ( int s = 0; s < numSources; ++s )
+				if ( t < sourceTasks.get( s ).size() )
+					tasks.add( timed( sourceTasks.get( s ).get( t ), sourceNanos[ s ] ) );
+
+		final boolean createExecutor = ( executorService == null );
+		final ExecutorService ex = createExecutor ? Executors.newFixedThreadPool( numThreads ) : executorService;
+		try
+		{
+			ex.invokeAll( tasks );
+			for ( final ARGBScreenImageProjector< ? > p : sourceProjectors )
+			{
+				p.finishTasks();
+				deadlineReached |= p.isDeadlineReached();
+			}
+			if ( !interrupted.get() && !deadlineReached )
+				ex.invokeAll( createBlendTasks() );
+		}
+		catch ( final InterruptedException e )
+		{
+			Thread.currentThread().interrupt();
+			interrupted.set( true );
+		}
+		if ( createExecutor )
+			ex.shutdown();
+
+		lastFrameRenderNanoTime += stopWatch.nanoTime();
+
+		final boolean success = !interrupted.get() && !deadlineReached;
+		if ( success )
+		{
+			final long[] nanos = new long[ numSources ];
+			for ( int s = 0; s < numSources; ++s )
+				nanos[ s ] = sourceNanos[ s ].get();
+			lastFrameSourceRenderNanoTimes = nanos;
+		}
+		return success;
+	}
+
+	private static Callable< Void > timed( final Callable< Void > task, final AtomicLong nanos )
+	{
+		return new Callable< Void >()
+		{
+			@Override
+			public Void call() throws Exception
+			{
+				final long t0 = System.nanoTime();
+				try
+				{
+					return task.call();
+				}
+				finally
+				{
+					nanos.addAndGet( System.nanoTime() - t0 );
+				}
+			}
+		};
+	}
+
+	private ArrayList< Callable< Void > > createBlendTasks()
+	{
+		final ArrayList< Callable< Void > > tasks = new ArrayList< >();
+		if ( sourceProjectors.isEmpty() )
+			return tasks;
+		final ARGBScreenImageProjector< ? > p0 = sourceProjectors.get( 0 );
+		final int width = ( int ) target.dimension( 0 );
+		final int height = ( int ) target.dimension( 1 );
+		final int numTasks = numThreads > 1 ? Math.min( numThreads * 4, height ) : 1;
+		final double taskHeight = ( double ) height / numTasks;
+		for ( int taskNum = 0; taskNum < numTasks; ++taskNum )
+		{
+			final int myMinY = ( int ) ( taskNum * taskHeight );
+			final int myMaxY = ( taskNum == numTasks - 1 ) ? height : ( int ) ( ( taskNum + 1 ) * taskHeight );
+			tasks.add( new Callable< Void >()
+			{
+				@Override
+				public Void call()
+				{
+					for ( int y = myMinY; y < myMaxY; ++y )
+					{
+						if ( interrupted.get() )
+							return null;
+						for ( final int[] r : p0.getInvalidRects( 0, y, width, 1 ) )
+							blend( r[ 0 ], r[ 1 ], r[ 2 ], r[ 3 ] );
+					}
+					return null;
+				}
+			} );
+		}
+		return tasks;
+	}
+
+	/**
+	 * Blend the source images in the specified rectangle of the target image.
+	 */
+	protected void blend( final int minX, final int minY, final int width, final int height )
+	{
+		final int numSources = sourceProjectors.size();
+		final int[][] sourceData = new int[ numSources ][];
+		for ( int s = 0; s < numSources; ++s )
+			sourceData[ s ] = sourceProjectors.get( s ).data;
+		final int[] data = target.getData();
+		final int stride = ( int ) target.dimension( 0 );
+
+		for ( int y = minY; y < minY + height; ++y )
+		{
+			final int o = y * stride + minX;
+			for ( int i = o; i < o + width; ++i )
+			{
+				int v = 0;
+				for ( int s = 0; s < numSources; ++s )
+					v = blendMode.blend( v, sourceData[ s ][ i ] );
+				data[ i ] = v;
+			}
+		}
+	}
+
+	@Override
+	public int getNumTiles()
+	{
+		return sourceProjectors.isEmpty() ? 0 : sourceProjectors.get( 0 ).getNumTiles();
+	}
+
+	/**
+	 * Whether the specified tile has been completely rendered for all sources.
+	 */
+	public boolean isTileDone( final int tile )
+	{
+		for ( final ARGBScreenImageProjector< ? > p : sourceProjectors )
+			if ( !p.isTileDone( tile ) )
+				return false;
+		return true;
+	}
+
+	@Override
+	public int getNumTilesDone()
+	{
+		final int numTiles = getNumTiles();
+		int n = 0;
+		for ( int t = 0; t < numTiles; ++t )
+			if ( isTileDone( t ) )
+				++n;
+		return n;
+	}
+
+	/**
+	 * Blend tiles that are completed for all sources into the target image,
+	 * and fill the remaining tiles from <code>fallback</code>.
+	 */
+	@Override
+	public void fillMissingTiles( final ARGBScreenImage fallback )
+	{
+		if ( sourceProjectors.isEmpty() )
+			return;
+		final ARGBScreenImageProjector< ? > p0 = sourceProjectors.get( 0 );
+		final int numTiles = getNumTiles();
+		for ( int t = 0; t < numTiles; ++t )
+		{
+			if ( isTileDone( t ) )
+			{
+				for ( final int[] r : p0.getInvalidRects( t ) )
+					blend( r[ 0 ], r[ 1 ], r[ 2 ], r[ 3 ] );
+			}
+			else
+				p0.fillTile( t, fallback, target );
+		}
+	}
+
+	@Override
+	public void setValidInterval( final Interval interval )
+	{
+		for ( final ARGBScreenImageProjector< ? > p : sourceProjectors )
+			p.setValidInterval( interval );
+	}
+
+	@Override
+	public void setTileOrder( final TileOrder order, final double focusX, final double focusY )
+	{
+		for ( final ARGBScreenImageProjector< ? > p : sourceProjectors )
+			p.setTileOrder( order, focusX, focusY );
+	}
+
+	@Override
+	public void setDeadline( final long deadlineNanos )
+	{
+		for ( final ARGBScreenImageProjector< ? > p : sourceProjectors )
+			p.setDeadline( deadlineNanos );
+	}
+
+	@Override
+	public void clearDeadline()
+	{
+		for ( final ARGBScreenImageProjector< ? > p : sourceProjectors )
+			p.clearDeadline();
+	}
+
+	@Override
+	public boolean isDeadlineReached()
+	{
+		return deadlineReached;
+	}
+
+	@Override
+	public void cancel()
+	{
+		interrupted.set( true );
+		for ( final ARGBScreenImageProjector< ? > p : sourceProjectors )
+			p.cancel();
+	}
+
+	@Override
+	public long getLastFrameRenderNanoTime()
+	{
+		return lastFrameRenderNanoTime;
+	}
+
+	/**
+	 * How many nano-seconds did rendering each source take in the last
+	 * (completed) {@link #map()}. Times are summed over all rendering threads.
+	 * 
+	 * @return rendering time for each source, in nano-seconds.
+	 */
+	public long[] getLastFrameSourceRenderNanoTimes()
+	{
+		return lastFrameSourceRenderNanoTimes.clone();
+	}
+}
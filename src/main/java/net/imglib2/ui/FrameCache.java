@@ -0,0 +1,247 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.ui;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded cache of completed full resolution frames (ARGB
+ * <code>int[]</code> data), keyed by the exact viewer transform, the
+ * {@link SourceState}, and the frame size. Least recently used frames are
+ * evicted when the total size of cached frames exceeds a memory budget.
+ * <p>
+ * Because the {@link SourceState} is part of the key, frames rendered before a
+ * source or converter change are never returned afterwards. {@link #clear()}
+ * should be called when sources change in ways not reflected in the
+ * {@link SourceState}. Stale frames are otherwise evicted eventually.
+ * <p>
+ * Hit, miss, and eviction counts are recorded for monitoring.
+ */
+public class FrameCache
+{
+	private static final class Key
+	{
+		private final double[] viewerTransform;
+
+		private final SourceState sourceState;
+
+		private final int width;
+
+		private final int height;
+
+		private final int hashCode;
+
+		Key( final double[] viewerTransform, final SourceState sourceState, final int width, final int height )
+		{
+			this.viewerTransform = viewerTransform;
+			this.sourceState = sourceState;
+			this.width = width;
+			this.height = height;
+			int h = Arrays.hashCode( viewerTransform );
+			h = 31 * h + sourceState.hashCode();
+			h = 31 * h + width;
+			hashCode = 31 * h + height;
+		}
+
+		@Override
+		public boolean equals( final Object obj )
+		{
+			if ( !( obj instanceof Key ) )
+				return false;
+			final Key other = ( Key ) obj;
+			return width == other.width
+					&& height == other.height
+					&& Arrays.equals( viewerTransform, other.viewerTransform )
+					&& sourceState.equals( other.sourceState );
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return hashCode;
+		}
+	}
+
+	private final LinkedHashMap< Key, int[] > frames;
+
+	private final long maxBytes;
+
+	private long bytes;
+
+	private long hits;
+
+	private long misses;
+
+	private long evictions;
+
+	/**
+	 * @param maxBytes
+	 *            memory budget in bytes for cached frame data.
+	 */
+	public FrameCache( final long maxBytes )
+	{
+		this.maxBytes = maxBytes;
+		frames = new LinkedHashMap< >( 16, 0.75f, true );
+		bytes = 0;
+	}
+
+	/**
+	 * Get a cached frame.
+	 * 
+	 * @param viewerTransform
+	 *            row-packed viewer transform.
+	 * @param sourceState
+	 *            source state.
+	 * @param width
+	 *            frame width.
+	 * @param height
+	 *            frame height.
+	 * @return the cached ARGB data (must not be modified), or <code>null</code>
+	 *         if there is no such frame in the cache.
+	 */
+	public synchronized int[] get( final double[] viewerTransform, final SourceState sourceState, final int width, final int height )
+	{
+		final int[] data = frames.get( new Key( viewerTransform, sourceState, width, height ) );
+		if ( data == null )
+			++misses;
+		else
+			++hits;
+		return data;
+	}
+
+	/**
+	 * Check whether a frame is cached. Does not change statistics or LRU
+	 * order.
+	 */
+	public synchronized boolean contains( final double[] viewerTransform, final SourceState sourceState, final int width, final int height )
+	{
+		return frames.containsKey( new Key( viewerTransform, sourceState, width, height ) );
+	}
+
+	/**
+	 * Put a copy of a frame into the cache, evicting least recently used
+	 * frames if necessary. Frames larger than the memory budget are not
+	 * cached.
+	 * 
+	 * @param viewerTransform
+	 *            row-packed viewer transform.
+	 * @param sourceState
+	 *            source state.
+	 * @param width
+	 *            frame width.
+	 * @param height
+	 *            frame height.
+	 * @param data
+	 *            ARGB data of the frame (at least <code>width * height</code>
+	 *            elements).
+	 */
+	public synchronized void put( final double[] viewerTransform, final SourceState sourceState, final int width, final int height, final int[] data )
+	{
+		final long frameBytes = 4L * width * height;
+		if ( frameBytes > maxBytes )
+			return;
+		final Key key = new Key( viewerTransform.clone(), sourceState, width, height );
+		final int[] previous = frames.remove( key );
+		if ( previous != null )
+			bytes -= 4L * previous.length;
+		frames.put( key, Arrays.copyOf( data, width * height ) );
+		bytes += frameBytes;
+
+		final Iterator< Map.Entry< Key, int[] > > it = frames.entrySet().iterator();
+		while ( bytes > maxBytes && it.hasNext() )
+		{
+			bytes -= 4L * it.next().getValue().length;
+			it.remove();
+			++evictions;
+		}
+	}
+
+	/**
+	 * Remove all frames.
+	 */
+	public synchronized void clear()
+	{
+		frames.clear();
+		bytes = 0;
+	}
+
+	/**
+	 * Reset hit, miss, and eviction counts.
+	 */
+	public synchronized void resetStatistics()
+	{
+		hits = 0;
+		misses = 0;
+		evictions = 0;
+	}
+
+	public synchronized int getNumFrames()
+	{
+		return frames.size();
+	}
+
+	public synchronized long getBytes()
+	{
+		return bytes;
+	}
+
+	public long getMaxBytes()
+	{
+		return maxBytes;
+	}
+
+	public synchronized long getHits()
+	{
+		return hits;
+	}
+
+	public synchronized long getMisses()
+	{
+		return misses;
+	}
+
+	public synchronized long getEvictions()
+	{
+		return evictions;
+	}
+
+	@Override
+	public synchronized String toString()
+	{
+		return String.format( "FrameCache[frames=%d, bytes=%d/%d, hits=%d, misses=%d, evictions=%d]", frames.size(), bytes, maxBytes, hits, misses, evictions );
+	}
+}
@@ -36,6 +36,7 @@ package net.imglib2.ui;
 import java.awt.Component;
 import java.awt.Dimension;
 import java.awt.Graphics;
+import java.awt.Point;
 import java.awt.event.ComponentAdapter;
 import java.awt.event.ComponentEvent;
 import java.awt.event.FocusListener;
@@ -77,6 +78,12 @@ public class InteractiveDisplayCanvasComponent< A > extends JComponent implement
 	 */
 	final protected CopyOnWriteArrayList< OverlayRenderer > overlayRenderers;
 
+	/**
+	 * The last mouse position on the canvas, or <code>null</code> if the mouse
+	 * is outside the canvas.
+	 */
+	protected volatile Point lastMousePosition;
+
 	/**
 	 * Create a new {@link InteractiveDisplayCanvas} with initially no
 	 * {@link OverlayRenderer OverlayRenderers} and no {@link TransformListener
@@ -125,6 +132,35 @@ public class InteractiveDisplayCanvasComponent< A > extends JComponent implement
 			}
 		} );
 
+		final MouseAdapter mouseTracker = new MouseAdapter()
+		{
+			@Override
+			public void mouseMoved( final MouseEvent e )
+			{
+				lastMousePosition = e.getPoint();
+			}
+
+			@Override
+			public void mouseDragged( final MouseEvent e )
+			{
+				lastMousePosition = e.getPoint();
+			}
+
+			@Override
+			public void mouseEntered( final MouseEvent e )
+			{
+				lastMousePosition = e.getPoint();
+			}
+
+			@Override
+			public void mouseExited( final MouseEvent e )
+			{
+				lastMousePosition = null;
+			}
+		};
+		addMouseListener( mouseTracker );
+		addMouseMotionListener( mouseTracker );
+
 		handler = transformEventHandlerFactory.create( this );
 		handler.setCanvasSize( width, height, false );
 		addHandler( handler );
@@ -265,6 +301,18 @@ public class InteractiveDisplayCanvasComponent< A > extends JComponent implement
 		addHandler( handler );
 	}
 
+	/**
+	 * Get the last mouse position on the canvas (e.g., to render the region
+	 * around it first).
+	 * 
+	 * @return last mouse position, or <code>null</code> if the mouse is
+	 *         outside the canvas.
+	 */
+	public Point getLastMousePosition()
+	{
+		return lastMousePosition;
+	}
+
 	@Override
 	public void paintComponent( final Graphics g )
 	{
@@ -0,0 +1,61 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.ui;
+
+/**
+ * An {@link InterruptibleProjector} that can render a full resolution target
+ * image in interleaved progressive passes. In a pass with step <em>s</em>
+ * (a power of two), only the pixels whose coordinates are both multiples of
+ * <em>s</em> are sampled, and each sampled value is replicated into the
+ * <em>s</em>&times;<em>s</em> block starting at that pixel. If the previous
+ * pass with step <em>2s</em> is already in the target image, the pixels
+ * sampled by that pass are skipped (their values are already in place).
+ * Rendering the passes with steps <em>2<sup>k</sup>, ..., 2, 1</em> one
+ * after another samples every pixel exactly once, and results in the same
+ * image as rendering the full resolution image directly.
+ */
+public interface InterleavedProjector extends InterruptibleProjector
+{
+	/**
+	 * Set the pass rendered by the next {@link #map()}. A step of 1 without
+	 * skipping renders every pixel (which is the default).
+	 *
+	 * @param step
+	 *            distance between sampled pixels, a power of two.
+	 * @param skipCoarserSamples
+	 *            whether the target image already contains the pass with step
+	 *            <code>2 * step</code>, such that its samples are skipped.
+	 */
+	public void setInterleavedPass( final int step, final boolean skipCoarserSamples );
+}
@@ -0,0 +1,85 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.ui;
+
+import net.imglib2.RealRandomAccessible;
+
+/**
+ * A {@link RenderSource} that provides the image data at several resolution
+ * levels (a mipmap pyramid). Each level has its own source transform into the
+ * global coordinate system. Level 0 is the full resolution, and must be what
+ * {@link #getInterpolatedSource()} and {@link #getSourceTransform()} return.
+ * Higher levels have increasingly coarser resolution.
+ * <p>
+ * Renderers choose the level whose voxel size best matches the size of a
+ * screen pixel (see
+ * {@link MultiResolutionRenderer#getBestResolutionLevel(MultiResolutionRenderSource, net.imglib2.realtransform.AffineGet)}
+ * ), such that rendering cost depends on the screen size rather than on the
+ * size of the data.
+ * 
+ * @param <T>
+ *            pixel type
+ * @param <A>
+ *            transform type
+ */
+public interface MultiResolutionRenderSource< T, A > extends RenderSource< T, A >
+{
+	/**
+	 * Get the number of resolution levels.
+	 * 
+	 * @return number of resolution levels.
+	 */
+	public int getNumResolutionLevels();
+
+	/**
+	 * Get the image at the specified resolution level, extended to infinity
+	 * and interpolated.
+	 * 
+	 * @param level
+	 *            resolution level (0 is full resolution).
+	 * @return the extended and interpolated image.
+	 */
+	public RealRandomAccessible< T > getInterpolatedSource( final int level );
+
+	/**
+	 * Get the transform from the specified resolution level into the global
+	 * coordinate system.
+	 * 
+	 * @param level
+	 *            resolution level (0 is full resolution).
+	 * @return transforms the resolution level into the global coordinate
+	 *         system.
+	 */
+	public A getSourceTransform( final int level );
+}
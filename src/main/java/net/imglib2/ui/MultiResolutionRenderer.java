@@ -33,17 +33,39 @@
  */
 package net.imglib2.ui;
 
+import java.util.concurrent.ExecutorService;
+
+import net.imglib2.Interval;
 import net.imglib2.RandomAccessible;
+import net.imglib2.RealRandomAccess;
 import net.imglib2.RealRandomAccessible;
 import net.imglib2.concatenate.Concatenable;
+import net.imglib2.converter.Converter;
 import net.imglib2.display.screenimage.awt.ARGBScreenImage;
 import net.imglib2.realtransform.AffineGet;
 import net.imglib2.realtransform.AffineSet;
-import net.imglib2.realtransform.RealViews;
 import net.imglib2.type.numeric.ARGBType;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.ui.sampler.ScanlineClipping;
+import net.imglib2.ui.sampler.ScanlineViews;
+import net.imglib2.ui.util.TimeSeriesSource;
 
 /**
  * An {@link AbstractMultiResolutionRenderer} for a single {@link RenderSource}.
+ * <p>
+ * If the source is a {@link MultiResolutionRenderSource}, each screen image is
+ * rendered from the resolution level that
+ * {@link #getBestResolutionLevel(MultiResolutionRenderSource, AffineGet) best
+ * matches} its pixel size.
+ * <p>
+ * If the source is a {@link BoundedSource}, only screen pixels that map into
+ * its interval are sampled.
+ * <p>
+ * If the source is a {@link TimeSeriesSource}, its current time point is
+ * resolved once, when the {@link #getSourceState() source state} is taken
+ * at the start of a {@link #paint(AffineSet) paint}. Projectors render this
+ * time point, even if the time point changes while they are created or
+ * running, such that the source state describes what was rendered.
  * 
  * @param <A>
  *            transform type
@@ -70,10 +92,14 @@ public class MultiResolutionRenderer< A extends AffineSet & AffineGet & Concaten
 
 		final protected int numRenderingThreads;
 
+		final protected ExecutorService renderingExecutorService;
+
 		/**
 		 * Create a factory for {@link MultiResolutionRenderer
 		 * MultiResolutionRenderer} of the given source, with the specified
 		 * multi-resolution, multi-threading, and double-buffering properties.
+		 * Each renderer created by the factory creates (and owns) its own
+		 * rendering {@link ExecutorService}.
 		 * 
 		 * @param transformType
 		 *            which transformation type (e.g.
@@ -106,6 +132,51 @@ public class MultiResolutionRenderer< A extends AffineSet & AffineGet & Concaten
 				final long targetRenderNanos,
 				final boolean doubleBuffered,
 				final int numRenderingThreads )
+		{
+			this( transformType, source, screenScales, targetRenderNanos, doubleBuffered, numRenderingThreads, null );
+		}
+
+		/**
+		 * Create a factory for {@link MultiResolutionRenderer
+		 * MultiResolutionRenderer} of the given source, with the specified
+		 * multi-resolution, multi-threading, and double-buffering properties.
+		 * 
+		 * @param transformType
+		 *            which transformation type (e.g.
+		 *            {@link AffineTransformType2D affine 2d} or
+		 *            {@link AffineTransformType3D affine 3d}) is used for the
+		 *            source and viewer transforms.
+		 * @param source
+		 *            source data to be rendered.
+		 * @param screenScales
+		 *            Scale factors from the viewer canvas to screen images of
+		 *            different resolutions. A scale factor of 1 means 1 pixel
+		 *            in the screen image is displayed as 1 pixel on the canvas,
+		 *            a scale factor of 0.5 means 1 pixel in the screen image is
+		 *            displayed as 2 pixel on the canvas, etc. The screen scales
+		 *            are assumed to be ordered finer-to-coarse, with index 0
+		 *            corresponding to the full resolution usually.
+		 * @param targetRenderNanos
+		 *            Target rendering time in nanoseconds. The rendering time
+		 *            for the coarsest rendered scale should be below this
+		 *            threshold.
+		 * @param doubleBuffered
+		 *            Whether to use double buffered rendering.
+		 * @param numRenderingThreads
+		 *            How many threads to use for rendering.
+		 * @param renderingExecutorService
+		 *            {@link ExecutorService} shared by all renderers created by
+		 *            this factory. If <code>null</code>, each renderer creates
+		 *            its own.
+		 */
+		public Factory(
+				final AffineTransformType< A > transformType,
+				final RenderSource< ?, A > source,
+				final double[] screenScales,
+				final long targetRenderNanos,
+				final boolean doubleBuffered,
+				final int numRenderingThreads,
+				final ExecutorService renderingExecutorService )
 		{
 			this.transformType = transformType;
 			this.source = source;
@@ -113,12 +184,13 @@ public class MultiResolutionRenderer< A extends AffineSet & AffineGet & Concaten
 			this.targetRenderNanos = targetRenderNanos;
 			this.doubleBuffered = doubleBuffered;
 			this.numRenderingThreads = numRenderingThreads;
+			this.renderingExecutorService = renderingExecutorService;
 		}
 
 		@Override
 		public AbstractRenderer< A > create( final RenderTarget display, final PainterThread painterThread )
 		{
-			return new MultiResolutionRenderer< >( transformType, source, display, painterThread, screenScales, targetRenderNanos, doubleBuffered, numRenderingThreads );
+			return new MultiResolutionRenderer< >( transformType, source, display, painterThread, screenScales, targetRenderNanos, doubleBuffered, numRenderingThreads, renderingExecutorService );
 		}
 	}
 
@@ -127,6 +199,13 @@ public class MultiResolutionRenderer< A extends AffineSet & AffineGet & Concaten
 	 */
 	final protected RenderSource< ?, A > source;
 
+	/**
+	 * The {@link #getCurrentSource(RenderSource) current source} of
+	 * {@link #source} when the {@link #getSourceState() source state} was
+	 * last taken.
+	 */
+	protected volatile RenderSource< ?, A > currentSource;
+
 	/**
 	 * @param transformType
 	 *            which transformation type (e.g. {@link AffineTransformType2D
@@ -165,40 +244,377 @@ public class MultiResolutionRenderer< A extends AffineSet & AffineGet & Concaten
 			final boolean doubleBuffered,
 			final int numRenderingThreads )
 	{
-		super( transformType, display, painterThread, screenScales, targetRenderNanos, doubleBuffered, numRenderingThreads );
+		this( transformType, source, display, painterThread, screenScales, targetRenderNanos, doubleBuffered, numRenderingThreads, null );
+	}
+
+	/**
+	 * @param transformType
+	 *            which transformation type (e.g. {@link AffineTransformType2D
+	 *            affine 2d} or {@link AffineTransformType3D affine 3d}) is used
+	 *            for the source and viewer transforms.
+	 * @param source
+	 *            source data to be rendered.
+	 * @param display
+	 *            The canvas that will display the images we render.
+	 * @param painterThread
+	 *            Thread that triggers repainting of the display. Requests for
+	 *            repainting are send there.
+	 * @param screenScales
+	 *            Scale factors from the viewer canvas to screen images of
+	 *            different resolutions. A scale factor of 1 means 1 pixel in
+	 *            the screen image is displayed as 1 pixel on the canvas, a
+	 *            scale factor of 0.5 means 1 pixel in the screen image is
+	 *            displayed as 2 pixel on the canvas, etc. The screen scales are
+	 *            assumed to be ordered finer-to-coarse, with index 0
+	 *            corresponding to the full resolution usually.
+	 * @param targetRenderNanos
+	 *            Target rendering time in nanoseconds. The rendering time for
+	 *            the coarsest rendered scale should be below this threshold.
+	 * @param doubleBuffered
+	 *            Whether to use double buffered rendering.
+	 * @param numRenderingThreads
+	 *            How many threads to use for rendering.
+	 * @param renderingExecutorService
+	 *            {@link ExecutorService} to use for rendering. If
+	 *            <code>null</code>, a new one with
+	 *            <code>numRenderingThreads</code> threads is created.
+	 */
+	public MultiResolutionRenderer(
+			final AffineTransformType< A > transformType,
+			final RenderSource< ?, A > source,
+			final RenderTarget display,
+			final PainterThread painterThread,
+			final double[] screenScales,
+			final long targetRenderNanos,
+			final boolean doubleBuffered,
+			final int numRenderingThreads,
+			final ExecutorService renderingExecutorService )
+	{
+		super( transformType, display, painterThread, screenScales, targetRenderNanos, doubleBuffered, numRenderingThreads, renderingExecutorService );
 		this.source = source;
+		currentSource = getCurrentSource( source );
 	}
 
+	/**
+	 * Get the source state of the current source of {@link #source}, and
+	 * remember that source as the {@link #currentSource} to render.
+	 */
 	@Override
-	protected SimpleInterruptibleProjector< ?, ARGBType > createProjector( final A viewerTransform, final A screenScaleTransform, final ARGBScreenImage target )
+	protected SourceState getSourceState()
 	{
-		return createProjector( transformType, source, viewerTransform, screenScaleTransform, target, numRenderingThreads );
+		final RenderSource< ?, A > current = getCurrentSource( source );
+		currentSource = current;
+		final SourceState.Builder builder = new SourceState.Builder();
+		addSourceState( builder, current );
+		return builder.build();
 	}
 
-	protected static < T, A extends AffineGet & Concatenable< AffineGet > > SimpleInterruptibleProjector< T, ARGBType > createProjector(
+	/**
+	 * Get the source that <code>source</code> currently shows, i.e., the
+	 * {@link TimeSeriesSource#getCurrentSource() current time point} of a
+	 * {@link TimeSeriesSource}, or <code>source</code> itself otherwise.
+	 */
+	@SuppressWarnings( "unchecked" )
+	public static < T, A > RenderSource< T, A > getCurrentSource( final RenderSource< T, A > source )
+	{
+		RenderSource< T, A > current = source;
+		while ( current instanceof TimeSeriesSource )
+			current = ( ( TimeSeriesSource< T, A > ) current ).getCurrentSource();
+		return current;
+	}
+
+	/**
+	 * Rendering costs are recorded per interpolated source, i.e., separately
+	 * for each interpolation method.
+	 */
+	@Override
+	protected Object getRenderCostKey()
+	{
+		return currentSource.getInterpolatedSource();
+	}
+
+	/**
+	 * The {@link ARGBScreenImageProjector}s created by this renderer support
+	 * interleaved passes.
+	 */
+	@Override
+	protected boolean isInterleavedRenderingSupported()
+	{
+		return true;
+	}
+
+	/**
+	 * Add the identities of <code>source</code> and its interpolated source,
+	 * its converter (see {@link SourceState.Builder#addConverter(Object)}),
+	 * and the source transform to <code>builder</code>. The state is only
+	 * known if <code>source</code> is {@link Versioned}, i.e., if it reports
+	 * modifications of its data, and if the converter state is known.
+	 */
+	protected static < A extends AffineGet > void addSourceState( final SourceState.Builder builder, final RenderSource< ?, A > source )
+	{
+		builder.addVersioned( source );
+		builder.add( source.getInterpolatedSource() );
+		builder.addConverter( source.getConverter() );
+		builder.add( source.getSourceTransform().getRowPackedCopy() );
+	}
+
+	/**
+	 * The source state without the converter.
+	 */
+	@Override
+	protected SourceState getSamplingState()
+	{
+		final RenderSource< ?, A > current = currentSource;
+		final SourceState.Builder builder = new SourceState.Builder();
+		builder.addVersioned( current );
+		builder.add( current.getInterpolatedSource() );
+		builder.add( current.getSourceTransform().getRowPackedCopy() );
+		return builder.build();
+	}
+
+	@Override
+	protected boolean captureRawSamples( final InterruptibleProjector p, final RawSampleBuffer buffer )
+	{
+		( ( ARGBScreenImageProjector< ? > ) p ).setRawSampleBuffer( buffer );
+		return true;
+	}
+
+	@Override
+	protected boolean convertRawSamples( final RawSampleBuffer buffer, final int[] target, final int minY, final int maxY )
+	{
+		buffer.convert( currentSource.getConverter(), target, minY, maxY );
+		return true;
+	}
+
+	@Override
+	protected ARGBScreenImageProjector< ? > createProjector( final A viewerTransform, final A screenScaleTransform, final ARGBScreenImage target )
+	{
+		return createProjector( transformType, currentSource, viewerTransform, screenScaleTransform, target, numRenderingThreads, renderingExecutorService );
+	}
+
+	/**
+	 * Create a projector for the {@link #getCurrentSource(RenderSource)
+	 * current source} of <code>source</code>, which is resolved only once,
+	 * such that all parts of the projector (sampled resolution level,
+	 * clipping, converter) are taken from the same time point. The
+	 * {@link #getResolutionLevel(AffineTransformType, RenderSource, AffineGet, AffineGet)
+	 * resolution level} is selected once, too.
+	 */
+	protected static < T, A extends AffineGet & Concatenable< AffineGet > > ARGBScreenImageProjector< T > createProjector(
 			final AffineTransformType< A > transformType,
 			final RenderSource< T, A > source,
 			final A viewerTransform,
 			final A screenScaleTransform,
 			final ARGBScreenImage screenImage,
-			final int numRenderingThreads )
+			final int numRenderingThreads,
+			final ExecutorService renderingExecutorService )
 	{
-		return new SimpleInterruptibleProjector< >( getTransformedSource( transformType, source, viewerTransform, screenScaleTransform ), source.getConverter(), screenImage, numRenderingThreads );
+		final RenderSource< T, A > current = getCurrentSource( source );
+		final int level = getResolutionLevel( transformType, current, viewerTransform, screenScaleTransform );
+		final ARGBScreenImageProjector< T > projector = new ARGBScreenImageProjector< >( getTransformedSource( transformType, current, level, viewerTransform, screenScaleTransform ), current.getConverter(), screenImage, numRenderingThreads, renderingExecutorService );
+		if ( current instanceof BoundedSource )
+			setClipping( projector, transformType, current, level, viewerTransform, screenScaleTransform );
+		projector.setColumnsPreferred( ScanlineViews.isColumnTraversalPreferred( getLevelToScreen( transformType, current, level, viewerTransform, screenScaleTransform ) ) );
+		return projector;
 	}
 
-	protected static < T, A extends AffineGet & Concatenable< AffineGet > > RandomAccessible< T > getTransformedSource(
+	/**
+	 * Get the resolution level of <code>source</code> to render, i.e., the
+	 * {@link #getBestResolutionLevel(MultiResolutionRenderSource, AffineGet)
+	 * best resolution level} of a {@link MultiResolutionRenderSource}, and 0
+	 * for any other source.
+	 */
+	protected static < T, A extends AffineGet & Concatenable< AffineGet > > int getResolutionLevel(
+			final AffineTransformType< A > transformType,
+			final RenderSource< T, A > source,
+			final A viewerTransform,
+			final A screenScaleTransform )
+	{
+		if ( !( source instanceof MultiResolutionRenderSource ) )
+			return 0;
+		final A sourceToScreen = transformType.createTransform();
+		transformType.set( sourceToScreen, screenScaleTransform );
+		sourceToScreen.concatenate( viewerTransform );
+		@SuppressWarnings( "unchecked" )
+		final MultiResolutionRenderSource< T, A > mipmaps = ( MultiResolutionRenderSource< T, A > ) source;
+		return getBestResolutionLevel( mipmaps, sourceToScreen );
+	}
+
+	/**
+	 * Get the transform from resolution <code>level</code> of
+	 * <code>source</code> to the screen.
+	 */
+	protected static < T, A extends AffineGet & Concatenable< AffineGet > > A getLevelToScreen(
+			final AffineTransformType< A > transformType,
+			final RenderSource< T, A > source,
+			final int level,
+			final A viewerTransform,
+			final A screenScaleTransform )
+	{
+		final A sourceToScreen = transformType.createTransform();
+		transformType.set( sourceToScreen, screenScaleTransform );
+		sourceToScreen.concatenate( viewerTransform );
+		if ( source instanceof MultiResolutionRenderSource )
+		{
+			@SuppressWarnings( "unchecked" )
+			final MultiResolutionRenderSource< T, A > mipmaps = ( MultiResolutionRenderSource< T, A > ) source;
+			sourceToScreen.concatenate( mipmaps.getSourceTransform( level ) );
+		}
+		else
+			sourceToScreen.concatenate( source.getSourceTransform() );
+		return sourceToScreen;
+	}
+
+	/**
+	 * If the {@link BoundedSource#getSourceInterval() interval} of
+	 * <code>source</code> is known, clip rendering to the part of the screen
+	 * where resolution <code>level</code> of <code>source</code> depends on
+	 * pixels in the interval. The remaining pixels are filled with the
+	 * (converted) value of the source outside the interval.
+	 */
+	protected static < T, A extends AffineGet & Concatenable< AffineGet > > void setClipping(
+			final ARGBScreenImageProjector< T > projector,
 			final AffineTransformType< A > transformType,
 			final RenderSource< T, A > source,
+			final int level,
 			final A viewerTransform,
 			final A screenScaleTransform )
 	{
-		final RealRandomAccessible< T > img = source.getInterpolatedSource();
+		final Interval interval = ( ( BoundedSource ) source ).getSourceInterval();
+		if ( interval == null )
+			return;
 
 		final A sourceToScreen = transformType.createTransform();
 		transformType.set( sourceToScreen, screenScaleTransform );
 		sourceToScreen.concatenate( viewerTransform );
-		sourceToScreen.concatenate( source.getSourceTransform() );
 
-		return RealViews.affine( img, sourceToScreen );
+		final RealRandomAccessible< T > img;
+		final A intervalToSource;
+		if ( source instanceof MultiResolutionRenderSource )
+		{
+			@SuppressWarnings( "unchecked" )
+			final MultiResolutionRenderSource< T, A > mipmaps = ( MultiResolutionRenderSource< T, A > ) source;
+			img = mipmaps.getInterpolatedSource( level );
+			sourceToScreen.concatenate( mipmaps.getSourceTransform( level ) );
+			intervalToSource = transformType.createTransform();
+			intervalToSource.concatenate( mipmaps.getSourceTransform( level ).inverse() );
+			intervalToSource.concatenate( mipmaps.getSourceTransform( 0 ) );
+		}
+		else
+		{
+			img = source.getInterpolatedSource();
+			sourceToScreen.concatenate( source.getSourceTransform() );
+			intervalToSource = null;
+		}
+
+		final ScanlineClipping clipping = ScanlineClipping.create( interval, intervalToSource, sourceToScreen );
+		projector.setClipping( clipping, getBackground( source.getConverter(), img, clipping.getOutsidePosition() ) );
+		projector.setRawBackground( getRawBackground( img, clipping.getOutsidePosition() ) );
+	}
+
+	/**
+	 * Get the converted value of <code>img</code> at <code>position</code>.
+	 */
+	protected static < T > int getBackground( final Converter< ? super T, ARGBType > converter, final RealRandomAccessible< T > img, final double[] position )
+	{
+		final RealRandomAccess< T > access = img.realRandomAccess();
+		access.setPosition( position );
+		final ARGBType argb = new ARGBType();
+		converter.convert( access.get(), argb );
+		return argb.get();
+	}
+
+	/**
+	 * Get the raw value of <code>img</code> at <code>position</code>, or
+	 * <code>NaN</code> if <code>img</code> does not have {@link RealType}
+	 * pixels.
+	 */
+	protected static < T > float getRawBackground( final RealRandomAccessible< T > img, final double[] position )
+	{
+		final RealRandomAccess< T > access = img.realRandomAccess();
+		access.setPosition( position );
+		final T value = access.get();
+		return value instanceof RealType ? ( ( RealType< ? > ) value ).getRealFloat() : Float.NaN;
+	}
+
+	/**
+	 * Get resolution <code>level</code> of <code>source</code>, transformed
+	 * to the screen.
+	 */
+	protected static < T, A extends AffineGet & Concatenable< AffineGet > > RandomAccessible< T > getTransformedSource(
+			final AffineTransformType< A > transformType,
+			final RenderSource< T, A > source,
+			final int level,
+			final A viewerTransform,
+			final A screenScaleTransform )
+	{
+		final A sourceToScreen = transformType.createTransform();
+		transformType.set( sourceToScreen, screenScaleTransform );
+		sourceToScreen.concatenate( viewerTransform );
+
+		final RealRandomAccessible< T > img;
+		if ( source instanceof MultiResolutionRenderSource )
+		{
+			@SuppressWarnings( "unchecked" )
+			final MultiResolutionRenderSource< T, A > mipmaps = ( MultiResolutionRenderSource< T, A > ) source;
+			img = mipmaps.getInterpolatedSource( level );
+			sourceToScreen.concatenate( mipmaps.getSourceTransform( level ) );
+		}
+		else
+		{
+			img = source.getInterpolatedSource();
+			sourceToScreen.concatenate( source.getSourceTransform() );
+		}
+
+		return ScanlineViews.affine( img, sourceToScreen );
+	}
+
+	/**
+	 * Get the coarsest resolution level of <code>source</code> whose voxels
+	 * are not larger than a screen pixel. The size of a voxel on the screen is
+	 * the largest extent (in screen X,Y) of any of its edges. If all levels
+	 * have voxels larger than a screen pixel (i.e., when zoomed in), level 0
+	 * is used.
+	 * 
+	 * @param source
+	 *            multi-resolution source.
+	 * @param globalToScreen
+	 *            transforms global coordinates into screen image coordinates.
+	 * @return resolution level.
+	 */
+	public static < A extends AffineGet > int getBestResolutionLevel( final MultiResolutionRenderSource< ?, A > source, final AffineGet globalToScreen )
+	{
+		int best = 0;
+		for ( int level = 1; level < source.getNumResolutionLevels(); ++level )
+		{
+			if ( getVoxelScreenSize( source.getSourceTransform( level ), globalToScreen ) <= 1.0 )
+				best = level;
+			else
+				break;
+		}
+		return best;
+	}
+
+	/**
+	 * Get the size of a voxel, transformed by <code>sourceToGlobal</code>
+	 * followed by <code>globalToScreen</code>, in screen pixels. This is the
+	 * largest extent in screen X,Y of any of its edges.
+	 */
+	protected static double getVoxelScreenSize( final AffineGet sourceToGlobal, final AffineGet globalToScreen )
+	{
+		final int n = sourceToGlobal.numDimensions();
+		double size = 0;
+		for ( int d = 0; d < n; ++d )
+		{
+			double x = 0;
+			double y = 0;
+			for ( int k = 0; k < n; ++k )
+			{
+				x += globalToScreen.get( 0, k ) * sourceToGlobal.get( k, d );
+				y += globalToScreen.get( 1, k ) * sourceToGlobal.get( k, d );
+			}
+			size = Math.max( size, Math.sqrt( x * x + y * y ) );
+		}
+		return size;
 	}
 }
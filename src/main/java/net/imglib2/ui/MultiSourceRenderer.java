@@ -0,0 +1,347 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.ui;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+import net.imglib2.concatenate.Concatenable;
+import net.imglib2.display.screenimage.awt.ARGBScreenImage;
+import net.imglib2.realtransform.AffineGet;
+import net.imglib2.realtransform.AffineSet;
+
+/**
+ * An {@link AbstractMultiResolutionRenderer} for a list of
+ * {@link RenderSource RenderSources}. Each source (with its own source
+ * transform and converter) is rendered into its own screen image, and the
+ * images are then blended using a {@link BlendMode}, see
+ * {@link CompositingProjector}.
+ * <p>
+ * The rendering time of each source in the last completed frame can be
+ * queried via {@link #getLastSourceRenderNanoTimes()}, to find sources that
+ * are slow to render.
+ * 
+ * @param <A>
+ *            transform type
+ */
+public class MultiSourceRenderer< A extends AffineSet & AffineGet & Concatenable< AffineGet > > extends AbstractMultiResolutionRenderer< A >
+{
+	/**
+	 * Factory for creating {@link MultiSourceRenderer}.
+	 */
+	public static class Factory< A extends AffineSet & AffineGet & Concatenable< AffineGet > > implements RendererFactory< A >
+	{
+		final protected AffineTransformType< A > transformType;
+
+		final protected List< ? extends RenderSource< ?, A > > sources;
+
+		final protected BlendMode blendMode;
+
+		final protected double[] screenScales;
+
+		final protected long targetRenderNanos;
+
+		final protected boolean doubleBuffered;
+
+		final protected int numRenderingThreads;
+
+		final protected ExecutorService renderingExecutorService;
+
+		/**
+		 * Create a factory for {@link MultiSourceRenderer MultiSourceRenderer}
+		 * of the given sources, with the specified blend mode and
+		 * multi-resolution, multi-threading, and double-buffering properties.
+		 * 
+		 * @param transformType
+		 *            which transformation type (e.g.
+		 *            {@link AffineTransformType2D affine 2d} or
+		 *            {@link AffineTransformType3D affine 3d}) is used for the
+		 *            source and viewer transforms.
+		 * @param sources
+		 *            source data to be rendered.
+		 * @param blendMode
+		 *            how to combine the rendered sources.
+		 * @param screenScales
+		 *            Scale factors from the viewer canvas to screen images of
+		 *            different resolutions. A scale factor of 1 means 1 pixel
+		 *            in the screen image is displayed as 1 pixel on the canvas,
+		 *            a scale factor of 0.5 means 1 pixel in the screen image is
+		 *            displayed as 2 pixel on the canvas, etc. The screen scales
+		 *            are assumed to be ordered finer-to-coarse, with index 0
+		 *            corresponding to the full resolution usually.
+		 * @param targetRenderNanos
+		 *            Target rendering time in nanoseconds. The rendering time
+		 *            for the coarsest rendered scale should be below this
+		 *            threshold.
+		 * @param doubleBuffered
+		 *            Whether to use double buffered rendering.
+		 * @param numRenderingThreads
+		 *            How many threads to use for rendering.
+		 * @param renderingExecutorService
+		 *            {@link ExecutorService} shared by all renderers created by
+		 *            this factory. If <code>null</code>, each renderer creates
+		 *            its own.
+		 */
+		public Factory(
+				final AffineTransformType< A > transformType,
+				final List< ? extends RenderSource< ?, A > > sources,
+				final BlendMode blendMode,
+				final double[] screenScales,
+				final long targetRenderNanos,
+				final boolean doubleBuffered,
+				final int numRenderingThreads,
+				final ExecutorService renderingExecutorService )
+		{
+			this.transformType = transformType;
+			this.sources = sources;
+			this.blendMode = blendMode;
+			this.screenScales = screenScales;
+			this.targetRenderNanos = targetRenderNanos;
+			this.doubleBuffered = doubleBuffered;
+			this.numRenderingThreads = numRenderingThreads;
+			this.renderingExecutorService = renderingExecutorService;
+		}
+
+		@Override
+		public AbstractRenderer< A > create( final RenderTarget display, final PainterThread painterThread )
+		{
+			return new MultiSourceRenderer< >( transformType, sources, blendMode, display, painterThread, screenScales, targetRenderNanos, doubleBuffered, numRenderingThreads, renderingExecutorService );
+		}
+	}
+
+	/**
+	 * source data to be rendered.
+	 */
+	final protected List< RenderSource< ?, A > > sources;
+
+	/**
+	 * The {@link MultiResolutionRenderer#getCurrentSource(RenderSource)
+	 * current sources} of {@link #sources} when the {@link #getSourceState()
+	 * source state} was last taken. Projectors render these.
+	 */
+	protected volatile List< RenderSource< ?, A > > currentSources;
+
+	/**
+	 * How rendered sources are combined.
+	 */
+	protected volatile BlendMode blendMode;
+
+	/**
+	 * Storage for the per-source screen images. These are reused for all
+	 * screen scales, and grown if necessary.
+	 */
+	protected int[][] sourceImageData;
+
+	/**
+	 * Storage for the per-source screen images of speculative rendering.
+	 */
+	protected int[][] speculativeSourceImageData;
+
+	/**
+	 * Rendering time of each source in the last completed frame.
+	 */
+	protected long[] lastSourceRenderNanoTimes;
+
+	/**
+	 * @param transformType
+	 *            which transformation type (e.g. {@link AffineTransformType2D
+	 *            affine 2d} or {@link AffineTransformType3D affine 3d}) is used
+	 *            for the source and viewer transforms.
+	 * @param sources
+	 *            source data to be rendered.
+	 * @param blendMode
+	 *            how to combine the rendered sources.
+	 * @param display
+	 *            The canvas that will display the images we render.
+	 * @param painterThread
+	 *            Thread that triggers repainting of the display. Requests for
+	 *            repainting are send there.
+	 * @param screenScales
+	 *            Scale factors from the viewer canvas to screen images of
+	 *            different resolutions. A scale factor of 1 means 1 pixel in
+	 *            the screen image is displayed as 1 pixel on the canvas, a
+	 *            scale factor of 0.5 means 1 pixel in the screen image is
+	 *            displayed as 2 pixel on the canvas, etc. The screen scales are
+	 *            assumed to be ordered finer-to-coarse, with index 0
+	 *            corresponding to the full resolution usually.
+	 * @param targetRenderNanos
+	 *            Target rendering time in nanoseconds. The rendering time for
+	 *            the coarsest rendered scale should be below this threshold.
+	 * @param doubleBuffered
+	 *            Whether to use double buffered rendering.
+	 * @param numRenderingThreads
+	 *            How many threads to use for rendering.
+	 * @param renderingExecutorService
+	 *            {@link ExecutorService} to use for rendering. If
+	 *            <code>null</code>, a new one with
+	 *            <code>numRenderingThreads</code> threads is created.
+	 */
+	public MultiSourceRenderer(
+			final AffineTransformType< A > transformType,
+			final List< ? extends RenderSource< ?, A > > sources,
+			final BlendMode blendMode,
+			final RenderTarget display,
+			final PainterThread painterThread,
+			final double[] screenScales,
+			final long targetRenderNanos,
+			final boolean doubleBuffered,
+			final int numRenderingThreads,
+			final ExecutorService renderingExecutorService )
+	{
+		super( transformType, display, painterThread, screenScales, targetRenderNanos, doubleBuffered, numRenderingThreads, renderingExecutorService );
+		this.sources = Collections.unmodifiableList( new ArrayList< RenderSource< ?, A > >( sources ) );
+		currentSources = getCurrentSources();
+		this.blendMode = blendMode;
+		sourceImageData = new int[ this.sources.size() ][ 0 ];
+		speculativeSourceImageData = new int[ this.sources.size() ][ 0 ];
+		lastSourceRenderNanoTimes = new long[ this.sources.size() ];
+	}
+
+	public List< RenderSource< ?, A > > getSources()
+	{
+		return sources;
+	}
+
+	public BlendMode getBlendMode()
+	{
+		return blendMode;
+	}
+
+	/**
+	 * Set how rendered sources are combined, and request a repaint.
+	 */
+	public void setBlendMode( final BlendMode blendMode )
+	{
+		this.blendMode = blendMode;
+		requestRepaint();
+	}
+
+	/**
+	 * How many nano-seconds did rendering each source take in the last
+	 * completed frame. Times are summed over all rendering threads.
+	 * 
+	 * @return rendering time for each source (in the order of
+	 *         {@link #getSources()}), in nano-seconds.
+	 */
+	public synchronized long[] getLastSourceRenderNanoTimes()
+	{
+		return lastSourceRenderNanoTimes.clone();
+	}
+
+	@Override
+	public boolean paint( final A viewerTransform )
+	{
+		final boolean success = super.paint( viewerTransform );
+		if ( success )
+		{
+			synchronized ( this )
+			{
+				if ( projector instanceof CompositingProjector )
+					lastSourceRenderNanoTimes = ( ( CompositingProjector ) projector ).getLastFrameSourceRenderNanoTimes();
+			}
+		}
+		return success;
+	}
+
+	/**
+	 * Get the source state of the current sources, and remember them as the
+	 * {@link #currentSources} to render.
+	 */
+	@Override
+	protected SourceState getSourceState()
+	{
+		final List< RenderSource< ?, A > > current = getCurrentSources();
+		currentSources = current;
+		final SourceState.Builder builder = new SourceState.Builder();
+		builder.add( blendMode );
+		for ( final RenderSource< ?, A > source : current )
+			MultiResolutionRenderer.addSourceState( builder, source );
+		return builder.build();
+	}
+
+	private List< RenderSource< ?, A > > getCurrentSources()
+	{
+		final ArrayList< RenderSource< ?, A > > current = new ArrayList< >( sources.size() );
+		for ( final RenderSource< ?, A > source : sources )
+			current.add( MultiResolutionRenderer.getCurrentSource( source ) );
+		return current;
+	}
+
+	/**
+	 * Rendering costs are recorded per combination of interpolated sources.
+	 */
+	@Override
+	protected Object getRenderCostKey()
+	{
+		final ArrayList< Object > key = new ArrayList< >( sources.size() );
+		for ( final RenderSource< ?, A > source : currentSources )
+			key.add( source.getInterpolatedSource() );
+		return key;
+	}
+
+	@Override
+	protected CompositingProjector createProjector( final A viewerTransform, final A screenScaleTransform, final ARGBScreenImage target )
+	{
+		return createProjector( viewerTransform, screenScaleTransform, target, sourceImageData );
+	}
+
+	@Override
+	protected CompositingProjector createSpeculativeProjector( final A viewerTransform, final A screenScaleTransform, final ARGBScreenImage target )
+	{
+		return createProjector( viewerTransform, screenScaleTransform, target, speculativeSourceImageData );
+	}
+
+	/**
+	 * Create a {@link CompositingProjector} that renders the sources into
+	 * screen images backed by (and, if necessary, grown) arrays of
+	 * <code>sourceImageData</code>.
+	 */
+	protected CompositingProjector createProjector( final A viewerTransform, final A screenScaleTransform, final ARGBScreenImage target, final int[][] sourceImageData )
+	{
+		final int w = ( int ) target.dimension( 0 );
+		final int h = ( int ) target.dimension( 1 );
+		final List< RenderSource< ?, A > > current = currentSources;
+		final ArrayList< ARGBScreenImageProjector< ? > > projectors = new ArrayList< >( current.size() );
+		for ( int s = 0; s < current.size(); ++s )
+		{
+			if ( sourceImageData[ s ].length < w * h )
+				sourceImageData[ s ] = new int[ w * h ];
+			final ARGBScreenImage sourceImage = new ARGBScreenImage( w, h, sourceImageData[ s ] );
+			projectors.add( MultiResolutionRenderer.createProjector( transformType, current.get( s ), viewerTransform, screenScaleTransform, sourceImage, numRenderingThreads, renderingExecutorService ) );
+		}
+		return new CompositingProjector( projectors, target, blendMode, numRenderingThreads, renderingExecutorService );
+	}
+}
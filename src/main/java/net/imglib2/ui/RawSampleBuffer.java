@@ -0,0 +1,211 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.ui;
+
+import net.imglib2.converter.Converter;
+import net.imglib2.type.numeric.ARGBType;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.integer.ByteType;
+import net.imglib2.type.numeric.integer.ShortType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.ui.converter.LookupTableConverter;
+
+/**
+ * The raw (pre-conversion) source values of a rendered screen image, stored as
+ * <code>float</code>s in a flat array with the same layout as the screen
+ * image. A {@link ARGBScreenImageProjector} fills it while rendering (see
+ * {@link ARGBScreenImageProjector#setRawSampleBuffer(RawSampleBuffer)}) if
+ * the source pixels are {@link RealType}s. If only the converter changes
+ * afterwards, the screen image can be recomputed by
+ * {@link #convert(Converter, int[], int, int) converting} the buffer, without
+ * resampling the source.
+ * <p>
+ * Only pixel types whose values are represented exactly by a
+ * <code>float</code> are {@link #isSupported(RealType) supported}, that is,
+ * 8- and 16-bit integer types and {@link FloatType}. For other types (e.g.,
+ * {@link net.imglib2.type.numeric.integer.IntType IntType} or
+ * {@link net.imglib2.type.numeric.real.DoubleType DoubleType}), converting
+ * the buffer would not reproduce the rendered image, and the
+ * {@link #getType() type} remains unknown.
+ */
+public class RawSampleBuffer
+{
+	private final int width;
+
+	private final int height;
+
+	private final float[] data;
+
+	/**
+	 * Pixel type of the samples, used as input for converters.
+	 */
+	private volatile RealType< ? > type;
+
+	/**
+	 * Whether a sample of an unsupported type was seen.
+	 */
+	private volatile boolean unsupported;
+
+	public RawSampleBuffer( final int width, final int height )
+	{
+		this.width = width;
+		this.height = height;
+		data = new float[ width * height ];
+		type = null;
+		unsupported = false;
+	}
+
+	/**
+	 * Check whether all values of the pixel type of <code>sample</code> are
+	 * represented exactly by a <code>float</code>.
+	 */
+	public static boolean isSupported( final RealType< ? > sample )
+	{
+		return sample instanceof UnsignedByteType
+				|| sample instanceof ByteType
+				|| sample instanceof UnsignedShortType
+				|| sample instanceof ShortType
+				|| sample instanceof FloatType;
+	}
+
+	public int getWidth()
+	{
+		return width;
+	}
+
+	public int getHeight()
+	{
+		return height;
+	}
+
+	/**
+	 * Get the sample values, in the same layout as the screen image data.
+	 */
+	public float[] getData()
+	{
+		return data;
+	}
+
+	/**
+	 * Remember the pixel type of the samples (if it is not known yet). If the
+	 * type is not {@link #isSupported(RealType) supported}, the buffer is
+	 * marked {@link #isUnsupported() unsupported} instead.
+	 *
+	 * @param sample
+	 *            a sample of the source.
+	 */
+	public void setType( final RealType< ? > sample )
+	{
+		if ( type == null && !unsupported )
+		{
+			if ( isSupported( sample ) )
+				type = sample.createVariable();
+			else
+				unsupported = true;
+		}
+	}
+
+	/**
+	 * Whether samples of a type that is not {@link #isSupported(RealType)
+	 * supported} were stored. The buffer cannot be used then.
+	 */
+	public boolean isUnsupported()
+	{
+		return unsupported;
+	}
+
+	/**
+	 * Forget the pixel type, before the buffer is filled again (possibly from
+	 * a different source).
+	 */
+	public void reset()
+	{
+		type = null;
+		unsupported = false;
+	}
+
+	/**
+	 * Get the pixel type of the samples, or <code>null</code> if no sample
+	 * has been stored yet or the type is not
+	 * {@link #isSupported(RealType) supported}.
+	 */
+	public RealType< ? > getType()
+	{
+		return type;
+	}
+
+	/**
+	 * Convert the samples in rows <em>[minY, maxY)</em> to ARGB values. This
+	 * may be called concurrently for disjoint rows. The {@link #getType()
+	 * type} must be known.
+	 *
+	 * @param converter
+	 *            converter from the source pixel type to {@link ARGBType}.
+	 * @param target
+	 *            ARGB data of a screen image of the same size.
+	 * @param minY
+	 *            first row (inclusive).
+	 * @param maxY
+	 *            last row (exclusive).
+	 */
+	@SuppressWarnings( "unchecked" )
+	public < T > void convert( final Converter< ? super T, ARGBType > converter, final int[] target, final int minY, final int maxY )
+	{
+		final RealType< ? > variable = type.createVariable();
+		final T input = ( T ) variable;
+		final int end = maxY * width;
+		if ( converter instanceof LookupTableConverter )
+		{
+			final LookupTableConverter< ? super T > lutConverter = ( LookupTableConverter< ? super T > ) converter;
+			final int[] lut = lutConverter.getLut();
+			for ( int i = minY * width; i < end; ++i )
+			{
+				variable.setReal( data[ i ] );
+				target[ i ] = lut[ lutConverter.index( input ) ];
+			}
+		}
+		else
+		{
+			final ARGBType argb = new ARGBType();
+			for ( int i = minY * width; i < end; ++i )
+			{
+				variable.setReal( data[ i ] );
+				converter.convert( input, argb );
+				target[ i ] = argb.get();
+			}
+		}
+	}
+}
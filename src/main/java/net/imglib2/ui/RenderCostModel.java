@@ -0,0 +1,152 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.ui;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Predicts rendering time from a smoothed estimate of the rendering cost per
+ * screen pixel. Estimates are kept separately for each key (e.g., a
+ * source/interpolation combination), because the cost per pixel depends
+ * strongly on what is rendered.
+ * <p>
+ * Each {@link #update(Object, long, long) measurement} is blended into the
+ * estimate with an exponential moving average, such that the estimate follows
+ * changes in data or zoom within a few frames without jumping on outliers.
+ * <p>
+ * At most <code>maxKeys</code> estimates are kept. When more keys are
+ * measured, the estimate that was used least recently is dropped.
+ */
+public class RenderCostModel
+{
+	private final LinkedHashMap< Object, Double > nanosPerPixel;
+
+	private final double smoothing;
+
+	private final int maxKeys;
+
+	public RenderCostModel()
+	{
+		this( 0.3 );
+	}
+
+	/**
+	 * @param smoothing
+	 *            weight (in <code>(0, 1]</code>) of a new measurement in the
+	 *            moving average. 1 means only the last measurement is used.
+	 */
+	public RenderCostModel( final double smoothing )
+	{
+		this( smoothing, 64 );
+	}
+
+	/**
+	 * @param smoothing
+	 *            weight (in <code>(0, 1]</code>) of a new measurement in the
+	 *            moving average. 1 means only the last measurement is used.
+	 * @param maxKeys
+	 *            maximum number of keys for which estimates are kept.
+	 */
+	public RenderCostModel( final double smoothing, final int maxKeys )
+	{
+		if ( smoothing <= 0 || smoothing > 1 )
+			throw new IllegalArgumentException( "smoothing must be in (0, 1]" );
+		if ( maxKeys < 1 )
+			throw new IllegalArgumentException( "maxKeys must be positive" );
+		this.smoothing = smoothing;
+		this.maxKeys = maxKeys;
+		// access order: least recently used keys are evicted first
+		nanosPerPixel = new LinkedHashMap< Object, Double >( 16, 0.75f, true )
+		{
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry( final Map.Entry< Object, Double > eldest )
+			{
+				return size() > RenderCostModel.this.maxKeys;
+			}
+		};
+	}
+
+	/**
+	 * Record that rendering <code>numPixels</code> screen pixels for
+	 * <code>key</code> took <code>nanos</code> nanoseconds.
+	 */
+	public synchronized void update( final Object key, final long nanos, final long numPixels )
+	{
+		if ( numPixels <= 0 || nanos <= 0 )
+			return;
+		final double npp = ( double ) nanos / numPixels;
+		final Double old = nanosPerPixel.get( key );
+		nanosPerPixel.put( key, old == null ? npp : old + smoothing * ( npp - old ) );
+	}
+
+	/**
+	 * Get the estimated rendering time per screen pixel for <code>key</code>.
+	 * 
+	 * @return nanoseconds per pixel, or {@link Double#NaN} if nothing has been
+	 *         measured for <code>key</code> yet.
+	 */
+	public synchronized double getNanosPerPixel( final Object key )
+	{
+		final Double npp = nanosPerPixel.get( key );
+		return npp == null ? Double.NaN : npp;
+	}
+
+	/**
+	 * Get the screen scale at which rendering an image of
+	 * <code>numFullResolutionPixels</code> pixels (at screen scale 1) for
+	 * <code>key</code> is expected to take <code>targetNanos</code>
+	 * nanoseconds.
+	 * 
+	 * @return the screen scale (may be larger than 1), or {@link Double#NaN}
+	 *         if nothing has been measured for <code>key</code> yet.
+	 */
+	public double getScreenScale( final Object key, final long targetNanos, final long numFullResolutionPixels )
+	{
+		final double npp = getNanosPerPixel( key );
+		if ( Double.isNaN( npp ) || numFullResolutionPixels <= 0 )
+			return Double.NaN;
+		return Math.sqrt( targetNanos / ( npp * numFullResolutionPixels ) );
+	}
+
+	/**
+	 * Forget all estimates.
+	 */
+	public synchronized void clear()
+	{
+		nanosPerPixel.clear();
+	}
+}
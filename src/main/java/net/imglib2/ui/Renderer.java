@@ -82,4 +82,12 @@ public interface Renderer< A >
 	 * @return whether rendering was successful.
 	 */
 	public boolean paint( final A viewerTransform );
+
+	/**
+	 * Stop rendering and release resources (e.g., rendering threads) held by
+	 * this {@link Renderer}. This is called when the viewer is closed. The
+	 * {@link Renderer} should not be used afterwards.
+	 */
+	public default void kill()
+	{}
 }
@@ -0,0 +1,122 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.ui;
+
+import net.imglib2.Interval;
+import net.imglib2.display.screenimage.awt.ARGBScreenImage;
+
+/**
+ * An {@link InterruptibleProjector} that renders its target image in tiles and
+ * keeps track of completed tiles. If {@link #map()} is cancelled, completed
+ * tiles are kept, and the next {@link #map()} only renders the remaining
+ * tiles.
+ * <p>
+ * Tiles that were rendered with {@link Placeholders placeholder} values are
+ * not completed either. That is, after a successful {@link #map()}, the
+ * target image is complete, but {@link #getNumTilesDone()} may be less than
+ * {@link #getNumTiles()}. Another {@link #map()} then renders these tiles
+ * again.
+ * <p>
+ * A {@link #setDeadline(long) deadline} can be set, after which no new tiles
+ * are started. {@link #map()} then returns <code>false</code> and the
+ * completed tiles can be displayed with the remaining tiles
+ * {@link #fillMissingTiles(ARGBScreenImage) filled} from a lower-resolution
+ * image.
+ */
+public interface ResumableProjector extends InterruptibleProjector
+{
+	/**
+	 * Get the number of tiles that the target image is divided into.
+	 */
+	public int getNumTiles();
+
+	/**
+	 * Get the number of tiles that have been completely rendered.
+	 */
+	public int getNumTilesDone();
+
+	/**
+	 * Fill all tiles that have not been rendered yet with (nearest-neighbor
+	 * upsampled) pixels of a lower-resolution <code>fallback</code> image of
+	 * the same view. After this, the target image can be displayed.
+	 * 
+	 * @param fallback
+	 *            lower-resolution rendering of the same view.
+	 */
+	public void fillMissingTiles( final ARGBScreenImage fallback );
+
+	/**
+	 * Declare that the pixels of the target image in <code>interval</code>
+	 * are already valid (e.g., because they were copied from a previous frame).
+	 * These pixels will not be rendered. Must be called before {@link #map()}.
+	 * 
+	 * @param interval
+	 *            valid interval in target image coordinates.
+	 */
+	public void setValidInterval( final Interval interval );
+
+	/**
+	 * Set the time after which {@link #map()} stops rendering new tiles.
+	 * Tiles that are already being rendered are completed.
+	 * 
+	 * @param deadlineNanos
+	 *            deadline in terms of {@link System#nanoTime()}.
+	 */
+	public void setDeadline( final long deadlineNanos );
+
+	/**
+	 * Remove the {@link #setDeadline(long) deadline}, i.e., {@link #map()}
+	 * renders until all tiles are completed or it is cancelled.
+	 */
+	public void clearDeadline();
+
+	/**
+	 * Whether the last {@link #map()} stopped because the
+	 * {@link #setDeadline(long) deadline} was reached (as opposed to
+	 * completing or being cancelled).
+	 */
+	public boolean isDeadlineReached();
+
+	/**
+	 * Set the order in which tiles are rendered by the next {@link #map()}.
+	 * 
+	 * @param order
+	 *            tile order.
+	 * @param focusX
+	 *            X coordinate of the focus point, in target image coordinates.
+	 * @param focusY
+	 *            Y coordinate of the focus point, in target image coordinates.
+	 */
+	public void setTileOrder( final TileOrder order, final double focusX, final double focusY );
+}
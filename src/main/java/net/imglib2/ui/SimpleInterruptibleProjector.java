@@ -100,6 +100,24 @@ public class SimpleInterruptibleProjector< A, B > extends AbstractInterruptibleP
 		this( source, converter, target, numThreads, null );
 	}
 
+	/**
+	 * Create new projector with the given source and a converter from source to
+	 * target pixel type.
+	 *
+	 * @param source
+	 *            source pixels.
+	 * @param converter
+	 *            converts from the source pixel type to the target pixel type.
+	 * @param target
+	 *            the target interval that this projector maps to
+	 * @param numThreads
+	 *            how many threads to use for rendering.
+	 * @param executorService
+	 *            {@link ExecutorService} to run the rendering tasks. If
+	 *            <code>null</code>, a new {@link ExecutorService} is created
+	 *            (and shut down) in every {@link #map()}. Renderers should
+	 *            pass a long-lived {@link ExecutorService} here.
+	 */
 	public SimpleInterruptibleProjector(
 			final RandomAccessible< A > source,
 			final Converter< ? super A, B > converter,
@@ -125,23 +143,52 @@ public class SimpleInterruptibleProjector< A, B > extends AbstractInterruptibleP
 	@Override
 	public boolean map()
 	{
-		interrupted.set( false );
-
 		final StopWatch stopWatch = new StopWatch();
 		stopWatch.start();
 
+		final ArrayList< Callable< Void > > tasks = createTasks();
+
+		final boolean createExecutor = ( executorService == null );
+		final ExecutorService ex = createExecutor ? Executors.newFixedThreadPool( numThreads ) : executorService;
+		try
+		{
+			ex.invokeAll( tasks );
+		}
+		catch ( final InterruptedException e )
+		{
+			Thread.currentThread().interrupt();
+		}
+		if ( createExecutor )
+			ex.shutdown();
+
+		lastFrameRenderNanoTime = stopWatch.nanoTime();
+
+		return !interrupted.get();
+	}
+
+	/**
+	 * Prepare rendering the target image and split it into tasks, each
+	 * rendering a horizontal band of the target image via
+	 * {@link #mapTile(long, long, int, int)}. This resets the
+	 * {@link #interrupted} flag. {@link #map()} runs the returned tasks on the
+	 * {@link ExecutorService}. Projectors that combine several
+	 * {@link SimpleInterruptibleProjector}s can use this to run the tasks of
+	 * all of them in a single batch.
+	 *
+	 * @return tasks that together render the target image.
+	 */
+	protected ArrayList< Callable< Void > > createTasks()
+	{
+		interrupted.set( false );
+
 		min[ 0 ] = target.min( 0 );
 		min[ 1 ] = target.min( 1 );
 		max[ 0 ] = target.max( 0 );
 		max[ 1 ] = target.max( 1 );
 
-		final long cr = -target.dimension( 0 );
-
 		final int width = ( int ) target.dimension( 0 );
 		final int height = ( int ) target.dimension( 1 );
 
-		final boolean createExecutor = ( executorService == null );
-		final ExecutorService ex = createExecutor ? Executors.newFixedThreadPool( numThreads ) : executorService;
 		final int numTasks;
 		if ( numThreads > 1 )
 		{
@@ -153,8 +200,12 @@ public class SimpleInterruptibleProjector< A, B > extends AbstractInterruptibleP
 		final ArrayList< Callable< Void > > tasks = new ArrayList<>( numTasks );
 		for ( int taskNum = 0; taskNum < numTasks; ++taskNum )
 		{
-			final long myMinY = min[ 1 ] + ( int ) ( taskNum * taskHeight );
-			final long myHeight = ( ( taskNum == numTasks - 1 ) ? height : ( int ) ( ( taskNum + 1 ) * taskHeight ) ) - myMinY - min[ 1 ];
+			// band offsets are relative to the target min, such that the
+			// height does not depend on min[ 1 ]
+			final int myOffset = ( int ) ( taskNum * taskHeight );
+			final int myEnd = ( taskNum == numTasks - 1 ) ? height : ( int ) ( ( taskNum + 1 ) * taskHeight );
+			final long myMinY = min[ 1 ] + myOffset;
+			final int myHeight = myEnd - myOffset;
 
 			final Callable< Void > r = new Callable< Void >()
 			{
@@ -164,47 +215,57 @@ public class SimpleInterruptibleProjector< A, B > extends AbstractInterruptibleP
 					if ( interrupted.get() )
 						return null;
 
-					final RandomAccess< A > sourceRandomAccess = source.randomAccess( SimpleInterruptibleProjector.this );
-					final RandomAccess< B > targetRandomAccess = target.randomAccess( target );
-
-					sourceRandomAccess.setPosition( min );
-					sourceRandomAccess.setPosition( myMinY, 1 );
-					targetRandomAccess.setPosition( min[ 0 ], 0 );
-					targetRandomAccess.setPosition( myMinY, 1 );
-					for ( int y = 0; y < myHeight; ++y )
-					{
-						if ( interrupted.get() )
-							return null;
-						for ( int x = 0; x < width; ++x )
-						{
-							converter.convert( sourceRandomAccess.get(), targetRandomAccess.get() );
-							sourceRandomAccess.fwd( 0 );
-							targetRandomAccess.fwd( 0 );
-						}
-						sourceRandomAccess.move( cr, 0 );
-						targetRandomAccess.move( cr, 0 );
-						sourceRandomAccess.fwd( 1 );
-						targetRandomAccess.fwd( 1 );
-					}
+					mapTile( min[ 0 ], myMinY, width, myHeight );
 					return null;
 				}
 			};
 			tasks.add( r );
 		}
-		try
-		{
-			ex.invokeAll( tasks );
-		}
-		catch ( final InterruptedException e )
-		{
-			Thread.currentThread().interrupt();
-		}
-		if ( createExecutor )
-			ex.shutdown();
+		return tasks;
+	}
 
-		lastFrameRenderNanoTime = stopWatch.nanoTime();
+	/**
+	 * Render a rectangular tile of the target image by copying values from
+	 * the source. This is called from the rendering threads, once per task. It
+	 * should check {@link #interrupted} regularly and stop if it is set.
+	 *
+	 * @param minX
+	 *            min X coordinate of the tile in the target image.
+	 * @param minY
+	 *            min Y coordinate of the tile in the target image.
+	 * @param width
+	 *            width of the tile.
+	 * @param height
+	 *            height of the tile.
+	 * @return true if the tile was completed, false if rendering was
+	 *         interrupted.
+	 */
+	protected boolean mapTile( final long minX, final long minY, final int width, final int height )
+	{
+		final RandomAccess< A > sourceRandomAccess = source.randomAccess( this );
+		final RandomAccess< B > targetRandomAccess = target.randomAccess( target );
 
-		return !interrupted.get();
+		sourceRandomAccess.setPosition( min );
+		sourceRandomAccess.setPosition( minX, 0 );
+		sourceRandomAccess.setPosition( minY, 1 );
+		targetRandomAccess.setPosition( minX, 0 );
+		targetRandomAccess.setPosition( minY, 1 );
+		for ( int y = 0; y < height; ++y )
+		{
+			if ( interrupted.get() )
+				return false;
+			for ( int x = 0; x < width; ++x )
+			{
+				converter.convert( sourceRandomAccess.get(), targetRandomAccess.get() );
+				sourceRandomAccess.fwd( 0 );
+				targetRandomAccess.fwd( 0 );
+			}
+			sourceRandomAccess.move( -width, 0 );
+			targetRandomAccess.move( -width, 0 );
+			sourceRandomAccess.fwd( 1 );
+			targetRandomAccess.fwd( 1 );
+		}
+		return true;
 	}
 
 	protected AtomicBoolean interrupted = new AtomicBoolean();
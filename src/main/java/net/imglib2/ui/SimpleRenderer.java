@@ -33,18 +33,23 @@
  */
 package net.imglib2.ui;
 
+import java.util.concurrent.ExecutorService;
+
 import net.imglib2.RandomAccessible;
-import net.imglib2.RealRandomAccessible;
 import net.imglib2.concatenate.Concatenable;
 import net.imglib2.display.screenimage.awt.ARGBScreenImage;
 import net.imglib2.realtransform.AffineGet;
 import net.imglib2.realtransform.AffineSet;
-import net.imglib2.realtransform.RealViews;
-import net.imglib2.type.numeric.ARGBType;
 
 /**
  * A {@link AbstractSimpleRenderer} for a single {@link RenderSource}.
  * 
+ * <p>
+ * Like {@link MultiResolutionRenderer}, it renders the
+ * {@link MultiResolutionRenderer#getBestResolutionLevel(MultiResolutionRenderSource, AffineGet)
+ * best resolution level} of a {@link MultiResolutionRenderSource}, for the
+ * full resolution screen image.
+ * 
  * @param <A>
  *            transform type
  * 
@@ -65,10 +70,13 @@ public class SimpleRenderer< A extends AffineGet & Concatenable< AffineGet > > e
 
 		final protected int numRenderingThreads;
 
+		final protected ExecutorService renderingExecutorService;
+
 		/**
 		 * Create a factory for {@link SimpleRenderer SimpleRenderer} of the
 		 * given source, with the specified multi-threading and double-buffering
-		 * properties.
+		 * properties. Each renderer created by the factory creates (and owns)
+		 * its own rendering {@link ExecutorService}.
 		 * 
 		 * @param transformType
 		 *            which transformation type (e.g.
@@ -83,17 +91,44 @@ public class SimpleRenderer< A extends AffineGet & Concatenable< AffineGet > > e
 		 *            How many threads to use for rendering.
 		 */
 		public Factory( final AffineTransformType< A > transformType, final RenderSource< ?, A > source, final boolean doubleBuffered, final int numRenderingThreads )
+		{
+			this( transformType, source, doubleBuffered, numRenderingThreads, null );
+		}
+
+		/**
+		 * Create a factory for {@link SimpleRenderer SimpleRenderer} of the
+		 * given source, with the specified multi-threading and double-buffering
+		 * properties.
+		 * 
+		 * @param transformType
+		 *            which transformation type (e.g.
+		 *            {@link AffineTransformType2D affine 2d} or
+		 *            {@link AffineTransformType3D affine 3d}) is used for the
+		 *            source and viewer transforms.
+		 * @param source
+		 *            source data to be rendered.
+		 * @param doubleBuffered
+		 *            Whether to use double buffered rendering.
+		 * @param numRenderingThreads
+		 *            How many threads to use for rendering.
+		 * @param renderingExecutorService
+		 *            {@link ExecutorService} shared by all renderers created by
+		 *            this factory. If <code>null</code>, each renderer creates
+		 *            its own.
+		 */
+		public Factory( final AffineTransformType< A > transformType, final RenderSource< ?, A > source, final boolean doubleBuffered, final int numRenderingThreads, final ExecutorService renderingExecutorService )
 		{
 			this.transformType = transformType;
 			this.source = source;
 			this.doubleBuffered = doubleBuffered;
 			this.numRenderingThreads = numRenderingThreads;
+			this.renderingExecutorService = renderingExecutorService;
 		}
 
 		@Override
 		public SimpleRenderer< A > create( final RenderTarget display, final PainterThread painterThread )
 		{
-			return new SimpleRenderer< >( transformType, source, display, painterThread, doubleBuffered, numRenderingThreads );
+			return new SimpleRenderer< >( transformType, source, display, painterThread, doubleBuffered, numRenderingThreads, renderingExecutorService );
 		}
 	}
 
@@ -127,24 +162,64 @@ public class SimpleRenderer< A extends AffineGet & Concatenable< AffineGet > > e
 			final boolean doubleBuffered,
 			final int numRenderingThreads )
 	{
-		super( transformType, display, painterThread, doubleBuffered, numRenderingThreads );
+		this( transformType, source, display, painterThread, doubleBuffered, numRenderingThreads, null );
+	}
+
+	/**
+	 * @param transformType
+	 *            which transformation type (e.g. {@link AffineTransformType2D
+	 *            affine 2d} or {@link AffineTransformType3D affine 3d}) is used
+	 *            for the source and viewer transforms.
+	 * @param source
+	 *            source data to be rendered.
+	 * @param display
+	 *            The canvas that will display the images we render.
+	 * @param painterThread
+	 *            Thread that triggers repainting of the display. Requests for
+	 *            repainting are send there.
+	 * @param doubleBuffered
+	 *            Whether to use double buffered rendering.
+	 * @param numRenderingThreads
+	 *            How many threads to use for rendering.
+	 * @param renderingExecutorService
+	 *            {@link ExecutorService} to use for rendering. If
+	 *            <code>null</code>, a new one with
+	 *            <code>numRenderingThreads</code> threads is created.
+	 */
+	public SimpleRenderer(
+			final AffineTransformType< A > transformType,
+			final RenderSource< ?, A > source,
+			final RenderTarget display,
+			final PainterThread painterThread,
+			final boolean doubleBuffered,
+			final int numRenderingThreads,
+			final ExecutorService renderingExecutorService )
+	{
+		super( transformType, display, painterThread, doubleBuffered, numRenderingThreads, renderingExecutorService );
 		this.source = source;
 	}
 
 	@Override
-	protected SimpleInterruptibleProjector< ?, ARGBType > createProjector( final A viewerTransform, final ARGBScreenImage target )
+	protected ARGBScreenImageProjector< ? > createProjector( final A viewerTransform, final ARGBScreenImage target )
 	{
-		return createProjector( transformType, source, viewerTransform, target, numRenderingThreads );
+		return createProjector( transformType, source, viewerTransform, target, numRenderingThreads, renderingExecutorService );
 	}
 
-	protected static < T, A extends AffineGet & Concatenable< AffineGet > > SimpleInterruptibleProjector< T, ARGBType > createProjector(
+	protected static < T, A extends AffineGet & Concatenable< AffineGet > > ARGBScreenImageProjector< T > createProjector(
 			final AffineTransformType< A > transformType,
 			final RenderSource< T, A > source,
 			final A viewerTransform,
 			final ARGBScreenImage screenImage,
-			final int numRenderingThreads )
+			final int numRenderingThreads,
+			final ExecutorService renderingExecutorService )
 	{
-		return new SimpleInterruptibleProjector< >( getTransformedSource( transformType, source, viewerTransform ), source.getConverter(), screenImage, numRenderingThreads );
+		final RenderSource< T, A > current = MultiResolutionRenderer.getCurrentSource( source );
+		final A screenScaleTransform = transformType.createTransform();
+		final int level = MultiResolutionRenderer.getResolutionLevel( transformType, current, viewerTransform, screenScaleTransform );
+		final ARGBScreenImageProjector< T > projector = new ARGBScreenImageProjector< >( MultiResolutionRenderer.getTransformedSource( transformType, current, level, viewerTransform, screenScaleTransform ), current.getConverter(), screenImage, numRenderingThreads, renderingExecutorService );
+		if ( current instanceof BoundedSource )
+			MultiResolutionRenderer.setClipping( projector, transformType, current, level, viewerTransform, screenScaleTransform );
+		return projector;
 	}
 
 	protected static < T, A extends AffineGet & Concatenable< AffineGet > > RandomAccessible< T > getTransformedSource(
@@ -152,12 +227,8 @@ public class SimpleRenderer< A extends AffineGet & Concatenable< AffineGet > > e
 			final RenderSource< T, A > source,
 			final A viewerTransform )
 	{
-		final RealRandomAccessible< T > img = source.getInterpolatedSource();
-
-		final A sourceToScreen = transformType.createTransform();
-		transformType.set( sourceToScreen, viewerTransform );
-		sourceToScreen.concatenate( source.getSourceTransform() );
-
-		return RealViews.affine( img, sourceToScreen );
+		final A screenScaleTransform = transformType.createTransform();
+		final int level = MultiResolutionRenderer.getResolutionLevel( transformType, source, viewerTransform, screenScaleTransform );
+		return MultiResolutionRenderer.getTransformedSource( transformType, source, level, viewerTransform, screenScaleTransform );
 	}
 }
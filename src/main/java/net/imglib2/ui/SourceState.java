@@ -0,0 +1,183 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.ui;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import net.imglib2.display.ColorConverter;
+import net.imglib2.display.LinearRange;
+
+/**
+ * Snapshot of everything (besides the viewer transform) that determines what a
+ * renderer draws: the identity of sources and converters, the
+ * {@link Versioned#getVersion() versions} of those that are {@link Versioned},
+ * and additional values such as source transforms.
+ * <p>
+ * Two {@link SourceState SourceStates} are equal if they refer to the same
+ * objects (compared by identity) with the same versions and values. Renderers
+ * reuse previously rendered work only if the {@link SourceState} is unchanged.
+ * <p>
+ * Objects that may change without changing their identity (e.g., sources whose
+ * pixel data can be modified) should be added with
+ * {@link Builder#addVersioned(Object)}. If they are not {@link Versioned},
+ * the state is unknown, and {@link Builder#build()} returns <code>null</code>.
+ * Converters should be added with {@link Builder#addConverter(Object)}, which
+ * also accepts converters whose state is fully described by their display
+ * range.
+ */
+public final class SourceState
+{
+	/**
+	 * Builds a {@link SourceState}.
+	 */
+	public static class Builder
+	{
+		private final ArrayList< Object > objects = new ArrayList< >();
+
+		private final ArrayList< double[] > values = new ArrayList< >();
+
+		private boolean unknown = false;
+
+		/**
+		 * Add an object (compared by identity) and, if it is
+		 * {@link Versioned}, its current version.
+		 */
+		public Builder add( final Object object )
+		{
+			objects.add( object );
+			return this;
+		}
+
+		/**
+		 * Add an object that must be {@link Versioned} for the state to be
+		 * known. Use this for objects that can be modified in ways that affect
+		 * rendering.
+		 */
+		public Builder addVersioned( final Object object )
+		{
+			if ( !( object instanceof Versioned ) )
+				unknown = true;
+			return add( object );
+		}
+
+		/**
+		 * Add a converter. A {@link Versioned} converter is added with its
+		 * version. The display range (and color, if supported) of a
+		 * {@link LinearRange} converter is added as values. Any other
+		 * converter may have been modified without notice, and makes the state
+		 * unknown.
+		 */
+		public Builder addConverter( final Object converter )
+		{
+			if ( converter instanceof Versioned || !( converter instanceof LinearRange ) )
+				return addVersioned( converter );
+			final LinearRange range = ( LinearRange ) converter;
+			if ( converter instanceof ColorConverter && ( ( ColorConverter ) converter ).supportsColor() )
+				add( new double[] { range.getMin(), range.getMax(), ( ( ColorConverter ) converter ).getColor().get() } );
+			else
+				add( new double[] { range.getMin(), range.getMax() } );
+			return add( converter );
+		}
+
+		/**
+		 * Add values, e.g., the
+		 * {@link net.imglib2.realtransform.AffineGet#getRowPackedCopy()
+		 * parameters} of a source transform.
+		 */
+		public Builder add( final double[] values )
+		{
+			this.values.add( values.clone() );
+			return this;
+		}
+
+		/**
+		 * @return the {@link SourceState}, or <code>null</code> if the state
+		 *         is unknown, because an object added with
+		 *         {@link #addVersioned(Object)} is not {@link Versioned}.
+		 */
+		public SourceState build()
+		{
+			if ( unknown )
+				return null;
+			final Object[] o = objects.toArray();
+			final long[] versions = new long[ o.length ];
+			for ( int i = 0; i < o.length; ++i )
+				if ( o[ i ] instanceof Versioned )
+					versions[ i ] = ( ( Versioned ) o[ i ] ).getVersion();
+			return new SourceState( o, versions, values.toArray( new double[ 0 ][] ) );
+		}
+	}
+
+	private final Object[] objects;
+
+	private final long[] versions;
+
+	private final double[][] values;
+
+	private final int hashCode;
+
+	private SourceState( final Object[] objects, final long[] versions, final double[][] values )
+	{
+		this.objects = objects;
+		this.versions = versions;
+		this.values = values;
+		int h = Arrays.hashCode( versions );
+		for ( final Object o : objects )
+			h = 31 * h + System.identityHashCode( o );
+		hashCode = 31 * h + Arrays.deepHashCode( values );
+	}
+
+	@Override
+	public boolean equals( final Object obj )
+	{
+		if ( this == obj )
+			return true;
+		if ( !( obj instanceof SourceState ) )
+			return false;
+		final SourceState other = ( SourceState ) obj;
+		if ( hashCode != other.hashCode || objects.length != other.objects.length )
+			return false;
+		for ( int i = 0; i < objects.length; ++i )
+			if ( objects[ i ] != other.objects[ i ] )
+				return false;
+		return Arrays.equals( versions, other.versions ) && Arrays.deepEquals( values, other.values );
+	}
+
+	@Override
+	public int hashCode()
+	{
+		return hashCode;
+	}
+}
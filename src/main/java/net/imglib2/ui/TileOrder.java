@@ -0,0 +1,219 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.ui;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * The order in which the tiles of a {@link ResumableProjector} are rendered.
+ * Tiles are numbered in row-major order. Some orders prefer tiles close to a
+ * <em>focus point</em> (e.g., the mouse position), such that the region the
+ * user is looking at is completed first.
+ */
+public enum TileOrder
+{
+	/**
+	 * Row by row, top to bottom.
+	 */
+	ROW_MAJOR
+	{
+		@Override
+		public int[] getOrder( final int numTilesX, final int numTilesY, final double focusX, final double focusY )
+		{
+			final int[] order = new int[ numTilesX * numTilesY ];
+			for ( int t = 0; t < order.length; ++t )
+				order[ t ] = t;
+			return order;
+		}
+	},
+
+	/**
+	 * By increasing distance of the tile center from the focus point.
+	 */
+	DISTANCE_FROM_FOCUS
+	{
+		@Override
+		public int[] getOrder( final int numTilesX, final int numTilesY, final double focusX, final double focusY )
+		{
+			final int n = numTilesX * numTilesY;
+			final double[] distances = new double[ n ];
+			final Integer[] tiles = new Integer[ n ];
+			for ( int t = 0; t < n; ++t )
+			{
+				final double dx = t % numTilesX + 0.5 - focusX;
+				final double dy = t / numTilesX + 0.5 - focusY;
+				distances[ t ] = dx * dx + dy * dy;
+				tiles[ t ] = t;
+			}
+			Arrays.sort( tiles, new Comparator< Integer >()
+			{
+				@Override
+				public int compare( final Integer t1, final Integer t2 )
+				{
+					return Double.compare( distances[ t1 ], distances[ t2 ] );
+				}
+			} );
+			final int[] order = new int[ n ];
+			for ( int i = 0; i < n; ++i )
+				order[ i ] = tiles[ i ];
+			return order;
+		}
+	},
+
+	/**
+	 * Along a Morton (Z-order) curve. Tiles that are rendered one after another
+	 * (and therefore concurrently by different rendering threads) are close
+	 * to each other in all directions, such that they access nearby source
+	 * data. The focus point is ignored.
+	 * <p>
+	 * This order is {@link #isLayoutAware() layout-aware}.
+	 */
+	MORTON( true )
+	{
+		@Override
+		public int[] getOrder( final int numTilesX, final int numTilesY, final double focusX, final double focusY )
+		{
+			final int[] order = new int[ numTilesX * numTilesY ];
+			final int side = getCurveSide( numTilesX, numTilesY );
+			int i = 0;
+			for ( int d = 0; d < side * side; ++d )
+			{
+				int x = 0, y = 0;
+				for ( int b = 0; ( 1 << b ) < side; ++b )
+				{
+					x |= ( ( d >> ( 2 * b ) ) & 1 ) << b;
+					y |= ( ( d >> ( 2 * b + 1 ) ) & 1 ) << b;
+				}
+				if ( x < numTilesX && y < numTilesY )
+					order[ i++ ] = y * numTilesX + x;
+			}
+			return order;
+		}
+	},
+
+	/**
+	 * Along a Hilbert curve. Like {@link #MORTON}, but consecutive tiles are
+	 * always adjacent. The focus point is ignored.
+	 * <p>
+	 * This order is {@link #isLayoutAware() layout-aware}.
+	 */
+	HILBERT( true )
+	{
+		@Override
+		public int[] getOrder( final int numTilesX, final int numTilesY, final double focusX, final double focusY )
+		{
+			final int[] order = new int[ numTilesX * numTilesY ];
+			final int side = getCurveSide( numTilesX, numTilesY );
+			int i = 0;
+			for ( int d = 0; d < side * side; ++d )
+			{
+				int x = 0, y = 0;
+				for ( int s = 1, t = d; s < side; s *= 2, t /= 4 )
+				{
+					final int rx = 1 & ( t / 2 );
+					final int ry = 1 & ( t ^ rx );
+					if ( ry == 0 )
+					{
+						if ( rx == 1 )
+						{
+							x = s - 1 - x;
+							y = s - 1 - y;
+						}
+						final int tmp = x;
+						x = y;
+						y = tmp;
+					}
+					x += s * rx;
+					y += s * ry;
+				}
+				if ( x < numTilesX && y < numTilesY )
+					order[ i++ ] = y * numTilesX + x;
+			}
+			return order;
+		}
+	};
+
+	private final boolean layoutAware;
+
+	private TileOrder()
+	{
+		this( false );
+	}
+
+	private TileOrder( final boolean layoutAware )
+	{
+		this.layoutAware = layoutAware;
+	}
+
+	/**
+	 * Whether this order is meant to follow the memory layout of the source.
+	 * For layout-aware orders, the {@link ARGBScreenImageProjector} also
+	 * traverses the pixels within each tile column by column instead of row
+	 * by row, if this walks the source with smaller strides (see
+	 * {@link ARGBScreenImageProjector#setColumnsPreferred(boolean)}).
+	 */
+	public boolean isLayoutAware()
+	{
+		return layoutAware;
+	}
+
+	/**
+	 * Get the side length of the smallest power-of-two square grid that
+	 * contains a grid of <code>numTilesX</code> by <code>numTilesY</code>
+	 * tiles.
+	 */
+	static int getCurveSide( final int numTilesX, final int numTilesY )
+	{
+		int side = 1;
+		while ( side < numTilesX || side < numTilesY )
+			side *= 2;
+		return side;
+	}
+
+	/**
+	 * Get the order in which to render tiles.
+	 * 
+	 * @param numTilesX
+	 *            number of tiles in X.
+	 * @param numTilesY
+	 *            number of tiles in Y.
+	 * @param focusX
+	 *            X coordinate of the focus point, in units of tiles.
+	 * @param focusY
+	 *            Y coordinate of the focus point, in units of tiles.
+	 * @return all tile indices (in row-major numbering) in rendering order.
+	 */
+	public abstract int[] getOrder( final int numTilesX, final int numTilesY, final double focusX, final double focusY );
+}
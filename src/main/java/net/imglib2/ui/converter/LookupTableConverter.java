@@ -0,0 +1,229 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.ui.converter;
+
+import net.imglib2.converter.Converter;
+import net.imglib2.type.numeric.ARGBType;
+import net.imglib2.ui.Versioned;
+
+/**
+ * Abstract base class for {@link Converter Converters} from integer pixel
+ * types to {@link ARGBType} which look up the ARGB value of every possible
+ * input value in a precomputed table.
+ * <p>
+ * The table is computed from display range (<em>min, max</em>),
+ * <em>gamma</em>, and either a <em>color</em> or a <em>colormap</em>. It is
+ * rebuilt lazily, the first time it is used after one of these settings has
+ * changed. Every change of settings increments the {@link #getVersion()
+ * version}.
+ * <p>
+ * Projectors can use {@link #getLut()} and {@link #index(Object)} directly to
+ * avoid the {@link ARGBType} indirection of
+ * {@link #convert(Object, ARGBType)}.
+ *
+ * @param <T>
+ *            input pixel type
+ */
+public abstract class LookupTableConverter< T > implements Converter< T, ARGBType >, Versioned
+{
+	private final int size;
+
+	private double min;
+
+	private double max;
+
+	private double gamma;
+
+	private int color;
+
+	private int[] colormap;
+
+	private volatile int[] lut;
+
+	private long version;
+
+	/**
+	 * @param size
+	 *            number of entries of the lookup table (number of possible
+	 *            input values).
+	 * @param min
+	 *            input value that is mapped to black.
+	 * @param max
+	 *            input value that is mapped to full intensity.
+	 */
+	public LookupTableConverter( final int size, final double min, final double max )
+	{
+		this.size = size;
+		this.min = min;
+		this.max = max;
+		this.gamma = 1.0;
+		this.color = 0xffffffff;
+		this.colormap = null;
+		this.lut = null;
+		this.version = 0;
+	}
+
+	/**
+	 * Get the lookup table index of <code>input</code>.
+	 *
+	 * @return index into {@link #getLut()}.
+	 */
+	public abstract int index( final T input );
+
+	/**
+	 * Get the lookup table, mapping {@link #index(Object) input values} to
+	 * packed ARGB values. The table is rebuilt if settings have changed since
+	 * the last call. The returned array must not be modified.
+	 *
+	 * @return the lookup table.
+	 */
+	public int[] getLut()
+	{
+		final int[] l = lut;
+		return l != null ? l : buildLut();
+	}
+
+	@Override
+	public void convert( final T input, final ARGBType output )
+	{
+		output.set( getLut()[ index( input ) ] );
+	}
+
+	@Override
+	public synchronized long getVersion()
+	{
+		return version;
+	}
+
+	public synchronized double getMin()
+	{
+		return min;
+	}
+
+	public synchronized double getMax()
+	{
+		return max;
+	}
+
+	public synchronized double getGamma()
+	{
+		return gamma;
+	}
+
+	/**
+	 * Set the input value that is mapped to black.
+	 */
+	public synchronized void setMin( final double min )
+	{
+		this.min = min;
+		lut = null;
+		++version;
+	}
+
+	/**
+	 * Set the input value that is mapped to full intensity.
+	 */
+	public synchronized void setMax( final double max )
+	{
+		this.max = max;
+		lut = null;
+		++version;
+	}
+
+	/**
+	 * Set the gamma exponent that is applied to the input value after it has
+	 * been normalized to the display range.
+	 */
+	public synchronized void setGamma( final double gamma )
+	{
+		this.gamma = gamma;
+		lut = null;
+		++version;
+	}
+
+	/**
+	 * Set the color that is used for full intensity. Each channel (including
+	 * alpha) is scaled by the normalized input value. Clears the colormap.
+	 */
+	public synchronized void setColor( final ARGBType color )
+	{
+		this.color = color.get();
+		this.colormap = null;
+		lut = null;
+		++version;
+	}
+
+	/**
+	 * Set a colormap. The normalized input value range is mapped uniformly to
+	 * the entries of <code>colormap</code>. If <code>colormap</code> is
+	 * <code>null</code>, the {@link #setColor(ARGBType) color} is used.
+	 *
+	 * @param colormap
+	 *            packed ARGB values for increasing intensities, or
+	 *            <code>null</code>.
+	 */
+	public synchronized void setColormap( final int[] colormap )
+	{
+		this.colormap = colormap == null ? null : colormap.clone();
+		lut = null;
+		++version;
+	}
+
+	private synchronized int[] buildLut()
+	{
+		if ( lut != null )
+			return lut;
+
+		final int[] l = new int[ size ];
+		final double scale = max > min ? 1.0 / ( max - min ) : 0;
+		final int a = ARGBType.alpha( color );
+		final int r = ARGBType.red( color );
+		final int g = ARGBType.green( color );
+		final int b = ARGBType.blue( color );
+		for ( int i = 0; i < size; ++i )
+		{
+			final double v = Math.pow( Math.min( Math.max( ( i - min ) * scale, 0 ), 1 ), gamma );
+			if ( colormap != null )
+				l[ i ] = colormap[ ( int ) ( v * ( colormap.length - 1 ) + 0.5 ) ];
+			else
+				l[ i ] = ARGBType.rgba(
+						( int ) ( v * r + 0.5 ),
+						( int ) ( v * g + 0.5 ),
+						( int ) ( v * b + 0.5 ),
+						( int ) ( v * a + 0.5 ) );
+		}
+		lut = l;
+		return l;
+	}
+}
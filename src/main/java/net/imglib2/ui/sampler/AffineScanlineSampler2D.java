@@ -0,0 +1,139 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.ui.sampler;
+
+import net.imglib2.Point;
+import net.imglib2.RandomAccess;
+import net.imglib2.realtransform.AffineGet;
+
+/**
+ * Abstract base class for 2D scanline samplers. A scanline sampler is a
+ * {@link RandomAccess} on screen coordinates which samples a source at the
+ * inverse-transformed position.
+ * <p>
+ * The source position is computed lazily in {@link #locate()}: If the screen
+ * position moved along the current row (X) or column (Y) since the last
+ * {@link #get()}, the source position is advanced incrementally by the
+ * per-pixel step vector of that axis. Otherwise, the source position is
+ * computed by applying the full transform once.
+ *
+ * @param <T>
+ *            pixel type
+ */
+public abstract class AffineScanlineSampler2D< T > extends Point implements RandomAccess< T >
+{
+	/**
+	 * Transform from screen to source coordinates.
+	 */
+	protected final double m00, m01, m02, m10, m11, m12;
+
+	/**
+	 * Current source position, updated by {@link #locate()}.
+	 */
+	protected double px, py;
+
+	private long lastX;
+
+	private long lastY;
+
+	/**
+	 * @param screenToSource
+	 *            transforms screen coordinates to source coordinates.
+	 */
+	public AffineScanlineSampler2D( final AffineGet screenToSource )
+	{
+		super( 2 );
+		m00 = screenToSource.get( 0, 0 );
+		m01 = screenToSource.get( 0, 1 );
+		m02 = screenToSource.get( 0, 2 );
+		m10 = screenToSource.get( 1, 0 );
+		m11 = screenToSource.get( 1, 1 );
+		m12 = screenToSource.get( 1, 2 );
+		lastY = Long.MIN_VALUE;
+	}
+
+	protected AffineScanlineSampler2D( final AffineScanlineSampler2D< T > sampler )
+	{
+		super( sampler );
+		m00 = sampler.m00;
+		m01 = sampler.m01;
+		m02 = sampler.m02;
+		m10 = sampler.m10;
+		m11 = sampler.m11;
+		m12 = sampler.m12;
+		lastY = Long.MIN_VALUE;
+	}
+
+	/**
+	 * Update the source position ({@link #px}, {@link #py}) to the current
+	 * screen position.
+	 */
+	protected final void locate()
+	{
+		final long x = position[ 0 ];
+		final long y = position[ 1 ];
+		if ( y == lastY )
+		{
+			final long dx = x - lastX;
+			if ( dx != 0 )
+			{
+				px += dx * m00;
+				py += dx * m10;
+			}
+		}
+		else if ( x == lastX && lastY != Long.MIN_VALUE )
+		{
+			final long dy = y - lastY;
+			px += dy * m01;
+			py += dy * m11;
+			lastY = y;
+		}
+		else
+		{
+			px = m00 * x + m01 * y + m02;
+			py = m10 * x + m11 * y + m12;
+			lastY = y;
+		}
+		lastX = x;
+	}
+
+	@Override
+	public AffineScanlineSampler2D< T > copy()
+	{
+		return copyRandomAccess();
+	}
+
+	@Override
+	public abstract AffineScanlineSampler2D< T > copyRandomAccess();
+}
@@ -0,0 +1,251 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.ui.sampler;
+
+import net.imglib2.Point;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessible;
+import net.imglib2.realtransform.AffineGet;
+
+/**
+ * Nearest-neighbor scanline sampler for screen-to-source transforms that map
+ * every screen axis to one source axis, i.e., scalings plus translations with
+ * the axes possibly permuted and flipped (see
+ * {@link #isAxisAligned(AffineGet)}), e.g., unrotated 2D views or XY, XZ, and
+ * YZ slices of 3D sources.
+ * <p>
+ * Each source coordinate depends only on the screen coordinate of one
+ * dimension. Only the source coordinates of dimensions whose screen position
+ * changed are updated, e.g., only the source axis of screen X along a screen
+ * row. For a step of one screen pixel, the source {@link RandomAccess} is
+ * moved by the integer part of the scale, plus one whenever the accumulated
+ * fractional part carries over. This replicates source pixels when zoomed in,
+ * and skips (subsamples) source pixels when zoomed out, without rounding the
+ * source position of every pixel. Other moves compute the source position
+ * from the transform.
+ *
+ * @param <T>
+ *            pixel type
+ */
+public class AxisAlignedNearestNeighborSampler< T > extends Point implements RandomAccess< T >
+{
+	private final RandomAccess< T > access;
+
+	/**
+	 * Source dimension of each screen dimension.
+	 */
+	private final int[] sourceDimension;
+
+	/**
+	 * Scale of each screen dimension (the non-zero entry of its column of the
+	 * screen-to-source transform).
+	 */
+	private final double[] scale;
+
+	/**
+	 * Integer part (floor) of {@link #scale}, i.e., how far the source moves
+	 * for a step of one screen pixel, unless the fractional part carries
+	 * over.
+	 */
+	private final long[] stride;
+
+	/**
+	 * Fractional part of {@link #scale}, in <em>[0, 1)</em>.
+	 */
+	private final double[] step;
+
+	/**
+	 * Translation of each screen dimension (of its source dimension).
+	 */
+	private final double[] offset;
+
+	/**
+	 * Screen position at which {@link #access} is positioned.
+	 */
+	private final long[] lastScreen;
+
+	/**
+	 * Fractional part of the (rounded) source coordinate of each screen
+	 * dimension at {@link #lastScreen}.
+	 */
+	private final double[] fraction;
+
+	private boolean valid;
+
+	/**
+	 * @param source
+	 *            the (discrete) source, extended to infinity.
+	 * @param screenToSource
+	 *            transforms screen coordinates to source coordinates. Must be
+	 *            {@link #isAxisAligned(AffineGet) axis-aligned}.
+	 */
+	public AxisAlignedNearestNeighborSampler( final RandomAccessible< T > source, final AffineGet screenToSource )
+	{
+		super( source.numDimensions() );
+		access = source.randomAccess();
+		sourceDimension = new int[ n ];
+		scale = new double[ n ];
+		stride = new long[ n ];
+		step = new double[ n ];
+		offset = new double[ n ];
+		for ( int r = 0; r < n; ++r )
+		{
+			for ( int c = 0; c < n; ++c )
+			{
+				if ( screenToSource.get( r, c ) != 0 )
+				{
+					sourceDimension[ c ] = r;
+					scale[ c ] = screenToSource.get( r, c );
+					offset[ c ] = screenToSource.get( r, n );
+				}
+			}
+		}
+		for ( int d = 0; d < n; ++d )
+		{
+			stride[ d ] = ( long ) Math.floor( scale[ d ] );
+			step[ d ] = scale[ d ] - stride[ d ];
+		}
+		lastScreen = new long[ n ];
+		fraction = new double[ n ];
+		valid = false;
+	}
+
+	private AxisAlignedNearestNeighborSampler( final AxisAlignedNearestNeighborSampler< T > sampler )
+	{
+		super( sampler );
+		access = sampler.access.copyRandomAccess();
+		sourceDimension = sampler.sourceDimension;
+		scale = sampler.scale;
+		stride = sampler.stride;
+		step = sampler.step;
+		offset = sampler.offset;
+		lastScreen = new long[ n ];
+		fraction = new double[ n ];
+		valid = false;
+	}
+
+	/**
+	 * Check whether every row and every column of the linear part of
+	 * <code>transform</code> has exactly one non-zero entry, i.e., whether it
+	 * is a diagonal matrix with rows possibly permuted.
+	 */
+	public static boolean isAxisAligned( final AffineGet transform )
+	{
+		final int n = transform.numDimensions();
+		final int[] rowCounts = new int[ n ];
+		final int[] columnCounts = new int[ n ];
+		for ( int r = 0; r < n; ++r )
+		{
+			for ( int c = 0; c < n; ++c )
+			{
+				if ( transform.get( r, c ) != 0 )
+				{
+					++rowCounts[ r ];
+					++columnCounts[ c ];
+				}
+			}
+		}
+		for ( int d = 0; d < n; ++d )
+			if ( rowCounts[ d ] != 1 || columnCounts[ d ] != 1 )
+				return false;
+		return true;
+	}
+
+	/**
+	 * Compute the rounded source coordinate of screen dimension
+	 * <code>d</code> at the current screen position, and remember its
+	 * fractional part.
+	 */
+	private long locate( final int d )
+	{
+		final double s = scale[ d ] * position[ d ] + offset[ d ] + 0.5;
+		final double floor = Math.floor( s );
+		fraction[ d ] = s - floor;
+		lastScreen[ d ] = position[ d ];
+		return ( long ) floor;
+	}
+
+	@Override
+	public T get()
+	{
+		if ( valid )
+		{
+			for ( int d = 0; d < n; ++d )
+			{
+				final long x = position[ d ];
+				if ( x == lastScreen[ d ] )
+					continue;
+				final long distance;
+				if ( x == lastScreen[ d ] + 1 )
+				{
+					// one pixel along a row or column: integer stride, plus the carry of the fractional part
+					lastScreen[ d ] = x;
+					final double f = fraction[ d ] + step[ d ];
+					if ( f >= 1 )
+					{
+						fraction[ d ] = f - 1;
+						distance = stride[ d ] + 1;
+					}
+					else
+					{
+						fraction[ d ] = f;
+						distance = stride[ d ];
+					}
+				}
+				else
+					distance = locate( d ) - access.getLongPosition( sourceDimension[ d ] );
+				if ( distance != 0 )
+					access.move( distance, sourceDimension[ d ] );
+			}
+		}
+		else
+		{
+			for ( int d = 0; d < n; ++d )
+				access.setPosition( locate( d ), sourceDimension[ d ] );
+			valid = true;
+		}
+		return access.get();
+	}
+	@Override
+	public AxisAlignedNearestNeighborSampler< T > copy()
+	{
+		return copyRandomAccess();
+	}
+
+	@Override
+	public AxisAlignedNearestNeighborSampler< T > copyRandomAccess()
+	{
+		return new AxisAlignedNearestNeighborSampler<>( this );
+	}
+}
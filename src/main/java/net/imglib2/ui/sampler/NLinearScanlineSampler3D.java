@@ -0,0 +1,127 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.ui.sampler;
+
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessible;
+import net.imglib2.realtransform.AffineGet;
+import net.imglib2.type.numeric.NumericType;
+
+/**
+ * 3D scanline sampler with n-linear interpolation. The interpolated value is
+ * accumulated in the same way as by
+ * {@link net.imglib2.interpolation.randomaccess.NLinearInterpolator}.
+ *
+ * @param <T>
+ *            pixel type
+ */
+public class NLinearScanlineSampler3D< T extends NumericType< T > > extends AffineScanlineSampler3D< T >
+{
+	private final RandomAccess< T > access;
+
+	private final T accumulator;
+
+	private final T tmp;
+
+	/**
+	 * @param source
+	 *            the (discrete) source, extended to infinity.
+	 * @param screenToSource
+	 *            transforms screen coordinates to source coordinates.
+	 */
+	public NLinearScanlineSampler3D( final RandomAccessible< T > source, final AffineGet screenToSource )
+	{
+		super( screenToSource );
+		access = source.randomAccess();
+		accumulator = access.get().createVariable();
+		tmp = accumulator.createVariable();
+	}
+
+	private NLinearScanlineSampler3D( final NLinearScanlineSampler3D< T > sampler )
+	{
+		super( sampler );
+		access = sampler.access.copyRandomAccess();
+		accumulator = sampler.accumulator.createVariable();
+		tmp = accumulator.createVariable();
+	}
+
+	@Override
+	public T get()
+	{
+		locate();
+		final double x0 = Math.floor( px );
+		final double y0 = Math.floor( py );
+		final double z0 = Math.floor( pz );
+		final double wx = px - x0;
+		final double wy = py - y0;
+		final double wz = pz - z0;
+		final double vx = 1.0 - wx;
+		final double vy = 1.0 - wy;
+		final double vz = 1.0 - wz;
+
+		access.setPosition( ( long ) x0, 0 );
+		access.setPosition( ( long ) y0, 1 );
+		access.setPosition( ( long ) z0, 2 );
+		accumulator.set( access.get() );
+		accumulator.mul( vx * vy * vz );
+		access.fwd( 0 );
+		add( wx * vy * vz );
+		access.fwd( 1 );
+		add( wx * wy * vz );
+		access.bck( 0 );
+		add( vx * wy * vz );
+		access.fwd( 2 );
+		add( vx * wy * wz );
+		access.fwd( 0 );
+		add( wx * wy * wz );
+		access.bck( 1 );
+		add( wx * vy * wz );
+		access.bck( 0 );
+		add( vx * vy * wz );
+		return accumulator;
+	}
+
+	private void add( final double weight )
+	{
+		tmp.set( access.get() );
+		tmp.mul( weight );
+		accumulator.add( tmp );
+	}
+
+	@Override
+	public NLinearScanlineSampler3D< T > copyRandomAccess()
+	{
+		return new NLinearScanlineSampler3D<>( this );
+	}
+}
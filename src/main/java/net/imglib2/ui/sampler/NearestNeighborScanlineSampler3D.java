@@ -0,0 +1,83 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.ui.sampler;
+
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessible;
+import net.imglib2.realtransform.AffineGet;
+
+/**
+ * 3D scanline sampler with nearest-neighbor interpolation.
+ *
+ * @param <T>
+ *            pixel type
+ */
+public class NearestNeighborScanlineSampler3D< T > extends AffineScanlineSampler3D< T >
+{
+	private final RandomAccess< T > access;
+
+	/**
+	 * @param source
+	 *            the (discrete) source, extended to infinity.
+	 * @param screenToSource
+	 *            transforms screen coordinates to source coordinates.
+	 */
+	public NearestNeighborScanlineSampler3D( final RandomAccessible< T > source, final AffineGet screenToSource )
+	{
+		super( screenToSource );
+		access = source.randomAccess();
+	}
+
+	private NearestNeighborScanlineSampler3D( final NearestNeighborScanlineSampler3D< T > sampler )
+	{
+		super( sampler );
+		access = sampler.access.copyRandomAccess();
+	}
+
+	@Override
+	public T get()
+	{
+		locate();
+		access.setPosition( ( long ) Math.floor( px + 0.5 ), 0 );
+		access.setPosition( ( long ) Math.floor( py + 0.5 ), 1 );
+		access.setPosition( ( long ) Math.floor( pz + 0.5 ), 2 );
+		return access.get();
+	}
+
+	@Override
+	public NearestNeighborScanlineSampler3D< T > copyRandomAccess()
+	{
+		return new NearestNeighborScanlineSampler3D<>( this );
+	}
+}
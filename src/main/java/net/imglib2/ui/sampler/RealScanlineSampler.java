@@ -0,0 +1,148 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.ui.sampler;
+
+import net.imglib2.Point;
+import net.imglib2.RandomAccess;
+import net.imglib2.RealRandomAccess;
+import net.imglib2.RealRandomAccessible;
+import net.imglib2.realtransform.AffineGet;
+
+/**
+ * n-dimensional scanline sampler for arbitrary {@link RealRandomAccessible}
+ * sources. The source position is maintained incrementally along screen rows
+ * and columns (see {@link AffineScanlineSampler2D}) and the source
+ * {@link RealRandomAccess} is positioned there on every {@link #get()}.
+ *
+ * @param <T>
+ *            pixel type
+ */
+public class RealScanlineSampler< T > extends Point implements RandomAccess< T >
+{
+	private final RealRandomAccess< T > access;
+
+	/**
+	 * Transform from screen to source coordinates, row-packed.
+	 */
+	private final double[] m;
+
+	private final double[] pos;
+
+	private final long[] last;
+
+	private boolean valid;
+
+	/**
+	 * @param source
+	 *            the source, extended to infinity and interpolated.
+	 * @param screenToSource
+	 *            transforms screen coordinates to source coordinates.
+	 */
+	public RealScanlineSampler( final RealRandomAccessible< T > source, final AffineGet screenToSource )
+	{
+		super( source.numDimensions() );
+		access = source.realRandomAccess();
+		m = screenToSource.getRowPackedCopy();
+		pos = new double[ n ];
+		last = new long[ n ];
+		valid = false;
+	}
+
+	private RealScanlineSampler( final RealScanlineSampler< T > sampler )
+	{
+		super( sampler );
+		access = sampler.access.copyRealRandomAccess();
+		m = sampler.m;
+		pos = new double[ n ];
+		last = new long[ n ];
+		valid = false;
+	}
+
+	/**
+	 * Get the screen dimension in which the position moved since the last
+	 * {@link #get()}, -1 if it did not move, or <code>n</code> if it moved in
+	 * more than one dimension (or is not {@link #valid}).
+	 */
+	private int getMovedDimension()
+	{
+		if ( !valid )
+			return n;
+		int moved = -1;
+		for ( int d = 0; d < n; ++d )
+			if ( position[ d ] != last[ d ] )
+				moved = moved < 0 ? d : n;
+		return moved;
+	}
+
+	@Override
+	public T get()
+	{
+		final int moved = getMovedDimension();
+		if ( moved == n )
+		{
+			for ( int r = 0, i = 0; r < n; ++r )
+			{
+				double v = 0;
+				for ( int c = 0; c < n; ++c )
+					v += m[ i++ ] * position[ c ];
+				pos[ r ] = v + m[ i++ ];
+			}
+			for ( int d = 0; d < n; ++d )
+				last[ d ] = position[ d ];
+			valid = true;
+		}
+		else if ( moved >= 0 )
+		{
+			// step along one screen axis: add the corresponding column of the transform
+			final long delta = position[ moved ] - last[ moved ];
+			for ( int r = 0; r < n; ++r )
+				pos[ r ] += delta * m[ r * ( n + 1 ) + moved ];
+			last[ moved ] = position[ moved ];
+		}
+		access.setPosition( pos );
+		return access.get();
+	}
+
+	@Override
+	public RealScanlineSampler< T > copy()
+	{
+		return copyRandomAccess();
+	}
+
+	@Override
+	public RealScanlineSampler< T > copyRandomAccess()
+	{
+		return new RealScanlineSampler<>( this );
+	}
+}
@@ -0,0 +1,186 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.ui.sampler;
+
+import net.imglib2.Interval;
+import net.imglib2.realtransform.AffineGet;
+
+/**
+ * Determines, for each screen row, the span of pixels whose source position
+ * (in the slice <em>z = 0</em> of the screen, for 3D) lies within a
+ * box in source coordinates. The span is computed analytically from the
+ * affine screen-to-source transform, such that pixels outside the box do not
+ * need to be sampled.
+ */
+public class ScanlineClipping
+{
+	private final int n;
+
+	/**
+	 * Transform from screen to source coordinates, row-packed.
+	 */
+	private final double[] m;
+
+	private final double[] boxMin;
+
+	private final double[] boxMax;
+
+	/**
+	 * @param boxMin
+	 *            min corner of the box, in source coordinates.
+	 * @param boxMax
+	 *            max corner of the box, in source coordinates.
+	 * @param screenToSource
+	 *            transforms screen coordinates to source coordinates.
+	 */
+	public ScanlineClipping( final double[] boxMin, final double[] boxMax, final AffineGet screenToSource )
+	{
+		n = screenToSource.numDimensions();
+		m = screenToSource.getRowPackedCopy();
+		this.boxMin = boxMin.clone();
+		this.boxMax = boxMax.clone();
+	}
+
+	/**
+	 * Create a clipping for an image with the given <code>interval</code>,
+	 * which is rendered with n-linear or nearest-neighbor interpolation. The
+	 * box is the bounding box of the interval in source coordinates, expanded
+	 * by one pixel, such that it contains all source positions at which the
+	 * interpolated image depends on pixels in the interval.
+	 *
+	 * @param interval
+	 *            interval of the image.
+	 * @param intervalToSource
+	 *            transforms the coordinates of <code>interval</code> to the
+	 *            source coordinates (e.g., from the full resolution level to a
+	 *            coarser resolution level), or <code>null</code> for the
+	 *            identity.
+	 * @param sourceToScreen
+	 *            transforms source coordinates to screen coordinates.
+	 */
+	public static ScanlineClipping create( final Interval interval, final AffineGet intervalToSource, final AffineGet sourceToScreen )
+	{
+		final int n = interval.numDimensions();
+		final double[] boxMin = new double[ n ];
+		final double[] boxMax = new double[ n ];
+		if ( intervalToSource == null )
+		{
+			for ( int d = 0; d < n; ++d )
+			{
+				boxMin[ d ] = interval.min( d ) - 1;
+				boxMax[ d ] = interval.max( d ) + 1;
+			}
+		}
+		else
+		{
+			// bounding box of the transformed corners of the interval
+			final double[] corner = new double[ n ];
+			final double[] transformed = new double[ n ];
+			for ( int d = 0; d < n; ++d )
+			{
+				boxMin[ d ] = Double.POSITIVE_INFINITY;
+				boxMax[ d ] = Double.NEGATIVE_INFINITY;
+			}
+			for ( int c = 0; c < 1 << n; ++c )
+			{
+				for ( int d = 0; d < n; ++d )
+					corner[ d ] = ( ( c >> d ) & 1 ) == 0 ? interval.min( d ) - 0.5 : interval.max( d ) + 0.5;
+				intervalToSource.apply( corner, transformed );
+				for ( int d = 0; d < n; ++d )
+				{
+					boxMin[ d ] = Math.min( boxMin[ d ], transformed[ d ] );
+					boxMax[ d ] = Math.max( boxMax[ d ], transformed[ d ] );
+				}
+			}
+			for ( int d = 0; d < n; ++d )
+			{
+				boxMin[ d ] = Math.floor( boxMin[ d ] ) - 1;
+				boxMax[ d ] = Math.ceil( boxMax[ d ] ) + 1;
+			}
+		}
+		return new ScanlineClipping( boxMin, boxMax, sourceToScreen.inverse() );
+	}
+
+	/**
+	 * Get a position (in source coordinates) outside the box.
+	 */
+	public double[] getOutsidePosition()
+	{
+		final double[] pos = new double[ n ];
+		for ( int d = 0; d < n; ++d )
+			pos[ d ] = boxMax[ d ] + 1;
+		return pos;
+	}
+
+	/**
+	 * Get the span of pixels in row <code>y</code> from <code>minX</code>
+	 * (inclusive) to <code>minX + width</code> (exclusive) which map into
+	 * the box.
+	 *
+	 * @param span
+	 *            receives the span as offsets <em>[start, end)</em>
+	 *            relative to <code>minX</code>, with
+	 *            <em>0 &le; start &le; end &le; width</em>.
+	 */
+	public void clip( final long y, final long minX, final int width, final int[] span )
+	{
+		double x0 = minX;
+		double x1 = minX + width - 1;
+		for ( int d = 0; d < n && x0 <= x1; ++d )
+		{
+			final int row = d * ( n + 1 );
+			final double base = m[ row + 1 ] * y + m[ row + n ];
+			final double step = m[ row ];
+			if ( step == 0 )
+			{
+				if ( base < boxMin[ d ] || base > boxMax[ d ] )
+					x1 = x0 - 1;
+			}
+			else
+			{
+				final double a = ( boxMin[ d ] - base ) / step;
+				final double b = ( boxMax[ d ] - base ) / step;
+				x0 = Math.max( x0, Math.min( a, b ) );
+				x1 = Math.min( x1, Math.max( a, b ) );
+			}
+		}
+		if ( x0 > x1 )
+		{
+			span[ 0 ] = span[ 1 ] = 0;
+			return;
+		}
+		span[ 0 ] = ( int ) ( Math.ceil( x0 ) - minX );
+		span[ 1 ] = Math.max( span[ 0 ], ( int ) ( Math.floor( x1 ) - minX ) + 1 );
+	}
+}
@@ -0,0 +1,143 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.ui.sampler;
+
+import net.imglib2.RandomAccessible;
+import net.imglib2.RealRandomAccessible;
+import net.imglib2.interpolation.Interpolant;
+import net.imglib2.interpolation.randomaccess.NLinearInterpolatorFactory;
+import net.imglib2.interpolation.randomaccess.NearestNeighborInterpolatorFactory;
+import net.imglib2.realtransform.AffineGet;
+import net.imglib2.realtransform.RealViews;
+
+/**
+ * Static methods to create affinely transformed views of
+ * {@link RealRandomAccessible RealRandomAccessibles} which are optimized for
+ * rendering screen images row by row.
+ */
+public class ScanlineViews
+{
+	/**
+	 * Get a {@link RandomAccessible} view of <code>source</code> transformed
+	 * by <code>sourceToScreen</code>. This is equivalent to
+	 * {@link RealViews#affine(RealRandomAccessible, AffineGet)}, but
+	 * {@link net.imglib2.RandomAccess RandomAccesses} on the view compute the
+	 * source position of a screen row once and then walk along the row by
+	 * adding a constant step vector.
+	 * <p>
+	 * If <code>source</code> is a 2D or 3D {@link Interpolant} with
+	 * nearest-neighbor or n-linear interpolation, the interpolation is done
+	 * directly on the underlying discrete source. For nearest-neighbor
+	 * interpolation and axis-aligned transforms, rows are copied from the
+	 * source with pixel replication or subsampling (see
+	 * {@link AxisAlignedNearestNeighborSampler}). Otherwise, the
+	 * <code>source</code> is sampled through its
+	 * {@link net.imglib2.RealRandomAccess}.
+	 *
+	 * @param source
+	 *            the source, extended to infinity and interpolated.
+	 * @param sourceToScreen
+	 *            transforms source coordinates to screen coordinates.
+	 * @return transformed view of <code>source</code>.
+	 */
+	@SuppressWarnings( { "unchecked", "rawtypes" } )
+	public static < T > RandomAccessible< T > affine( final RealRandomAccessible< T > source, final AffineGet sourceToScreen )
+	{
+		final int n = source.numDimensions();
+		final AffineGet screenToSource = sourceToScreen.inverse();
+		if ( ( n == 2 || n == 3 ) && source instanceof Interpolant )
+		{
+			final Interpolant< T, ? > interpolant = ( Interpolant< T, ? > ) source;
+			final Class< ? > factoryClass = interpolant.getInterpolatorFactory().getClass();
+			if ( interpolant.getSource() instanceof RandomAccessible )
+			{
+				final RandomAccessible discrete = ( RandomAccessible ) interpolant.getSource();
+				if ( factoryClass == NearestNeighborInterpolatorFactory.class )
+				{
+					if ( AxisAlignedNearestNeighborSampler.isAxisAligned( screenToSource ) )
+						return new ScanlineRandomAccessible< T >( new AxisAlignedNearestNeighborSampler< T >( discrete, screenToSource ) );
+					else if ( n == 2 )
+						return new ScanlineRandomAccessible< T >( new NearestNeighborScanlineSampler2D< T >( discrete, screenToSource ) );
+					else
+						return new ScanlineRandomAccessible< T >( new NearestNeighborScanlineSampler3D< T >( discrete, screenToSource ) );
+				}
+				else if ( factoryClass == NLinearInterpolatorFactory.class )
+				{
+					if ( n == 2 )
+						return new ScanlineRandomAccessible< T >( new NLinearScanlineSampler2D( discrete, screenToSource ) );
+					else
+						return new ScanlineRandomAccessible< T >( new NLinearScanlineSampler3D( discrete, screenToSource ) );
+				}
+			}
+		}
+		return new ScanlineRandomAccessible<>( new RealScanlineSampler<>( source, screenToSource ) );
+	}
+
+	/**
+	 * Fraction of a cache line covered by a step of one voxel along the
+	 * contiguous source axis (assuming 64 byte cache lines and 4 byte
+	 * pixels).
+	 */
+	private static final double CONTIGUOUS_STEP_COST = 1.0 / 16;
+
+	/**
+	 * Whether traversing a screen image column by column walks the source with
+	 * smaller memory strides than traversing it row by row. Sources are
+	 * assumed to be stored with dimension 0 contiguous in memory (as
+	 * {@link net.imglib2.img.array.ArrayImg ArrayImg} and the cells of
+	 * {@link net.imglib2.img.cell.CellImg CellImg}). Each step along a screen
+	 * axis is weighted by how many new cache lines it touches: a step of
+	 * <em>s</em> voxels along source dimension 0 costs a fraction <em>s/16</em>
+	 * of a cache line, while any step along a higher source dimension costs a
+	 * full cache line (and, more often, a new cell).
+	 *
+	 * @param sourceToScreen
+	 *            transforms source coordinates to screen coordinates.
+	 * @return true if a step along screen Y is cheaper than a step along
+	 *         screen X.
+	 */
+	public static boolean isColumnTraversalPreferred( final AffineGet sourceToScreen )
+	{
+		final AffineGet screenToSource = sourceToScreen.inverse();
+		return getStepCost( screenToSource, 1 ) < getStepCost( screenToSource, 0 );
+	}
+
+	private static double getStepCost( final AffineGet screenToSource, final int screenDimension )
+	{
+		double cost = CONTIGUOUS_STEP_COST * Math.abs( screenToSource.get( 0, screenDimension ) );
+		for ( int d = 1; d < screenToSource.numTargetDimensions(); ++d )
+			cost += Math.abs( screenToSource.get( d, screenDimension ) );
+		return cost;
+	}
+}
@@ -0,0 +1,665 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.ui.util;
+
+import java.io.IOException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import net.imglib2.FinalInterval;
+import net.imglib2.Interval;
+import net.imglib2.Point;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessible;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.converter.Converter;
+import net.imglib2.type.numeric.ARGBType;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.ui.Placeholders;
+import net.imglib2.ui.Versioned;
+
+/**
+ * Block cache in front of a {@link RandomAccessibleInterval} that is slow to
+ * access, e.g., because it is backed by a file or network storage. Instead of
+ * a {@link RandomAccessibleInterval}, blocks can also be provided by a
+ * {@link BlockLoader}, e.g., reading one file per block (see
+ * {@link ChunkedDirectoryImage}).
+ * <p>
+ * The {@link #getCachedSource() cached source} never blocks: if the block
+ * containing a requested pixel is not cached, loading the block is enqueued
+ * on a background thread and a placeholder value is returned immediately.
+ * Pixels with placeholder values are marked as {@link Placeholders
+ * placeholders}, such that renderers render the affected tiles again when
+ * resumed. Whenever a block has been loaded, listeners are notified, such
+ * that the display can be repainted (see {@link #addBlockListener(Runnable)}).
+ * Blocks are loaded on a dedicated thread pool, separate from the rendering
+ * threads. Loading throughput and latency are reported by
+ * {@link #getStatistics()}.
+ * <p>
+ * Blocks are stored as <code>double</code> values, and values are set via
+ * {@link RealType#setReal(double)}. Note that a {@link LazyPyramid} should not
+ * be built on the cached source, because pyramid blocks would be computed from
+ * placeholder values.
+ * 
+ * @param <T>
+ *            pixel type
+ */
+public class AsyncBlockCache< T extends RealType< T > >
+{
+	/**
+	 * Loads blocks of an image, on one of the loader threads of an
+	 * {@link AsyncBlockCache}.
+	 */
+	public static interface BlockLoader
+	{
+		/**
+		 * Load a block. Pixels are stored in flat (X fastest) order with the
+		 * block size of the cache, also for truncated blocks at the image
+		 * border.
+		 * 
+		 * @param gridPosition
+		 *            the position of the block in the grid of blocks.
+		 * @param block
+		 *            array to store the pixels in (initially zero).
+		 * @throws IOException
+		 *             if the block cannot be read. The block is then not
+		 *             cached, {@link FailureListener FailureListeners} are
+		 *             notified, and loading is tried again when the block is
+		 *             accessed next.
+		 */
+		public void load( long[] gridPosition, double[] block ) throws IOException;
+	}
+
+	/**
+	 * Is notified (on a loader thread) if a block cannot be loaded.
+	 */
+	public static interface FailureListener
+	{
+		/**
+		 * @param gridPosition
+		 *            the position of the block in the grid of blocks.
+		 * @param e
+		 *            the exception thrown by the {@link BlockLoader}.
+		 */
+		public void loadFailed( long[] gridPosition, IOException e );
+	}
+
+	/**
+	 * Loading throughput and latency of an {@link AsyncBlockCache}.
+	 */
+	public static class Statistics
+	{
+		/**
+		 * Number of blocks loaded (including failed ones).
+		 */
+		public final long numBlocks;
+
+		/**
+		 * Number of blocks that could not be loaded.
+		 */
+		public final long numFailed;
+
+		/**
+		 * Total number of pixels loaded.
+		 */
+		public final long numPixels;
+
+		/**
+		 * Time spent in {@link BlockLoader#load(long[], double[])}, summed over
+		 * all loader threads.
+		 */
+		public final long loadNanos;
+
+		/**
+		 * Time from requesting to having loaded a block (including waiting in
+		 * the queue), summed over all blocks.
+		 */
+		public final long latencyNanos;
+
+		/**
+		 * Maximum time from requesting to having loaded a block.
+		 */
+		public final long maxLatencyNanos;
+
+		public Statistics( final long numBlocks, final long numFailed, final long numPixels, final long loadNanos, final long latencyNanos, final long maxLatencyNanos )
+		{
+			this.numBlocks = numBlocks;
+			this.numFailed = numFailed;
+			this.numPixels = numPixels;
+			this.loadNanos = loadNanos;
+			this.latencyNanos = latencyNanos;
+			this.maxLatencyNanos = maxLatencyNanos;
+		}
+
+		/**
+		 * Get the number of pixels loaded per second of loading time of a
+		 * single thread.
+		 */
+		public double getPixelsPerSecond()
+		{
+			return loadNanos == 0 ? 0 : numPixels * 1e9 / loadNanos;
+		}
+
+		/**
+		 * Get the mean time from requesting to having loaded a block, in
+		 * milliseconds.
+		 */
+		public double getMeanLatencyMillis()
+		{
+			return numBlocks == 0 ? 0 : latencyNanos / 1e6 / numBlocks;
+		}
+
+		@Override
+		public String toString()
+		{
+			return String.format( "%d blocks (%d failed), %.1f Mpixels/s per thread, latency %.1f ms mean, %.1f ms max",
+					numBlocks, numFailed, getPixelsPerSecond() / 1e6, getMeanLatencyMillis(), maxLatencyNanos / 1e6 );
+		}
+	}
+
+	private final BlockLoader loader;
+
+	private final int[] blockSize;
+
+	private final int n;
+
+	/**
+	 * Number of pixels per (complete) block.
+	 */
+	private final int blockNumElements;
+
+	/**
+	 * Min of the image interval.
+	 */
+	private final long[] sourceMin;
+
+	private final long[] sourceDimensions;
+
+	/**
+	 * Number of blocks in every dimension.
+	 */
+	private final long[] gridDimensions;
+
+	private final BlockCache cache;
+
+	private final T type;
+
+	private volatile double placeholderValue;
+
+	private final ExecutorService executorService;
+
+	private final CopyOnWriteArrayList< Runnable > blockListeners;
+
+	private final CopyOnWriteArrayList< FailureListener > failureListeners;
+
+	/**
+	 * Version of the cached data, incremented by {@link #invalidate()}.
+	 */
+	private final AtomicLong version;
+
+	/**
+	 * Number of blocks, failed blocks, pixels, load time, latency, and max
+	 * latency.
+	 */
+	private final AtomicLongArray statistics;
+
+	/**
+	 * Cache blocks of an image that is slow to access.
+	 * 
+	 * @param source
+	 *            the slow image.
+	 * @param blockSize
+	 *            side length of blocks.
+	 * @param maxBytes
+	 *            memory budget for cached blocks.
+	 * @param numThreads
+	 *            how many background threads to use for loading blocks.
+	 */
+	public AsyncBlockCache(
+			final RandomAccessibleInterval< T > source,
+			final int blockSize,
+			final long maxBytes,
+			final int numThreads )
+	{
+		this( source, cubicBlockSize( source.numDimensions(), blockSize ), firstPixel( source ), new SourceLoader< >( source, cubicBlockSize( source.numDimensions(), blockSize ) ), maxBytes, numThreads );
+	}
+
+	/**
+	 * Cache blocks provided by a {@link BlockLoader}.
+	 * 
+	 * @param interval
+	 *            the interval of the image.
+	 * @param blockSize
+	 *            dimensions of blocks.
+	 * @param type
+	 *            an instance of the pixel type.
+	 * @param loader
+	 *            loads blocks.
+	 * @param maxBytes
+	 *            memory budget for cached blocks.
+	 * @param numThreads
+	 *            how many background threads to use for loading blocks.
+	 */
+	public AsyncBlockCache(
+			final Interval interval,
+			final int[] blockSize,
+			final T type,
+			final BlockLoader loader,
+			final long maxBytes,
+			final int numThreads )
+	{
+		this.loader = loader;
+		this.blockSize = blockSize.clone();
+		n = interval.numDimensions();
+		int numElements = 1;
+		for ( int d = 0; d < n; ++d )
+			numElements *= blockSize[ d ];
+		blockNumElements = numElements;
+		sourceMin = new long[ n ];
+		interval.min( sourceMin );
+		sourceDimensions = new long[ n ];
+		interval.dimensions( sourceDimensions );
+		gridDimensions = new long[ n ];
+		for ( int d = 0; d < n; ++d )
+			gridDimensions[ d ] = ( sourceDimensions[ d ] + blockSize[ d ] - 1 ) / blockSize[ d ];
+
+		final int maxBlocks = ( int ) Math.max( 1, Math.min( Integer.MAX_VALUE, maxBytes / ( 8L * blockNumElements ) ) );
+		cache = new BlockCache( maxBlocks );
+
+		this.type = type.createVariable();
+		placeholderValue = 0;
+
+		executorService = Executors.newFixedThreadPool( numThreads, RenderingThreads.threadFactory( "block-loader-" ) );
+		blockListeners = new CopyOnWriteArrayList< >();
+		failureListeners = new CopyOnWriteArrayList< >();
+		version = new AtomicLong();
+		statistics = new AtomicLongArray( 6 );
+	}
+
+	private static int[] cubicBlockSize( final int n, final int blockSize )
+	{
+		final int[] size = new int[ n ];
+		for ( int d = 0; d < n; ++d )
+			size[ d ] = blockSize;
+		return size;
+	}
+
+	private static < T > T firstPixel( final RandomAccessibleInterval< T > source )
+	{
+		final RandomAccess< T > a = source.randomAccess();
+		source.min( a );
+		return a.get();
+	}
+
+	/**
+	 * Copies blocks from a {@link RandomAccessibleInterval}.
+	 */
+	private static class SourceLoader< T extends RealType< T > > implements BlockLoader
+	{
+		private final RandomAccessibleInterval< T > source;
+
+		private final int[] blockSize;
+
+		SourceLoader( final RandomAccessibleInterval< T > source, final int[] blockSize )
+		{
+			this.source = source;
+			this.blockSize = blockSize;
+		}
+
+		@Override
+		public void load( final long[] gridPosition, final double[] block )
+		{
+			final int n = source.numDimensions();
+			final RandomAccess< T > sourceAccess = source.randomAccess();
+			final long[] pos = new long[ n ];
+			for ( int i = 0; i < block.length; ++i )
+			{
+				boolean inside = true;
+				for ( int d = 0, r = i; d < n; r /= blockSize[ d ], ++d )
+				{
+					pos[ d ] = source.min( d ) + gridPosition[ d ] * blockSize[ d ] + r % blockSize[ d ];
+					inside &= pos[ d ] <= source.max( d );
+				}
+				if ( !inside )
+					continue;
+				sourceAccess.setPosition( pos );
+				block[ i ] = sourceAccess.get().getRealDouble();
+			}
+		}
+	}
+
+	/**
+	 * Set the value returned for pixels whose block is not loaded yet.
+	 */
+	public void setPlaceholderValue( final double value )
+	{
+		placeholderValue = value;
+	}
+
+	public double getPlaceholderValue()
+	{
+		return placeholderValue;
+	}
+
+	/**
+	 * Get the cached source, extended with zero to infinity. It has the same
+	 * coordinates as the slow source.
+	 */
+	public RandomAccessible< T > getCachedSource()
+	{
+		return new CachedAccessible();
+	}
+
+	/**
+	 * Create a {@link Versioned} {@link InterpolatingSource} of the
+	 * {@link #getCachedSource() cached source}. The version changes only when
+	 * the cache is {@link #invalidate() invalidated}, such that renderers can
+	 * resume rendering of tiles that used placeholders when blocks arrive.
+	 */
+	public < A > InterpolatingSource< T, A > createRenderSource( final A sourceTransform, final Converter< ? super T, ARGBType > converter )
+	{
+		return new VersionedSource< >( sourceTransform, converter );
+	}
+
+	private class VersionedSource< A > extends InterpolatingSource< T, A > implements Versioned
+	{
+		VersionedSource( final A sourceTransform, final Converter< ? super T, ARGBType > converter )
+		{
+			super( getCachedSource(), new FinalInterval( sourceMin, sourceMax() ), sourceTransform, converter );
+		}
+
+		@Override
+		public long getVersion()
+		{
+			return version.get();
+		}
+	}
+
+	private long[] sourceMax()
+	{
+		final long[] max = new long[ n ];
+		for ( int d = 0; d < n; ++d )
+			max[ d ] = sourceMin[ d ] + sourceDimensions[ d ] - 1;
+		return max;
+	}
+
+	/**
+	 * Discard all cached blocks, e.g., because the underlying data has
+	 * changed. Blocks are loaded again when needed. Blocks that are being
+	 * loaded meanwhile are discarded when they arrive.
+	 */
+	public void invalidate()
+	{
+		cache.clear();
+		version.incrementAndGet();
+	}
+
+	/**
+	 * Add a listener that is run (on a background thread) whenever a block
+	 * has been loaded, e.g., to request a repaint.
+	 */
+	public void addBlockListener( final Runnable listener )
+	{
+		blockListeners.add( listener );
+	}
+
+	public void removeBlockListener( final Runnable listener )
+	{
+		blockListeners.remove( listener );
+	}
+
+	/**
+	 * Add a listener that is notified (on a background thread) whenever a
+	 * block cannot be loaded, e.g., to report the error.
+	 */
+	public void addFailureListener( final FailureListener listener )
+	{
+		failureListeners.add( listener );
+	}
+
+	public void removeFailureListener( final FailureListener listener )
+	{
+		failureListeners.remove( listener );
+	}
+
+	/**
+	 * Stop loading blocks. Blocks that are not loaded remain placeholders.
+	 */
+	public void shutdown()
+	{
+		executorService.shutdownNow();
+	}
+
+	/**
+	 * Request loading of a block in the background, if it is not available
+	 * or pending already.
+	 */
+	private void requestBlock( final long[] gridPosition )
+	{
+		final long key = BlockCache.blockKey( gridDimensions, gridPosition );
+		final long generation = cache.markPending( key );
+		if ( generation >= 0 )
+		{
+			final long[] pos = gridPosition.clone();
+			final long requestTime = System.nanoTime();
+			try
+			{
+				executorService.submit( new Runnable()
+				{
+					@Override
+					public void run()
+					{
+						// not put if the cache was invalidated while loading
+						boolean loaded = false;
+						try
+						{
+							final double[] block = loadBlock( pos, requestTime );
+							loaded = block != null && cache.put( key, block, generation );
+						}
+						finally
+						{
+							cache.clearPending( key );
+						}
+						if ( loaded )
+							for ( final Runnable l : blockListeners )
+								l.run();
+					}
+				} );
+			}
+			catch ( final RejectedExecutionException e )
+			{
+				cache.clearPending( key );
+			}
+		}
+	}
+
+	/**
+	 * Load a block and record statistics.
+	 * 
+	 * @return the block, or <code>null</code> if it could not be loaded.
+	 */
+	private double[] loadBlock( final long[] gridPosition, final long requestTime )
+	{
+		double[] block = new double[ blockNumElements ];
+		final long t0 = System.nanoTime();
+		try
+		{
+			loader.load( gridPosition, block );
+		}
+		catch ( final IOException e )
+		{
+			// not cached, such that it is loaded again when accessed next
+			block = null;
+			statistics.incrementAndGet( 1 );
+			for ( final FailureListener l : failureListeners )
+				l.loadFailed( gridPosition.clone(), e );
+		}
+		final long t1 = System.nanoTime();
+		statistics.incrementAndGet( 0 );
+		if ( block != null )
+			statistics.addAndGet( 2, blockNumElements );
+		statistics.addAndGet( 3, t1 - t0 );
+		statistics.addAndGet( 4, t1 - requestTime );
+		final long latency = t1 - requestTime;
+		long max;
+		while ( latency > ( max = statistics.get( 5 ) ) && !statistics.compareAndSet( 5, max, latency ) );
+		return block;
+	}
+
+	/**
+	 * Get loading throughput and latency since creation or the last
+	 * {@link #resetStatistics()}.
+	 */
+	public Statistics getStatistics()
+	{
+		return new Statistics( statistics.get( 0 ), statistics.get( 1 ), statistics.get( 2 ), statistics.get( 3 ), statistics.get( 4 ), statistics.get( 5 ) );
+	}
+
+	public void resetStatistics()
+	{
+		for ( int i = 0; i < statistics.length(); ++i )
+			statistics.set( i, 0 );
+	}
+
+	private class CachedAccessible implements RandomAccessible< T >
+	{
+		@Override
+		public int numDimensions()
+		{
+			return n;
+		}
+
+		@Override
+		public RandomAccess< T > randomAccess()
+		{
+			return new CachedAccess();
+		}
+
+		@Override
+		public RandomAccess< T > randomAccess( final Interval interval )
+		{
+			return randomAccess();
+		}
+	}
+
+	private class CachedAccess extends Point implements RandomAccess< T >
+	{
+		private final T value;
+
+		private final long[] gridPosition;
+
+		/**
+		 * The block that was used last, such that the cache need not be
+		 * searched (under a lock) for every pixel. <code>null</code> if none
+		 * (e.g., because a placeholder was returned).
+		 */
+		private double[] currentBlock;
+
+		/**
+		 * Key of {@link #currentBlock}.
+		 */
+		private long currentKey;
+
+		/**
+		 * {@link AsyncBlockCache#version} when {@link #currentBlock} was
+		 * taken from the cache.
+		 */
+		private long currentVersion;
+
+		CachedAccess()
+		{
+			super( AsyncBlockCache.this.n );
+			value = type.createVariable();
+			gridPosition = new long[ n ];
+			currentBlock = null;
+		}
+
+		@Override
+		public T get()
+		{
+			int index = 0;
+			for ( int d = n - 1; d >= 0; --d )
+			{
+				final long p = position[ d ] - sourceMin[ d ];
+				if ( p < 0 || p >= sourceDimensions[ d ] )
+				{
+					value.setZero();
+					return value;
+				}
+				gridPosition[ d ] = p / blockSize[ d ];
+				index = index * blockSize[ d ] + ( int ) ( p % blockSize[ d ] );
+			}
+			final long key = BlockCache.blockKey( gridDimensions, gridPosition );
+			if ( currentBlock != null && key == currentKey && version.get() == currentVersion )
+			{
+				value.setReal( currentBlock[ index ] );
+				return value;
+			}
+			final long v = version.get();
+			final double[] block = cache.get( key );
+			currentBlock = block;
+			if ( block != null )
+			{
+				currentKey = key;
+				currentVersion = v;
+				value.setReal( block[ index ] );
+			}
+			else
+			{
+				requestBlock( gridPosition );
+				Placeholders.markUsed();
+				value.setReal( placeholderValue );
+			}
+			return value;
+		}
+
+		@Override
+		public CachedAccess copy()
+		{
+			return copyRandomAccess();
+		}
+
+		@Override
+		public CachedAccess copyRandomAccess()
+		{
+			final CachedAccess a = new CachedAccess();
+			a.setPosition( this );
+			return a;
+		}
+	}
+}
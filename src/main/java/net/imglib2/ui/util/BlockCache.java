@@ -0,0 +1,148 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.ui.util;
+
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded LRU cache of blocks (<code>double[]</code>) indexed by
+ * <code>long</code> keys, which also keeps track of blocks that are being
+ * computed or loaded. Each {@link #clear()} starts a new generation, such
+ * that blocks requested before cannot be {@link #put(long, double[], long)
+ * put} afterwards.
+ */
+class BlockCache
+{
+	private final LinkedHashMap< Long, double[] > blocks;
+
+	private final HashSet< Long > pending;
+
+	private long generation;
+
+	/**
+	 * @param maxBlocks
+	 *            maximum number of blocks to keep.
+	 */
+	BlockCache( final int maxBlocks )
+	{
+		blocks = new LinkedHashMap< Long, double[] >( 16, 0.75f, true )
+		{
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry( final Map.Entry< Long, double[] > eldest )
+			{
+				return size() > maxBlocks;
+			}
+		};
+		pending = new HashSet< >();
+		generation = 0;
+	}
+
+	synchronized double[] get( final long key )
+	{
+		return blocks.get( key );
+	}
+
+	synchronized void put( final long key, final double[] block )
+	{
+		blocks.put( key, block );
+	}
+
+	/**
+	 * Put a block that was {@link #markPending(long) marked pending} in
+	 * <code>generation</code>, unless the cache was {@link #clear() cleared}
+	 * since.
+	 * 
+	 * @return true, if the block was put.
+	 */
+	synchronized boolean put( final long key, final double[] block, final long generation )
+	{
+		if ( generation != this.generation )
+			return false;
+		blocks.put( key, block );
+		return true;
+	}
+
+	/**
+	 * Mark <code>key</code> as pending, unless it is already available or
+	 * pending.
+	 * 
+	 * @return true, if <code>key</code> was marked (and should be computed).
+	 */
+	synchronized boolean setPending( final long key )
+	{
+		return markPending( key ) >= 0;
+	}
+
+	/**
+	 * Like {@link #setPending(long)}, but returns the current generation if
+	 * <code>key</code> was marked, and -1 otherwise.
+	 */
+	synchronized long markPending( final long key )
+	{
+		return !blocks.containsKey( key ) && pending.add( key ) ? generation : -1;
+	}
+
+	synchronized void clearPending( final long key )
+	{
+		pending.remove( key );
+	}
+
+	/**
+	 * Remove all blocks, and forget pending ones, such that they are
+	 * requested again. Blocks that are still being loaded for the previous
+	 * generation are not put.
+	 */
+	synchronized void clear()
+	{
+		blocks.clear();
+		pending.clear();
+		++generation;
+	}
+
+	/**
+	 * Get the linear index of a block in a grid of the given dimensions (X
+	 * fastest).
+	 */
+	static long blockKey( final long[] gridDimensions, final long[] gridPosition )
+	{
+		long key = 0;
+		for ( int d = gridDimensions.length - 1; d >= 0; --d )
+			key = key * gridDimensions[ d ] + gridPosition[ d ];
+		return key;
+	}
+}
@@ -0,0 +1,515 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.ui.util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+
+import net.imglib2.AbstractInterval;
+import net.imglib2.RandomAccessible;
+import net.imglib2.converter.Converter;
+import net.imglib2.type.numeric.ARGBType;
+import net.imglib2.type.numeric.RealType;
+
+/**
+ * An image stored as a directory of fixed-size blocks, one file per block,
+ * which are loaded lazily through an {@link AsyncBlockCache}. Only blocks that
+ * are actually rendered are read, and reading and decompressing runs on the
+ * loader threads of the cache, not on the rendering threads.
+ * <p>
+ * The directory contains a file <code>attributes.json</code>, e.g.,
+ * 
+ * <pre>
+ * {
+ *   "dimensions" : [ 1024, 1024, 300 ],
+ *   "blockSize" : [ 64, 64, 64 ],
+ *   "dataType" : "uint16",
+ *   "compression" : "gzip",
+ *   "byteOrder" : "big"
+ * }
+ * </pre>
+ * 
+ * where <code>dataType</code> is one of <code>int8</code>,
+ * <code>uint8</code>, <code>int16</code>, <code>uint16</code>,
+ * <code>int32</code>, <code>uint32</code>, <code>float32</code>,
+ * <code>compression</code> is <code>gzip</code> or <code>raw</code>, and
+ * <code>byteOrder</code> is <code>big</code> (default) or
+ * <code>little</code>.
+ * <p>
+ * The block at grid position <code>(x,y,z)</code> is stored in the file
+ * <code>x/y/z</code> (relative to the directory). It contains the pixels of
+ * the block in flat (X fastest) order, optionally gzip-compressed. Blocks at
+ * the image border are truncated to the image. Missing block files are read
+ * as zero.
+ * 
+ * @param <T>
+ *            pixel type
+ */
+public class ChunkedDirectoryImage< T extends RealType< T > > extends AbstractInterval
+{
+	private final File directory;
+
+	private final long[] dimensions;
+
+	private final int[] blockSize;
+
+	private final PixelEncoding encoding;
+
+	private final boolean gzip;
+
+	private final ByteOrder byteOrder;
+
+	private final AsyncBlockCache< T > cache;
+
+	/**
+	 * Number of bytes read from block files.
+	 */
+	private final AtomicLong numBytesRead;
+
+	/**
+	 * Open a chunked directory.
+	 * 
+	 * @param directory
+	 *            the dataset directory.
+	 * @param type
+	 *            an instance of the pixel type, which must match the
+	 *            <code>dataType</code> attribute.
+	 * @param maxBytes
+	 *            memory budget for cached blocks.
+	 * @param numThreads
+	 *            how many threads to use for reading and decompressing
+	 *            blocks.
+	 * @throws IOException
+	 *             if the attributes cannot be read, are invalid, or do not
+	 *             match <code>type</code>.
+	 */
+	public ChunkedDirectoryImage( final File directory, final T type, final long maxBytes, final int numThreads ) throws IOException
+	{
+		this( directory, readAttributes( directory ), type, maxBytes, numThreads );
+	}
+
+	private ChunkedDirectoryImage( final File directory, final Map< String, Object > attributes, final T type, final long maxBytes, final int numThreads ) throws IOException
+	{
+		super( getLongArray( attributes, "dimensions" ) );
+		this.directory = directory;
+		dimensions = getLongArray( attributes, "dimensions" );
+		final long[] bs = getLongArray( attributes, "blockSize" );
+		if ( bs.length != n )
+			throw new IOException( "blockSize and dimensions differ in length" );
+		blockSize = new int[ n ];
+		long numBlockPixels = 1;
+		for ( int d = 0; d < n; ++d )
+		{
+			if ( bs[ d ] > Integer.MAX_VALUE / numBlockPixels )
+				throw new IOException( "blockSize is too large" );
+			blockSize[ d ] = ( int ) bs[ d ];
+			numBlockPixels *= bs[ d ];
+		}
+
+		try
+		{
+			encoding = PixelEncoding.forName( getString( attributes, "dataType", null ) );
+		}
+		catch ( final IllegalArgumentException e )
+		{
+			throw new IOException( e.getMessage() );
+		}
+		if ( encoding != PixelEncoding.of( type ) )
+			throw new IOException( "dataType " + encoding.name + " does not match " + type.getClass().getSimpleName() );
+		if ( numBlockPixels * encoding.bytesPerPixel > Integer.MAX_VALUE )
+			throw new IOException( "blockSize is too large" );
+
+		final String compression = getString( attributes, "compression", "raw" );
+		if ( compression.equals( "gzip" ) )
+			gzip = true;
+		else if ( compression.equals( "raw" ) )
+			gzip = false;
+		else
+			throw new IOException( "unsupported compression " + compression );
+
+		final String order = getString( attributes, "byteOrder", "big" );
+		if ( order.equals( "big" ) )
+			byteOrder = ByteOrder.BIG_ENDIAN;
+		else if ( order.equals( "little" ) )
+			byteOrder = ByteOrder.LITTLE_ENDIAN;
+		else
+			throw new IOException( "unsupported byteOrder " + order );
+
+		numBytesRead = new AtomicLong();
+		cache = new AsyncBlockCache< >( this, blockSize, type, new AsyncBlockCache.BlockLoader()
+		{
+			@Override
+			public void load( final long[] gridPosition, final double[] block ) throws IOException
+			{
+				loadBlock( gridPosition, block );
+			}
+		}, maxBytes, numThreads );
+	}
+
+	/**
+	 * Get the cache through which blocks are loaded, e.g., to add block
+	 * listeners or to get loading {@link AsyncBlockCache#getStatistics()
+	 * statistics}.
+	 */
+	public AsyncBlockCache< T > getCache()
+	{
+		return cache;
+	}
+
+	/**
+	 * Get the image, extended with zero to infinity (see
+	 * {@link AsyncBlockCache#getCachedSource()}).
+	 */
+	public RandomAccessible< T > getCachedSource()
+	{
+		return cache.getCachedSource();
+	}
+
+	/**
+	 * Create a render source of the image (see
+	 * {@link AsyncBlockCache#createRenderSource(Object, Converter)}).
+	 */
+	public < A > InterpolatingSource< T, A > createRenderSource( final A sourceTransform, final Converter< ? super T, ARGBType > converter )
+	{
+		return cache.createRenderSource( sourceTransform, converter );
+	}
+
+	public int[] getBlockSize()
+	{
+		return blockSize.clone();
+	}
+
+	/**
+	 * Get the number of (compressed) bytes read from block files so far.
+	 */
+	public long getNumBytesRead()
+	{
+		return numBytesRead.get();
+	}
+
+	private void loadBlock( final long[] gridPosition, final double[] block ) throws IOException
+	{
+		final StringBuilder path = new StringBuilder();
+		for ( int d = 0; d < n; ++d )
+		{
+			if ( d > 0 )
+				path.append( File.separatorChar );
+			path.append( gridPosition[ d ] );
+		}
+		final File file = new File( directory, path.toString() );
+		if ( !file.isFile() )
+			return;
+
+		// the block, truncated to the image
+		final int[] size = new int[ n ];
+		int numPixels = 1;
+		for ( int d = 0; d < n; ++d )
+		{
+			size[ d ] = ( int ) Math.min( blockSize[ d ], dimensions[ d ] - gridPosition[ d ] * blockSize[ d ] );
+			numPixels *= size[ d ];
+		}
+		final byte[] bytes = new byte[ numPixels * encoding.bytesPerPixel ];
+		try ( final InputStream in = gzip ? new GZIPInputStream( new FileInputStream( file ), 65536 ) : new FileInputStream( file ) )
+		{
+			int offset = 0;
+			while ( offset < bytes.length )
+			{
+				final int r = in.read( bytes, offset, bytes.length - offset );
+				if ( r < 0 )
+					throw new IOException( file + " is too short" );
+				offset += r;
+			}
+		}
+		numBytesRead.addAndGet( file.length() );
+
+		final ByteBuffer buffer = ByteBuffer.wrap( bytes ).order( byteOrder );
+		final int[] pos = new int[ n ];
+		for ( int i = 0; i < numPixels; ++i )
+		{
+			int index = 0;
+			for ( int d = n - 1; d >= 0; --d )
+				index = index * blockSize[ d ] + pos[ d ];
+			block[ index ] = encoding.get( buffer, i );
+
+			for ( int d = 0; d < n && ++pos[ d ] == size[ d ]; ++d )
+				pos[ d ] = 0;
+		}
+	}
+
+	private static Map< String, Object > readAttributes( final File directory ) throws IOException
+	{
+		final File file = new File( directory, "attributes.json" );
+		final String json = new String( Files.readAllBytes( file.toPath() ), StandardCharsets.UTF_8 );
+		final Object attributes = new JsonParser( json ).parse();
+		if ( !( attributes instanceof Map ) )
+			throw new IOException( file + ": expected a JSON object" );
+		@SuppressWarnings( "unchecked" )
+		final Map< String, Object > map = ( Map< String, Object > ) attributes;
+		return map;
+	}
+
+	private static long[] getLongArray( final Map< String, Object > attributes, final String key ) throws IOException
+	{
+		final Object value = attributes.get( key );
+		if ( !( value instanceof List ) )
+			throw new IOException( "missing attribute " + key );
+		final List< ? > list = ( List< ? > ) value;
+		final long[] array = new long[ list.size() ];
+		for ( int i = 0; i < array.length; ++i )
+		{
+			final Object element = list.get( i );
+			if ( !( element instanceof Double ) )
+				throw new IOException( "attribute " + key + " must contain numbers" );
+			final double v = ( Double ) element;
+			if ( v != Math.floor( v ) || v >= Long.MAX_VALUE )
+				throw new IOException( "attribute " + key + " must contain integers" );
+			array[ i ] = ( long ) v;
+			if ( array[ i ] <= 0 )
+				throw new IOException( "attribute " + key + " must contain positive numbers" );
+		}
+		return array;
+	}
+
+	private static String getString( final Map< String, Object > attributes, final String key, final String defaultValue ) throws IOException
+	{
+		final Object value = attributes.get( key );
+		if ( value == null && defaultValue != null )
+			return defaultValue;
+		if ( !( value instanceof String ) )
+			throw new IOException( "missing attribute " + key );
+		return ( String ) value;
+	}
+
+	/**
+	 * Minimal JSON parser. Objects become {@link Map Maps}, arrays become
+	 * {@link List Lists}, and numbers become {@link Double Doubles}.
+	 */
+	private static class JsonParser
+	{
+		private final String s;
+
+		private int i;
+
+		JsonParser( final String s )
+		{
+			this.s = s;
+			i = 0;
+		}
+
+		Object parse() throws IOException
+		{
+			final Object value = parseValue();
+			skipWhitespace();
+			if ( i != s.length() )
+				throw error( "unexpected trailing characters" );
+			return value;
+		}
+
+		private IOException error( final String message )
+		{
+			return new IOException( "invalid JSON at position " + i + ": " + message );
+		}
+
+		private void skipWhitespace()
+		{
+			while ( i < s.length() && Character.isWhitespace( s.charAt( i ) ) )
+				++i;
+		}
+
+		private char next() throws IOException
+		{
+			skipWhitespace();
+			if ( i == s.length() )
+				throw error( "unexpected end" );
+			return s.charAt( i );
+		}
+
+		private void expect( final char c ) throws IOException
+		{
+			if ( next() != c )
+				throw error( "expected '" + c + "'" );
+			++i;
+		}
+
+		private Object parseValue() throws IOException
+		{
+			final char c = next();
+			if ( c == '{' )
+			{
+				++i;
+				final Map< String, Object > map = new HashMap< >();
+				if ( next() == '}' )
+				{
+					++i;
+					return map;
+				}
+				while ( true )
+				{
+					if ( next() != '"' )
+						throw error( "expected key" );
+					final String key = parseString();
+					expect( ':' );
+					map.put( key, parseValue() );
+					if ( next() == ',' )
+						++i;
+					else
+					{
+						expect( '}' );
+						return map;
+					}
+				}
+			}
+			else if ( c == '[' )
+			{
+				++i;
+				final List< Object > list = new ArrayList< >();
+				if ( next() == ']' )
+				{
+					++i;
+					return list;
+				}
+				while ( true )
+				{
+					list.add( parseValue() );
+					if ( next() == ',' )
+						++i;
+					else
+					{
+						expect( ']' );
+						return list;
+					}
+				}
+			}
+			else if ( c == '"' )
+				return parseString();
+			else if ( s.startsWith( "true", i ) )
+			{
+				i += 4;
+				return Boolean.TRUE;
+			}
+			else if ( s.startsWith( "false", i ) )
+			{
+				i += 5;
+				return Boolean.FALSE;
+			}
+			else if ( s.startsWith( "null", i ) )
+			{
+				i += 4;
+				return null;
+			}
+			else
+			{
+				final int start = i;
+				while ( i < s.length() && "+-0123456789.eE".indexOf( s.charAt( i ) ) >= 0 )
+					++i;
+				try
+				{
+					return Double.parseDouble( s.substring( start, i ) );
+				}
+				catch ( final NumberFormatException e )
+				{
+					i = start;
+					throw error( "unexpected character" );
+				}
+			}
+		}
+
+		private String parseString() throws IOException
+		{
+			++i; // opening quote
+			final StringBuilder sb = new StringBuilder();
+			while ( true )
+			{
+				if ( i >= s.length() )
+					throw error( "unterminated string" );
+				final char c = s.charAt( i++ );
+				if ( c == '"' )
+					return sb.toString();
+				if ( c == '\\' )
+				{
+					if ( i >= s.length() )
+						throw error( "unterminated string" );
+					final char e = s.charAt( i++ );
+					switch ( e )
+					{
+					case 'n':
+						sb.append( '\n' );
+						break;
+					case 't':
+						sb.append( '\t' );
+						break;
+					case 'r':
+						sb.append( '\r' );
+						break;
+					case 'b':
+						sb.append( '\b' );
+						break;
+					case 'f':
+						sb.append( '\f' );
+						break;
+					case 'u':
+						if ( i + 4 > s.length() )
+							throw error( "invalid escape" );
+						int code = 0;
+						for ( final int end = i + 4; i < end; ++i )
+						{
+							final int digit = Character.digit( s.charAt( i ), 16 );
+							if ( digit < 0 )
+								throw error( "invalid escape" );
+							code = code * 16 + digit;
+						}
+						sb.append( ( char ) code );
+						break;
+					default:
+						sb.append( e );
+					}
+				}
+				else
+					sb.append( c );
+			}
+		}
+	}
+}
@@ -0,0 +1,370 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.ui.util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Persistent cache of computed blocks (<code>double[]</code>) in a local
+ * directory, such that blocks computed in one session (e.g., by a
+ * {@link LazyPyramid}) can be reused in the next.
+ * <p>
+ * Each dataset has a subdirectory (named by a hash of its identity)
+ * containing a <code>manifest.properties</code> file, which records the
+ * dataset identity and the parameters the blocks were computed with. If these
+ * do not match when the dataset is {@link #openDataset(String, String)
+ * opened}, the stored blocks are discarded. Blocks are stored as raw
+ * big-endian <code>double</code> values in files
+ * <code>level&lt;l&gt;/&lt;key&gt;.blk</code>. They are read back with a
+ * single channel read into the block array (blocks are small, so
+ * memory-mapping them would only add setup cost).
+ * <p>
+ * The total size of block files in the cache directory (over all datasets) is
+ * limited. Least recently used blocks are deleted when the limit is exceeded.
+ * The LRU order is tracked in memory, and recorded as file modification times
+ * by {@link #flush()}, such that it persists across sessions.
+ */
+public class DiskBlockCache
+{
+	private static final String MANIFEST = "manifest.properties";
+
+	private static final String BLOCK_SUFFIX = ".blk";
+
+	private final File directory;
+
+	private final long maxBytes;
+
+	/**
+	 * Block files in LRU order, with their sizes.
+	 */
+	private final LinkedHashMap< File, Long > files;
+
+	private long bytes;
+
+	/**
+	 * Block files that were read since the last {@link #flush()}, i.e., whose
+	 * modification times do not reflect the LRU order.
+	 */
+	private final HashSet< File > used;
+
+	/**
+	 * Open (or create) a cache directory.
+	 * 
+	 * @param directory
+	 *            cache directory.
+	 * @param maxBytes
+	 *            limit for the total size of block files.
+	 * @throws IOException
+	 *             if the directory cannot be created.
+	 */
+	public DiskBlockCache( final File directory, final long maxBytes ) throws IOException
+	{
+		this.directory = directory;
+		this.maxBytes = maxBytes;
+		files = new LinkedHashMap< >( 16, 0.75f, true );
+		bytes = 0;
+		used = new HashSet< >();
+		Files.createDirectories( directory.toPath() );
+
+		final ArrayList< File > existing = new ArrayList< >();
+		collectBlockFiles( directory, existing );
+		Collections.sort( existing, new Comparator< File >()
+		{
+			@Override
+			public int compare( final File f1, final File f2 )
+			{
+				return Long.compare( f1.lastModified(), f2.lastModified() );
+			}
+		} );
+		for ( final File f : existing )
+		{
+			files.put( f, f.length() );
+			bytes += f.length();
+		}
+		evict();
+	}
+
+	private static void collectBlockFiles( final File dir, final ArrayList< File > blockFiles )
+	{
+		final File[] children = dir.listFiles();
+		if ( children == null )
+			return;
+		for ( final File f : children )
+		{
+			if ( f.isDirectory() )
+				collectBlockFiles( f, blockFiles );
+			else if ( f.getName().endsWith( BLOCK_SUFFIX ) )
+				blockFiles.add( f );
+		}
+	}
+
+	/**
+	 * Open the blocks of a dataset. If the dataset was stored with different
+	 * <code>parameters</code> before, the stored blocks are discarded.
+	 * 
+	 * @param identity
+	 *            identifies the dataset, e.g., its path and modification
+	 *            time.
+	 * @param parameters
+	 *            describes how blocks are computed, e.g., dimensions, block
+	 *            size, and reduction method.
+	 * @return handle for reading and writing blocks of the dataset.
+	 * @throws IOException
+	 *             if the manifest cannot be written.
+	 */
+	public Dataset openDataset( final String identity, final String parameters ) throws IOException
+	{
+		final File dir = new File( directory, hash( identity ) );
+		final File manifestFile = new File( dir, MANIFEST );
+		final Properties manifest = new Properties();
+		if ( manifestFile.exists() )
+		{
+			try (final InputStream in = new FileInputStream( manifestFile ))
+			{
+				manifest.load( in );
+			}
+			catch ( final IOException e )
+			{
+				manifest.clear();
+			}
+		}
+		if ( !identity.equals( manifest.getProperty( "identity" ) ) || !parameters.equals( manifest.getProperty( "parameters" ) ) )
+		{
+			removeBlockFiles( dir );
+			Files.createDirectories( dir.toPath() );
+			manifest.clear();
+			manifest.setProperty( "identity", identity );
+			manifest.setProperty( "parameters", parameters );
+			try (final OutputStream out = new FileOutputStream( manifestFile ))
+			{
+				manifest.store( out, "imglib2-ui block cache" );
+			}
+		}
+		return new Dataset( dir );
+	}
+
+	private synchronized void removeBlockFiles( final File dir )
+	{
+		final ArrayList< File > blockFiles = new ArrayList< >();
+		collectBlockFiles( dir, blockFiles );
+		for ( final File f : blockFiles )
+			remove( f );
+	}
+
+	private static String hash( final String identity )
+	{
+		try
+		{
+			final byte[] digest = MessageDigest.getInstance( "SHA-1" ).digest( identity.getBytes( StandardCharsets.UTF_8 ) );
+			final StringBuilder sb = new StringBuilder();
+			for ( final byte b : digest )
+				sb.append( String.format( "%02x", b ) );
+			return sb.toString();
+		}
+		catch ( final NoSuchAlgorithmException e )
+		{
+			return Integer.toHexString( identity.hashCode() );
+		}
+	}
+
+	/**
+	 * Get the total size of cached block files in bytes.
+	 */
+	public synchronized long getBytes()
+	{
+		return bytes;
+	}
+
+	/**
+	 * Record the LRU order of block files (as modification times), such that
+	 * it is restored when the cache directory is opened again. This should be
+	 * called before exiting, e.g., from a shutdown hook. Only files at least
+	 * as recent as the least recently read one are touched.
+	 */
+	public synchronized void flush()
+	{
+		if ( used.isEmpty() )
+			return;
+		final ArrayList< File > recent = new ArrayList< >();
+		for ( final File f : files.keySet() )
+			if ( !recent.isEmpty() || used.contains( f ) )
+				recent.add( f );
+		// 1 ms apart, ending now, to keep the order
+		long time = System.currentTimeMillis() - recent.size();
+		for ( final File f : recent )
+			f.setLastModified( ++time );
+		used.clear();
+	}
+
+	private synchronized void touch( final File f )
+	{
+		if ( files.get( f ) != null )
+			used.add( f );
+	}
+
+	private synchronized void add( final File f, final long size )
+	{
+		final Long old = files.put( f, size );
+		if ( old != null )
+			bytes -= old;
+		bytes += size;
+		evict();
+	}
+
+	private synchronized void remove( final File f )
+	{
+		final Long size = files.remove( f );
+		if ( size != null )
+			bytes -= size;
+		used.remove( f );
+		f.delete();
+	}
+
+	private synchronized void evict()
+	{
+		final Iterator< Map.Entry< File, Long > > it = files.entrySet().iterator();
+		while ( bytes > maxBytes && it.hasNext() )
+		{
+			final Map.Entry< File, Long > eldest = it.next();
+			bytes -= eldest.getValue();
+			used.remove( eldest.getKey() );
+			eldest.getKey().delete();
+			it.remove();
+		}
+	}
+
+	/**
+	 * Blocks of one dataset in the cache.
+	 */
+	public class Dataset
+	{
+		private final File dir;
+
+		private Dataset( final File dir )
+		{
+			this.dir = dir;
+		}
+
+		private File blockFile( final int level, final long key )
+		{
+			return new File( new File( dir, "level" + level ), key + BLOCK_SUFFIX );
+		}
+
+		/**
+		 * Read a block.
+		 * 
+		 * @return the block, or <code>null</code> if it is not in the cache
+		 *         (or has an unexpected size).
+		 */
+		public double[] read( final int level, final long key, final int numElements )
+		{
+			final File f = blockFile( level, key );
+			if ( !f.exists() )
+				return null;
+			try (final FileChannel channel = FileChannel.open( f.toPath(), StandardOpenOption.READ ))
+			{
+				if ( channel.size() != 8L * numElements )
+				{
+					remove( f );
+					return null;
+				}
+				final ByteBuffer buffer = ByteBuffer.allocate( 8 * numElements );
+				while ( buffer.hasRemaining() )
+					if ( channel.read( buffer ) < 0 )
+						return null;
+				buffer.flip();
+				final double[] block = new double[ numElements ];
+				buffer.asDoubleBuffer().get( block );
+				touch( f );
+				return block;
+			}
+			catch ( final IOException e )
+			{
+				return null;
+			}
+		}
+
+		/**
+		 * Write a block. The block is written to a temporary file first, such
+		 * that incomplete blocks are never read.
+		 */
+		public void write( final int level, final long key, final double[] block )
+		{
+			final File f = blockFile( level, key );
+			Path tmp = null;
+			try
+			{
+				Files.createDirectories( f.getParentFile().toPath() );
+				tmp = Files.createTempFile( f.getParentFile().toPath(), "block", ".tmp" );
+				final ByteBuffer buffer = ByteBuffer.allocate( 8 * block.length );
+				buffer.asDoubleBuffer().put( block );
+				try (final FileChannel channel = FileChannel.open( tmp, StandardOpenOption.WRITE ))
+				{
+					while ( buffer.hasRemaining() )
+						channel.write( buffer );
+				}
+				Files.move( tmp, f.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+				add( f, 8L * block.length );
+			}
+			catch ( final IOException e )
+			{
+				// not cached, will be recomputed next time
+				if ( tmp != null )
+					tmp.toFile().delete();
+			}
+		}
+	}
+}
@@ -0,0 +1,177 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.ui.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.imglib2.Interval;
+import net.imglib2.RandomAccessible;
+import net.imglib2.RealRandomAccessible;
+import net.imglib2.converter.Converter;
+import net.imglib2.type.numeric.ARGBType;
+import net.imglib2.type.numeric.NumericType;
+import net.imglib2.ui.BoundedSource;
+import net.imglib2.ui.MultiResolutionRenderSource;
+
+/**
+ * A {@link MultiResolutionRenderSource}, that provides interpolated
+ * resolution levels and is able to switch between nearest-neighbor and
+ * n-linear interpolation (see {@link InterpolatingSource}).
+ * 
+ * The (discrete) {@link RandomAccessible} of each resolution level, its
+ * transform, and the {@link Converter} are provided in the constructor.
+ * Optionally, the interval of the full resolution level can be given (see
+ * {@link BoundedSource}).
+ * 
+ * @param <T>
+ *            pixel type
+ * @param <A>
+ *            transform type
+ */
+public class InterpolatingMultiResolutionSource< T extends NumericType< T >, A > implements MultiResolutionRenderSource< T, A >, BoundedSource
+{
+	protected final List< InterpolatingSource< T, A > > levels;
+
+	protected final Interval sourceInterval;
+
+	/**
+	 * @param sources
+	 *            the resolution levels, starting with full resolution.
+	 * @param sourceTransforms
+	 *            transforms from each resolution level into the global
+	 *            coordinate system.
+	 * @param converter
+	 *            converts the pixel type to {@link ARGBType} for display.
+	 */
+	public InterpolatingMultiResolutionSource( final List< ? extends RandomAccessible< T > > sources, final List< ? extends A > sourceTransforms, final Converter< ? super T, ARGBType > converter )
+	{
+		this( sources, null, sourceTransforms, converter );
+	}
+
+	/**
+	 * @param sources
+	 *            the resolution levels, starting with full resolution.
+	 * @param sourceInterval
+	 *            the interval of the full resolution level, outside of which
+	 *            all levels have a constant value, or <code>null</code> if
+	 *            unknown.
+	 * @param sourceTransforms
+	 *            transforms from each resolution level into the global
+	 *            coordinate system.
+	 * @param converter
+	 *            converts the pixel type to {@link ARGBType} for display.
+	 */
+	public InterpolatingMultiResolutionSource( final List< ? extends RandomAccessible< T > > sources, final Interval sourceInterval, final List< ? extends A > sourceTransforms, final Converter< ? super T, ARGBType > converter )
+	{
+		this.sourceInterval = sourceInterval;
+		if ( sources.isEmpty() || sources.size() != sourceTransforms.size() )
+			throw new IllegalArgumentException( "need one transform for each of at least one resolution level" );
+		levels = new ArrayList< >( sources.size() );
+		for ( int l = 0; l < sources.size(); ++l )
+			levels.add( new InterpolatingSource< T, A >( sources.get( l ), sourceTransforms.get( l ), converter ) );
+	}
+
+	@Override
+	public int getNumResolutionLevels()
+	{
+		return levels.size();
+	}
+
+	@Override
+	public RealRandomAccessible< T > getInterpolatedSource( final int level )
+	{
+		return levels.get( level ).getInterpolatedSource();
+	}
+
+	@Override
+	public A getSourceTransform( final int level )
+	{
+		return levels.get( level ).getSourceTransform();
+	}
+
+	@Override
+	public RealRandomAccessible< T > getInterpolatedSource()
+	{
+		return getInterpolatedSource( 0 );
+	}
+
+	@Override
+	public A getSourceTransform()
+	{
+		return getSourceTransform( 0 );
+	}
+
+	@Override
+	public Converter< ? super T, ARGBType > getConverter()
+	{
+		return levels.get( 0 ).getConverter();
+	}
+
+	@Override
+	public Interval getSourceInterval()
+	{
+		return sourceInterval;
+	}
+
+	/**
+	 * Switch to the other interpolation method (nearest-neighbor or n-linear)
+	 */
+	public void switchInterpolation()
+	{
+		setInterpolation( getInterpolation() + 1 );
+	}
+
+	/**
+	 * Get current interpolation method.
+	 * 
+	 * @return interpolation method: 0 is nearest-neighbor, 1 is n-linear
+	 */
+	public int getInterpolation()
+	{
+		return levels.get( 0 ).getInterpolation();
+	}
+
+	/**
+	 * Set current interpolation method.
+	 * 
+	 * @param interpolation
+	 *            0 is nearest-neighbor, 1 is n-linear
+	 */
+	public void setInterpolation( final int interpolation )
+	{
+		for ( final InterpolatingSource< T, A > level : levels )
+			level.setInterpolation( interpolation );
+	}
+}
@@ -33,6 +33,7 @@
  */
 package net.imglib2.ui.util;
 
+import net.imglib2.Interval;
 import net.imglib2.RandomAccessible;
 import net.imglib2.RealRandomAccessible;
 import net.imglib2.converter.Converter;
@@ -42,6 +43,7 @@ import net.imglib2.interpolation.randomaccess.NLinearInterpolatorFactory;
 import net.imglib2.interpolation.randomaccess.NearestNeighborInterpolatorFactory;
 import net.imglib2.type.numeric.ARGBType;
 import net.imglib2.type.numeric.NumericType;
+import net.imglib2.ui.BoundedSource;
 import net.imglib2.ui.RenderSource;
 import net.imglib2.view.Views;
 
@@ -51,7 +53,10 @@ import net.imglib2.view.Views;
  * n-linear interpolation.
  * 
  * The (discrete) source {@link RandomAccessible}, transform, and
- * {@link Converter} provided in the constructor.
+ * {@link Converter} provided in the constructor. Optionally, the interval of
+ * the source can be given, outside of which the source must have a constant
+ * value (e.g., when extended with zero). Then renderers only sample pixels
+ * that map into the interval.
  * 
  * @param <T>
  *            pixel type
@@ -60,7 +65,7 @@ import net.imglib2.view.Views;
  * 
  * @author Tobias Pietzsch
  */
-public class InterpolatingSource< T extends NumericType< T >, A > implements RenderSource< T, A >
+public class InterpolatingSource< T extends NumericType< T >, A > implements RenderSource< T, A >, BoundedSource
 {
 	protected final A sourceTransform;
 
@@ -68,10 +73,28 @@ public class InterpolatingSource< T extends NumericType< T >, A > implements Ren
 
 	protected final RealRandomAccessible< T >[] sourceInterpolants;
 
+	protected final Interval sourceInterval;
+
 	private int interpolation;
 
-	@SuppressWarnings( { "unchecked", "rawtypes" } )
 	public InterpolatingSource( final RandomAccessible< T > source, final A sourceTransform, final Converter< ? super T, ARGBType > converter )
+	{
+		this( source, null, sourceTransform, converter );
+	}
+
+	/**
+	 * @param source
+	 *            the source, extended to infinity.
+	 * @param sourceInterval
+	 *            the interval outside of which <code>source</code> has a
+	 *            constant value, or <code>null</code> if unknown.
+	 * @param sourceTransform
+	 *            transforms source into the global coordinate system.
+	 * @param converter
+	 *            converts the pixel type to {@link ARGBType} for display.
+	 */
+	@SuppressWarnings( { "unchecked", "rawtypes" } )
+	public InterpolatingSource( final RandomAccessible< T > source, final Interval sourceInterval, final A sourceTransform, final Converter< ? super T, ARGBType > converter )
 	{
 		final InterpolatorFactory< T, RandomAccessible< T > > nLinearInterpolatorFactory;
 		if ( ARGBType.class.isInstance( source.randomAccess().get() ) )
@@ -81,6 +104,7 @@ public class InterpolatingSource< T extends NumericType< T >, A > implements Ren
 
 		this.sourceTransform = sourceTransform;
 		this.converter = converter;
+		this.sourceInterval = sourceInterval;
 		sourceInterpolants = new RealRandomAccessible[] {
 				Views.interpolate( source, new NearestNeighborInterpolatorFactory< T >() ),
 				Views.interpolate( source, nLinearInterpolatorFactory ) };
@@ -105,6 +129,12 @@ public class InterpolatingSource< T extends NumericType< T >, A > implements Ren
 		return converter;
 	}
 
+	@Override
+	public Interval getSourceInterval()
+	{
+		return sourceInterval;
+	}
+
 	/**
 	 * Switch to the other interpolation method (nearest-neighbor or n-linear)
 	 */
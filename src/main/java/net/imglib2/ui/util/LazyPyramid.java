@@ -0,0 +1,727 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.ui.util;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+
+import net.imglib2.Interval;
+import net.imglib2.Point;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessible;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.concatenate.Concatenable;
+import net.imglib2.converter.Converter;
+import net.imglib2.realtransform.AffineGet;
+import net.imglib2.realtransform.AffineSet;
+import net.imglib2.type.numeric.ARGBType;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.ui.AffineTransformType;
+import net.imglib2.ui.MultiResolutionRenderSource;
+import net.imglib2.ui.Placeholders;
+import net.imglib2.ui.Versioned;
+import net.imglib2.view.Views;
+
+/**
+ * A mipmap pyramid of a {@link RandomAccessibleInterval}, where each level is
+ * downsampled by a factor of 2 (in every dimension) from the previous one.
+ * Level 0 is the source itself.
+ * <p>
+ * Coarser levels are computed lazily, block by block, in background threads,
+ * by {@link Reduction#MEAN mean} or {@link Reduction#MAX max} reduction of
+ * the next finer level. Each block is computed only once, also if it is
+ * needed concurrently (e.g., as part of two coarser blocks). Blocks of each
+ * level are kept in a bounded LRU cache and recomputed when needed again
+ * after being evicted. The cache should be large enough to hold the blocks
+ * that are visible at once, otherwise blocks are evicted and recomputed
+ * while rendering. While a block is not
+ * available, its pixels are taken (nearest-neighbor) from the finest level
+ * that is. These are {@link Placeholders placeholders}, i.e., renderers will
+ * render the affected tiles again when resumed.
+ * <p>
+ * Whenever a block has been computed, listeners are notified, such that the
+ * display can be repainted (see {@link #addBlockListener(Runnable)}).
+ * <p>
+ * Optionally, computed blocks are stored in a {@link DiskBlockCache} (see
+ * {@link #setDiskCache(DiskBlockCache, String)}) and read back from there
+ * instead of being recomputed, also in later sessions.
+ * <p>
+ * Blocks are stored as <code>double</code> values, and values of coarser
+ * levels are set via {@link RealType#setReal(double)}.
+ * 
+ * @param <T>
+ *            pixel type
+ */
+public class LazyPyramid< T extends RealType< T > >
+{
+	/**
+	 * How 2x2(x2...) pixels of a level are reduced to one pixel of the next
+	 * coarser level.
+	 */
+	public static enum Reduction
+	{
+		MEAN,
+		MAX
+	}
+
+	private final RandomAccessibleInterval< T > source;
+
+	private final Reduction reduction;
+
+	private final int blockSize;
+
+	private final int n;
+
+	/**
+	 * Number of pixels per (complete) block.
+	 */
+	private final int blockNumElements;
+
+	/**
+	 * Min of the source interval.
+	 */
+	private final long[] sourceMin;
+
+	/**
+	 * Dimensions of each level.
+	 */
+	private final long[][] levelDimensions;
+
+	/**
+	 * Number of blocks of each level.
+	 */
+	private final long[][] gridDimensions;
+
+	/**
+	 * Block caches of each level. Index 0 is <code>null</code>.
+	 */
+	private final BlockCache[] caches;
+
+	/**
+	 * Blocks of each level that are being computed, such that concurrent
+	 * requests wait for the same computation. Index 0 is <code>null</code>.
+	 */
+	private final ConcurrentHashMap< Long, FutureTask< double[] > >[] computing;
+
+	private final T type;
+
+	private final ExecutorService executorService;
+
+	private final CopyOnWriteArrayList< Runnable > blockListeners;
+
+	/**
+	 * Persistent storage of computed blocks, or <code>null</code>.
+	 */
+	private volatile DiskBlockCache.Dataset diskCache;
+
+	/**
+	 * Create a pyramid with levels down to <code>blockSize</code> pixels in
+	 * the largest dimension.
+	 * 
+	 * @param source
+	 *            full resolution image.
+	 * @param reduction
+	 *            how pixels are reduced when downsampling.
+	 * @param blockSize
+	 *            side length of blocks.
+	 * @param maxBytesPerLevel
+	 *            memory budget for cached blocks of each level. This should
+	 *            be enough for the blocks visible at once.
+	 * @param numThreads
+	 *            how many background threads to use for computing blocks.
+	 */
+	public LazyPyramid(
+			final RandomAccessibleInterval< T > source,
+			final Reduction reduction,
+			final int blockSize,
+			final long maxBytesPerLevel,
+			final int numThreads )
+	{
+		this.source = source;
+		this.reduction = reduction;
+		this.blockSize = blockSize;
+		n = source.numDimensions();
+		int numElements = 1;
+		for ( int d = 0; d < n; ++d )
+			numElements *= blockSize;
+		blockNumElements = numElements;
+		sourceMin = new long[ n ];
+		source.min( sourceMin );
+
+		final ArrayList< long[] > dims = new ArrayList< >();
+		long[] dim = new long[ n ];
+		source.dimensions( dim );
+		dims.add( dim );
+		while ( max( dim ) > blockSize )
+		{
+			final long[] next = new long[ n ];
+			for ( int d = 0; d < n; ++d )
+				next[ d ] = ( dim[ d ] + 1 ) / 2;
+			dims.add( next );
+			dim = next;
+		}
+		final int numLevels = dims.size();
+		levelDimensions = dims.toArray( new long[ numLevels ][] );
+		gridDimensions = new long[ numLevels ][ n ];
+		for ( int l = 0; l < numLevels; ++l )
+			for ( int d = 0; d < n; ++d )
+				gridDimensions[ l ][ d ] = ( levelDimensions[ l ][ d ] + blockSize - 1 ) / blockSize;
+
+		final int maxBlocks = ( int ) Math.max( 1, Math.min( Integer.MAX_VALUE, maxBytesPerLevel / ( 8L * blockNumElements ) ) );
+		caches = new BlockCache[ numLevels ];
+		@SuppressWarnings( "unchecked" )
+		final ConcurrentHashMap< Long, FutureTask< double[] > >[] computingMaps = new ConcurrentHashMap[ numLevels ];
+		computing = computingMaps;
+		for ( int l = 1; l < numLevels; ++l )
+		{
+			caches[ l ] = new BlockCache( maxBlocks );
+			computing[ l ] = new ConcurrentHashMap< >();
+		}
+
+		final RandomAccess< T > a = source.randomAccess();
+		a.setPosition( sourceMin );
+		type = a.get().createVariable();
+		type.setZero();
+
+		executorService = Executors.newFixedThreadPool( numThreads, RenderingThreads.threadFactory( "pyramid-builder-" ) );
+		blockListeners = new CopyOnWriteArrayList< >();
+	}
+
+	private static long max( final long[] values )
+	{
+		long max = 0;
+		for ( final long v : values )
+			max = Math.max( max, v );
+		return max;
+	}
+
+	/**
+	 * Get the number of levels (including the full resolution level 0).
+	 */
+	public int getNumLevels()
+	{
+		return levelDimensions.length;
+	}
+
+	/**
+	 * Get the dimensions of the specified level.
+	 */
+	public long[] getLevelDimensions( final int level )
+	{
+		return levelDimensions[ level ].clone();
+	}
+
+	/**
+	 * Get the specified level, extended with zero to infinity. Coordinates of
+	 * level 0 are those of the source; coarser levels have min 0.
+	 */
+	public RandomAccessible< T > getLevel( final int level )
+	{
+		if ( level == 0 )
+			return Views.extendZero( source );
+		return new LevelAccessible( level );
+	}
+
+	/**
+	 * Get the transform from the specified level into the global coordinate
+	 * system, given the transform <code>sourceTransform</code> of the full
+	 * resolution source. The centre of a pixel of a coarser level lies at the
+	 * centre of the pixels it was reduced from.
+	 */
+	public < A extends AffineGet & AffineSet & Concatenable< AffineGet > > A getLevelTransform( final int level, final AffineTransformType< A > transformType, final A sourceTransform )
+	{
+		final A levelTransform = transformType.createTransform();
+		transformType.set( levelTransform, sourceTransform );
+		if ( level > 0 )
+		{
+			final long s = 1L << level;
+			final A downsampling = transformType.createTransform();
+			for ( int d = 0; d < n; ++d )
+			{
+				downsampling.set( s, d, d );
+				downsampling.set( sourceMin[ d ] + 0.5 * ( s - 1 ), d, n );
+			}
+			levelTransform.concatenate( downsampling );
+		}
+		return levelTransform;
+	}
+
+	/**
+	 * Create a {@link MultiResolutionRenderSource} of this pyramid. The source
+	 * is {@link Versioned} (the data never changes), such that renderers can
+	 * resume rendering of tiles that used placeholders, and
+	 * {@link net.imglib2.ui.BoundedSource bounded} by the source interval.
+	 */
+	public < A extends AffineGet & AffineSet & Concatenable< AffineGet > > InterpolatingMultiResolutionSource< T, A > createRenderSource( final AffineTransformType< A > transformType, final A sourceTransform, final Converter< ? super T, ARGBType > converter )
+	{
+		final List< RandomAccessible< T > > levels = new ArrayList< >();
+		final List< A > transforms = new ArrayList< >();
+		for ( int l = 0; l < getNumLevels(); ++l )
+		{
+			levels.add( getLevel( l ) );
+			transforms.add( getLevelTransform( l, transformType, sourceTransform ) );
+		}
+		return new VersionedSource< >( levels, transforms, converter );
+	}
+
+	private class VersionedSource< A > extends InterpolatingMultiResolutionSource< T, A > implements Versioned
+	{
+		VersionedSource( final List< RandomAccessible< T > > levels, final List< A > transforms, final Converter< ? super T, ARGBType > converter )
+		{
+			super( levels, source, transforms, converter );
+		}
+
+		@Override
+		public long getVersion()
+		{
+			return 0;
+		}
+	}
+
+	/**
+	 * Store computed blocks in <code>cache</code>, and read blocks from there
+	 * instead of computing them if possible.
+	 * 
+	 * @param cache
+	 *            the cache, or <code>null</code> to disable persistent
+	 *            caching.
+	 * @param datasetIdentity
+	 *            uniquely identifies the source data, e.g., its path and
+	 *            modification time.
+	 * @throws IOException
+	 *             if the dataset cannot be opened in the cache.
+	 */
+	public void setDiskCache( final DiskBlockCache cache, final String datasetIdentity ) throws IOException
+	{
+		if ( cache == null )
+		{
+			diskCache = null;
+			return;
+		}
+		final StringBuilder parameters = new StringBuilder();
+		parameters.append( "min=" ).append( Arrays.toString( sourceMin ) );
+		parameters.append( ";dimensions=" ).append( Arrays.toString( levelDimensions[ 0 ] ) );
+		parameters.append( ";blockSize=" ).append( blockSize );
+		parameters.append( ";reduction=" ).append( reduction );
+		parameters.append( ";type=" ).append( type.getClass().getName() );
+		diskCache = cache.openDataset( datasetIdentity, parameters.toString() );
+	}
+
+	/**
+	 * Add a listener that is run (on a background thread) whenever a block
+	 * has been computed, e.g., to request a repaint.
+	 */
+	public void addBlockListener( final Runnable listener )
+	{
+		blockListeners.add( listener );
+	}
+
+	public void removeBlockListener( final Runnable listener )
+	{
+		blockListeners.remove( listener );
+	}
+
+	/**
+	 * Stop computing blocks. Blocks that are not available remain filled from
+	 * finer levels.
+	 */
+	public void shutdown()
+	{
+		executorService.shutdownNow();
+	}
+
+	private long blockKey( final int level, final long[] gridPosition )
+	{
+		return BlockCache.blockKey( gridDimensions[ level ], gridPosition );
+	}
+
+	/**
+	 * Request computation of a block in the background, if it is not
+	 * available or pending already.
+	 */
+	private void requestBlock( final int level, final long[] gridPosition )
+	{
+		final long key = blockKey( level, gridPosition );
+		if ( caches[ level ].setPending( key ) )
+		{
+			final long[] pos = gridPosition.clone();
+			try
+			{
+				executorService.submit( new Runnable()
+				{
+					@Override
+					public void run()
+					{
+						try
+						{
+							getOrComputeBlock( level, pos );
+						}
+						finally
+						{
+							caches[ level ].clearPending( key );
+						}
+						for ( final Runnable l : blockListeners )
+							l.run();
+					}
+				} );
+			}
+			catch ( final RejectedExecutionException e )
+			{
+				caches[ level ].clearPending( key );
+			}
+		}
+	}
+
+	/**
+	 * Get the specified block, computing it (and missing blocks of finer
+	 * levels that it depends on) if necessary. If another thread is computing
+	 * the block already, wait for it instead.
+	 */
+	private double[] getOrComputeBlock( final int level, final long[] gridPosition )
+	{
+		final long key = blockKey( level, gridPosition );
+		final double[] cached = caches[ level ].get( key );
+		if ( cached != null )
+			return cached;
+
+		final long[] pos = gridPosition.clone();
+		final FutureTask< double[] > task = new FutureTask< >( new Callable< double[] >()
+		{
+			@Override
+			public double[] call()
+			{
+				// the block may have been completed since it was looked up
+				final double[] block = caches[ level ].get( key );
+				return block != null ? block : computeBlock( level, pos, key );
+			}
+		} );
+		final FutureTask< double[] > existing = computing[ level ].putIfAbsent( key, task );
+		if ( existing == null )
+		{
+			try
+			{
+				task.run();
+			}
+			finally
+			{
+				computing[ level ].remove( key, task );
+			}
+		}
+		try
+		{
+			return ( existing == null ? task : existing ).get();
+		}
+		catch ( final InterruptedException e )
+		{
+			Thread.currentThread().interrupt();
+			throw new RuntimeException( e );
+		}
+		catch ( final ExecutionException e )
+		{
+			throw new RuntimeException( e.getCause() );
+		}
+	}
+
+	/**
+	 * Read the specified block from the {@link #diskCache}, or compute it
+	 * from the next finer level, and put it into the cache.
+	 */
+	private double[] computeBlock( final int level, final long[] gridPosition, final long key )
+	{
+		final DiskBlockCache.Dataset disk = diskCache;
+		if ( disk != null )
+		{
+			final double[] stored = disk.read( level, key, blockNumElements );
+			if ( stored != null )
+			{
+				caches[ level ].put( key, stored );
+				return stored;
+			}
+		}
+
+		final long[] finerDims = levelDimensions[ level - 1 ];
+		final long[] finerGrid = gridDimensions[ level - 1 ];
+
+		// blocks of the finer level covering this block (only used for level > 1)
+		final int numChildren = 1 << n;
+		final double[][] children = new double[ numChildren ][];
+		if ( level > 1 )
+		{
+			final long[] childPos = new long[ n ];
+			for ( int c = 0; c < numChildren; ++c )
+			{
+				boolean inside = true;
+				for ( int d = 0; d < n; ++d )
+				{
+					childPos[ d ] = 2 * gridPosition[ d ] + ( ( c >> d ) & 1 );
+					inside &= childPos[ d ] < finerGrid[ d ];
+				}
+				if ( inside )
+					children[ c ] = getOrComputeBlock( level - 1, childPos );
+			}
+		}
+		final RandomAccess< T > sourceAccess = level == 1 ? source.randomAccess() : null;
+
+		final double[] block = new double[ blockNumElements ];
+		final long[] levelDims = levelDimensions[ level ];
+		final long[] pos = new long[ n ];
+		final long[] finerPos = new long[ n ];
+		final int[] local = new int[ n ];
+		for ( int i = 0; i < blockNumElements; ++i )
+		{
+			// local position of pixel i
+			boolean inside = true;
+			for ( int d = 0, r = i; d < n; ++d, r /= blockSize )
+			{
+				local[ d ] = r % blockSize;
+				pos[ d ] = gridPosition[ d ] * blockSize + local[ d ];
+				inside &= pos[ d ] < levelDims[ d ];
+			}
+			if ( !inside )
+				continue;
+
+			double value = reduction == Reduction.MAX ? Double.NEGATIVE_INFINITY : 0;
+			int count = 0;
+			for ( int o = 0; o < numChildren; ++o )
+			{
+				boolean valid = true;
+				for ( int d = 0; d < n; ++d )
+				{
+					finerPos[ d ] = 2 * pos[ d ] + ( ( o >> d ) & 1 );
+					valid &= finerPos[ d ] < finerDims[ d ];
+				}
+				if ( !valid )
+					continue;
+				final double v;
+				if ( sourceAccess != null )
+				{
+					for ( int d = 0; d < n; ++d )
+						sourceAccess.setPosition( sourceMin[ d ] + finerPos[ d ], d );
+					v = sourceAccess.get().getRealDouble();
+				}
+				else
+				{
+					// finer pixel lies in child block (2 * local / blockSize) at local position (2 * local % blockSize)
+					int child = 0;
+					int index = 0;
+					for ( int d = n - 1; d >= 0; --d )
+					{
+						final long l = finerPos[ d ] - 2 * gridPosition[ d ] * blockSize;
+						child |= ( int ) ( l / blockSize ) << d;
+						index = index * blockSize + ( int ) ( l % blockSize );
+					}
+					v = children[ child ][ index ];
+				}
+				value = reduction == Reduction.MAX ? Math.max( value, v ) : value + v;
+				++count;
+			}
+			block[ i ] = reduction == Reduction.MAX ? value : value / count;
+		}
+		caches[ level ].put( key, block );
+		if ( disk != null )
+			disk.write( level, key, block );
+		return block;
+	}
+
+	/**
+	 * A coarser level, extended with zero to infinity.
+	 */
+	private class LevelAccessible implements RandomAccessible< T >
+	{
+		private final int level;
+
+		LevelAccessible( final int level )
+		{
+			this.level = level;
+		}
+
+		@Override
+		public int numDimensions()
+		{
+			return n;
+		}
+
+		@Override
+		public RandomAccess< T > randomAccess()
+		{
+			return new LevelAccess( level );
+		}
+
+		@Override
+		public RandomAccess< T > randomAccess( final Interval interval )
+		{
+			return randomAccess();
+		}
+	}
+
+	private class LevelAccess extends Point implements RandomAccess< T >
+	{
+		private final int level;
+
+		private final T value;
+
+		private final long[] gridPosition;
+
+		private final long[] finerPosition;
+
+		private RandomAccess< T > sourceAccess;
+
+		/**
+		 * The block of {@link #level} that was used last, such that the cache
+		 * need not be searched (under a lock) for every pixel.
+		 * <code>null</code> if none. Placeholder blocks of coarser levels are
+		 * not remembered, so that blocks are used as soon as they arrive.
+		 */
+		private double[] currentBlock;
+
+		/**
+		 * Key of {@link #currentBlock}.
+		 */
+		private long currentKey;
+
+		LevelAccess( final int level )
+		{
+			super( LazyPyramid.this.n );
+			this.level = level;
+			value = type.createVariable();
+			gridPosition = new long[ n ];
+			finerPosition = new long[ n ];
+			currentBlock = null;
+		}
+
+		/**
+		 * Compute the {@link #gridPosition} of the current position in level
+		 * <code>l</code>.
+		 *
+		 * @return the index of the current position in its block.
+		 */
+		private int locate( final int l )
+		{
+			final int shift = level - l;
+			int index = 0;
+			for ( int d = n - 1; d >= 0; --d )
+			{
+				final long p = position[ d ] << shift;
+				gridPosition[ d ] = p / blockSize;
+				index = index * blockSize + ( int ) ( p % blockSize );
+			}
+			return index;
+		}
+
+		@Override
+		public T get()
+		{
+			final long[] dims = levelDimensions[ level ];
+			for ( int d = 0; d < n; ++d )
+			{
+				if ( position[ d ] < 0 || position[ d ] >= dims[ d ] )
+				{
+					value.setZero();
+					return value;
+				}
+			}
+
+			// still in the block that was used last?
+			if ( currentBlock != null )
+			{
+				final int index = locate( level );
+				if ( blockKey( level, gridPosition ) == currentKey )
+				{
+					value.setReal( currentBlock[ index ] );
+					return value;
+				}
+			}
+
+			// find the finest available level, starting at the requested one
+			for ( int l = level; l > 0; --l )
+			{
+				final int index = locate( l );
+				final long key = blockKey( l, gridPosition );
+				final double[] block = caches[ l ].get( key );
+				if ( block != null )
+				{
+					if ( l != level )
+						Placeholders.markUsed();
+					else
+					{
+						currentBlock = block;
+						currentKey = key;
+					}
+					value.setReal( block[ index ] );
+					return value;
+				}
+				if ( l == level )
+					requestBlock( level, gridPosition );
+			}
+			currentBlock = null;
+			Placeholders.markUsed();
+
+			// fall back to full resolution
+			if ( sourceAccess == null )
+				sourceAccess = source.randomAccess();
+			final long s = 1L << level;
+			for ( int d = 0; d < n; ++d )
+			{
+				finerPosition[ d ] = Math.min( position[ d ] * s + s / 2, levelDimensions[ 0 ][ d ] - 1 );
+				sourceAccess.setPosition( sourceMin[ d ] + finerPosition[ d ], d );
+			}
+			value.setReal( sourceAccess.get().getRealDouble() );
+			return value;
+		}
+
+		@Override
+		public LevelAccess copy()
+		{
+			return copyRandomAccess();
+		}
+
+		@Override
+		public LevelAccess copyRandomAccess()
+		{
+			final LevelAccess a = new LevelAccess( level );
+			a.setPosition( this );
+			return a;
+		}
+	}
+}
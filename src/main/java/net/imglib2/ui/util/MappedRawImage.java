@@ -0,0 +1,469 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.ui.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+import net.imglib2.AbstractInterval;
+import net.imglib2.AbstractLocalizable;
+import net.imglib2.Interval;
+import net.imglib2.Localizable;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.converter.Converter;
+import net.imglib2.type.numeric.ARGBType;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.integer.ByteType;
+import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.type.numeric.integer.ShortType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.integer.UnsignedIntType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.view.Views;
+
+/**
+ * A {@link RandomAccessibleInterval} backed by a raw file that is memory-mapped
+ * (in chunks, to support files larger than 2 GB) instead of being copied into
+ * memory. Opening the image takes constant time, independent of file size.
+ * The operating system pages in the parts of the file that are actually
+ * rendered.
+ * <p>
+ * The file consists of a header of fixed size, followed by the pixels in
+ * flat (X fastest) order. Supported pixel types are <code>ByteType</code>,
+ * <code>UnsignedByteType</code>, <code>ShortType</code>,
+ * <code>UnsignedShortType</code>, <code>IntType</code>,
+ * <code>UnsignedIntType</code>, and <code>FloatType</code>, in either byte
+ * order.
+ * <p>
+ * {@link #randomAccess() RandomAccesses} are specialized for the pixel type.
+ * They keep the linear pixel index of their position up to date while they
+ * are moved (e.g., by one pixel per {@link RandomAccess#fwd(int)}), and read
+ * the pixel value directly from the mapped chunk that contains it.
+ * 
+ * @param <T>
+ *            pixel type
+ */
+public class MappedRawImage< T extends RealType< T > > extends AbstractInterval implements RandomAccessibleInterval< T >
+{
+	/**
+	 * log2 of the default size of mapped chunks in bytes.
+	 */
+	static final int CHUNK_SHIFT = 30;
+
+	private final T type;
+
+	private final PixelEncoding encoding;
+
+	/**
+	 * log2 of the number of pixels per chunk.
+	 */
+	private final int pixelShift;
+
+	private final long pixelMask;
+
+	/**
+	 * Offsets (in pixels) between neighbouring pixels in each dimension.
+	 */
+	private final long[] strides;
+
+	private final ByteBuffer[] chunks;
+
+	/**
+	 * Map a raw file.
+	 * 
+	 * @param file
+	 *            the raw file.
+	 * @param headerSize
+	 *            number of bytes preceding the pixels.
+	 * @param dimensions
+	 *            image dimensions.
+	 * @param type
+	 *            an instance of the pixel type (see above for supported
+	 *            types).
+	 * @param byteOrder
+	 *            byte order of multi-byte pixels.
+	 * @throws IOException
+	 *             if the file cannot be opened or is too short.
+	 */
+	public MappedRawImage( final File file, final long headerSize, final long[] dimensions, final T type, final ByteOrder byteOrder ) throws IOException
+	{
+		this( file, headerSize, dimensions, type, byteOrder, CHUNK_SHIFT );
+	}
+
+	/**
+	 * Map a raw file in chunks of <em>2<sup>chunkShift</sup></em> bytes. (For
+	 * testing chunk boundaries with small files.)
+	 */
+	MappedRawImage( final File file, final long headerSize, final long[] dimensions, final T type, final ByteOrder byteOrder, final int chunkShift ) throws IOException
+	{
+		super( dimensions );
+		this.type = type.createVariable();
+		encoding = PixelEncoding.of( type );
+		final int bytesShift = Integer.numberOfTrailingZeros( encoding.bytesPerPixel );
+		pixelShift = chunkShift - bytesShift;
+		pixelMask = ( 1L << pixelShift ) - 1;
+
+		strides = new long[ n ];
+		long numPixels = 1;
+		for ( int d = 0; d < n; ++d )
+		{
+			strides[ d ] = numPixels;
+			numPixels *= dimensions[ d ];
+		}
+		final long numBytes = numPixels << bytesShift;
+
+		try ( final RandomAccessFile raf = new RandomAccessFile( file, "r" ) )
+		{
+			if ( raf.length() < headerSize + numBytes )
+				throw new IOException( file + " is too short: expected " + ( headerSize + numBytes ) + " bytes, found " + raf.length() );
+			final FileChannel channel = raf.getChannel();
+			final long chunkBytes = 1L << chunkShift;
+			chunks = new ByteBuffer[ ( int ) ( ( numBytes + chunkBytes - 1 ) >> chunkShift ) ];
+			for ( int c = 0; c < chunks.length; ++c )
+			{
+				final long offset = ( long ) c << chunkShift;
+				final long size = Math.min( chunkBytes, numBytes - offset );
+				// mappings remain valid after the channel is closed
+				chunks[ c ] = channel.map( FileChannel.MapMode.READ_ONLY, headerSize + offset, size ).order( byteOrder );
+			}
+		}
+	}
+
+	/**
+	 * Create an {@link InterpolatingSource} of this image, extended with zero
+	 * to infinity. The renderer's scanline samplers move the
+	 * {@link #randomAccess() RandomAccesses} of this image pixel by pixel, so
+	 * that pixels are read from the mapped chunks without recomputing their
+	 * file offsets.
+	 */
+	public < A > InterpolatingSource< T, A > createRenderSource( final A sourceTransform, final Converter< ? super T, ARGBType > converter )
+	{
+		return new InterpolatingSource< >( Views.extendZero( this ), this, sourceTransform, converter );
+	}
+
+	@SuppressWarnings( "unchecked" )
+	@Override
+	public RandomAccess< T > randomAccess()
+	{
+		switch ( encoding )
+		{
+		case INT8:
+			return ( RandomAccess< T > ) new Int8Access();
+		case UINT8:
+			return ( RandomAccess< T > ) new Uint8Access();
+		case INT16:
+			return ( RandomAccess< T > ) new Int16Access();
+		case UINT16:
+			return ( RandomAccess< T > ) new Uint16Access();
+		case INT32:
+			return ( RandomAccess< T > ) new Int32Access();
+		case UINT32:
+			return ( RandomAccess< T > ) new Uint32Access();
+		case FLOAT32:
+		default:
+			return ( RandomAccess< T > ) new Float32Access();
+		}
+	}
+
+	@Override
+	public RandomAccess< T > randomAccess( final Interval interval )
+	{
+		return randomAccess();
+	}
+
+	/**
+	 * Base class of the type-specialized {@link RandomAccess RandomAccesses}.
+	 * Keeps the linear {@link #index} of the current position up to date.
+	 * Subclasses implement {@link #get()} by reading the pixel at
+	 * {@link #offset()} of the {@link #chunk()}.
+	 *
+	 * @param <V>
+	 *            pixel type (the same as <code>T</code>).
+	 */
+	private abstract class MappedAccess< V > extends AbstractLocalizable implements RandomAccess< V >
+	{
+		protected final V value;
+
+		/**
+		 * Linear pixel index of the current position.
+		 */
+		private long index;
+
+		@SuppressWarnings( "unchecked" )
+		MappedAccess()
+		{
+			super( MappedRawImage.this.n );
+			value = ( V ) type.createVariable();
+			for ( int d = 0; d < n; ++d )
+				position[ d ] = min[ d ];
+			index = 0;
+		}
+
+		/**
+		 * Get the mapped chunk containing the current pixel.
+		 */
+		protected final ByteBuffer chunk()
+		{
+			return chunks[ ( int ) ( index >>> pixelShift ) ];
+		}
+
+		/**
+		 * Get the index (in pixels) of the current pixel in its
+		 * {@link #chunk()}.
+		 */
+		protected final int offset()
+		{
+			return ( int ) ( index & pixelMask );
+		}
+
+		/**
+		 * Create a new access of the same type (at the image min).
+		 */
+		protected abstract MappedAccess< V > create();
+
+		@Override
+		public void fwd( final int d )
+		{
+			++position[ d ];
+			index += strides[ d ];
+		}
+
+		@Override
+		public void bck( final int d )
+		{
+			--position[ d ];
+			index -= strides[ d ];
+		}
+
+		@Override
+		public void move( final int distance, final int d )
+		{
+			move( ( long ) distance, d );
+		}
+
+		@Override
+		public void move( final long distance, final int d )
+		{
+			position[ d ] += distance;
+			index += distance * strides[ d ];
+		}
+
+		@Override
+		public void move( final Localizable localizable )
+		{
+			for ( int d = 0; d < n; ++d )
+				move( localizable.getLongPosition( d ), d );
+		}
+
+		@Override
+		public void move( final int[] distance )
+		{
+			for ( int d = 0; d < n; ++d )
+				move( ( long ) distance[ d ], d );
+		}
+
+		@Override
+		public void move( final long[] distance )
+		{
+			for ( int d = 0; d < n; ++d )
+				move( distance[ d ], d );
+		}
+
+		@Override
+		public void setPosition( final Localizable localizable )
+		{
+			for ( int d = 0; d < n; ++d )
+				setPosition( localizable.getLongPosition( d ), d );
+		}
+
+		@Override
+		public void setPosition( final int[] pos )
+		{
+			for ( int d = 0; d < n; ++d )
+				setPosition( ( long ) pos[ d ], d );
+		}
+
+		@Override
+		public void setPosition( final long[] pos )
+		{
+			for ( int d = 0; d < n; ++d )
+				setPosition( pos[ d ], d );
+		}
+
+		@Override
+		public void setPosition( final int pos, final int d )
+		{
+			setPosition( ( long ) pos, d );
+		}
+
+		@Override
+		public void setPosition( final long pos, final int d )
+		{
+			index += ( pos - position[ d ] ) * strides[ d ];
+			position[ d ] = pos;
+		}
+
+		@Override
+		public MappedAccess< V > copy()
+		{
+			return copyRandomAccess();
+		}
+
+		@Override
+		public MappedAccess< V > copyRandomAccess()
+		{
+			final MappedAccess< V > a = create();
+			a.setPosition( this );
+			return a;
+		}
+	}
+
+	private final class Int8Access extends MappedAccess< ByteType >
+	{
+		@Override
+		public ByteType get()
+		{
+			value.set( chunk().get( offset() ) );
+			return value;
+		}
+
+		@Override
+		protected Int8Access create()
+		{
+			return new Int8Access();
+		}
+	}
+
+	private final class Uint8Access extends MappedAccess< UnsignedByteType >
+	{
+		@Override
+		public UnsignedByteType get()
+		{
+			value.set( chunk().get( offset() ) & 0xff );
+			return value;
+		}
+
+		@Override
+		protected Uint8Access create()
+		{
+			return new Uint8Access();
+		}
+	}
+
+	private final class Int16Access extends MappedAccess< ShortType >
+	{
+		@Override
+		public ShortType get()
+		{
+			value.set( chunk().getShort( offset() << 1 ) );
+			return value;
+		}
+
+		@Override
+		protected Int16Access create()
+		{
+			return new Int16Access();
+		}
+	}
+
+	private final class Uint16Access extends MappedAccess< UnsignedShortType >
+	{
+		@Override
+		public UnsignedShortType get()
+		{
+			value.set( chunk().getShort( offset() << 1 ) & 0xffff );
+			return value;
+		}
+
+		@Override
+		protected Uint16Access create()
+		{
+			return new Uint16Access();
+		}
+	}
+
+	private final class Int32Access extends MappedAccess< IntType >
+	{
+		@Override
+		public IntType get()
+		{
+			value.set( chunk().getInt( offset() << 2 ) );
+			return value;
+		}
+
+		@Override
+		protected Int32Access create()
+		{
+			return new Int32Access();
+		}
+	}
+
+	private final class Uint32Access extends MappedAccess< UnsignedIntType >
+	{
+		@Override
+		public UnsignedIntType get()
+		{
+			value.set( chunk().getInt( offset() << 2 ) & 0xffffffffL );
+			return value;
+		}
+
+		@Override
+		protected Uint32Access create()
+		{
+			return new Uint32Access();
+		}
+	}
+
+	private final class Float32Access extends MappedAccess< FloatType >
+	{
+		@Override
+		public FloatType get()
+		{
+			value.set( chunk().getFloat( offset() << 2 ) );
+			return value;
+		}
+
+		@Override
+		protected Float32Access create()
+		{
+			return new Float32Access();
+		}
+	}
+}
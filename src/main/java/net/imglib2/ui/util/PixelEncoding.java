@@ -0,0 +1,134 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.ui.util;
+
+import java.nio.ByteBuffer;
+
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.integer.ByteType;
+import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.type.numeric.integer.ShortType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.integer.UnsignedIntType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.type.numeric.real.FloatType;
+
+/**
+ * Binary encodings of pixel values in files, and the corresponding ImgLib2
+ * types.
+ */
+enum PixelEncoding
+{
+	INT8( "int8", 1 ),
+	UINT8( "uint8", 1 ),
+	INT16( "int16", 2 ),
+	UINT16( "uint16", 2 ),
+	INT32( "int32", 4 ),
+	UINT32( "uint32", 4 ),
+	FLOAT32( "float32", 4 );
+
+	final String name;
+
+	final int bytesPerPixel;
+
+	private PixelEncoding( final String name, final int bytesPerPixel )
+	{
+		this.name = name;
+		this.bytesPerPixel = bytesPerPixel;
+	}
+
+	/**
+	 * Get the value of the <code>index</code>th pixel in <code>buffer</code>.
+	 */
+	double get( final ByteBuffer buffer, final int index )
+	{
+		switch ( this )
+		{
+		case INT8:
+			return buffer.get( index );
+		case UINT8:
+			return buffer.get( index ) & 0xff;
+		case INT16:
+			return buffer.getShort( index << 1 );
+		case UINT16:
+			return buffer.getShort( index << 1 ) & 0xffff;
+		case INT32:
+			return buffer.getInt( index << 2 );
+		case UINT32:
+			return buffer.getInt( index << 2 ) & 0xffffffffL;
+		case FLOAT32:
+		default:
+			return buffer.getFloat( index << 2 );
+		}
+	}
+
+	/**
+	 * Get the encoding of the given type.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the type is not supported.
+	 */
+	static PixelEncoding of( final RealType< ? > type )
+	{
+		if ( type instanceof UnsignedByteType )
+			return UINT8;
+		if ( type instanceof ByteType )
+			return INT8;
+		if ( type instanceof UnsignedShortType )
+			return UINT16;
+		if ( type instanceof ShortType )
+			return INT16;
+		if ( type instanceof UnsignedIntType )
+			return UINT32;
+		if ( type instanceof IntType )
+			return INT32;
+		if ( type instanceof FloatType )
+			return FLOAT32;
+		throw new IllegalArgumentException( "unsupported pixel type " + type.getClass().getName() );
+	}
+
+	/**
+	 * Get the encoding with the given name, e.g., "uint16".
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if there is no such encoding.
+	 */
+	static PixelEncoding forName( final String name )
+	{
+		for ( final PixelEncoding e : values() )
+			if ( e.name.equals( name ) )
+				return e;
+		throw new IllegalArgumentException( "unsupported data type " + name );
+	}
+}
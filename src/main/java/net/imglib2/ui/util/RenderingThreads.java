@@ -0,0 +1,82 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.ui.util;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Static helper methods for creating the long-lived {@link ExecutorService
+ * ExecutorServices} that renderers use to run their projectors.
+ */
+public class RenderingThreads
+{
+	private static final AtomicInteger poolNumber = new AtomicInteger( 1 );
+
+	/**
+	 * Create a fixed-size thread pool for rendering. The threads are daemon
+	 * threads, such that a pool that is never shut down does not prevent the
+	 * JVM from exiting.
+	 * 
+	 * @param numThreads
+	 *            number of rendering threads.
+	 * @return a new {@link ExecutorService}.
+	 */
+	public static ExecutorService newFixedThreadPool( final int numThreads )
+	{
+		return Executors.newFixedThreadPool( numThreads, threadFactory( "rendering-" + poolNumber.getAndIncrement() + "-thread-" ) );
+	}
+
+	/**
+	 * Create a {@link ThreadFactory} that creates daemon threads named
+	 * <code>prefix</code> followed by a running number.
+	 */
+	public static ThreadFactory threadFactory( final String prefix )
+	{
+		return new ThreadFactory()
+		{
+			private final AtomicInteger threadNumber = new AtomicInteger( 1 );
+
+			@Override
+			public Thread newThread( final Runnable r )
+			{
+				final Thread t = new Thread( r, prefix + threadNumber.getAndIncrement() );
+				t.setDaemon( true );
+				return t;
+			}
+		};
+	}
+}
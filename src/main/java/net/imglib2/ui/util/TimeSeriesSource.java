@@ -0,0 +1,230 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.ui.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.imglib2.Interval;
+import net.imglib2.RealRandomAccessible;
+import net.imglib2.converter.Converter;
+import net.imglib2.type.numeric.ARGBType;
+import net.imglib2.ui.BoundedSource;
+import net.imglib2.ui.MultiResolutionRenderSource;
+import net.imglib2.ui.RenderSource;
+import net.imglib2.ui.Versioned;
+
+/**
+ * A {@link RenderSource} showing one of a series of time points, each of
+ * which is a {@link RenderSource} itself. The current time point is set with
+ * {@link #setTimepoint(int)}, e.g., by a
+ * {@link net.imglib2.ui.viewer.PlaybackController}.
+ * <p>
+ * Time points which are {@link MultiResolutionRenderSource
+ * MultiResolutionRenderSources} are rendered from the best matching
+ * resolution level. The {@link #getVersion() version} changes with the time
+ * point and with the version of the current time point, if that is
+ * {@link Versioned}. Hence rendered frames of each time point can be cached and
+ * reused, e.g., when looping. Time points that are not {@link Versioned} may
+ * have been modified at any time; while one of them is shown, the version
+ * changes on every call, such that nothing rendered from it is reused.
+ * <p>
+ * Each method of this source reads the current time point anew, so the time
+ * point may change between two calls. Renderers therefore resolve the
+ * {@link #getCurrentSource() current source} once per frame (see
+ * {@link net.imglib2.ui.MultiResolutionRenderer#getCurrentSource(RenderSource)})
+ * and render and describe that source only.
+ * 
+ * @param <T>
+ *            pixel type
+ * @param <A>
+ *            transform type
+ */
+public class TimeSeriesSource< T, A > implements MultiResolutionRenderSource< T, A >, Versioned, BoundedSource
+{
+	protected final List< RenderSource< T, A > > timepoints;
+
+	private volatile int timepoint;
+
+	/**
+	 * Source of versions for time points that are not {@link Versioned}.
+	 */
+	private final AtomicLong unknownVersion = new AtomicLong();
+
+	/**
+	 * @param timepoints
+	 *            sources for each time point.
+	 */
+	public TimeSeriesSource( final List< ? extends RenderSource< T, A > > timepoints )
+	{
+		if ( timepoints.isEmpty() )
+			throw new IllegalArgumentException( "need at least one time point" );
+		this.timepoints = new ArrayList< >( timepoints );
+		timepoint = 0;
+	}
+
+	public int getNumTimepoints()
+	{
+		return timepoints.size();
+	}
+
+	public int getTimepoint()
+	{
+		return timepoint;
+	}
+
+	/**
+	 * Set the current time point. The display needs to be repainted for this
+	 * to become visible.
+	 * 
+	 * @param timepoint
+	 *            time point index, clamped to the valid range.
+	 */
+	public void setTimepoint( final int timepoint )
+	{
+		this.timepoint = Math.max( 0, Math.min( timepoint, timepoints.size() - 1 ) );
+	}
+
+	/**
+	 * Get the source of the specified time point.
+	 */
+	public RenderSource< T, A > getSource( final int timepoint )
+	{
+		return timepoints.get( timepoint );
+	}
+
+	/**
+	 * Get the source of the current time point.
+	 */
+	public RenderSource< T, A > getCurrentSource()
+	{
+		return timepoints.get( timepoint );
+	}
+
+	@Override
+	public long getVersion()
+	{
+		final int t = timepoint;
+		final RenderSource< T, A > source = timepoints.get( t );
+		if ( !( source instanceof Versioned ) )
+			// negative, unlike the versions of Versioned time points, which count up
+			return -unknownVersion.incrementAndGet();
+		return ( ( Versioned ) source ).getVersion() * timepoints.size() + t;
+	}
+
+	@Override
+	public RealRandomAccessible< T > getInterpolatedSource()
+	{
+		return getCurrentSource().getInterpolatedSource();
+	}
+
+	@Override
+	public A getSourceTransform()
+	{
+		return getCurrentSource().getSourceTransform();
+	}
+
+	@Override
+	public Converter< ? super T, ARGBType > getConverter()
+	{
+		return getCurrentSource().getConverter();
+	}
+
+	@Override
+	public Interval getSourceInterval()
+	{
+		final RenderSource< T, A > source = getCurrentSource();
+		return source instanceof BoundedSource ? ( ( BoundedSource ) source ).getSourceInterval() : null;
+	}
+
+	@Override
+	public int getNumResolutionLevels()
+	{
+		return getNumResolutionLevels( getCurrentSource() );
+	}
+
+	@Override
+	public RealRandomAccessible< T > getInterpolatedSource( final int level )
+	{
+		return getInterpolatedSource( getCurrentSource(), level );
+	}
+
+	@Override
+	public A getSourceTransform( final int level )
+	{
+		return getSourceTransform( getCurrentSource(), level );
+	}
+
+	/**
+	 * Get the number of resolution levels of <code>source</code>, which is 1
+	 * if it is not a {@link MultiResolutionRenderSource}.
+	 */
+	public static int getNumResolutionLevels( final RenderSource< ?, ? > source )
+	{
+		return source instanceof MultiResolutionRenderSource ? ( ( MultiResolutionRenderSource< ?, ? > ) source ).getNumResolutionLevels() : 1;
+	}
+
+	/**
+	 * Get the specified resolution level of <code>source</code>, which has
+	 * only level 0 if it is not a {@link MultiResolutionRenderSource}. Levels
+	 * beyond the coarsest are clamped, because the time point may change
+	 * between querying the number of levels and the level itself.
+	 */
+	public static < T > RealRandomAccessible< T > getInterpolatedSource( final RenderSource< T, ? > source, final int level )
+	{
+		if ( source instanceof MultiResolutionRenderSource )
+		{
+			final MultiResolutionRenderSource< T, ? > mipmaps = ( MultiResolutionRenderSource< T, ? > ) source;
+			return mipmaps.getInterpolatedSource( Math.min( level, mipmaps.getNumResolutionLevels() - 1 ) );
+		}
+		return source.getInterpolatedSource();
+	}
+
+	/**
+	 * Get the transform of the specified resolution level of
+	 * <code>source</code>, which has only level 0 if it is not a
+	 * {@link MultiResolutionRenderSource}. Levels beyond the coarsest are
+	 * clamped.
+	 */
+	public static < A > A getSourceTransform( final RenderSource< ?, A > source, final int level )
+	{
+		if ( source instanceof MultiResolutionRenderSource )
+		{
+			final MultiResolutionRenderSource< ?, A > mipmaps = ( MultiResolutionRenderSource< ?, A > ) source;
+			return mipmaps.getSourceTransform( Math.min( level, mipmaps.getNumResolutionLevels() - 1 ) );
+		}
+		return source.getSourceTransform();
+	}
+}
@@ -46,8 +46,10 @@ import javax.swing.WindowConstants;
 import net.imglib2.concatenate.Concatenable;
 import net.imglib2.realtransform.AffineGet;
 import net.imglib2.realtransform.AffineSet;
+import net.imglib2.ui.AbstractMultiResolutionRenderer;
 import net.imglib2.ui.AffineTransformType;
 import net.imglib2.ui.InteractiveDisplayCanvas;
+import net.imglib2.ui.InteractiveDisplayCanvasComponent;
 import net.imglib2.ui.OverlayRenderer;
 import net.imglib2.ui.PainterThread;
 import net.imglib2.ui.RenderTarget;
@@ -108,7 +110,9 @@ public class InteractiveRealViewer< A extends AffineSet & AffineGet & Concatenab
 	 * the canvas as an {@link OverlayRenderer}. A {@link PainterThread} is
 	 * created which queues repainting requests from the renderer and
 	 * interactive canvas, and triggers {@link #paint() repainting} of the
-	 * viewer.
+	 * viewer. When the window is closed, the {@link PainterThread} is stopped
+	 * and the {@link Renderer} is {@link Renderer#kill() killed}, releasing its
+	 * rendering threads.
 	 * 
 	 * @param transformType
 	 * @param interactiveDisplayCanvas
@@ -143,6 +147,7 @@ public class InteractiveRealViewer< A extends AffineSet & AffineGet & Concatenab
 			public void windowClosing( final WindowEvent e )
 			{
 				painterThread.interrupt();
+				imageRenderer.kill();
 			}
 		} );
 		frame.setVisible( true );
@@ -158,6 +163,8 @@ public class InteractiveRealViewer< A extends AffineSet & AffineGet & Concatenab
 	@Override
 	public void paint()
 	{
+		if ( imageRenderer instanceof AbstractMultiResolutionRenderer && display instanceof InteractiveDisplayCanvasComponent )
+			( ( AbstractMultiResolutionRenderer< ? > ) imageRenderer ).setFocusPoint( ( ( InteractiveDisplayCanvasComponent< ? > ) display ).getLastMousePosition() );
 		imageRenderer.paint( viewerTransform );
 		display.repaint();
 	}
@@ -179,6 +186,18 @@ public class InteractiveRealViewer< A extends AffineSet & AffineGet & Concatenab
 		return display;
 	}
 
+	/**
+	 * Get the {@link Renderer} that renders the image shown in the display
+	 * canvas, e.g., to configure frame caching and speculative rendering of
+	 * an {@link AbstractMultiResolutionRenderer}.
+	 * 
+	 * @return the renderer.
+	 */
+	public Renderer< A > getRenderer()
+	{
+		return imageRenderer;
+	}
+
 	/**
 	 * Request a repaint of the display. Calls {@link Renderer#requestRepaint()}
 	 * .
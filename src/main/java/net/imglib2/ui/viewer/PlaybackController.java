@@ -0,0 +1,414 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.ui.viewer;
+
+import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import net.imglib2.RealRandomAccess;
+import net.imglib2.RealRandomAccessible;
+import net.imglib2.concatenate.Concatenable;
+import net.imglib2.realtransform.AffineGet;
+import net.imglib2.realtransform.AffineSet;
+import net.imglib2.ui.AbstractMultiResolutionRenderer;
+import net.imglib2.ui.AffineTransformType;
+import net.imglib2.ui.MultiResolutionRenderSource;
+import net.imglib2.ui.MultiResolutionRenderer;
+import net.imglib2.ui.RenderSource;
+import net.imglib2.ui.TransformListener;
+import net.imglib2.ui.util.RenderingThreads;
+import net.imglib2.ui.util.TimeSeriesSource;
+
+/**
+ * Plays back a {@link TimeSeriesSource} shown in an
+ * {@link InteractiveRealViewer} at a given frame rate.
+ * <p>
+ * The time point follows the wall clock: if the renderer cannot keep up,
+ * time points are skipped rather than playback being slowed down. Every new
+ * time point cancels rendering of the previous one, so an
+ * {@link AbstractMultiResolutionRenderer} shows each time point at the
+ * coarsest screen scale that it can render in time, and refines only if
+ * there is time left until the next time point.
+ * <p>
+ * In the background, the next time points are prefetched by sampling them on
+ * a coarse grid over the visible slice. For sources backed by a block cache
+ * (e.g., {@link net.imglib2.ui.util.AsyncBlockCache}) this requests loading
+ * of the visible blocks before they are rendered.
+ * 
+ * @param <A>
+ *            transform type
+ */
+public class PlaybackController< A extends AffineSet & AffineGet & Concatenable< AffineGet > > implements TransformListener< A >
+{
+	private final InteractiveRealViewer< A, ? > viewer;
+
+	private final TimeSeriesSource< ?, A > source;
+
+	private final AffineTransformType< A > transformType;
+
+	/**
+	 * Current viewer transform, used for prefetching.
+	 */
+	private final A viewerTransform;
+
+	private final ScheduledExecutorService timer;
+
+	private final ThreadPoolExecutor prefetcher;
+
+	private ScheduledFuture< ? > playback;
+
+	private double framesPerSecond;
+
+	private int numPrefetchTimepoints;
+
+	private int prefetchStep;
+
+	private boolean looping;
+
+	/**
+	 * Wall clock time and time point when playback was started.
+	 */
+	private long startNanos;
+
+	private int startTimepoint;
+
+	/**
+	 * Time point that was set last.
+	 */
+	private int lastTimepoint;
+
+	/**
+	 * Number of presented images (see
+	 * {@link AbstractMultiResolutionRenderer#getNumPresentedImages()}) when
+	 * the last time point was set.
+	 */
+	private long lastNumPresentedImages;
+
+	private long numShownTimepoints;
+
+	private long numDroppedTimepoints;
+
+	private long playedNanos;
+
+	/**
+	 * @param viewer
+	 *            the viewer showing <code>source</code>.
+	 * @param source
+	 *            the time series.
+	 */
+	public PlaybackController( final InteractiveRealViewer< A, ? > viewer, final TimeSeriesSource< ?, A > source )
+	{
+		this.viewer = viewer;
+		this.source = source;
+		transformType = viewer.transformType;
+		viewerTransform = transformType.createTransform();
+		transformType.set( viewerTransform, viewer.viewerTransform );
+		viewer.getDisplayCanvas().addTransformListener( this );
+
+		timer = Executors.newSingleThreadScheduledExecutor( RenderingThreads.threadFactory( "playback-" ) );
+		// only the newest prefetch request is kept
+		prefetcher = new ThreadPoolExecutor( 1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue< Runnable >( 1 ), RenderingThreads.threadFactory( "prefetch-" ), new ThreadPoolExecutor.DiscardOldestPolicy() );
+
+		framesPerSecond = 10;
+		numPrefetchTimepoints = 2;
+		prefetchStep = 16;
+		looping = true;
+	}
+
+	@Override
+	public synchronized void transformChanged( final A transform )
+	{
+		transformType.set( viewerTransform, transform );
+	}
+
+	/**
+	 * Set the requested playback rate. Takes effect when playback is
+	 * (re-)started.
+	 */
+	public synchronized void setFramesPerSecond( final double framesPerSecond )
+	{
+		this.framesPerSecond = framesPerSecond;
+		if ( isPlaying() )
+		{
+			stop();
+			start();
+		}
+	}
+
+	public synchronized double getFramesPerSecond()
+	{
+		return framesPerSecond;
+	}
+
+	/**
+	 * Set how many time points ahead of the current one are prefetched.
+	 */
+	public synchronized void setNumPrefetchTimepoints( final int numTimepoints )
+	{
+		numPrefetchTimepoints = numTimepoints;
+	}
+
+	public synchronized int getNumPrefetchTimepoints()
+	{
+		return numPrefetchTimepoints;
+	}
+
+	/**
+	 * Set the spacing (in screen pixels) of the grid on which time points are
+	 * sampled for prefetching. This should be smaller than the size of
+	 * source blocks on the screen.
+	 */
+	public synchronized void setPrefetchStep( final int step )
+	{
+		prefetchStep = Math.max( 1, step );
+	}
+
+	/**
+	 * Set whether playback continues at the first time point after the last
+	 * one, or stops there.
+	 */
+	public synchronized void setLooping( final boolean looping )
+	{
+		this.looping = looping;
+	}
+
+	public synchronized boolean isLooping()
+	{
+		return looping;
+	}
+
+	public synchronized boolean isPlaying()
+	{
+		return playback != null;
+	}
+
+	/**
+	 * Start playback at the current time point.
+	 */
+	public synchronized void start()
+	{
+		if ( playback != null )
+			return;
+		startNanos = System.nanoTime();
+		startTimepoint = source.getTimepoint();
+		lastTimepoint = startTimepoint;
+		lastNumPresentedImages = getNumPresentedImages();
+		final long period = Math.max( 1, ( long ) ( 1e9 / framesPerSecond ) );
+		playback = timer.scheduleAtFixedRate( new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				tick();
+			}
+		}, period, period, TimeUnit.NANOSECONDS );
+		prefetch( startTimepoint );
+	}
+
+	/**
+	 * Stop playback at the current time point.
+	 */
+	public synchronized void stop()
+	{
+		if ( playback == null )
+			return;
+		playback.cancel( false );
+		playback = null;
+		playedNanos += System.nanoTime() - startNanos;
+	}
+
+	/**
+	 * Stop playback and release the playback and prefetching threads.
+	 */
+	public synchronized void shutdown()
+	{
+		stop();
+		timer.shutdownNow();
+		prefetcher.shutdownNow();
+	}
+
+	/**
+	 * Get the requested playback rate in time points per second.
+	 */
+	public synchronized double getRequestedRate()
+	{
+		return framesPerSecond;
+	}
+
+	/**
+	 * Get the achieved playback rate in time points per second, i.e., the
+	 * number of time points which were (at least partially) displayed before
+	 * the next time point was selected, divided by the playback time.
+	 */
+	public synchronized double getAchievedRate()
+	{
+		final long nanos = playedNanos + ( playback == null ? 0 : System.nanoTime() - startNanos );
+		return nanos == 0 ? 0 : numShownTimepoints * 1e9 / nanos;
+	}
+
+	/**
+	 * Get the number of time points that were skipped or not displayed
+	 * because the renderer could not keep up.
+	 */
+	public synchronized long getNumDroppedTimepoints()
+	{
+		return numDroppedTimepoints;
+	}
+
+	public synchronized void resetStatistics()
+	{
+		numShownTimepoints = 0;
+		numDroppedTimepoints = 0;
+		playedNanos = 0;
+		if ( playback != null )
+			startNanos = System.nanoTime();
+	}
+
+	private long getNumPresentedImages()
+	{
+		return viewer.imageRenderer instanceof AbstractMultiResolutionRenderer ? ( ( AbstractMultiResolutionRenderer< ? > ) viewer.imageRenderer ).getNumPresentedImages() : 0;
+	}
+
+	private synchronized void tick()
+	{
+		if ( playback == null )
+			return;
+		final int numTimepoints = source.getNumTimepoints();
+		final long frames = startTimepoint + ( long ) ( ( System.nanoTime() - startNanos ) * framesPerSecond / 1e9 );
+		if ( !looping && frames >= numTimepoints - 1 )
+			stop();
+		final int t = ( int ) ( looping ? frames % numTimepoints : Math.min( frames, numTimepoints - 1 ) );
+		if ( t == lastTimepoint )
+			return;
+
+		// was the last time point displayed?
+		final long numPresentedImages = getNumPresentedImages();
+		if ( numPresentedImages != lastNumPresentedImages )
+			++numShownTimepoints;
+		else
+			++numDroppedTimepoints;
+		lastNumPresentedImages = numPresentedImages;
+
+		// time points that were skipped
+		numDroppedTimepoints += ( t - lastTimepoint + numTimepoints ) % numTimepoints - 1;
+		lastTimepoint = t;
+
+		source.setTimepoint( t );
+		viewer.requestRepaint();
+		prefetch( t );
+	}
+
+	/**
+	 * Enqueue prefetching of the time points following <code>timepoint</code>.
+	 * This replaces prefetch requests that have not been started yet.
+	 */
+	private synchronized void prefetch( final int timepoint )
+	{
+		final int numTimepoints = source.getNumTimepoints();
+		final ArrayList< RenderSource< ?, A > > sources = new ArrayList< >();
+		for ( int i = 1; i <= numPrefetchTimepoints; ++i )
+		{
+			final int t = timepoint + i;
+			if ( t >= numTimepoints && !looping )
+				break;
+			sources.add( source.getSource( t % numTimepoints ) );
+		}
+		if ( sources.isEmpty() )
+			return;
+
+		final int width = viewer.getDisplayCanvas().getWidth();
+		final int height = viewer.getDisplayCanvas().getHeight();
+		final A transform = transformType.createTransform();
+		transformType.set( transform, viewerTransform );
+		final int step = prefetchStep;
+		try
+		{
+			prefetcher.execute( new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					for ( final RenderSource< ?, A > s : sources )
+						prefetch( s, transform, width, height, step );
+				}
+			} );
+		}
+		catch ( final RejectedExecutionException e )
+		{
+			// shut down
+		}
+	}
+
+	/**
+	 * Sample the visible slice of <code>source</code> (at the resolution level
+	 * that would be rendered at full screen resolution) on a grid with spacing
+	 * <code>step</code> screen pixels.
+	 */
+	private void prefetch( final RenderSource< ?, A > source, final A viewerTransform, final int width, final int height, final int step )
+	{
+		final A sourceToScreen = transformType.createTransform();
+		transformType.set( sourceToScreen, viewerTransform );
+		final int level;
+		if ( source instanceof MultiResolutionRenderSource )
+			level = MultiResolutionRenderer.getBestResolutionLevel( ( MultiResolutionRenderSource< ?, A > ) source, viewerTransform );
+		else
+			level = 0;
+		sourceToScreen.concatenate( TimeSeriesSource.getSourceTransform( source, level ) );
+		final AffineGet screenToSource = sourceToScreen.inverse();
+
+		final RealRandomAccessible< ? > img = TimeSeriesSource.getInterpolatedSource( source, level );
+		final RealRandomAccess< ? > access = img.realRandomAccess();
+		final double[] screen = new double[ img.numDimensions() ];
+		final double[] pos = new double[ img.numDimensions() ];
+		for ( int y = 0; y < height; y += step )
+		{
+			for ( int x = 0; x < width; x += step )
+			{
+				if ( Thread.interrupted() )
+					return;
+				screen[ 0 ] = x;
+				screen[ 1 ] = y;
+				screenToSource.apply( screen, pos );
+				access.setPosition( pos );
+				access.get();
+			}
+		}
+	}
+}
@@ -0,0 +1,115 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.ui;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import net.imglib2.converter.Converter;
+import net.imglib2.converter.RealARGBConverter;
+import net.imglib2.type.numeric.ARGBType;
+import net.imglib2.type.numeric.real.FloatType;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link FrameCache}.
+ */
+public class FrameCacheTest
+{
+	private static double[] transform( final double tz )
+	{
+		return new double[] { 1, 0, 0, 0, 0, 1, 0, 0, 0, 0, 1, tz };
+	}
+
+	@Test
+	public void testLruEviction()
+	{
+		final SourceState state = new SourceState.Builder().add( this ).build();
+		// room for two 2x2 frames
+		final FrameCache cache = new FrameCache( 2 * 4 * 4 );
+		cache.put( transform( 0 ), state, 2, 2, new int[] { 0, 0, 0, 0 } );
+		cache.put( transform( 1 ), state, 2, 2, new int[] { 1, 1, 1, 1 } );
+		assertArrayEquals( new int[] { 0, 0, 0, 0 }, cache.get( transform( 0 ), state, 2, 2 ) );
+
+		// evicts transform( 1 ), which was used least recently
+		cache.put( transform( 2 ), state, 2, 2, new int[] { 2, 2, 2, 2 } );
+		assertNull( cache.get( transform( 1 ), state, 2, 2 ) );
+		assertArrayEquals( new int[] { 2, 2, 2, 2 }, cache.get( transform( 2 ), state, 2, 2 ) );
+
+		assertEquals( 2, cache.getHits() );
+		assertEquals( 1, cache.getMisses() );
+		assertEquals( 1, cache.getEvictions() );
+		assertEquals( 2 * 4 * 4, cache.getBytes() );
+	}
+
+	@Test
+	public void testSourceStateIsPartOfKey()
+	{
+		final FrameCache cache = new FrameCache( 1 << 20 );
+		cache.put( transform( 0 ), new SourceState.Builder().add( this ).build(), 2, 2, new int[ 4 ] );
+		assertNull( cache.get( transform( 0 ), new SourceState.Builder().add( cache ).build(), 2, 2 ) );
+	}
+
+	@Test
+	public void testConverterRangeIsPartOfKey()
+	{
+		final RealARGBConverter< FloatType > converter = new RealARGBConverter< >( 0, 255 );
+		final FrameCache cache = new FrameCache( 1 << 20 );
+		cache.put( transform( 0 ), new SourceState.Builder().addConverter( converter ).build(), 2, 2, new int[ 4 ] );
+
+		// contrast change without changing the converter identity
+		converter.setMax( 100 );
+		assertNull( cache.get( transform( 0 ), new SourceState.Builder().addConverter( converter ).build(), 2, 2 ) );
+
+		converter.setMax( 255 );
+		assertNotNull( cache.get( transform( 0 ), new SourceState.Builder().addConverter( converter ).build(), 2, 2 ) );
+	}
+
+	@Test
+	public void testUnknownConverterState()
+	{
+		final Converter< FloatType, ARGBType > converter = new Converter< FloatType, ARGBType >()
+		{
+			@Override
+			public void convert( final FloatType input, final ARGBType output )
+			{
+				output.set( ( int ) input.get() );
+			}
+		};
+		assertNull( new SourceState.Builder().addConverter( converter ).build() );
+	}
+}
@@ -0,0 +1,214 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.ui;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessible;
+import net.imglib2.converter.Converter;
+import net.imglib2.converter.RealARGBConverter;
+import net.imglib2.display.screenimage.awt.ARGBScreenImage;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.basictypeaccess.array.ShortArray;
+import net.imglib2.interpolation.randomaccess.NearestNeighborInterpolatorFactory;
+import net.imglib2.realtransform.AffineTransform2D;
+import net.imglib2.realtransform.RealViews;
+import net.imglib2.type.numeric.ARGBType;
+import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.ui.converter.UnsignedShortLookupTableConverter;
+import net.imglib2.ui.sampler.ScanlineClipping;
+import net.imglib2.ui.sampler.ScanlineViews;
+import net.imglib2.view.Views;
+
+/**
+ * Tests {@link RawSampleBuffer}.
+ */
+public class RawSampleBufferTest
+{
+	private static final int SENTINEL = 0x12345678;
+
+	private static RawSampleBuffer createBuffer( final int width, final int height )
+	{
+		final RawSampleBuffer buffer = new RawSampleBuffer( width, height );
+		final float[] data = buffer.getData();
+		final Random random = new Random( 1 );
+		for ( int i = 0; i < data.length; ++i )
+			data[ i ] = random.nextInt( 65536 );
+		buffer.setType( new UnsignedShortType() );
+		return buffer;
+	}
+
+	/**
+	 * Convert rows <em>[minY, maxY)</em> of <code>buffer</code>, and compare
+	 * with converting each sample directly. Other rows must not be written.
+	 */
+	private static void assertConvertsRows( final RawSampleBuffer buffer, final Converter< UnsignedShortType, ARGBType > converter, final int minY, final int maxY )
+	{
+		final int w = buffer.getWidth();
+		final int[] target = new int[ w * buffer.getHeight() ];
+		Arrays.fill( target, SENTINEL );
+		buffer.convert( converter, target, minY, maxY );
+
+		final float[] data = buffer.getData();
+		final UnsignedShortType input = new UnsignedShortType();
+		final ARGBType argb = new ARGBType();
+		for ( int i = 0; i < target.length; ++i )
+		{
+			final int y = i / w;
+			if ( y >= minY && y < maxY )
+			{
+				input.setReal( data[ i ] );
+				converter.convert( input, argb );
+				assertEquals( argb.get(), target[ i ] );
+			}
+			else
+				assertEquals( SENTINEL, target[ i ] );
+		}
+	}
+
+	@Test
+	public void testLookupTableConversion()
+	{
+		final RawSampleBuffer buffer = createBuffer( 7, 5 );
+		final UnsignedShortLookupTableConverter converter = new UnsignedShortLookupTableConverter( 1000, 50000 );
+		assertConvertsRows( buffer, converter, 0, 5 );
+		assertConvertsRows( buffer, converter, 1, 4 );
+		assertConvertsRows( buffer, converter, 2, 2 );
+	}
+
+	@Test
+	public void testGenericConversion()
+	{
+		final RawSampleBuffer buffer = createBuffer( 7, 5 );
+		final RealARGBConverter< UnsignedShortType > converter = new RealARGBConverter< >( 1000, 50000 );
+		assertConvertsRows( buffer, converter, 0, 5 );
+		assertConvertsRows( buffer, converter, 1, 4 );
+		assertConvertsRows( buffer, converter, 4, 5 );
+	}
+
+	@Test
+	public void testSupportedTypes()
+	{
+		assertTrue( RawSampleBuffer.isSupported( new UnsignedShortType() ) );
+		assertTrue( RawSampleBuffer.isSupported( new FloatType() ) );
+		assertFalse( RawSampleBuffer.isSupported( new IntType() ) );
+		assertFalse( RawSampleBuffer.isSupported( new DoubleType() ) );
+
+		final RawSampleBuffer buffer = new RawSampleBuffer( 2, 2 );
+		buffer.setType( new DoubleType() );
+		assertNull( buffer.getType() );
+		assertTrue( buffer.isUnsupported() );
+
+		buffer.reset();
+		buffer.setType( new FloatType() );
+		assertNotNull( buffer.getType() );
+		assertFalse( buffer.isUnsupported() );
+	}
+
+	/**
+	 * Render a rotated, zoomed-out image with clipping, storing raw samples.
+	 * The buffer must hold the source value of every pixel (including the
+	 * raw background of pixels outside the clipping span), and converting it
+	 * must reproduce the rendered image.
+	 */
+	@Test
+	public void testProjectorFillsBuffer()
+	{
+		final ArrayImg< UnsignedShortType, ShortArray > img = ArrayImgs.unsignedShorts( 10, 8 );
+		int v = 1;
+		for ( final UnsignedShortType t : img )
+			t.set( 100 * v++ );
+		final UnsignedShortType outside = new UnsignedShortType( 7 );
+		final RandomAccessible< UnsignedShortType > extended = Views.extendValue( img, outside );
+
+		final AffineTransform2D sourceToScreen = new AffineTransform2D();
+		sourceToScreen.rotate( 0.4 );
+		sourceToScreen.scale( 1.5 );
+		sourceToScreen.translate( 12.3, 4.1 );
+
+		final int w = 40;
+		final int h = 30;
+		final RandomAccess< UnsignedShortType > expected = RealViews.affine( Views.interpolate( extended, new NearestNeighborInterpolatorFactory< UnsignedShortType >() ), sourceToScreen ).randomAccess();
+
+		final UnsignedShortLookupTableConverter lutConverter = new UnsignedShortLookupTableConverter( 0, 8000 );
+		final RealARGBConverter< UnsignedShortType > converter = new RealARGBConverter< >( 0, 8000 );
+		for ( final Converter< UnsignedShortType, ARGBType > c : Arrays.< Converter< UnsignedShortType, ARGBType > >asList( lutConverter, converter ) )
+		{
+			final ARGBScreenImage target = new ARGBScreenImage( w, h );
+			final ARGBScreenImageProjector< UnsignedShortType > projector = new ARGBScreenImageProjector< >(
+					ScanlineViews.affine( Views.interpolate( extended, new NearestNeighborInterpolatorFactory< UnsignedShortType >() ), sourceToScreen ),
+					c, target, 1, null );
+			final ARGBType background = new ARGBType();
+			c.convert( outside, background );
+			projector.setClipping( ScanlineClipping.create( img, null, sourceToScreen ), background.get() );
+			final RawSampleBuffer buffer = new RawSampleBuffer( w, h );
+			Arrays.fill( buffer.getData(), Float.NaN );
+			projector.setRawSampleBuffer( buffer );
+			projector.setRawBackground( outside.getRealFloat() );
+			assertTrue( projector.map() );
+
+			assertNotNull( buffer.getType() );
+			final float[] raw = buffer.getData();
+			for ( int y = 0; y < h; ++y )
+			{
+				expected.setPosition( 0, 0 );
+				expected.setPosition( y, 1 );
+				for ( int x = 0; x < w; ++x )
+				{
+					assertEquals( expected.get().getRealFloat(), raw[ y * w + x ], 0 );
+					expected.fwd( 0 );
+				}
+			}
+
+			final int[] converted = new int[ w * h ];
+			buffer.convert( c, converted, 0, h );
+			assertArrayEquals( target.getData(), converted );
+		}
+	}
+}
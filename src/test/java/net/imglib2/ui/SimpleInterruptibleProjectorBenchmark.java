@@ -0,0 +1,131 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.ui;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import net.imglib2.converter.Converter;
+import net.imglib2.display.screenimage.awt.ARGBScreenImage;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.type.numeric.ARGBType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.ui.util.RenderingThreads;
+
+/**
+ * Measures the per-frame cost of {@link SimpleInterruptibleProjector#map()}
+ * with a thread pool that is created and shut down for every frame, versus a
+ * long-lived thread pool as owned by the renderers.
+ */
+@State( Scope.Benchmark )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 10, time = 1 )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Fork( 1 )
+public class SimpleInterruptibleProjectorBenchmark
+{
+	@Param( { "100", "400" } )
+	public int size;
+
+	private final int numThreads = 3;
+
+	private ExecutorService executorService;
+
+	private SimpleInterruptibleProjector< UnsignedByteType, ARGBType > perFrameThreadPoolProjector;
+
+	private SimpleInterruptibleProjector< UnsignedByteType, ARGBType > persistentThreadPoolProjector;
+
+	@Setup
+	public void setup()
+	{
+		final Converter< UnsignedByteType, ARGBType > converter = new Converter< UnsignedByteType, ARGBType >()
+		{
+			@Override
+			public void convert( final UnsignedByteType input, final ARGBType output )
+			{
+				final int v = input.get();
+				output.set( ARGBType.rgba( v, v, v, 255 ) );
+			}
+		};
+		executorService = RenderingThreads.newFixedThreadPool( numThreads );
+		perFrameThreadPoolProjector = new SimpleInterruptibleProjector<>(
+				ArrayImgs.unsignedBytes( size, size ), converter, new ARGBScreenImage( size, size ), numThreads );
+		persistentThreadPoolProjector = new SimpleInterruptibleProjector<>(
+				ArrayImgs.unsignedBytes( size, size ), converter, new ARGBScreenImage( size, size ), numThreads, executorService );
+	}
+
+	@TearDown
+	public void tearDown()
+	{
+		executorService.shutdown();
+	}
+
+	@Benchmark
+	public boolean perFrameThreadPool()
+	{
+		return perFrameThreadPoolProjector.map();
+	}
+
+	@Benchmark
+	public boolean persistentThreadPool()
+	{
+		return persistentThreadPoolProjector.map();
+	}
+
+	public static void main( final String... args ) throws RunnerException
+	{
+		final Options opt = new OptionsBuilder()
+				.include( SimpleInterruptibleProjectorBenchmark.class.getSimpleName() )
+				.build();
+		new Runner( opt ).run();
+	}
+}
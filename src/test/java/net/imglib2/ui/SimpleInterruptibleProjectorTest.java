@@ -0,0 +1,107 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.ui;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import net.imglib2.converter.Converter;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.type.numeric.ARGBType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.view.Views;
+
+/**
+ * Tests {@link SimpleInterruptibleProjector}.
+ */
+public class SimpleInterruptibleProjectorTest
+{
+	private static final int WIDTH = 6;
+
+	private static final int HEIGHT = 30;
+
+	private static final Converter< FloatType, ARGBType > converter = new Converter< FloatType, ARGBType >()
+	{
+		@Override
+		public void convert( final FloatType input, final ARGBType output )
+		{
+			output.set( ( int ) input.get() );
+		}
+	};
+
+	/**
+	 * Render rows <code>minY</code> to <code>HEIGHT - 1</code> of a source
+	 * whose pixels are their own index, and check that exactly these rows are
+	 * written.
+	 */
+	private static void testTargetMin( final int minY, final int numThreads )
+	{
+		final float[] sourceData = new float[ WIDTH * HEIGHT ];
+		for ( int i = 0; i < sourceData.length; ++i )
+			sourceData[ i ] = i + 1;
+		final int[] targetData = new int[ WIDTH * HEIGHT ];
+
+		final SimpleInterruptibleProjector< FloatType, ARGBType > projector = new SimpleInterruptibleProjector<>(
+				ArrayImgs.floats( sourceData, WIDTH, HEIGHT ),
+				converter,
+				Views.interval( ArrayImgs.argbs( targetData, WIDTH, HEIGHT ), new long[] { 0, minY }, new long[] { WIDTH - 1, HEIGHT - 1 } ),
+				numThreads );
+		assertTrue( projector.map() );
+
+		for ( int i = 0; i < targetData.length; ++i )
+			assertEquals( "pixel " + i, i < minY * WIDTH ? 0 : i + 1, targetData[ i ] );
+	}
+
+	@Test
+	public void testZeroMin()
+	{
+		testTargetMin( 0, 1 );
+		testTargetMin( 0, 3 );
+	}
+
+	/**
+	 * The rows of each task are counted from the target min. Tasks used to
+	 * subtract the target min twice, which dropped rows of targets with
+	 * non-zero min, when rendering with more than one thread.
+	 */
+	@Test
+	public void testNonZeroMin()
+	{
+		testTargetMin( 10, 1 );
+		testTargetMin( 10, 3 );
+		testTargetMin( 7, 4 );
+	}
+}
@@ -0,0 +1,184 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.ui;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import net.imglib2.RandomAccessible;
+import net.imglib2.converter.Converter;
+import net.imglib2.display.screenimage.awt.ARGBScreenImage;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.basictypeaccess.array.ByteArray;
+import net.imglib2.interpolation.randomaccess.NearestNeighborInterpolatorFactory;
+import net.imglib2.realtransform.AffineTransform3D;
+import net.imglib2.type.numeric.ARGBType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.ui.sampler.ScanlineViews;
+import net.imglib2.ui.util.RenderingThreads;
+import net.imglib2.view.Views;
+
+/**
+ * Measures the cost per screen pixel of rendering a rotated, tilted slice
+ * through a 3D volume with {@link ARGBScreenImageProjector}, for row-major
+ * tile order versus the {@link TileOrder#isLayoutAware() layout-aware}
+ * {@link TileOrder#MORTON} and {@link TileOrder#HILBERT} orders (which also
+ * traverse tiles column by column if
+ * {@link ScanlineViews#isColumnTraversalPreferred(net.imglib2.realtransform.AffineGet)
+ * preferred}). The slice is tilted about the X axis by <code>tilt</code>
+ * degrees and rotated in the screen plane by <code>angle</code> degrees. With
+ * both 0, the slice is axis-aligned.
+ */
+@State( Scope.Benchmark )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 10, time = 1 )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Fork( 1 )
+public class TileOrderBenchmark
+{
+	@Param( { "0", "30", "60", "90" } )
+	public double angle;
+
+	@Param( { "0", "30" } )
+	public double tilt;
+
+	@Param( { "1", "4" } )
+	public int numThreads;
+
+	private static final int width = 1024;
+
+	private static final int height = 768;
+
+	private ExecutorService executorService;
+
+	private RandomAccessible< UnsignedByteType > transformed;
+
+	private Converter< UnsignedByteType, ARGBType > converter;
+
+	private ARGBScreenImage screenImage;
+
+	private boolean columnsPreferred;
+
+	@Setup
+	public void setup()
+	{
+		final ArrayImg< UnsignedByteType, ByteArray > img = ArrayImgs.unsignedBytes( 512, 512, 256 );
+		int i = 0;
+		for ( final UnsignedByteType t : img )
+			t.set( i++ & 0xff );
+
+		final AffineTransform3D sourceToScreen = new AffineTransform3D();
+		sourceToScreen.translate( -256, -256, -128 );
+		sourceToScreen.rotate( 0, Math.toRadians( tilt ) );
+		sourceToScreen.rotate( 2, Math.toRadians( angle ) );
+		sourceToScreen.translate( width / 2, height / 2, 0 );
+
+		transformed = ScanlineViews.affine( Views.interpolate( Views.extendZero( img ), new NearestNeighborInterpolatorFactory< UnsignedByteType >() ), sourceToScreen );
+		columnsPreferred = ScanlineViews.isColumnTraversalPreferred( sourceToScreen );
+		converter = new Converter< UnsignedByteType, ARGBType >()
+		{
+			@Override
+			public void convert( final UnsignedByteType input, final ARGBType output )
+			{
+				final int v = input.get();
+				output.set( ARGBType.rgba( v, v, v, 255 ) );
+			}
+		};
+		screenImage = new ARGBScreenImage( width, height );
+		executorService = RenderingThreads.newFixedThreadPool( numThreads );
+	}
+
+	@TearDown
+	public void tearDown()
+	{
+		executorService.shutdown();
+	}
+
+	private boolean render( final TileOrder order )
+	{
+		final ARGBScreenImageProjector< UnsignedByteType > projector = new ARGBScreenImageProjector<>( transformed, converter, screenImage, numThreads, executorService );
+		projector.setTileOrder( order, 0, 0 );
+		projector.setColumnsPreferred( columnsPreferred );
+		return projector.map();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation( width * height )
+	public boolean rowMajor()
+	{
+		return render( TileOrder.ROW_MAJOR );
+	}
+
+	@Benchmark
+	@OperationsPerInvocation( width * height )
+	public boolean morton()
+	{
+		return render( TileOrder.MORTON );
+	}
+
+	@Benchmark
+	@OperationsPerInvocation( width * height )
+	public boolean hilbert()
+	{
+		return render( TileOrder.HILBERT );
+	}
+
+	public static void main( final String... args ) throws RunnerException
+	{
+		final Options opt = new OptionsBuilder()
+				.include( TileOrderBenchmark.class.getSimpleName() )
+				.build();
+		new Runner( opt ).run();
+	}
+}
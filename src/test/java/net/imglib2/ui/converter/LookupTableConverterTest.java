@@ -0,0 +1,80 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.ui.converter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+import net.imglib2.type.numeric.ARGBType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+
+/**
+ * Tests {@link LookupTableConverter}.
+ */
+public class LookupTableConverterTest
+{
+	@Test
+	public void testDisplayRange()
+	{
+		final UnsignedShortLookupTableConverter converter = new UnsignedShortLookupTableConverter( 1000, 2000 );
+		final ARGBType argb = new ARGBType();
+
+		converter.convert( new UnsignedShortType( 500 ), argb );
+		assertEquals( 0, argb.get() );
+		converter.convert( new UnsignedShortType( 1500 ), argb );
+		assertEquals( ARGBType.rgba( 128, 128, 128, 128 ), argb.get() );
+		converter.convert( new UnsignedShortType( 60000 ), argb );
+		assertEquals( 0xffffffff, argb.get() );
+	}
+
+	@Test
+	public void testRebuildOnChange()
+	{
+		final UnsignedShortLookupTableConverter converter = new UnsignedShortLookupTableConverter( 0, 100 );
+		final int[] lut = converter.getLut();
+		assertSame( lut, converter.getLut() );
+
+		converter.setColor( new ARGBType( ARGBType.rgba( 255, 0, 0, 255 ) ) );
+		final int[] red = converter.getLut();
+		assertEquals( ARGBType.rgba( 255, 0, 0, 255 ), red[ 100 ] );
+
+		converter.setColormap( new int[] { 1, 2, 3 } );
+		final int[] cmap = converter.getLut();
+		assertEquals( 1, cmap[ 0 ] );
+		assertEquals( 2, cmap[ 50 ] );
+		assertEquals( 3, cmap[ 100 ] );
+	}
+}
@@ -0,0 +1,140 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.ui.sampler;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessible;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.basictypeaccess.array.ByteArray;
+import net.imglib2.realtransform.AffineTransform3D;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.view.Views;
+
+/**
+ * Compares rendering an orthogonal slice of a 3D source with nearest-neighbor
+ * interpolation through the {@link AxisAlignedNearestNeighborSampler} versus
+ * the general affine {@link NearestNeighborScanlineSampler3D}, at different
+ * zoom levels.
+ */
+@State( Scope.Benchmark )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 10, time = 1 )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Fork( 1 )
+public class AxisAlignedSamplerBenchmark
+{
+	@Param( { "0.25", "1", "4" } )
+	public double zoom;
+
+	private final int width = 800;
+
+	private final int height = 600;
+
+	private AxisAlignedNearestNeighborSampler< UnsignedByteType > axisAligned;
+
+	private NearestNeighborScanlineSampler3D< UnsignedByteType > affine;
+
+	@Setup
+	public void setup()
+	{
+		final ArrayImg< UnsignedByteType, ByteArray > img = ArrayImgs.unsignedBytes( 512, 512, 64 );
+		int i = 0;
+		for ( final UnsignedByteType t : img )
+			t.set( i++ & 0xff );
+		final RandomAccessible< UnsignedByteType > source = Views.extendZero( img );
+
+		final AffineTransform3D sourceToScreen = new AffineTransform3D();
+		sourceToScreen.scale( zoom );
+		sourceToScreen.translate( 10.3, 20.7, -32.0 * zoom );
+		axisAligned = new AxisAlignedNearestNeighborSampler<>( source, sourceToScreen.inverse() );
+		affine = new NearestNeighborScanlineSampler3D<>( source, sourceToScreen.inverse() );
+	}
+
+	private int render( final RandomAccess< UnsignedByteType > sampler )
+	{
+		int sum = 0;
+		sampler.setPosition( 0, 2 );
+		for ( int y = 0; y < height; ++y )
+		{
+			sampler.setPosition( 0, 0 );
+			sampler.setPosition( y, 1 );
+			for ( int x = 0; x < width; ++x )
+			{
+				sum += sampler.get().get();
+				sampler.fwd( 0 );
+			}
+		}
+		return sum;
+	}
+
+	@Benchmark
+	public int axisAligned()
+	{
+		return render( axisAligned );
+	}
+
+	@Benchmark
+	public int affine()
+	{
+		return render( affine );
+	}
+
+	public static void main( final String... args ) throws RunnerException
+	{
+		final Options opt = new OptionsBuilder()
+				.include( AxisAlignedSamplerBenchmark.class.getSimpleName() )
+				.build();
+		new Runner( opt ).run();
+	}
+}
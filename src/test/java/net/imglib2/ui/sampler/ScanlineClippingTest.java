@@ -0,0 +1,231 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.ui.sampler;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import net.imglib2.FinalInterval;
+import net.imglib2.Interval;
+import net.imglib2.realtransform.AffineGet;
+import net.imglib2.realtransform.AffineTransform2D;
+import net.imglib2.realtransform.AffineTransform3D;
+
+/**
+ * Tests that the spans computed by {@link ScanlineClipping} agree with
+ * checking the source position of every pixel.
+ */
+public class ScanlineClippingTest
+{
+	private static final double EPS = 1e-9;
+
+	/**
+	 * Clip rows of the screen, and check every pixel: pixels in the span must
+	 * not map outside the box, pixels outside the span must not map inside
+	 * it (up to {@link #EPS}, for pixels on the border of the box).
+	 */
+	private static void assertSpansMatchBox( final double[] boxMin, final double[] boxMax, final AffineGet sourceToScreen )
+	{
+		final int n = sourceToScreen.numDimensions();
+		final AffineGet screenToSource = sourceToScreen.inverse();
+		final ScanlineClipping clipping = new ScanlineClipping( boxMin, boxMax, screenToSource );
+		final double[] screen = new double[ n ];
+		final double[] source = new double[ n ];
+		final int[] span = new int[ 2 ];
+		final int width = 60;
+		long numInside = 0;
+		for ( final long minX : new long[] { -13, 0, 17 } )
+		{
+			for ( long y = -30; y < 80; ++y )
+			{
+				clipping.clip( y, minX, width, span );
+				assertTrue( 0 <= span[ 0 ] && span[ 0 ] <= span[ 1 ] && span[ 1 ] <= width );
+				numInside += span[ 1 ] - span[ 0 ];
+				for ( int i = 0; i < width; ++i )
+				{
+					screen[ 0 ] = minX + i;
+					screen[ 1 ] = y;
+					screenToSource.apply( screen, source );
+					boolean inside = true;
+					boolean outside = false;
+					for ( int d = 0; d < n; ++d )
+					{
+						inside &= source[ d ] > boxMin[ d ] + EPS && source[ d ] < boxMax[ d ] - EPS;
+						outside |= source[ d ] < boxMin[ d ] - EPS || source[ d ] > boxMax[ d ] + EPS;
+					}
+					final boolean inSpan = i >= span[ 0 ] && i < span[ 1 ];
+					if ( inSpan )
+						assertFalse( "pixel (" + screen[ 0 ] + ", " + y + ") maps outside the box", outside );
+					else
+						assertFalse( "pixel (" + screen[ 0 ] + ", " + y + ") maps inside the box", inside );
+				}
+			}
+		}
+		assertTrue( numInside > 0 );
+	}
+
+	/**
+	 * Check that {@link ScanlineClipping#create(Interval, AffineGet, AffineGet)}
+	 * keeps every pixel whose nearest-neighbor or n-linear interpolated value
+	 * depends on a source pixel that overlaps the interval.
+	 * <code>intervalToSource</code> must be axis-aligned.
+	 */
+	private static void assertCreateContainsInterval( final Interval interval, final AffineGet intervalToSource, final AffineGet sourceToScreen )
+	{
+		final int n = interval.numDimensions();
+
+		// extent of the interval (including the pixel footprints) in source coordinates
+		final double[] min = new double[ n ];
+		final double[] max = new double[ n ];
+		for ( int d = 0; d < n; ++d )
+		{
+			min[ d ] = interval.min( d ) - 0.5;
+			max[ d ] = interval.max( d ) + 0.5;
+		}
+		if ( intervalToSource != null )
+		{
+			final double[] a = new double[ n ];
+			final double[] b = new double[ n ];
+			intervalToSource.apply( min, a );
+			intervalToSource.apply( max, b );
+			for ( int d = 0; d < n; ++d )
+			{
+				min[ d ] = Math.min( a[ d ], b[ d ] );
+				max[ d ] = Math.max( a[ d ], b[ d ] );
+			}
+		}
+
+		final AffineGet screenToSource = sourceToScreen.inverse();
+		final ScanlineClipping clipping = ScanlineClipping.create( interval, intervalToSource, sourceToScreen );
+		final double[] screen = new double[ n ];
+		final double[] pos = new double[ n ];
+		final int[] span = new int[ 2 ];
+		final int width = 80;
+		long numDepending = 0;
+		for ( long y = -30; y < 80; ++y )
+		{
+			clipping.clip( y, -20, width, span );
+			for ( int i = 0; i < width; ++i )
+			{
+				screen[ 0 ] = i - 20;
+				screen[ 1 ] = y;
+				screenToSource.apply( screen, pos );
+				// n-linear interpolation uses source pixels floor(pos) and floor(pos) + 1, nearest-neighbor one of them
+				boolean depends = true;
+				for ( int d = 0; d < n; ++d )
+				{
+					final double k = Math.floor( pos[ d ] );
+					depends &= k + 1.5 > min[ d ] && k - 0.5 < max[ d ];
+				}
+				if ( depends )
+				{
+					++numDepending;
+					assertTrue( "pixel (" + screen[ 0 ] + ", " + y + ") depends on the interval", i >= span[ 0 ] && i < span[ 1 ] );
+				}
+			}
+		}
+		assertTrue( numDepending > 0 );
+	}
+
+	private static AffineTransform2D rotated2D( final double scale )
+	{
+		final AffineTransform2D t = new AffineTransform2D();
+		t.rotate( 0.7 );
+		t.scale( scale );
+		t.translate( 20.3, -4.6 );
+		return t;
+	}
+
+	private static AffineTransform3D rotated3D( final double scale )
+	{
+		final AffineTransform3D t = new AffineTransform3D();
+		t.rotate( 0, 0.4 );
+		t.rotate( 2, 0.9 );
+		t.scale( scale );
+		t.translate( 20.3, -4.6, 1.7 );
+		return t;
+	}
+
+	@Test
+	public void testRotated2D()
+	{
+		assertSpansMatchBox( new double[] { -1, -1 }, new double[] { 30, 20 }, rotated2D( 1.7 ) );
+	}
+
+	@Test
+	public void testZoomedOut2D()
+	{
+		assertSpansMatchBox( new double[] { -1, -1 }, new double[] { 100, 80 }, rotated2D( 0.35 ) );
+
+		final AffineTransform2D axisAligned = new AffineTransform2D();
+		axisAligned.scale( 0.5 );
+		axisAligned.translate( 3, 2 );
+		assertSpansMatchBox( new double[] { -1, -1 }, new double[] { 100, 80 }, axisAligned );
+	}
+
+	@Test
+	public void testRotated3D()
+	{
+		assertSpansMatchBox( new double[] { -1, -1, -1 }, new double[] { 30, 20, 10 }, rotated3D( 1.3 ) );
+	}
+
+	@Test
+	public void testZoomedOut3D()
+	{
+		// move the center of the box to the screen (at z = 0)
+		final AffineTransform3D sourceToScreen = rotated3D( 0.35 );
+		final double[] center = new double[ 3 ];
+		sourceToScreen.apply( new double[] { 50, 40, 20 }, center );
+		sourceToScreen.translate( 30 - center[ 0 ], 25 - center[ 1 ], -center[ 2 ] );
+		assertSpansMatchBox( new double[] { -1, -1, -1 }, new double[] { 100, 80, 40 }, sourceToScreen );
+	}
+
+	@Test
+	public void testCreate()
+	{
+		final FinalInterval interval2D = new FinalInterval( new long[] { 2, 3 }, new long[] { 40, 25 } );
+		assertCreateContainsInterval( interval2D, null, rotated2D( 1.1 ) );
+
+		// rendered from a coarser resolution level (1/4 of the full resolution interval)
+		final AffineTransform2D intervalToLevel = new AffineTransform2D();
+		intervalToLevel.scale( 0.25 );
+		intervalToLevel.translate( -0.375, -0.375 );
+		assertCreateContainsInterval( new FinalInterval( new long[] { 5, 3 }, new long[] { 130, 90 } ), intervalToLevel, rotated2D( 1.5 ) );
+
+		final FinalInterval interval3D = new FinalInterval( new long[] { 2, 3, -4 }, new long[] { 40, 25, 8 } );
+		assertCreateContainsInterval( interval3D, null, rotated3D( 0.8 ) );
+	}
+}
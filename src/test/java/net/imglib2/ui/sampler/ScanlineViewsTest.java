@@ -0,0 +1,185 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.ui.sampler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessible;
+import net.imglib2.RealRandomAccessible;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.basictypeaccess.array.DoubleArray;
+import net.imglib2.interpolation.InterpolatorFactory;
+import net.imglib2.interpolation.randomaccess.NLinearInterpolatorFactory;
+import net.imglib2.interpolation.randomaccess.NearestNeighborInterpolatorFactory;
+import net.imglib2.realtransform.AffineGet;
+import net.imglib2.realtransform.AffineTransform2D;
+import net.imglib2.realtransform.AffineTransform3D;
+import net.imglib2.realtransform.RealViews;
+import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.view.Views;
+
+/**
+ * Tests that {@link ScanlineViews#affine(RealRandomAccessible, AffineGet)}
+ * renders the same values as
+ * {@link RealViews#affine(RealRandomAccessible, AffineGet)}.
+ */
+public class ScanlineViewsTest
+{
+	private static RandomAccessible< DoubleType > createSource( final long... dimensions )
+	{
+		final ArrayImg< DoubleType, DoubleArray > img = ArrayImgs.doubles( dimensions );
+		final Random random = new Random( 1 );
+		for ( final DoubleType t : img )
+			t.set( random.nextDouble() );
+		return Views.extendBorder( img );
+	}
+
+	private static void assertSameValues( final RealRandomAccessible< DoubleType > source, final AffineGet sourceToScreen )
+	{
+		final RandomAccess< DoubleType > expected = RealViews.affine( source, sourceToScreen ).randomAccess();
+		final RandomAccess< DoubleType > actual = ScanlineViews.affine( source, sourceToScreen ).randomAccess();
+		for ( int y = -5; y < 40; ++y )
+		{
+			expected.setPosition( -5, 0 );
+			expected.setPosition( y, 1 );
+			actual.setPosition( -5, 0 );
+			actual.setPosition( y, 1 );
+			for ( int x = -5; x < 40; ++x )
+			{
+				assertEquals( expected.get().get(), actual.get().get(), 1e-9 );
+				expected.fwd( 0 );
+				actual.fwd( 0 );
+			}
+		}
+
+		// column by column, as for layout-aware tile orders
+		for ( int x = -5; x < 40; ++x )
+		{
+			expected.setPosition( x, 0 );
+			expected.setPosition( -5, 1 );
+			actual.setPosition( x, 0 );
+			actual.setPosition( -5, 1 );
+			for ( int y = -5; y < 40; ++y )
+			{
+				assertEquals( expected.get().get(), actual.get().get(), 1e-9 );
+				expected.fwd( 1 );
+				actual.fwd( 1 );
+			}
+		}
+	}
+
+	private static void test2D( final InterpolatorFactory< DoubleType, RandomAccessible< DoubleType > > factory )
+	{
+		final AffineTransform2D sourceToScreen = new AffineTransform2D();
+		sourceToScreen.rotate( 0.3 );
+		sourceToScreen.scale( 1.7 );
+		sourceToScreen.translate( 3.2, -5.1 );
+		assertSameValues( Views.interpolate( createSource( 30, 20 ), factory ), sourceToScreen );
+	}
+
+	private static void test3D( final InterpolatorFactory< DoubleType, RandomAccessible< DoubleType > > factory )
+	{
+		final AffineTransform3D sourceToScreen = new AffineTransform3D();
+		sourceToScreen.rotate( 0, 0.3 );
+		sourceToScreen.rotate( 1, 0.5 );
+		sourceToScreen.scale( 1.3 );
+		sourceToScreen.translate( 3.2, -5.1, 7.7 );
+		assertSameValues( Views.interpolate( createSource( 30, 20, 10 ), factory ), sourceToScreen );
+	}
+
+	private static void testAxisAligned( final double scale )
+	{
+		final AffineTransform2D sourceToScreen2D = new AffineTransform2D();
+		sourceToScreen2D.scale( scale );
+		sourceToScreen2D.translate( 3.3, -5.1 );
+		assertSameValues( Views.interpolate( createSource( 30, 20 ), new NearestNeighborInterpolatorFactory<>() ), sourceToScreen2D );
+
+		final AffineTransform3D sourceToScreen3D = new AffineTransform3D();
+		sourceToScreen3D.scale( scale );
+		sourceToScreen3D.translate( 3.3, -5.1, -4.3 );
+		assertSameValues( Views.interpolate( createSource( 30, 20, 10 ), new NearestNeighborInterpolatorFactory<>() ), sourceToScreen3D );
+
+		// XZ slice, with source Z flipped
+		final AffineTransform3D sourceToScreenXZ = new AffineTransform3D();
+		sourceToScreenXZ.set(
+				scale, 0, 0, 3.3,
+				0, 0, -scale, 25.1,
+				0, scale, 0, -4.3 );
+		assertTrue( AxisAlignedNearestNeighborSampler.isAxisAligned( sourceToScreenXZ.inverse() ) );
+		assertSameValues( Views.interpolate( createSource( 30, 20, 10 ), new NearestNeighborInterpolatorFactory<>() ), sourceToScreenXZ );
+	}
+
+	@Test
+	public void testAxisAlignedZoomIn()
+	{
+		testAxisAligned( 2.5 );
+	}
+
+	@Test
+	public void testAxisAlignedZoomOut()
+	{
+		testAxisAligned( 0.4 );
+	}
+
+	@Test
+	public void testNearestNeighbor2D()
+	{
+		test2D( new NearestNeighborInterpolatorFactory<>() );
+	}
+
+	@Test
+	public void testNLinear2D()
+	{
+		test2D( new NLinearInterpolatorFactory<>() );
+	}
+
+	@Test
+	public void testNearestNeighbor3D()
+	{
+		test3D( new NearestNeighborInterpolatorFactory<>() );
+	}
+
+	@Test
+	public void testNLinear3D()
+	{
+		test3D( new NLinearInterpolatorFactory<>() );
+	}
+}
@@ -0,0 +1,209 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.ui.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.Test;
+
+import net.imglib2.RandomAccess;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.ui.Placeholders;
+
+/**
+ * Tests that {@link ChunkedDirectoryImage} reads back the pixels of datasets
+ * written in its format, and rejects invalid attributes.
+ */
+public class ChunkedDirectoryImageTest
+{
+	private static final int WIDTH = 10;
+
+	private static final int HEIGHT = 7;
+
+	/**
+	 * Border blocks are truncated to 2 x 1 pixels.
+	 */
+	private static final int[] BLOCK_SIZE = { 4, 3 };
+
+	private static double value( final int x, final int y )
+	{
+		return x + 100 * y + 1;
+	}
+
+	private static File createDirectory( final String attributes ) throws IOException
+	{
+		final File directory = Files.createTempDirectory( "chunks" ).toFile();
+		Files.write( new File( directory, "attributes.json" ).toPath(), attributes.getBytes( StandardCharsets.UTF_8 ) );
+		return directory;
+	}
+
+	private static void delete( final File file )
+	{
+		final File[] files = file.listFiles();
+		if ( files != null )
+			for ( final File f : files )
+				delete( f );
+		file.delete();
+	}
+
+	/**
+	 * Write a dataset. The block at grid position (1,1) is not written.
+	 */
+	private static File writeDataset( final String dataType, final boolean gzip, final ByteOrder byteOrder ) throws IOException
+	{
+		final File directory = createDirectory( String.format(
+				"{ \"dimensions\" : [ %d, %d ], \"blockSize\" : [ %d, %d ], \"dataType\" : \"%s\", \"compression\" : \"%s\", \"byteOrder\" : \"%s\" }",
+				WIDTH, HEIGHT, BLOCK_SIZE[ 0 ], BLOCK_SIZE[ 1 ], dataType, gzip ? "gzip" : "raw", byteOrder == ByteOrder.BIG_ENDIAN ? "big" : "little" ) );
+		for ( int gx = 0; gx * BLOCK_SIZE[ 0 ] < WIDTH; ++gx )
+		{
+			for ( int gy = 0; gy * BLOCK_SIZE[ 1 ] < HEIGHT; ++gy )
+			{
+				if ( gx == 1 && gy == 1 )
+					continue;
+				final int minX = gx * BLOCK_SIZE[ 0 ];
+				final int minY = gy * BLOCK_SIZE[ 1 ];
+				final int w = Math.min( BLOCK_SIZE[ 0 ], WIDTH - minX );
+				final int h = Math.min( BLOCK_SIZE[ 1 ], HEIGHT - minY );
+				final ByteBuffer buffer = ByteBuffer.allocate( w * h * 4 ).order( byteOrder );
+				for ( int y = minY; y < minY + h; ++y )
+					for ( int x = minX; x < minX + w; ++x )
+						if ( dataType.equals( "float32" ) )
+							buffer.putFloat( ( float ) value( x, y ) );
+						else
+							buffer.putShort( ( short ) value( x, y ) );
+				final File file = new File( directory, gx + File.separator + gy );
+				file.getParentFile().mkdirs();
+				try ( final OutputStream out = gzip ? new GZIPOutputStream( new FileOutputStream( file ) ) : new FileOutputStream( file ) )
+				{
+					out.write( buffer.array(), 0, buffer.position() );
+				}
+			}
+		}
+		return directory;
+	}
+
+	private static < T extends RealType< T > > void assertReadsDataset( final String dataType, final T type, final boolean gzip, final ByteOrder byteOrder ) throws IOException, InterruptedException
+	{
+		final File directory = writeDataset( dataType, gzip, byteOrder );
+		final ChunkedDirectoryImage< T > img = new ChunkedDirectoryImage<>( directory, type, 1 << 20, 2 );
+		try
+		{
+			final RandomAccess< T > access = img.getCachedSource().randomAccess();
+			for ( int attempt = 0; attempt < 1000; ++attempt )
+			{
+				Placeholders.clear();
+				for ( int y = 0; y < HEIGHT; ++y )
+				{
+					for ( int x = 0; x < WIDTH; ++x )
+					{
+						access.setPosition( x, 0 );
+						access.setPosition( y, 1 );
+						final double v = access.get().getRealDouble();
+						if ( !Placeholders.isUsed() )
+						{
+							final boolean missing = x / BLOCK_SIZE[ 0 ] == 1 && y / BLOCK_SIZE[ 1 ] == 1;
+							assertEquals( missing ? 0 : value( x, y ), v, 0 );
+						}
+					}
+				}
+				if ( !Placeholders.isUsed() )
+					return;
+				Thread.sleep( 10 );
+			}
+			fail( "blocks were not loaded" );
+		}
+		finally
+		{
+			img.getCache().shutdown();
+			delete( directory );
+		}
+	}
+
+	@Test
+	public void testReadGzip() throws IOException, InterruptedException
+	{
+		assertReadsDataset( "uint16", new UnsignedShortType(), true, ByteOrder.BIG_ENDIAN );
+		assertReadsDataset( "float32", new FloatType(), true, ByteOrder.LITTLE_ENDIAN );
+	}
+
+	@Test
+	public void testReadRaw() throws IOException, InterruptedException
+	{
+		assertReadsDataset( "uint16", new UnsignedShortType(), false, ByteOrder.LITTLE_ENDIAN );
+		assertReadsDataset( "float32", new FloatType(), false, ByteOrder.BIG_ENDIAN );
+	}
+
+	private static void assertInvalid( final String attributes )
+	{
+		File directory = null;
+		try
+		{
+			directory = createDirectory( attributes );
+			new ChunkedDirectoryImage<>( directory, new UnsignedShortType(), 1 << 20, 1 ).getCache().shutdown();
+			fail( "expected IOException for " + attributes );
+		}
+		catch ( final IOException e )
+		{
+			// expected
+		}
+		finally
+		{
+			if ( directory != null )
+				delete( directory );
+		}
+	}
+
+	@Test
+	public void testInvalidAttributes()
+	{
+		assertInvalid( "{ \"dimensions\" : [ 10, 7 ], \"blockSize\" : [ 4, 3 ], \"dataType\" : \"uint\\u00g6\" }" );
+		assertInvalid( "{ \"dimensions\" : [ 10.5, 7 ], \"blockSize\" : [ 4, 3 ], \"dataType\" : \"uint16\" }" );
+		assertInvalid( "{ \"dimensions\" : [ 10, 7 ], \"blockSize\" : [ 4, 1e10 ], \"dataType\" : \"uint16\" }" );
+		assertInvalid( "{ \"dimensions\" : [ 10, 7 ], \"blockSize\" : [ 65536, 65536 ], \"dataType\" : \"uint16\" }" );
+		assertInvalid( "{ \"dimensions\" : [ 10, 7 ], \"blockSize\" : [ 4, 3 ], \"dataType\" : \"uint8\" }" );
+	}
+}
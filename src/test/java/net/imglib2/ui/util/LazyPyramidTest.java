@@ -0,0 +1,151 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.ui.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import net.imglib2.RandomAccess;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.ui.Placeholders;
+
+/**
+ * Tests {@link LazyPyramid}.
+ */
+public class LazyPyramidTest
+{
+	private static double[] createData( final int width, final int height )
+	{
+		final double[] data = new double[ width * height ];
+		final Random random = new Random( 1 );
+		for ( int i = 0; i < data.length; ++i )
+			data[ i ] = random.nextInt( 1000 );
+		return data;
+	}
+
+	/**
+	 * Reduce the 2<sup>level</sup> x 2<sup>level</sup> boxes of
+	 * <code>data</code> directly (clipped at the border).
+	 */
+	private static double[] boxFilter( final double[] data, final int width, final int height, final int level, final LazyPyramid.Reduction reduction )
+	{
+		final int s = 1 << level;
+		final int w = ( width + s - 1 ) / s;
+		final int h = ( height + s - 1 ) / s;
+		final double[] result = new double[ w * h ];
+		for ( int y = 0; y < h; ++y )
+		{
+			for ( int x = 0; x < w; ++x )
+			{
+				double value = reduction == LazyPyramid.Reduction.MAX ? Double.NEGATIVE_INFINITY : 0;
+				int count = 0;
+				for ( int yy = y * s; yy < Math.min( ( y + 1 ) * s, height ); ++yy )
+				{
+					for ( int xx = x * s; xx < Math.min( ( x + 1 ) * s, width ); ++xx )
+					{
+						final double v = data[ yy * width + xx ];
+						value = reduction == LazyPyramid.Reduction.MAX ? Math.max( value, v ) : value + v;
+						++count;
+					}
+				}
+				result[ y * w + x ] = reduction == LazyPyramid.Reduction.MAX ? value : value / count;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Read all pixels of a level, repeating until no placeholders were
+	 * returned, i.e., until all blocks were computed.
+	 */
+	private static double[] readLevel( final LazyPyramid< DoubleType > pyramid, final int level ) throws InterruptedException
+	{
+		final long[] dims = pyramid.getLevelDimensions( level );
+		final double[] values = new double[ ( int ) ( dims[ 0 ] * dims[ 1 ] ) ];
+		final RandomAccess< DoubleType > access = pyramid.getLevel( level ).randomAccess();
+		for ( int attempt = 0; attempt < 1000; ++attempt )
+		{
+			Placeholders.clear();
+			for ( int y = 0, i = 0; y < dims[ 1 ]; ++y )
+			{
+				access.setPosition( y, 1 );
+				for ( int x = 0; x < dims[ 0 ]; ++x, ++i )
+				{
+					access.setPosition( x, 0 );
+					values[ i ] = access.get().get();
+				}
+			}
+			if ( !Placeholders.isUsed() )
+				return values;
+			Thread.sleep( 10 );
+		}
+		fail( "blocks of level " + level + " were not computed" );
+		return null;
+	}
+
+	private static void assertLevelsMatchBoxFilter( final int width, final int height, final LazyPyramid.Reduction reduction ) throws InterruptedException
+	{
+		final double[] data = createData( width, height );
+		final LazyPyramid< DoubleType > pyramid = new LazyPyramid< >( ArrayImgs.doubles( data, width, height ), reduction, 4, 1 << 20, 3 );
+		try
+		{
+			assertEquals( 4, pyramid.getNumLevels() );
+			// start with the coarsest level, such that finer blocks are computed concurrently
+			for ( int level = pyramid.getNumLevels() - 1; level > 0; --level )
+				assertArrayEquals( boxFilter( data, width, height, level, reduction ), readLevel( pyramid, level ), 1e-9 );
+		}
+		finally
+		{
+			pyramid.shutdown();
+		}
+	}
+
+	@Test
+	public void testMean() throws InterruptedException
+	{
+		assertLevelsMatchBoxFilter( 32, 24, LazyPyramid.Reduction.MEAN );
+	}
+
+	@Test
+	public void testMax() throws InterruptedException
+	{
+		assertLevelsMatchBoxFilter( 27, 19, LazyPyramid.Reduction.MAX );
+	}
+}
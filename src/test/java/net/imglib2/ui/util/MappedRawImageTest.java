@@ -0,0 +1,194 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.ui.util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.junit.Test;
+
+import net.imglib2.RandomAccess;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.integer.ByteType;
+import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.type.numeric.integer.ShortType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.integer.UnsignedIntType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.type.numeric.real.FloatType;
+
+/**
+ * Tests that {@link MappedRawImage} reads the pixels of small files that are
+ * mapped in chunks of a few bytes, such that pixels are read from several
+ * chunks and the last chunk is only partially filled.
+ */
+public class MappedRawImageTest
+{
+	private static final long[] DIMENSIONS = { 5, 3, 2 };
+
+	private static final int HEADER_SIZE = 7;
+
+	/**
+	 * Value of the <code>i</code>th pixel, as stored in the file.
+	 */
+	private static double value( final PixelEncoding encoding, final int i )
+	{
+		switch ( encoding )
+		{
+		case INT8:
+			return i * 7 - 100;
+		case UINT8:
+			return i * 7 + 30;
+		case INT16:
+			return i * 1111 - 20000;
+		case UINT16:
+			return i * 2111 + 1;
+		case INT32:
+			return i * 70000001 - 1000000000;
+		case UINT32:
+			return i * 140000001L + 10;
+		case FLOAT32:
+		default:
+			return i * 0.25 - 3;
+		}
+	}
+
+	private static File write( final PixelEncoding encoding, final int numPixels, final ByteOrder byteOrder ) throws IOException
+	{
+		final ByteBuffer buffer = ByteBuffer.allocate( HEADER_SIZE + numPixels * encoding.bytesPerPixel ).order( byteOrder );
+		buffer.position( HEADER_SIZE );
+		for ( int i = 0; i < numPixels; ++i )
+		{
+			final double v = value( encoding, i );
+			switch ( encoding )
+			{
+			case INT8:
+			case UINT8:
+				buffer.put( ( byte ) v );
+				break;
+			case INT16:
+			case UINT16:
+				buffer.putShort( ( short ) v );
+				break;
+			case INT32:
+			case UINT32:
+				buffer.putInt( ( int ) ( long ) v );
+				break;
+			case FLOAT32:
+				buffer.putFloat( ( float ) v );
+				break;
+			}
+		}
+		final File file = File.createTempFile( "raw", ".raw" );
+		file.deleteOnExit();
+		try ( final FileOutputStream out = new FileOutputStream( file ) )
+		{
+			out.write( buffer.array() );
+		}
+		return file;
+	}
+
+	private static < T extends RealType< T > > void assertReadsFile( final T type, final ByteOrder byteOrder ) throws IOException
+	{
+		final PixelEncoding encoding = PixelEncoding.of( type );
+		final int numPixels = ( int ) ( DIMENSIONS[ 0 ] * DIMENSIONS[ 1 ] * DIMENSIONS[ 2 ] );
+		final File file = write( encoding, numPixels, byteOrder );
+
+		// 16 byte chunks: 2 to 16 pixels per chunk, the last chunk is partial
+		final MappedRawImage< T > img = new MappedRawImage<>( file, HEADER_SIZE, DIMENSIONS, type, byteOrder, 4 );
+		final RandomAccess< T > a = img.randomAccess();
+
+		// row by row
+		int i = 0;
+		for ( int z = 0; z < DIMENSIONS[ 2 ]; ++z )
+		{
+			for ( int y = 0; y < DIMENSIONS[ 1 ]; ++y )
+			{
+				a.setPosition( new long[] { 0, y, z } );
+				for ( int x = 0; x < DIMENSIONS[ 0 ]; ++x, ++i, a.fwd( 0 ) )
+					assertEquals( value( encoding, i ), a.get().getRealDouble(), 0 );
+			}
+		}
+
+		// column by column, moving backwards
+		for ( int x = 0; x < DIMENSIONS[ 0 ]; ++x )
+		{
+			a.setPosition( x, 0 );
+			a.setPosition( DIMENSIONS[ 1 ] - 1, 1 );
+			a.setPosition( 1, 2 );
+			for ( int y = ( int ) DIMENSIONS[ 1 ] - 1; y >= 0; --y, a.bck( 1 ) )
+				assertEquals( value( encoding, x + 5 * y + 15 ), a.get().getRealDouble(), 0 );
+		}
+
+		// jumps, and copies
+		a.setPosition( new long[] { 4, 2, 1 } );
+		a.move( new long[] { -3, -1, -1 } );
+		assertEquals( value( encoding, 6 ), a.copyRandomAccess().get().getRealDouble(), 0 );
+	}
+
+	private static < T extends RealType< T > > void assertReadsFile( final T type ) throws IOException
+	{
+		assertReadsFile( type, ByteOrder.BIG_ENDIAN );
+		assertReadsFile( type, ByteOrder.LITTLE_ENDIAN );
+	}
+
+	@Test
+	public void testIntegerTypes() throws IOException
+	{
+		assertReadsFile( new ByteType() );
+		assertReadsFile( new UnsignedByteType() );
+		assertReadsFile( new ShortType() );
+		assertReadsFile( new UnsignedShortType() );
+		assertReadsFile( new IntType() );
+		assertReadsFile( new UnsignedIntType() );
+	}
+
+	@Test
+	public void testFloatType() throws IOException
+	{
+		assertReadsFile( new FloatType() );
+	}
+
+	@Test( expected = IOException.class )
+	public void testTooShort() throws IOException
+	{
+		final File file = write( PixelEncoding.UINT16, 29, ByteOrder.BIG_ENDIAN );
+		new MappedRawImage<>( file, HEADER_SIZE, DIMENSIONS, new UnsignedShortType(), ByteOrder.BIG_ENDIAN, 4 );
+	}
+}